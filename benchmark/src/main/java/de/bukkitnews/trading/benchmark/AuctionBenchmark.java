@@ -0,0 +1,105 @@
+package de.bukkitnews.trading.benchmark;
+
+import de.bukkitnews.trading.benchmark.stub.StubPlayer;
+import de.bukkitnews.trading.trade.auction.AuctionHouse;
+import de.bukkitnews.trading.trade.auction.Order;
+import de.bukkitnews.trading.trade.auction.OrderSide;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.SplittableRandom;
+
+/**
+ * Measures the auction house: placing buy and sell orders around a common price, which escrows their goods and
+ * matches most of them, and settling the resulting fills in the following ticks. Players cancel their oldest
+ * order once they reach the order limit, so the books keep a steady depth.
+ */
+@State(Scope.Thread)
+public class AuctionBenchmark {
+
+    private static final int ORDERS = 1_000;
+    private static final Material[] MATERIALS = {Material.DIAMOND, Material.IRON_INGOT, Material.GOLD_INGOT, Material.EMERALD};
+    private static final long MID_PRICE = 1_000;
+    private static final int STOCK_SLOTS = 18;
+
+    @Param({"100"})
+    private int players;
+
+    private TradingHarness harness;
+    private AuctionHouse auctionHouse;
+    private StubPlayer[] joined;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harness = TradingHarness.start();
+        auctionHouse = harness.plugin().getAuctionHouse();
+        joined = new StubPlayer[players];
+        for (int i = 0; i < players; i++) {
+            joined[i] = harness.join();
+        }
+        random = new SplittableRandom(42);
+    }
+
+    @Setup(Level.Iteration)
+    public void claimMainThread() {
+        harness.server().claimMainThread();
+    }
+
+    /**
+     * Refills the stock of every player and clears the items bought before, so sell orders never run out of items.
+     */
+    @Setup(Level.Invocation)
+    public void restock() {
+        for (StubPlayer player : joined) {
+            PlayerInventory inventory = player.getPlayer().getInventory();
+            inventory.clear();
+            for (int slot = 0; slot < STOCK_SLOTS; slot++) {
+                inventory.setItem(slot, new ItemStack(MATERIALS[slot % MATERIALS.length], 64));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    /**
+     * Places orders of random players, sides, items and prices and runs ticks until all fills are settled.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public int placeAndSettle() {
+        int placed = 0;
+        for (int i = 0; i < ORDERS; i++) {
+            StubPlayer player = joined[random.nextInt(joined.length)];
+            OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            Material material = MATERIALS[random.nextInt(MATERIALS.length)];
+            long price = MID_PRICE + random.nextInt(-10, 11);
+
+            AuctionHouse.Placement placement = auctionHouse.place(player.getPlayer(), side, material,
+                    1 + random.nextInt(16), price);
+            if (placement.result() == AuctionHouse.Placement.Result.TOO_MANY_ORDERS) {
+                Order oldest = auctionHouse.getOrders(player.getUniqueId()).getFirst();
+                auctionHouse.cancel(player.getPlayer(), oldest.getId());
+            } else if (placement.order() != null) {
+                placed++;
+            }
+        }
+
+        while (auctionHouse.getPendingFills() > 0) {
+            harness.tick();
+        }
+        return placed;
+    }
+}
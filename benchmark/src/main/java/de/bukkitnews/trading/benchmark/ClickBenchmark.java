@@ -0,0 +1,75 @@
+package de.bukkitnews.trading.benchmark;
+
+import de.bukkitnews.trading.benchmark.stub.StubPlayer;
+import de.bukkitnews.trading.trade.model.TradeOffer;
+import org.bukkit.Material;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures a click in the trade inventory from event dispatch to the updated views, through
+ * {@code InventoryClickListener} like on a real server. Rate limits are lifted, so every click does its work.
+ */
+@State(Scope.Thread)
+public class ClickBenchmark {
+
+    private TradingHarness harness;
+    private StubPlayer host;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harness = TradingHarness.start();
+        harness.unthrottle();
+        host = harness.join();
+        StubPlayer target = harness.join();
+        host.getInventory().setItem(0, new ItemStack(Material.DIAMOND, 16));
+        harness.openTrade(host, target);
+    }
+
+    @Setup(Level.Iteration)
+    public void claimMainThread() {
+        harness.server().claimMainThread();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    /**
+     * Offers the item from the first hotbar slot and takes it back, which returns it to the same slot.
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void offerAndTakeBackItem(Blackhole blackhole) {
+        blackhole.consume(harness.click(host, TradingHarness.rawHotbarSlot(0), ClickType.LEFT));
+        blackhole.consume(harness.click(host, TradeOffer.toSlot(0), ClickType.LEFT));
+    }
+
+    /**
+     * Raises and lowers the offered coins, which rebuilds the coin items in both views.
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void raiseAndLowerCoins(Blackhole blackhole) {
+        blackhole.consume(harness.click(host, 3, ClickType.LEFT));
+        blackhole.consume(harness.click(host, 3, ClickType.RIGHT));
+    }
+
+    /**
+     * Clicks a decoration slot, which is cancelled without changing the trade.
+     */
+    @Benchmark
+    public InventoryClickEvent decorationClick() {
+        return harness.click(host, 4, ClickType.LEFT);
+    }
+}
@@ -0,0 +1,82 @@
+package de.bukkitnews.trading.benchmark;
+
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.trade.logging.export.ExportResult;
+import de.bukkitnews.trading.trade.logging.export.TradeAggregates;
+import de.bukkitnews.trading.trade.logging.export.TradeExport;
+import de.bukkitnews.trading.trade.logging.store.TradeLogStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Measures exporting a generated history with {@link TradeExport} and aggregating the export file with
+ * {@link TradeAggregates}. Larger histories can be selected with {@code -p trades=10000000}; neither the export
+ * nor the aggregation needs more memory for them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExportBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int trades;
+
+    @Param({"DAY", "PLAYER", "MATERIAL"})
+    public TradeAggregates.GroupBy groupBy;
+
+    private Path dataFolder;
+    private TradeLogStore store;
+    private Path exportFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("trading-export");
+        TradeLogFixtures.writeStore(dataFolder, trades, 1_024, 0.0, 42L);
+        store = new TradeLogStore(dataFolder.resolve("logs").resolve("segments"), ConfigSnapshot.DEFAULT.logging(),
+                Logger.getLogger("ExportBenchmark"), Runnable::run);
+        exportFile = dataFolder.resolve("exports").resolve("benchmark" + TradeExport.EXTENSION);
+        TradeExport.export(store, exportFile, 0L, Long.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(dataFolder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Streams the whole history into a new export file.
+     */
+    @Benchmark
+    public ExportResult export() throws IOException {
+        return TradeExport.export(store, dataFolder.resolve("exports").resolve("run" + TradeExport.EXTENSION),
+                0L, Long.MAX_VALUE);
+    }
+
+    /**
+     * Aggregates the export file written during setup.
+     */
+    @Benchmark
+    public List<TradeAggregates.Aggregate> aggregate() throws IOException {
+        return TradeAggregates.aggregate(exportFile, groupBy);
+    }
+}
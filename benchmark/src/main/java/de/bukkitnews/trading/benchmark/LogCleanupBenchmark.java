@@ -0,0 +1,88 @@
+package de.bukkitnews.trading.benchmark;
+
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.trade.logging.store.TradeLogStore;
+import de.bukkitnews.trading.trade.logging.task.LogCleanupTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures one run of {@link LogCleanupTask} on a generated history in which half of the trades are expired.
+ * Every invocation starts from a fresh copy of the history's segment files, copying and opening them is not measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LogCleanupBenchmark {
+
+    @Param({"10000", "100000"})
+    public int trades;
+
+    private TradingHarness harness;
+    private Path fixture;
+    private Path copy;
+    private TradeLogStore store;
+    private LogCleanupTask task;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        harness = TradingHarness.start();
+        fixture = Files.createTempDirectory("trading-cleanup");
+        TradeLogFixtures.writeStore(fixture, trades, 1_024, 0.5, 42L);
+    }
+
+    @Setup(Level.Invocation)
+    public void loadHistory() throws IOException {
+        copy = Files.createTempDirectory(harness.dataFolder(), "cleanup");
+        Path segments = fixture.resolve("logs").resolve("segments");
+        try (Stream<Path> files = Files.list(segments)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        store = new TradeLogStore(copy, ConfigSnapshot.current().logging(), harness.plugin().getLogger(),
+                Runnable::run);
+        task = new LogCleanupTask(harness.plugin(), store);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeHistory() throws IOException {
+        store.close();
+        delete(copy);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+        delete(fixture);
+    }
+
+    @Benchmark
+    public void cleanup() {
+        task.cleanupOldLogs();
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
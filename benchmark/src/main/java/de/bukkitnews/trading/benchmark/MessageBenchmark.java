@@ -0,0 +1,54 @@
+package de.bukkitnews.trading.benchmark;
+
+import de.bukkitnews.trading.util.MessageUtil;
+import net.md_5.bungee.api.chat.BaseComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures message lookup and rendering with the messages.yml shipped with the plugin.
+ */
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    private TradingHarness harness;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harness = TradingHarness.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Benchmark
+    public String constantMessage() {
+        return MessageUtil.getMessage("trade_success");
+    }
+
+    @Benchmark
+    public String positionalPlaceholder() {
+        return MessageUtil.getMessage("player_trade_invite", "Player0");
+    }
+
+    @Benchmark
+    public String namedPlaceholder() {
+        return MessageUtil.getMessage("trade_logs_header", "Player0");
+    }
+
+    @Benchmark
+    public BaseComponent[] components() {
+        return MessageUtil.getComponents("player_trade_invite", "Player0");
+    }
+
+    @Benchmark
+    public String unknownKey() {
+        return MessageUtil.getMessage("does_not_exist");
+    }
+}
@@ -0,0 +1,82 @@
+package de.bukkitnews.trading.benchmark;
+
+import de.bukkitnews.trading.benchmark.stub.StubPlayer;
+import de.bukkitnews.trading.trade.model.Trade;
+import de.bukkitnews.trading.trade.model.TradeOffer;
+import de.bukkitnews.trading.trade.model.TradePlayer;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the trade operations behind the GUI without event dispatch: adding and removing offered items
+ * and switching the state of a player.
+ */
+@State(Scope.Thread)
+public class TradeBenchmark {
+
+    private static final int ITEMS = TradeOffer.CAPACITY;
+
+    private TradingHarness harness;
+    private Trade trade;
+    private TradePlayer host;
+    private ItemStack[] items;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harness = TradingHarness.start();
+        StubPlayer hostPlayer = harness.join();
+        StubPlayer targetPlayer = harness.join();
+        trade = harness.openTrade(hostPlayer, targetPlayer);
+        host = trade.host();
+
+        Material[] materials = {Material.DIAMOND, Material.IRON_INGOT, Material.GOLD_INGOT, Material.EMERALD};
+        items = new ItemStack[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            items[i] = new ItemStack(materials[i % materials.length], 1 + i);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void claimMainThread() {
+        harness.server().claimMainThread();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    /**
+     * Fills the whole offer and empties it again.
+     */
+    @Benchmark
+    @OperationsPerInvocation(2 * ITEMS)
+    public void fillAndEmptyOffer() {
+        for (int i = 0; i < ITEMS; i++) {
+            host.getPlayer().getInventory().setItem(i, items[i]);
+            trade.addItem(host, i, items[i]);
+        }
+        for (int i = 0; i < ITEMS; i++) {
+            trade.removeItem(host, TradeOffer.toSlot(i));
+        }
+        host.getPlayer().getInventory().clear();
+    }
+
+    /**
+     * Switches the host between the processing and the unfinished state, which redraws the status panes
+     * in both views.
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void toggleState() {
+        trade.updateState(host, Trade.State.PROCESSING);
+        trade.updateState(host, Trade.State.UNFINISHED);
+    }
+}
@@ -0,0 +1,76 @@
+package de.bukkitnews.trading.benchmark;
+
+import de.bukkitnews.trading.benchmark.stub.StubPlayer;
+import de.bukkitnews.trading.trade.logging.TradeLogger;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+/**
+ * Measures {@link TradeLogger#getTradeLogsForPlayer(Player)} on generated histories.
+ * <p>
+ * The history is spread over so many players that most of their trades are not in the hot cache of the log store
+ * and have to be read from the segment files. Larger histories up to 10M trades can be selected with
+ * {@code -p trades=1000000,10000000}; only the indexes of the store grow with the history.
+ */
+@State(Scope.Thread)
+public class TradeHistoryBenchmark {
+
+    private static final int PLAYERS = 1_024;
+
+    @Param({"10000", "100000"})
+    public int trades;
+
+    private TradingHarness harness;
+    private TradeLogger logger;
+    private Player[] players;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dataFolder = Files.createTempDirectory("trading-history");
+        TradeLogFixtures.writeStore(dataFolder, trades, PLAYERS, 0.0, 42L);
+
+        harness = TradingHarness.start(dataFolder);
+        logger = harness.plugin().getTradeLogger();
+        players = new Player[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            StubPlayer player = harness.join();
+            players[i] = player.getPlayer();
+        }
+        random = new SplittableRandom(7L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    /**
+     * Looks up a random player, whose trades are mostly read from disk.
+     */
+    @Benchmark
+    public Optional<List<String>> randomPlayer() {
+        return logger.getTradeLogsForPlayer(players[random.nextInt(PLAYERS)]);
+    }
+
+    /**
+     * Looks up the same player again and again, whose trades are served by the hot cache.
+     */
+    @Benchmark
+    public Optional<List<String>> samePlayer() {
+        return logger.getTradeLogsForPlayer(players[0]);
+    }
+}
@@ -0,0 +1,97 @@
+package de.bukkitnews.trading.benchmark;
+
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.trade.logging.TradeRecord;
+import de.bukkitnews.trading.trade.logging.store.TradeLogStore;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Generates synthetic trade histories and writes them into the trade log store of a data folder.
+ */
+public final class TradeLogFixtures {
+
+    private static final @NotNull String[] MATERIALS = {
+            "DIAMOND", "IRON_INGOT", "GOLD_INGOT", "EMERALD", "OAK_LOG", "COBBLESTONE", "NETHERITE_INGOT", "BREAD"
+    };
+
+    private TradeLogFixtures() {
+    }
+
+    /**
+     * Returns the UUID the harness assigns to the player with the given number.
+     *
+     * @param player The number of the player.
+     * @return The UUID of the player.
+     */
+    public static @NotNull UUID playerId(int player) {
+        return new UUID(0x7472616465L, player);
+    }
+
+    /**
+     * Generates a trade history, oldest trade first. Every trade exchanges one stack of a random material for
+     * another.
+     *
+     * @param trades       The number of trades.
+     * @param players      The number of distinct players trading with each other.
+     * @param expiredRatio The share of trades older than the default retention period.
+     * @param seed         The seed for the random participants, items and timestamps.
+     * @return The trades.
+     */
+    public static @NotNull List<TradeRecord> records(int trades, int players, double expiredRatio, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long now = System.currentTimeMillis();
+        List<TradeRecord> records = new ArrayList<>(trades);
+
+        for (int i = 0; i < trades; i++) {
+            int initiator = random.nextInt(players);
+            int target = (initiator + 1 + random.nextInt(players - 1)) % players;
+            long age = random.nextDouble() < expiredRatio
+                    ? TimeUnit.DAYS.toMillis(100 + random.nextInt(200))
+                    : random.nextLong(TimeUnit.DAYS.toMillis(80));
+            String item = MATERIALS[random.nextInt(MATERIALS.length)];
+            String targetItem = MATERIALS[random.nextInt(MATERIALS.length)];
+
+            records.add(new TradeRecord(new UUID(random.nextLong(), random.nextLong()).toString(), now - age,
+                    playerId(initiator), "Player" + initiator, playerId(target), "Player" + target,
+                    random.nextInt(10_000), random.nextInt(10_000),
+                    List.of(item + " x" + (1 + random.nextInt(64))), List.of(targetItem + " x" + (1 + random.nextInt(64))),
+                    List.of("material:" + item.toLowerCase(Locale.ROOT), "material:" + targetItem.toLowerCase(Locale.ROOT))));
+        }
+        records.sort(Comparator.comparingLong(TradeRecord::timestamp));
+        return records;
+    }
+
+    /**
+     * Writes a trade history into the trade log store of the given data folder, {@code logs/segments}.
+     *
+     * @param dataFolder   The plugin data folder.
+     * @param trades       The number of trades.
+     * @param players      The number of distinct players trading with each other.
+     * @param expiredRatio The share of trades older than the default retention period.
+     * @param seed         The seed for the random participants, items and timestamps.
+     * @throws IOException If the store could not be written.
+     */
+    public static void writeStore(@NotNull Path dataFolder, int trades, int players, double expiredRatio, long seed)
+            throws IOException {
+        TradeLogStore store = new TradeLogStore(dataFolder.resolve("logs").resolve("segments"),
+                ConfigSnapshot.DEFAULT.logging(), Logger.getLogger("fixtures"), Runnable::run);
+        try {
+            for (TradeRecord record : records(trades, players, expiredRatio, seed)) {
+                store.append(record);
+            }
+        } finally {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package de.bukkitnews.trading.benchmark;
+
+import de.bukkitnews.trading.trade.logging.TradeLogger;
+import de.bukkitnews.trading.trade.model.TradePlayer;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the trade log write throughput: a batch of trades is logged from the main thread and the benchmark
+ * waits until every write has been appended to the log store. Every iteration starts with an empty log.
+ */
+@State(Scope.Thread)
+public class TradeLoggerBenchmark {
+
+    private static final int BATCH = 100;
+
+    private TradingHarness harness;
+    private TradeLogger logger;
+    private TradePlayer initiator;
+    private TradePlayer target;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        harness = TradingHarness.start();
+        logger = harness.plugin().getTradeLogger();
+        initiator = new TradePlayer(harness.join().getPlayer());
+        target = new TradePlayer(harness.join().getPlayer());
+
+        initiator.getOffer().put(0, new ItemStack(Material.DIAMOND, 32));
+        initiator.getOffer().put(1, new ItemStack(Material.EMERALD, 8));
+        initiator.setCoins(1_500);
+        target.getOffer().put(0, new ItemStack(Material.NETHERITE_INGOT, 1));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void logTrades() {
+        for (int i = 0; i < BATCH; i++) {
+            logger.logTrade(initiator, target);
+        }
+        while (harness.plugin().getExecutors().getPendingTasks() > 0) {
+            LockSupport.parkNanos(10_000L);
+        }
+    }
+}
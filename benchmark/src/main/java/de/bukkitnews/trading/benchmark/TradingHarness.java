@@ -0,0 +1,213 @@
+package de.bukkitnews.trading.benchmark;
+
+import de.bukkitnews.trading.benchmark.stub.HeadlessTrading;
+import de.bukkitnews.trading.benchmark.stub.StubPlayer;
+import de.bukkitnews.trading.benchmark.stub.StubServer;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.trade.model.Trade;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.InventoryView;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Runs the plugin headless on a {@link StubServer} in a temporary data folder.
+ * Players join and click through the same listeners a real server would call.
+ */
+public final class TradingHarness implements AutoCloseable {
+
+    /**
+     * The balance every joining player starts with.
+     */
+    public static final double START_BALANCE = 1_000_000_000D;
+
+    /**
+     * The size of the trade inventory, i.e. the first raw slot of the player inventory in a trade view.
+     */
+    public static final int TRADE_INVENTORY_SIZE = 54;
+
+    private final @NotNull StubServer server;
+    private final @NotNull Path dataFolder;
+    private final @NotNull HeadlessTrading plugin;
+    private int nextPlayer;
+
+    private TradingHarness(@NotNull StubServer server, @NotNull Path dataFolder) {
+        this.server = server;
+        this.dataFolder = dataFolder;
+        this.plugin = HeadlessTrading.enable(server, dataFolder.toFile());
+    }
+
+    /**
+     * Enables the plugin in a fresh data folder. The calling thread becomes the main thread.
+     *
+     * @return The running harness.
+     */
+    public static @NotNull TradingHarness start() {
+        try {
+            return start(Files.createTempDirectory("trading-harness"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Enables the plugin in a prepared data folder, e.g. one holding a generated trade history.
+     * The folder is deleted when the harness is closed.
+     *
+     * @param dataFolder The data folder of the plugin.
+     * @return The running harness.
+     */
+    public static @NotNull TradingHarness start(@NotNull Path dataFolder) {
+        return new TradingHarness(StubServer.install(), dataFolder);
+    }
+
+    public @NotNull StubServer server() {
+        return server;
+    }
+
+    public @NotNull HeadlessTrading plugin() {
+        return plugin;
+    }
+
+    public @NotNull Path dataFolder() {
+        return dataFolder;
+    }
+
+    /**
+     * Lifts the rate limits, so benchmarks measure the work behind an action instead of its rejection.
+     */
+    public void unthrottle() {
+        ConfigSnapshot current = ConfigSnapshot.current();
+        ConfigSnapshot.Bucket unlimited = new ConfigSnapshot.Bucket(Integer.MAX_VALUE, 1.0e12);
+        ConfigSnapshot.publish(new ConfigSnapshot(current.messages(), current.blockedWorlds(), current.limits(),
+                current.logging(), current.remoteLog(), new ConfigSnapshot.RateLimits(unlimited, unlimited, unlimited, unlimited),
+                current.anomalyDetection(), current.auction(), current.mailbox(), current.recording(), current.metrics(),
+                current.profiler(), current.shutdown()));
+    }
+
+    /**
+     * Lets a new player join with {@link #START_BALANCE} coins. Players are numbered like in the
+     * {@link TradeLogFixtures}, so the n-th joining player is the n-th player of a generated history.
+     *
+     * @return The player.
+     */
+    public @NotNull StubPlayer join() {
+        int id = nextPlayer++;
+        return join("Player" + id, TradeLogFixtures.playerId(id));
+    }
+
+    /**
+     * Lets a new player with the given name and id join with {@link #START_BALANCE} coins, e.g. a player of a
+     * replayed recording.
+     *
+     * @param name     The name of the player.
+     * @param uniqueId The id of the player.
+     * @return The player.
+     */
+    public @NotNull StubPlayer join(@NotNull String name, @NotNull UUID uniqueId) {
+        StubPlayer player = server.addPlayer(name, uniqueId);
+        server.getEconomy().setBalance(player.getUniqueId(), START_BALANCE);
+        server.callEvent(new PlayerJoinEvent(player.getPlayer(), ""));
+        return player;
+    }
+
+    /**
+     * Lets a player quit.
+     *
+     * @param player The player.
+     */
+    public void quit(@NotNull StubPlayer player) {
+        player.getPlayer().closeInventory();
+        server.callEvent(new PlayerQuitEvent(player.getPlayer(), ""));
+        server.removePlayer(player);
+    }
+
+    /**
+     * Opens a trade between two players, as accepting an invitation does.
+     *
+     * @param host   The inviting player.
+     * @param target The invited player.
+     * @return The opened trade.
+     */
+    public @NotNull Trade openTrade(@NotNull StubPlayer host, @NotNull StubPlayer target) {
+        plugin.getTradeManager().createTrade(host.getPlayer(), target.getPlayer());
+        return plugin.getTradeManager().getTrade(host.getPlayer())
+                .orElseThrow(() -> new IllegalStateException("Trade was not opened"));
+    }
+
+    /**
+     * Clicks a raw slot of the inventory view the player has open.
+     *
+     * @param player  The clicking player.
+     * @param rawSlot The raw slot, the top inventory comes first.
+     * @param click   The kind of click.
+     * @return The fired event.
+     */
+    public @NotNull InventoryClickEvent click(@NotNull StubPlayer player, int rawSlot, @NotNull ClickType click) {
+        InventoryView view = player.getPlayer().getOpenInventory();
+        InventoryClickEvent event = new InventoryClickEvent(view, view.getSlotType(rawSlot), rawSlot, click,
+                InventoryAction.PICKUP_ALL);
+        server.callEvent(event);
+        return event;
+    }
+
+    /**
+     * Runs {@code /trade} with the given arguments as the player.
+     *
+     * @param player    The player running the command.
+     * @param arguments The command arguments.
+     */
+    public void command(@NotNull StubPlayer player, @NotNull String... arguments) {
+        PluginCommand command = plugin.getCommand("trade");
+        if (command == null) {
+            throw new IllegalStateException("The trade command is not registered");
+        }
+        command.execute(player.getPlayer(), "trade", arguments);
+    }
+
+    /**
+     * Returns the raw slot of a hotbar slot in a trade view.
+     *
+     * @param hotbarSlot The hotbar slot, 0 to 8.
+     * @return The raw slot.
+     */
+    public static int rawHotbarSlot(int hotbarSlot) {
+        return TRADE_INVENTORY_SIZE + 27 + hotbarSlot;
+    }
+
+    /**
+     * Runs one server tick.
+     *
+     * @return The number of tasks that ran.
+     */
+    public int tick() {
+        return server.getScheduler().tick();
+    }
+
+    /**
+     * Disables the plugin, resets the server and deletes the data folder.
+     */
+    @Override
+    public void close() {
+        plugin.disable();
+        server.reset();
+        ConfigSnapshot.publish(ConfigSnapshot.DEFAULT);
+        try (Stream<Path> files = Files.walk(dataFolder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
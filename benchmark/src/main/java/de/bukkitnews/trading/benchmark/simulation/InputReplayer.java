@@ -0,0 +1,314 @@
+package de.bukkitnews.trading.benchmark.simulation;
+
+import de.bukkitnews.trading.benchmark.TradeLogFixtures;
+import de.bukkitnews.trading.benchmark.TradingHarness;
+import de.bukkitnews.trading.benchmark.stub.StubPlayer;
+import de.bukkitnews.trading.metrics.TradeMetrics;
+import de.bukkitnews.trading.trade.recording.InputEvent;
+import de.bukkitnews.trading.trade.recording.InputRecording;
+import org.bukkit.Material;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays an input recording of a live server through the plugin on a plain JVM, so real traffic becomes a
+ * repeatable benchmark.
+ * <p>
+ * Players of the recording join under their recorded names with offline-mode ids and
+ * {@link TradingHarness#START_BALANCE} coins. Every input runs in the tick it was recorded in: commands through {@code /trade}, clicks and closes
+ * through the listeners. Before a click on an item in the player inventory, the recorded item is put into the
+ * clicked slot, since inventories are not part of the recording. Inputs are streamed from the file, so recordings
+ * of any length can be replayed.
+ * <p>
+ * At {@code --speed=original} ticks and inputs are paced like they were recorded and the configured rate limits
+ * apply. At {@code --speed=max} ticks run back to back and the rate limits are lifted, since the compressed time
+ * would otherwise reject inputs the server accepted. Either way the order of inputs and ticks is the one recorded,
+ * so two replays of a recording do the same work.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar de.bukkitnews.trading.benchmark.simulation.InputReplayer
+ * --recording=inputs-20260101-180000.trec --speed=max}, optionally with {@code --history=<trades>} and
+ * {@code --seed=<seed>} for a generated trade history.
+ */
+public final class InputReplayer {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int TICKS_PER_SECOND = 20;
+    private static final int SETTLE_TICKS = 2 * TICKS_PER_SECOND;
+
+    private final @NotNull Path recording;
+    private final boolean originalSpeed;
+    private final @NotNull TradingHarness harness;
+    private final @NotNull Map<Integer, StubPlayer> players = new HashMap<>();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final @NotNull LatencyRecorder joins = new LatencyRecorder("join");
+    private final @NotNull LatencyRecorder commands = new LatencyRecorder("command");
+    private final @NotNull LatencyRecorder clicks = new LatencyRecorder("click");
+    private final @NotNull LatencyRecorder closes = new LatencyRecorder("close");
+    private final @NotNull LatencyRecorder quits = new LatencyRecorder("quit");
+    private final @NotNull LatencyRecorder scheduledTasks = new LatencyRecorder("scheduled tasks/tick");
+    private final @NotNull LatencyRecorder ticks = new LatencyRecorder("tick");
+    private final @NotNull List<LatencyRecorder> operations = List.of(joins, commands, clicks, closes, quits, scheduledTasks);
+
+    private long tick;
+    private long startNanos;
+    private long elapsedNanos;
+    private long recordedMillis;
+    private long recordingStart;
+    private long skippedInputs;
+    private long operationStart;
+    private long operationBytes;
+    private long tickNanos;
+    private long tickBytes;
+
+    public InputReplayer(@NotNull Path recording, boolean originalSpeed, int historySize, long seed) throws IOException {
+        this.recording = recording;
+        this.originalSpeed = originalSpeed;
+
+        Path dataFolder = Files.createTempDirectory("trading-replay");
+        if (historySize > 0) {
+            TradeLogFixtures.writeStore(dataFolder, historySize, 1_024, 0.0, seed);
+        }
+        this.harness = TradingHarness.start(dataFolder);
+        if (!originalSpeed) {
+            harness.unthrottle();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        if (!values.containsKey("recording")) {
+            throw new IllegalArgumentException("Missing --recording=<file>");
+        }
+        String speed = values.getOrDefault("speed", "max");
+        if (!speed.equals("max") && !speed.equals("original")) {
+            throw new IllegalArgumentException("Expected --speed=original or --speed=max but got " + speed);
+        }
+        Path recording = Path.of(values.get("recording"));
+        int historySize = Integer.parseInt(values.getOrDefault("history", "0"));
+        long seed = Long.parseLong(values.getOrDefault("seed", "42"));
+
+        values.keySet().removeAll(Set.of("recording", "speed", "history", "seed"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown arguments: " + values.keySet());
+        }
+
+        InputReplayer replayer = new InputReplayer(recording, speed.equals("original"), historySize, seed);
+        try {
+            replayer.run();
+            replayer.report(System.out);
+        } finally {
+            replayer.close();
+        }
+    }
+
+    /**
+     * Replays the recording, followed by a few ticks to let the last settlements complete.
+     *
+     * @throws IOException If the recording could not be read.
+     */
+    public void run() throws IOException {
+        startNanos = System.nanoTime();
+        recordingStart = InputRecording.read(recording, this::replay);
+        long lastTick = tick;
+        while (tick < lastTick + SETTLE_TICKS) {
+            runTick(tick + 1);
+        }
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Prints the results of the replay.
+     *
+     * @param out The stream to print to.
+     */
+    public void report(@NotNull PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("Recording: %s, started %s%n", recording.getFileName(), Instant.ofEpochMilli(recordingStart));
+        out.printf("Replayed %d ticks (%.1f s recorded) in %.2f s at %s speed, %.1fx real time%n%n",
+                tick, recordedMillis / 1e3, seconds, originalSpeed ? "original" : "maximum",
+                recordedMillis / 1e3 / seconds);
+
+        out.printf("%-22s %10s %12s %10s %10s %10s %10s %12s%n",
+                "operation", "count", "ops/s", "p50 µs", "p99 µs", "p99.9 µs", "max µs", "bytes/op");
+        for (LatencyRecorder recorder : operations) {
+            printRow(out, recorder, recorder.getCount() / seconds);
+        }
+        printRow(out, ticks, ticks.getCount() / seconds);
+
+        TradeMetrics metrics = harness.plugin().getMetrics();
+        out.println();
+        out.printf("Settlements: %d completed, %d failed%n", metrics.getSettlements().sum(),
+                metrics.getSettlementFailures(TradeMetrics.SettlementFailure.SPACE)
+                        + metrics.getSettlementFailures(TradeMetrics.SettlementFailure.BALANCE));
+        out.printf("Inputs skipped: %d%n", skippedInputs);
+        out.printf("Main thread: %d tick(s) over 50 ms%n", ticks.countAbove(TICK_NANOS));
+        out.printf("Background tasks still pending: %d%n", harness.plugin().getExecutors().getPendingTasks());
+    }
+
+    /**
+     * Disables the plugin and removes the data folder.
+     */
+    public void close() {
+        harness.close();
+    }
+
+    private void printRow(@NotNull PrintStream out, @NotNull LatencyRecorder recorder, double perSecond) {
+        out.printf("%-22s %10d %12.0f %10.1f %10.1f %10.1f %10.1f %12.0f%n",
+                recorder.getName(), recorder.getCount(), perSecond,
+                recorder.percentile(0.5) / 1e3, recorder.percentile(0.99) / 1e3,
+                recorder.percentile(0.999) / 1e3, recorder.max() / 1e3, recorder.getBytesPerOperation());
+    }
+
+    private void replay(@NotNull InputEvent event) {
+        while (tick < event.tick()) {
+            runTick(tick + 1);
+        }
+        pace(TimeUnit.MILLISECONDS.toNanos(event.timeMillis()));
+        recordedMillis = Math.max(recordedMillis, event.timeMillis());
+
+        switch (event) {
+            case InputEvent.Join join -> {
+                begin();
+                StubPlayer player = harness.join(join.name(),
+                        UUID.nameUUIDFromBytes(("OfflinePlayer:" + join.name()).getBytes(StandardCharsets.UTF_8)));
+                end(joins);
+                players.put(join.player(), player);
+            }
+            case InputEvent.Command command -> {
+                StubPlayer player = player(command);
+                if (player != null) {
+                    begin();
+                    harness.command(player, command.arguments().toArray(String[]::new));
+                    end(commands);
+                }
+            }
+            case InputEvent.Click click -> {
+                StubPlayer player = player(click);
+                if (player != null) {
+                    replayClick(player, click);
+                }
+            }
+            case InputEvent.Close close -> {
+                StubPlayer player = player(close);
+                if (player != null) {
+                    begin();
+                    player.getPlayer().closeInventory();
+                    end(closes);
+                }
+            }
+            case InputEvent.Quit quit -> {
+                StubPlayer player = players.remove(quit.player());
+                if (player != null) {
+                    begin();
+                    harness.quit(player);
+                    end(quits);
+                } else {
+                    skippedInputs++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the player of an input, or counts the input as skipped if the player has not joined.
+     */
+    private @Nullable StubPlayer player(@NotNull InputEvent event) {
+        StubPlayer player = players.get(event.player());
+        if (player == null) {
+            skippedInputs++;
+        }
+        return player;
+    }
+
+    private void replayClick(@NotNull StubPlayer player, @NotNull InputEvent.Click click) {
+        ClickType type;
+        try {
+            type = ClickType.valueOf(click.click());
+        } catch (IllegalArgumentException e) {
+            skippedInputs++;
+            return;
+        }
+
+        InventoryView view = player.getOpenView();
+        if (view == null || click.rawSlot() < 0 || click.rawSlot() >= view.countSlots()) {
+            // The trade is not open in the replay or the click was outside the window, neither does anything.
+            skippedInputs++;
+            return;
+        }
+        if (click.rawSlot() >= TradingHarness.TRADE_INVENTORY_SIZE && click.material() != null) {
+            Material material = Material.matchMaterial(click.material());
+            if (material != null) {
+                view.setItem(click.rawSlot(), new ItemStack(material, click.amount()));
+            }
+        }
+
+        begin();
+        harness.click(player, click.rawSlot(), type);
+        end(clicks);
+    }
+
+    private void runTick(long next) {
+        pace(next * TICK_NANOS);
+        begin();
+        harness.tick();
+        end(scheduledTasks);
+        tick = next;
+
+        ticks.record(tickNanos, tickBytes);
+        tickNanos = 0L;
+        tickBytes = 0L;
+    }
+
+    /**
+     * Waits until the given time after the start of the replay, if replaying at original speed.
+     */
+    private void pace(long offsetNanos) {
+        if (!originalSpeed) {
+            return;
+        }
+        long due = startNanos + offsetNanos;
+        for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    private void begin() {
+        operationBytes = threads.getCurrentThreadAllocatedBytes();
+        operationStart = System.nanoTime();
+    }
+
+    private void end(@NotNull LatencyRecorder recorder) {
+        long nanos = System.nanoTime() - operationStart;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - operationBytes;
+        recorder.record(nanos, bytes);
+        tickNanos += nanos;
+        tickBytes += bytes;
+    }
+}
@@ -0,0 +1,114 @@
+package de.bukkitnews.trading.benchmark.simulation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Records every latency of one kind of operation, together with the bytes the main thread allocated for it.
+ * All samples are kept, so percentiles are exact. A simulation records a few million samples at most,
+ * which is cheap to keep and sort once at the end.
+ */
+public final class LatencyRecorder {
+
+    private final @NotNull String name;
+    private long[] samples = new long[1_024];
+    private int count;
+    private long totalNanos;
+    private long allocatedBytes;
+    private boolean sorted;
+
+    public LatencyRecorder(@NotNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records one operation.
+     *
+     * @param nanos The latency in nanoseconds.
+     * @param bytes The bytes allocated by the operation.
+     */
+    public void record(long nanos, long bytes) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        totalNanos += nanos;
+        allocatedBytes += bytes;
+        sorted = false;
+    }
+
+    /**
+     * Forgets every recorded operation, e.g. after the warmup.
+     */
+    public void reset() {
+        count = 0;
+        totalNanos = 0L;
+        allocatedBytes = 0L;
+        sorted = false;
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Returns the average number of bytes allocated per operation.
+     *
+     * @return The bytes per operation, 0 if nothing was recorded.
+     */
+    public double getBytesPerOperation() {
+        return count == 0 ? 0D : (double) allocatedBytes / count;
+    }
+
+    /**
+     * Returns the latency below which the given share of the operations completed.
+     *
+     * @param quantile The quantile between 0 and 1, e.g. 0.99.
+     * @return The latency in nanoseconds, 0 if nothing was recorded.
+     */
+    public long percentile(double quantile) {
+        if (count == 0) {
+            return 0L;
+        }
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int index = (int) Math.ceil(quantile * count) - 1;
+        return samples[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Returns the number of operations slower than the given threshold.
+     *
+     * @param thresholdNanos The threshold in nanoseconds.
+     * @return The number of operations above the threshold.
+     */
+    public int countAbove(long thresholdNanos) {
+        int above = 0;
+        for (int i = 0; i < count; i++) {
+            if (samples[i] > thresholdNanos) {
+                above++;
+            }
+        }
+        return above;
+    }
+
+    /**
+     * Returns the highest recorded latency.
+     *
+     * @return The maximum latency in nanoseconds, 0 if nothing was recorded.
+     */
+    public long max() {
+        return percentile(1.0);
+    }
+}
@@ -0,0 +1,357 @@
+package de.bukkitnews.trading.benchmark.simulation;
+
+import de.bukkitnews.trading.benchmark.TradeLogFixtures;
+import de.bukkitnews.trading.benchmark.TradingHarness;
+import de.bukkitnews.trading.benchmark.stub.StubPlayer;
+import de.bukkitnews.trading.trade.model.TradeOffer;
+import org.bukkit.Material;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives thousands of synthetic trades through the plugin on a plain JVM, to find out how many concurrent
+ * trades fit into the tick budget.
+ * <p>
+ * Every session is a pair of players going through the whole life of a trade: the invitation and its
+ * acceptance through {@code /trade}, clicks in the trade inventory through the listeners, both confirmations
+ * and the settlement on the next tick. Ticks run back to back; each one measures the main thread time of every
+ * operation and of the scheduled tasks. Rate limits are lifted, the scenario defines the load.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar de.bukkitnews.trading.benchmark.simulation.LoadSimulator --sessions=2000}
+ * with the options of {@link Scenario#parse(String[])}.
+ */
+public final class LoadSimulator {
+
+    /**
+     * The length of a tick at 20 TPS, the budget for everything that runs on the main thread.
+     */
+    private static final long TICK_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int TICKS_PER_SECOND = 20;
+    private static final int CONFIRMATION_CLICKS = 4;
+    private static final int HOTBAR_ITEMS = 4;
+    private static final @NotNull Material[] MATERIALS = {
+            Material.DIAMOND, Material.IRON_INGOT, Material.GOLD_INGOT, Material.EMERALD, Material.OAK_LOG
+    };
+
+    private final @NotNull Scenario scenario;
+    private final @NotNull TradingHarness harness;
+    private final @NotNull SplittableRandom random;
+    private final @NotNull List<Session> sessions = new ArrayList<>();
+    private final @NotNull List<StubPlayer> players = new ArrayList<>();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final @NotNull LatencyRecorder invites = new LatencyRecorder("invite");
+    private final @NotNull LatencyRecorder accepts = new LatencyRecorder("accept");
+    private final @NotNull LatencyRecorder clicks = new LatencyRecorder("click");
+    private final @NotNull LatencyRecorder confirmations = new LatencyRecorder("confirm");
+    private final @NotNull LatencyRecorder logQueries = new LatencyRecorder("logs");
+    private final @NotNull LatencyRecorder scheduledTasks = new LatencyRecorder("scheduled tasks/tick");
+    private final @NotNull LatencyRecorder ticks = new LatencyRecorder("tick");
+    private final @NotNull List<LatencyRecorder> operations =
+            List.of(invites, accepts, clicks, confirmations, logQueries, scheduledTasks);
+
+    private long settlements;
+    private long failedSettlements;
+    private long elapsedNanos;
+    private long gcCountDelta;
+    private long gcMillisDelta;
+    private double pendingLogQueries;
+    private long operationStart;
+    private long operationBytes;
+
+    public LoadSimulator(@NotNull Scenario scenario) throws IOException {
+        this.scenario = scenario;
+        this.random = new SplittableRandom(scenario.seed());
+
+        Path dataFolder = Files.createTempDirectory("trading-simulation");
+        if (scenario.historySize() > 0) {
+            TradeLogFixtures.writeStore(dataFolder, scenario.historySize(), 2 * scenario.sessions(), 0.0, scenario.seed());
+        }
+        this.harness = TradingHarness.start(dataFolder);
+        harness.unthrottle();
+
+        for (int i = 0; i < scenario.sessions(); i++) {
+            StubPlayer host = harness.join();
+            StubPlayer target = harness.join();
+            players.add(host);
+            players.add(target);
+            sessions.add(new Session(host, target));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Scenario scenario = Scenario.parse(args);
+        LoadSimulator simulator = new LoadSimulator(scenario);
+        try {
+            simulator.run();
+            simulator.report(System.out);
+        } finally {
+            simulator.close();
+        }
+    }
+
+    /**
+     * Runs the warmup and the measured ticks of the scenario.
+     */
+    public void run() {
+        for (int i = 0; i < scenario.warmupTicks(); i++) {
+            tick();
+        }
+        operations.forEach(LatencyRecorder::reset);
+        ticks.reset();
+        settlements = 0L;
+        failedSettlements = 0L;
+
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long start = System.nanoTime();
+        for (int i = 0; i < scenario.ticks(); i++) {
+            tick();
+        }
+        elapsedNanos = System.nanoTime() - start;
+        gcCountDelta = gcCount() - gcCount;
+        gcMillisDelta = gcMillis() - gcMillis;
+    }
+
+    /**
+     * Prints the results of the measured ticks.
+     *
+     * @param out The stream to print to.
+     */
+    public void report(@NotNull PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("Scenario: %s%n", scenario);
+        out.printf("Simulated %d ticks (%.1f s of game time) in %.2f s%n%n",
+                scenario.ticks(), scenario.ticks() / (double) TICKS_PER_SECOND, seconds);
+
+        out.printf("%-22s %10s %12s %10s %10s %10s %10s %12s%n",
+                "operation", "count", "ops/s", "p50 µs", "p99 µs", "p99.9 µs", "max µs", "bytes/op");
+        for (LatencyRecorder recorder : operations) {
+            printRow(out, recorder, recorder.getCount() / seconds);
+        }
+        printRow(out, ticks, scenario.ticks() / seconds);
+
+        int overBudget = ticks.countAbove(TICK_BUDGET_NANOS);
+        double busy = ticks.getTotalNanos() / (double) (scenario.ticks() * TICK_BUDGET_NANOS);
+
+        out.println();
+        out.printf("Settlements: %d completed, %d failed%n", settlements, failedSettlements);
+        out.printf("Main thread: %.1f%% of the tick budget used on average, %d tick(s) over 50 ms%n",
+                busy * 100, overBudget);
+        out.printf("GC: %d collection(s), %d ms%n", gcCountDelta, gcMillisDelta);
+        out.printf("Background tasks still pending: %d%n", harness.plugin().getExecutors().getPendingTasks());
+    }
+
+    /**
+     * Disables the plugin and removes the data folder.
+     */
+    public void close() {
+        harness.close();
+    }
+
+    private void printRow(@NotNull PrintStream out, @NotNull LatencyRecorder recorder, double perSecond) {
+        out.printf("%-22s %10d %12.0f %10.1f %10.1f %10.1f %10.1f %12.0f%n",
+                recorder.getName(), recorder.getCount(), perSecond,
+                recorder.percentile(0.5) / 1e3, recorder.percentile(0.99) / 1e3,
+                recorder.percentile(0.999) / 1e3, recorder.max() / 1e3, recorder.getBytesPerOperation());
+    }
+
+    private void tick() {
+        long tickStart = System.nanoTime();
+        long tickBytes = threads.getCurrentThreadAllocatedBytes();
+
+        for (Session session : sessions) {
+            advance(session);
+        }
+
+        pendingLogQueries += scenario.logQueriesPerSecond() / TICKS_PER_SECOND;
+        while (pendingLogQueries >= 1D) {
+            pendingLogQueries--;
+            StubPlayer player = players.get(random.nextInt(players.size()));
+            StubPlayer subject = players.get(random.nextInt(players.size()));
+            begin();
+            harness.command(player, "logs", subject.getName());
+            end(logQueries);
+        }
+
+        begin();
+        harness.tick();
+        end(scheduledTasks);
+
+        ticks.record(System.nanoTime() - tickStart, threads.getCurrentThreadAllocatedBytes() - tickBytes);
+    }
+
+    private void advance(@NotNull Session session) {
+        switch (session.phase) {
+            case IDLE -> {
+                refill(session.host);
+                refill(session.target);
+                begin();
+                harness.command(session.host, session.target.getName());
+                end(invites);
+                session.phase = Phase.INVITED;
+            }
+            case INVITED -> {
+                begin();
+                harness.command(session.target, "accept", session.host.getName());
+                end(accepts);
+                session.phase = inTrade(session) ? Phase.TRADING : Phase.IDLE;
+            }
+            case TRADING -> {
+                if (!inTrade(session)) {
+                    session.phase = Phase.IDLE;
+                    return;
+                }
+                if (chance(scenario.clicksPerSecond() / TICKS_PER_SECOND)) {
+                    click(random.nextBoolean() ? session.host : session.target);
+                }
+                if (chance(scenario.settlementsPerMinute() / (60D * TICKS_PER_SECOND))) {
+                    session.phase = Phase.CONFIRMING;
+                    session.step = 0;
+                }
+            }
+            case CONFIRMING -> {
+                if (!inTrade(session)) {
+                    session.phase = Phase.IDLE;
+                    return;
+                }
+                StubPlayer player = session.step % 2 == 0 ? session.host : session.target;
+                begin();
+                harness.click(player, 22, ClickType.LEFT);
+                end(confirmations);
+                if (++session.step == CONFIRMATION_CLICKS) {
+                    session.phase = Phase.SETTLING;
+                    session.step = 0;
+                }
+            }
+            case SETTLING -> {
+                // The settlement runs during the scheduled tasks of the tick after the last confirmation.
+                if (!inTrade(session)) {
+                    settlements++;
+                    session.phase = Phase.IDLE;
+                } else if (++session.step > 1) {
+                    // Settlement was refused, e.g. for missing space, and the trade is still open.
+                    failedSettlements++;
+                    session.host.getPlayer().closeInventory();
+                    session.target.getPlayer().closeInventory();
+                    session.phase = Phase.IDLE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clicks like a trading player would: offers an item from the hotbar, takes an offered item back or changes
+     * the offered coins.
+     */
+    private void click(@NotNull StubPlayer player) {
+        int rawSlot;
+        ClickType type = ClickType.LEFT;
+        switch (random.nextInt(3)) {
+            case 0 -> rawSlot = offerableSlot(player);
+            case 1 -> rawSlot = offeredSlot(player);
+            default -> {
+                rawSlot = 3;
+                type = random.nextBoolean() ? ClickType.LEFT : ClickType.RIGHT;
+            }
+        }
+        if (rawSlot < 0) {
+            rawSlot = 3;
+        }
+
+        begin();
+        harness.click(player, rawSlot, type);
+        end(clicks);
+    }
+
+    private int offerableSlot(@NotNull StubPlayer player) {
+        PlayerInventory inventory = player.getInventory();
+        for (int slot = 0; slot < 9; slot++) {
+            if (inventory.getItem(slot) != null) {
+                return TradingHarness.rawHotbarSlot(slot);
+            }
+        }
+        return -1;
+    }
+
+    private int offeredSlot(@NotNull StubPlayer player) {
+        InventoryView view = player.getOpenView();
+        if (view == null) {
+            return -1;
+        }
+        for (int index = 0; index < TradeOffer.CAPACITY; index++) {
+            if (view.getItem(TradeOffer.toSlot(index)) != null) {
+                return TradeOffer.toSlot(index);
+            }
+        }
+        return -1;
+    }
+
+    private void refill(@NotNull StubPlayer player) {
+        PlayerInventory inventory = player.getInventory();
+        inventory.clear();
+        for (int slot = 0; slot < HOTBAR_ITEMS; slot++) {
+            inventory.setItem(slot, new ItemStack(MATERIALS[random.nextInt(MATERIALS.length)], 1 + random.nextInt(64)));
+        }
+    }
+
+    private boolean inTrade(@NotNull Session session) {
+        return harness.plugin().getTradeManager().getTrade(session.host.getPlayer()).isPresent();
+    }
+
+    private boolean chance(double probability) {
+        return random.nextDouble() < probability;
+    }
+
+    private void begin() {
+        operationBytes = threads.getCurrentThreadAllocatedBytes();
+        operationStart = System.nanoTime();
+    }
+
+    private void end(@NotNull LatencyRecorder recorder) {
+        long nanos = System.nanoTime() - operationStart;
+        recorder.record(nanos, threads.getCurrentThreadAllocatedBytes() - operationBytes);
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private enum Phase {
+        IDLE, INVITED, TRADING, CONFIRMING, SETTLING
+    }
+
+    private static final class Session {
+
+        private final @NotNull StubPlayer host;
+        private final @NotNull StubPlayer target;
+        private @NotNull Phase phase = Phase.IDLE;
+        private int step;
+
+        private Session(@NotNull StubPlayer host, @NotNull StubPlayer target) {
+            this.host = host;
+            this.target = target;
+        }
+    }
+}
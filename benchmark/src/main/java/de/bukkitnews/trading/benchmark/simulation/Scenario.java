@@ -0,0 +1,80 @@
+package de.bukkitnews.trading.benchmark.simulation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The load a simulation puts on the plugin.
+ *
+ * @param sessions              The number of player pairs trading concurrently.
+ * @param clicksPerSecond       The clicks per second in each open trade, split between both players.
+ * @param settlementsPerMinute  The settlements per minute each open trade is started with, on average.
+ * @param logQueriesPerSecond   The {@code /trade logs} queries per second over all players.
+ * @param historySize           The number of trades in the log before the simulation starts.
+ * @param warmupTicks           The ticks run before measuring, to let the JIT compile the hot paths.
+ * @param ticks                 The measured ticks.
+ * @param seed                  The seed for every random decision, so runs are repeatable.
+ */
+public record Scenario(int sessions,
+                       double clicksPerSecond,
+                       double settlementsPerMinute,
+                       double logQueriesPerSecond,
+                       int historySize,
+                       int warmupTicks,
+                       int ticks,
+                       long seed) {
+
+    /**
+     * The scenario used when no arguments are given.
+     */
+    public static final @NotNull Scenario DEFAULT = new Scenario(500, 2.0, 6.0, 1.0, 10_000, 1_200, 6_000, 42L);
+
+    public Scenario {
+        if (sessions <= 0 || ticks <= 0 || warmupTicks < 0 || historySize < 0) {
+            throw new IllegalArgumentException("Sessions and ticks must be positive, warmup and history not negative");
+        }
+        if (clicksPerSecond < 0 || settlementsPerMinute < 0 || logQueriesPerSecond < 0) {
+            throw new IllegalArgumentException("Rates must not be negative");
+        }
+    }
+
+    /**
+     * Parses a scenario from arguments of the form {@code --name=value}, e.g. {@code --sessions=2000}.
+     * Missing values are taken from {@link #DEFAULT}.
+     *
+     * @param args The command line arguments.
+     * @return The scenario.
+     * @throws IllegalArgumentException If an argument is unknown or not a number.
+     */
+    public static @NotNull Scenario parse(@NotNull String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        Scenario defaults = DEFAULT;
+        Scenario scenario = new Scenario(
+                Integer.parseInt(values.getOrDefault("sessions", String.valueOf(defaults.sessions()))),
+                Double.parseDouble(values.getOrDefault("clicks-per-second", String.valueOf(defaults.clicksPerSecond()))),
+                Double.parseDouble(values.getOrDefault("settlements-per-minute", String.valueOf(defaults.settlementsPerMinute()))),
+                Double.parseDouble(values.getOrDefault("log-queries-per-second", String.valueOf(defaults.logQueriesPerSecond()))),
+                Integer.parseInt(values.getOrDefault("history", String.valueOf(defaults.historySize()))),
+                Integer.parseInt(values.getOrDefault("warmup-ticks", String.valueOf(defaults.warmupTicks()))),
+                Integer.parseInt(values.getOrDefault("ticks", String.valueOf(defaults.ticks()))),
+                Long.parseLong(values.getOrDefault("seed", String.valueOf(defaults.seed()))));
+
+        values.keySet().removeAll(Set.of("sessions", "clicks-per-second", "settlements-per-minute",
+                "log-queries-per-second", "history", "warmup-ticks", "ticks", "seed"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown arguments: " + values.keySet());
+        }
+        return scenario;
+    }
+}
@@ -0,0 +1,70 @@
+package de.bukkitnews.trading.benchmark.stress;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Collects the invariant violations of a stress run. Violations are counted per invariant, and the first few
+ * of each are kept with a description of the state that broke it. Safe to use from any thread.
+ */
+public final class Invariants {
+
+    private static final int EXAMPLES_PER_INVARIANT = 5;
+
+    private final @NotNull Map<String, Long> violations = new TreeMap<>();
+    private final @NotNull Map<String, List<String>> examples = new TreeMap<>();
+    private long checks;
+
+    /**
+     * Checks an invariant.
+     *
+     * @param holds     Whether the invariant holds.
+     * @param invariant The name of the invariant.
+     * @param detail    Describes the violation, only called if the invariant does not hold.
+     */
+    public synchronized void check(boolean holds, @NotNull String invariant, @NotNull Supplier<String> detail) {
+        checks++;
+        if (holds) {
+            return;
+        }
+
+        violations.merge(invariant, 1L, Long::sum);
+        List<String> kept = examples.computeIfAbsent(invariant, key -> new ArrayList<>());
+        if (kept.size() < EXAMPLES_PER_INVARIANT) {
+            kept.add(detail.get());
+        }
+    }
+
+    /**
+     * Returns the number of violations of all invariants.
+     *
+     * @return The number of violations.
+     */
+    public synchronized long getViolations() {
+        return violations.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Prints the number of checks and every violated invariant with its examples.
+     *
+     * @param out The stream to print to.
+     */
+    public synchronized void report(@NotNull PrintStream out) {
+        if (violations.isEmpty()) {
+            out.printf("Invariants: %d check(s), no violations%n", checks);
+            return;
+        }
+
+        out.printf("Invariants: %d check(s), %d violation(s)%n", checks, getViolations());
+        violations.forEach((invariant, count) -> {
+            out.printf("  %s: %d%n", invariant, count);
+            examples.get(invariant).forEach(example -> out.printf("    %s%n", example));
+        });
+    }
+}
@@ -0,0 +1,296 @@
+package de.bukkitnews.trading.benchmark.stress;
+
+import de.bukkitnews.trading.benchmark.TradeLogFixtures;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.trade.logging.TradeRecord;
+import de.bukkitnews.trading.trade.logging.store.TradeLogStore;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Hammers a {@link TradeLogStore} from several threads at once, in the spirit of jcstress: writers append trades
+ * while readers query them by participant and item, a cleaner deletes expired segments with a moving cutoff and a
+ * flusher writes the buffer, like the I/O threads, the cleanup task and the flush timer of the plugin do.
+ * <p>
+ * Trades are stamped by a logical clock that advances with every append, and the cutoff trails it by a fixed
+ * window, so segments expire continuously. Every query result must be free of duplicates, match its query and
+ * only contain appended trades. A trade whose append completed before a query started must be found by it,
+ * unless the cutoff read after the query has expired it. After the run, every trade that is not expired must
+ * still be in the store.
+ */
+public final class LogStoreStress {
+
+    private static final int PLAYERS = 64;
+    private static final @NotNull String[] MATERIALS = {"diamond", "iron_ingot", "emerald", "gold_ingot", "oak_log"};
+    private static final long RETENTION_WINDOW = 20_000;
+    private static final int SEARCH_LIMIT = 50;
+
+    private final @NotNull Invariants invariants;
+    private final int writers;
+    private final int readers;
+    private final long durationNanos;
+    private final long seed;
+    private final @NotNull Path directory;
+    private final @NotNull TradeLogStore store;
+
+    private final @NotNull AtomicLong clock = new AtomicLong(1);
+    private final @NotNull AtomicLong cutoff = new AtomicLong();
+    private final @NotNull AtomicLong nextTrade = new AtomicLong();
+    /**
+     * The timestamp of every trade handed to the store, by id.
+     */
+    private final @NotNull Map<String, Long> appended = new ConcurrentHashMap<>();
+    /**
+     * The trades whose append completed, by participant.
+     */
+    private final @NotNull Map<UUID, Set<TradeRecord>> acknowledged = new ConcurrentHashMap<>();
+
+    private final @NotNull LongAdder appends = new LongAdder();
+    private final @NotNull LongAdder participantQueries = new LongAdder();
+    private final @NotNull LongAdder itemSearches = new LongAdder();
+    private final @NotNull LongAdder cleanups = new LongAdder();
+    private final @NotNull LongAdder flushes = new LongAdder();
+    private final @NotNull LongAdder failures = new LongAdder();
+    private long elapsedNanos;
+
+    /**
+     * Opens an empty store with small segments in a temporary directory.
+     *
+     * @param invariants Collects the violations.
+     * @param writers    The number of writer threads.
+     * @param readers    The number of reader threads.
+     * @param seconds    How long to run.
+     * @param seed       The seed for the trades and queries.
+     * @throws IOException If the store could not be opened.
+     */
+    public LogStoreStress(@NotNull Invariants invariants, int writers, int readers, int seconds, long seed)
+            throws IOException {
+        this.invariants = invariants;
+        this.writers = writers;
+        this.readers = readers;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(seconds);
+        this.seed = seed;
+        this.directory = Files.createTempDirectory("trading-stress");
+        this.store = new TradeLogStore(directory, new ConfigSnapshot.Logging(true, 90, 64, 16, 256),
+                Logger.getLogger("stress"), Runnable::run);
+    }
+
+    /**
+     * Runs all threads for the configured time and checks the store afterwards.
+     *
+     * @throws InterruptedException If interrupted while waiting for the threads.
+     */
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            SplittableRandom random = seeds.split();
+            threads.add(Thread.ofPlatform().name("stress-writer-" + i)
+                    .start(() -> loop(deadline, () -> write(random))));
+        }
+        for (int i = 0; i < readers; i++) {
+            SplittableRandom random = seeds.split();
+            threads.add(Thread.ofPlatform().name("stress-reader-" + i)
+                    .start(() -> loop(deadline, () -> read(random))));
+        }
+        threads.add(Thread.ofPlatform().name("stress-cleaner").start(() -> loop(deadline, this::clean)));
+        threads.add(Thread.ofPlatform().name("stress-flusher").start(() -> loop(deadline, this::flush)));
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        elapsedNanos = System.nanoTime() - start;
+        checkRetained();
+    }
+
+    /**
+     * Prints the throughput of every kind of operation.
+     *
+     * @param out The stream to print to.
+     */
+    public void report(@NotNull PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("Trade log: %d writer(s), %d reader(s) for %.2f s, %d failed operation(s)%n",
+                writers, readers, seconds, failures.sum());
+        printRow(out, "append", appends, seconds);
+        printRow(out, "participant", participantQueries, seconds);
+        printRow(out, "item search", itemSearches, seconds);
+        printRow(out, "cleanup", cleanups, seconds);
+        printRow(out, "flush", flushes, seconds);
+    }
+
+    /**
+     * Closes the store and deletes its directory.
+     */
+    public void close() {
+        try {
+            store.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void printRow(@NotNull PrintStream out, @NotNull String operation, @NotNull LongAdder count,
+                          double seconds) {
+        out.printf("  %-12s %10d %12.0f ops/s%n", operation, count.sum(), count.sum() / seconds);
+    }
+
+    private void loop(long deadline, @NotNull IoOperation operation) {
+        while (System.nanoTime() < deadline) {
+            try {
+                operation.run();
+            } catch (IOException e) {
+                failures.increment();
+            }
+        }
+    }
+
+    private void write(@NotNull SplittableRandom random) throws IOException {
+        int initiator = random.nextInt(PLAYERS);
+        int target = (initiator + 1 + random.nextInt(PLAYERS - 1)) % PLAYERS;
+        String item = MATERIALS[random.nextInt(MATERIALS.length)];
+        String targetItem = MATERIALS[random.nextInt(MATERIALS.length)];
+        TradeRecord record = new TradeRecord("stress-" + nextTrade.getAndIncrement(), clock.getAndIncrement(),
+                TradeLogFixtures.playerId(initiator), "Player" + initiator,
+                TradeLogFixtures.playerId(target), "Player" + target,
+                random.nextInt(10_000), random.nextInt(10_000),
+                List.of(item.toUpperCase(Locale.ROOT) + " x1"), List.of(targetItem.toUpperCase(Locale.ROOT) + " x1"),
+                List.of("material:" + item, "material:" + targetItem));
+
+        appended.put(record.tradeId(), record.timestamp());
+        store.append(record);
+        acknowledge(record.initiatorId(), record);
+        acknowledge(record.targetId(), record);
+        appends.increment();
+    }
+
+    private void acknowledge(@NotNull UUID player, @NotNull TradeRecord record) {
+        acknowledged.computeIfAbsent(player, key -> ConcurrentHashMap.newKeySet()).add(record);
+    }
+
+    private void read(@NotNull SplittableRandom random) {
+        if (random.nextBoolean()) {
+            findByParticipant(TradeLogFixtures.playerId(random.nextInt(PLAYERS)));
+        } else {
+            searchItems("material:" + MATERIALS[random.nextInt(MATERIALS.length)]);
+        }
+    }
+
+    private void findByParticipant(@NotNull UUID player) {
+        List<TradeRecord> before = List.copyOf(acknowledged.getOrDefault(player, Set.of()));
+        List<TradeRecord> found = store.findByParticipant(player, 0);
+        long expiredBefore = cutoff.get();
+        participantQueries.increment();
+
+        Set<String> ids = checkResult(found, "findByParticipant");
+        for (TradeRecord record : found) {
+            invariants.check(record.initiatorId().equals(player) || record.targetId().equals(player),
+                    "participant query matches", () -> record.tradeId() + " returned for " + player);
+        }
+        for (TradeRecord record : before) {
+            invariants.check(record.timestamp() < expiredBefore || ids.contains(record.tradeId()),
+                    "participant query sees acknowledged trades",
+                    () -> record.tradeId() + " at " + record.timestamp() + " missing for " + player
+                            + ", cutoff " + expiredBefore);
+        }
+    }
+
+    private void searchItems(@NotNull String term) {
+        List<TradeRecord> found = store.searchItems(List.of(term), 0, SEARCH_LIMIT);
+        itemSearches.increment();
+
+        checkResult(found, "searchItems");
+        invariants.check(found.size() <= SEARCH_LIMIT, "item search limit",
+                () -> found.size() + " results for a limit of " + SEARCH_LIMIT);
+        for (TradeRecord record : found) {
+            invariants.check(record.searchTerms().contains(term), "item search matches",
+                    () -> record.tradeId() + " returned for " + term + " with " + record.searchTerms());
+        }
+    }
+
+    /**
+     * Checks that a query returned no trade twice and only trades that were appended, unchanged.
+     *
+     * @return The ids of the returned trades.
+     */
+    private @NotNull Set<String> checkResult(@NotNull List<TradeRecord> found, @NotNull String query) {
+        Set<String> ids = new HashSet<>();
+        for (TradeRecord record : found) {
+            invariants.check(ids.add(record.tradeId()), query + " returns no duplicates",
+                    () -> record.tradeId() + " returned twice");
+            Long timestamp = appended.get(record.tradeId());
+            invariants.check(timestamp != null && timestamp == record.timestamp(), query + " returns appended trades",
+                    () -> record.tradeId() + " at " + record.timestamp() + " was appended at " + timestamp);
+        }
+        return ids;
+    }
+
+    /**
+     * Moves the cutoff up to the clock and deletes the expired segments. Trades far behind the cutoff are
+     * forgotten, so the bookkeeping stays as small as the retained history. A query still holding such a trade
+     * would have had to stall for a whole retention window.
+     */
+    private void clean() throws IOException {
+        long expired = cutoff.accumulateAndGet(Math.max(0, clock.get() - RETENTION_WINDOW), Math::max);
+        store.deleteBefore(expired);
+        cleanups.increment();
+
+        acknowledged.values().forEach(records -> records.removeIf(record -> record.timestamp() < expired));
+        appended.values().removeIf(timestamp -> timestamp < expired - RETENTION_WINDOW);
+    }
+
+    private void flush() throws IOException {
+        store.flush();
+        flushes.increment();
+    }
+
+    /**
+     * Checks that every acknowledged trade the cleaner did not expire is still in the store.
+     */
+    private void checkRetained() {
+        long expired = cutoff.get();
+        for (Map.Entry<UUID, Set<TradeRecord>> entry : acknowledged.entrySet()) {
+            Set<String> ids = new HashSet<>();
+            store.findByParticipant(entry.getKey(), 0).forEach(record -> ids.add(record.tradeId()));
+            long lost = entry.getValue().stream()
+                    .filter(record -> record.timestamp() >= expired && !ids.contains(record.tradeId()))
+                    .count();
+            invariants.check(lost == 0, "no acknowledged trade lost",
+                    () -> lost + " retained trade(s) of " + entry.getKey() + " missing, cutoff " + expired);
+        }
+    }
+
+    /**
+     * An operation of a stress thread.
+     */
+    @FunctionalInterface
+    private interface IoOperation {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,401 @@
+package de.bukkitnews.trading.benchmark.stress;
+
+import de.bukkitnews.trading.benchmark.TradingHarness;
+import de.bukkitnews.trading.benchmark.stub.StubEconomy;
+import de.bukkitnews.trading.benchmark.stub.StubPlayer;
+import de.bukkitnews.trading.trade.TradeManager;
+import de.bukkitnews.trading.trade.model.Trade;
+import de.bukkitnews.trading.trade.model.TradeInventoryHolder;
+import de.bukkitnews.trading.trade.model.TradeOffer;
+import de.bukkitnews.trading.trade.model.TradePlayer;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Explores random interleavings of trade sessions between a few players, in the spirit of Lincheck: every round
+ * is a random sequence of invitations, acceptances, offered and retracted items, coin changes, confirmations,
+ * closed views, quits, rejoins and ticks, so confirmations race with closes, quits and second invitations in
+ * every possible order. The plugin confines sessions to the main thread, so these orders are exactly the
+ * interleavings a server can produce.
+ * <p>
+ * After every step, the sessions are checked for stale state: a registered trade must be registered for both
+ * players and shown in both of their views, an open trade view must belong to a registered trade, the count of
+ * active trades must match and players who left must not be part of a trade or invitation. Every tick checks
+ * that no trade is settled twice and no cancelled trade is settled. At the end of every round, items and coins
+ * must add up to what the players started with, counting the items held in offers.
+ */
+public final class SessionStress {
+
+    private static final @NotNull Material[] MATERIALS = {Material.DIAMOND, Material.IRON_INGOT, Material.EMERALD};
+    private static final int START_STACKS = 6;
+    private static final int COINS_SLOT = 3;
+    private static final int CONFIRM_SLOT = 22;
+    private static final int SETTLE_TICKS = 2;
+    private static final int FLUSH_TICKS = 20;
+
+    private final @NotNull Invariants invariants;
+    private final @NotNull SplittableRandom random;
+    private final int rounds;
+    private final int stepsPerRound;
+    private final @NotNull TradingHarness harness;
+    private final @NotNull TradeManager tradeManager;
+    private final @NotNull StubEconomy economy;
+    private final @NotNull StubPlayer[] players;
+    private final boolean[] online;
+    private final @NotNull Map<Material, Long> expectedItems = new EnumMap<>(Material.class);
+    private final double expectedCoins;
+    private final @NotNull Map<Operation, Long> operations = new EnumMap<>(Operation.class);
+
+    private long settlements;
+    private long elapsedNanos;
+
+    /**
+     * Starts the plugin with the given number of players, each holding a few stacks of items.
+     *
+     * @param invariants    Collects the violations.
+     * @param players       The number of players.
+     * @param rounds        The number of rounds.
+     * @param stepsPerRound The number of operations per round.
+     * @param seed          The seed for the interleavings.
+     */
+    public SessionStress(@NotNull Invariants invariants, int players, int rounds, int stepsPerRound, long seed) {
+        this.invariants = invariants;
+        this.random = new SplittableRandom(seed);
+        this.rounds = rounds;
+        this.stepsPerRound = stepsPerRound;
+        this.harness = TradingHarness.start();
+        harness.unthrottle();
+        this.tradeManager = harness.plugin().getTradeManager();
+        this.economy = harness.server().getEconomy();
+        this.players = new StubPlayer[players];
+        this.online = new boolean[players];
+
+        for (int i = 0; i < players; i++) {
+            this.players[i] = harness.join();
+            online[i] = true;
+            PlayerInventory inventory = this.players[i].getInventory();
+            for (int slot = 0; slot < START_STACKS; slot++) {
+                Material material = MATERIALS[random.nextInt(MATERIALS.length)];
+                int amount = 1 + random.nextInt(64);
+                inventory.setItem(slot, new ItemStack(material, amount));
+                expectedItems.merge(material, (long) amount, Long::sum);
+            }
+        }
+        this.expectedCoins = economy.getTotal();
+    }
+
+    /**
+     * Runs the rounds.
+     */
+    public void run() {
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int step = 0; step < stepsPerRound; step++) {
+                step(random.nextInt(players.length));
+                checkSessions();
+            }
+
+            for (int i = 0; i < players.length; i++) {
+                if (!online[i]) {
+                    rejoin(i);
+                }
+            }
+            for (int tick = 0; tick < SETTLE_TICKS; tick++) {
+                tick();
+            }
+            checkSessions();
+            checkConservation(round);
+        }
+        elapsedNanos = System.nanoTime() - start;
+        checkLog();
+    }
+
+    /**
+     * Prints the throughput of the run.
+     *
+     * @param out The stream to print to.
+     */
+    public void report(@NotNull PrintStream out) {
+        long total = operations.values().stream().mapToLong(Long::longValue).sum();
+        double seconds = elapsedNanos / 1e9;
+        out.printf("Sessions: %d round(s) of %d step(s) with %d players in %.2f s, %.0f operations/s, "
+                + "%d settlement(s)%n", rounds, stepsPerRound, players.length, seconds, total / seconds, settlements);
+        operations.forEach((operation, count) -> out.printf("  %-10s %10d%n", operation.name().toLowerCase(), count));
+    }
+
+    /**
+     * Disables the plugin and removes its data folder.
+     */
+    public void close() {
+        harness.close();
+    }
+
+    private void step(int actor) {
+        if (!online[actor]) {
+            count(Operation.REJOIN);
+            rejoin(actor);
+            return;
+        }
+
+        StubPlayer player = players[actor];
+        StubPlayer other = players[(actor + 1 + random.nextInt(players.length - 1)) % players.length];
+        Operation operation = Operation.pick(random.nextInt(Operation.TOTAL_WEIGHT));
+        count(operation);
+        switch (operation) {
+            case INVITE -> harness.command(player, other.getName());
+            case ACCEPT -> {
+                Set<UUID> inviters = tradeManager.getInviters(player.getPlayer());
+                StubPlayer inviter = inviters.isEmpty() ? other : find(inviters.iterator().next());
+                harness.command(player, "accept", inviter == null ? other.getName() : inviter.getName());
+            }
+            case OFFER -> {
+                int slot = occupiedSlot(player.getInventory());
+                if (slot >= 0 && inTradeView(player)) {
+                    harness.click(player, rawSlot(slot), ClickType.LEFT);
+                }
+            }
+            case RETRACT -> {
+                InventoryView view = player.getOpenView();
+                if (view != null && inTradeView(player)) {
+                    int index = random.nextInt(TradeOffer.CAPACITY);
+                    if (view.getItem(TradeOffer.toSlot(index)) != null) {
+                        harness.click(player, TradeOffer.toSlot(index), ClickType.LEFT);
+                    }
+                }
+            }
+            case COINS -> {
+                if (inTradeView(player)) {
+                    harness.click(player, COINS_SLOT, random.nextBoolean() ? ClickType.LEFT : ClickType.RIGHT);
+                }
+            }
+            case CONFIRM -> {
+                if (inTradeView(player)) {
+                    harness.click(player, CONFIRM_SLOT, ClickType.LEFT);
+                }
+            }
+            case CLOSE -> player.getPlayer().closeInventory();
+            case QUIT -> {
+                harness.quit(player);
+                online[actor] = false;
+            }
+            case TICK -> tick();
+            case REJOIN -> {
+            }
+        }
+    }
+
+    /**
+     * Runs a tick and checks that it settled no trade twice and no cancelled trade: every settlement must close
+     * a trade that was registered and confirmed by both players before the tick.
+     */
+    private void tick() {
+        Set<Trade> confirmed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < players.length; i++) {
+            if (online[i]) {
+                tradeManager.getTrade(players[i].getPlayer())
+                        .filter(trade -> trade.host().getState() == Trade.State.DONE
+                                && trade.target().getState() == Trade.State.DONE)
+                        .ifPresent(confirmed::add);
+            }
+        }
+
+        long before = harness.plugin().getMetrics().getSettlements().sum();
+        harness.tick();
+        long settled = harness.plugin().getMetrics().getSettlements().sum() - before;
+        settlements += settled;
+
+        long closed = confirmed.stream()
+                .filter(trade -> tradeManager.getTrade(trade.host().getPlayer()).orElse(null) != trade)
+                .count();
+        invariants.check(settled <= closed, "exactly-once settlement",
+                () -> settled + " settlement(s) in a tick that closed " + closed + " confirmed trade(s)");
+    }
+
+    private void checkSessions() {
+        Set<Trade> registered = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < players.length; i++) {
+            Player player = players[i].getPlayer();
+            String name = player.getName();
+            Optional<Trade> trade = tradeManager.getTrade(player);
+
+            if (!online[i]) {
+                invariants.check(trade.isEmpty(), "no session after quit", () -> name + " left but is still trading");
+                boolean invited = tradeManager.getInvited(player).isPresent()
+                        || !tradeManager.getInviters(player).isEmpty();
+                invariants.check(!invited, "no invitation after quit", () -> name + " left but still has invitations");
+                continue;
+            }
+
+            Trade viewed = viewedTrade(players[i]);
+            invariants.check(viewed == null || trade.orElse(null) == viewed, "no stale trade view",
+                    () -> name + " sees a trade view of a trade that is not registered for them");
+            if (trade.isEmpty()) {
+                continue;
+            }
+
+            registered.add(trade.get());
+            Player partner = trade.get().host().getPlayer().equals(player)
+                    ? trade.get().target().getPlayer() : trade.get().host().getPlayer();
+            invariants.check(tradeManager.getTrade(partner).orElse(null) == trade.get(), "trade registered for both",
+                    () -> name + " trades with " + partner.getName() + ", who is not part of that trade");
+            invariants.check(viewed == trade.get(), "trade shown to both",
+                    () -> name + " is trading without the trade view open");
+        }
+
+        int active = tradeManager.getActiveTrades();
+        invariants.check(active == registered.size(), "active trade count",
+                () -> active + " active trade(s) counted, " + registered.size() + " registered");
+    }
+
+    private void checkConservation(int round) {
+        Map<Material, Long> items = new EnumMap<>(Material.class);
+        Set<Trade> trades = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (StubPlayer player : players) {
+            for (ItemStack item : player.getInventory().getStorageContents()) {
+                if (item != null) {
+                    items.merge(item.getType(), (long) item.getAmount(), Long::sum);
+                }
+            }
+            tradeManager.getTrade(player.getPlayer()).ifPresent(trades::add);
+        }
+        for (Trade trade : trades) {
+            for (TradePlayer side : new TradePlayer[]{trade.host(), trade.target()}) {
+                side.getOffer().forEach(item -> items.merge(item.getType(), (long) item.getAmount(), Long::sum));
+            }
+        }
+
+        invariants.check(items.equals(expectedItems), "no item loss or duplication",
+                () -> "round " + round + ": expected " + expectedItems + " but found " + items);
+        double coins = economy.getTotal();
+        invariants.check(coins == expectedCoins, "no coin loss or duplication",
+                () -> "round " + round + ": expected " + expectedCoins + " coins but found " + coins);
+        for (StubPlayer player : players) {
+            double balance = economy.getBalance(player.getUniqueId());
+            invariants.check(balance >= 0, "no negative balance",
+                    () -> player.getName() + " has " + balance + " coins");
+        }
+    }
+
+    /**
+     * Waits for the trade log and checks that every settlement was logged exactly once. The logged trades are
+     * counted as of the last flush, so ticks run until the periodic flush has caught up with the pending writes.
+     */
+    private void checkLog() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline && (harness.plugin().getTradeLogger().getPendingWrites() > 0
+                || harness.plugin().getExecutors().getPendingTasks() > 0)) {
+            Thread.onSpinWait();
+        }
+        for (int tick = 0; tick < FLUSH_TICKS; tick++) {
+            harness.tick();
+        }
+        while (System.nanoTime() < deadline && harness.plugin().getExecutors().getPendingTasks() > 0) {
+            Thread.onSpinWait();
+        }
+        long logged = harness.plugin().getTradeLogger().getFootprint().records();
+        invariants.check(logged == settlements, "settlements logged once",
+                () -> settlements + " settlement(s) but " + logged + " logged trade(s)");
+    }
+
+    /**
+     * Lets a player who left join again with the inventory and balance they left with.
+     */
+    private void rejoin(int index) {
+        StubPlayer left = players[index];
+        double balance = economy.getBalance(left.getUniqueId());
+        StubPlayer player = harness.join(left.getName(), left.getUniqueId());
+        economy.setBalance(player.getUniqueId(), balance);
+
+        ItemStack[] contents = left.getInventory().getStorageContents();
+        for (int slot = 0; slot < contents.length; slot++) {
+            player.getInventory().setItem(slot, contents[slot]);
+        }
+        players[index] = player;
+        online[index] = true;
+    }
+
+    private @Nullable StubPlayer find(@NotNull UUID uniqueId) {
+        for (int i = 0; i < players.length; i++) {
+            if (online[i] && players[i].getUniqueId().equals(uniqueId)) {
+                return players[i];
+            }
+        }
+        return null;
+    }
+
+    private boolean inTradeView(@NotNull StubPlayer player) {
+        return viewedTrade(player) != null;
+    }
+
+    private static @Nullable Trade viewedTrade(@NotNull StubPlayer player) {
+        InventoryView view = player.getOpenView();
+        return view != null && view.getTopInventory().getHolder() instanceof TradeInventoryHolder holder
+                ? holder.getTrade() : null;
+    }
+
+    private int occupiedSlot(@NotNull PlayerInventory inventory) {
+        ItemStack[] contents = inventory.getStorageContents();
+        int offset = random.nextInt(contents.length);
+        for (int i = 0; i < contents.length; i++) {
+            int slot = (offset + i) % contents.length;
+            if (contents[slot] != null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the raw slot of a player inventory slot in a trade view: the hotbar comes after the main inventory.
+     */
+    private static int rawSlot(int slot) {
+        return slot < 9 ? TradingHarness.rawHotbarSlot(slot) : TradingHarness.TRADE_INVENTORY_SIZE + slot - 9;
+    }
+
+    private void count(@NotNull Operation operation) {
+        operations.merge(operation, 1L, Long::sum);
+    }
+
+    /**
+     * The operations of a round, with the weights they are picked by.
+     */
+    private enum Operation {
+        INVITE(3), ACCEPT(3), OFFER(4), RETRACT(2), COINS(2), CONFIRM(8), CLOSE(1), QUIT(1), TICK(4), REJOIN(0);
+
+        private static final int TOTAL_WEIGHT = Arrays.stream(values()).mapToInt(op -> op.weight).sum();
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+
+        private static @NotNull Operation pick(int roll) {
+            for (Operation operation : values()) {
+                roll -= operation.weight;
+                if (roll < 0) {
+                    return operation;
+                }
+            }
+            throw new IllegalStateException("Roll exceeds the total weight");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package de.bukkitnews.trading.benchmark.stress;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the {@link SessionStress} and the {@link LogStoreStress}, prints their throughput and the invariant
+ * violations and exits with status 1 if any invariant was violated, so the stress tests can gate a build.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar de.bukkitnews.trading.benchmark.stress.StressRunner --rounds=2000
+ * --players=8 --seconds=10 --writers=4 --readers=4 --seed=42}, every option is optional.
+ */
+public final class StressRunner {
+
+    private static final int STEPS_PER_ROUND = 50;
+
+    private StressRunner() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        int rounds = Integer.parseInt(values.getOrDefault("rounds", "2000"));
+        int players = Integer.parseInt(values.getOrDefault("players", "8"));
+        int seconds = Integer.parseInt(values.getOrDefault("seconds", "10"));
+        int writers = Integer.parseInt(values.getOrDefault("writers", "4"));
+        int readers = Integer.parseInt(values.getOrDefault("readers", "4"));
+        long seed = Long.parseLong(values.getOrDefault("seed", "42"));
+
+        values.keySet().removeAll(Set.of("rounds", "players", "seconds", "writers", "readers", "seed"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown arguments: " + values.keySet());
+        }
+        if (players < 2) {
+            throw new IllegalArgumentException("At least two players are needed to trade");
+        }
+
+        Invariants invariants = new Invariants();
+        SessionStress sessions = new SessionStress(invariants, players, rounds, STEPS_PER_ROUND, seed);
+        try {
+            sessions.run();
+            sessions.report(System.out);
+        } finally {
+            sessions.close();
+        }
+
+        LogStoreStress log = new LogStoreStress(invariants, writers, readers, seconds, seed);
+        try {
+            log.run();
+            log.report(System.out);
+        } finally {
+            log.close();
+        }
+
+        System.out.println();
+        invariants.report(System.out);
+        if (invariants.getViolations() > 0) {
+            System.exit(1);
+        }
+    }
+}
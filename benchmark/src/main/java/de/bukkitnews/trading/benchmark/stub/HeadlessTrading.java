@@ -0,0 +1,65 @@
+package de.bukkitnews.trading.benchmark.stub;
+
+import de.bukkitnews.trading.Trading;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.InvalidDescriptionException;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+
+/**
+ * The plugin, loaded and enabled on a {@link StubServer} without a plugin class loader.
+ */
+public final class HeadlessTrading extends Trading {
+
+    private HeadlessTrading(@NotNull JavaPluginLoader loader, @NotNull PluginDescriptionFile description,
+                            @NotNull File dataFolder, @NotNull File file) {
+        super(loader, description, dataFolder, file);
+    }
+
+    /**
+     * Loads and enables the plugin with the given data folder, like the server does on startup.
+     *
+     * @param server     The installed stub server.
+     * @param dataFolder The data folder of the plugin.
+     * @return The enabled plugin.
+     */
+    @SuppressWarnings("deprecation")
+    public static @NotNull HeadlessTrading enable(@NotNull StubServer server, @NotNull File dataFolder) {
+        PluginDescriptionFile description;
+        try (InputStream in = Trading.class.getResourceAsStream("/plugin.yml")) {
+            if (in == null) {
+                throw new IllegalStateException("plugin.yml is missing from the classpath");
+            }
+            description = new PluginDescriptionFile(in);
+        } catch (IOException | InvalidDescriptionException e) {
+            throw new IllegalStateException("Could not read plugin.yml", e);
+        }
+
+        File file;
+        try {
+            file = new File(Trading.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Could not locate the plugin jar", e);
+        }
+
+        HeadlessTrading plugin = new HeadlessTrading(new JavaPluginLoader(Bukkit.getServer()), description,
+                dataFolder, file);
+        server.registerCommands(plugin);
+        plugin.onLoad();
+        plugin.setEnabled(true);
+        return plugin;
+    }
+
+    /**
+     * Disables the plugin, like the server does on shutdown.
+     */
+    public void disable() {
+        setEnabled(false);
+    }
+}
@@ -0,0 +1,136 @@
+package de.bukkitnews.trading.benchmark.stub;
+
+import de.bukkitnews.trading.trade.logging.remote.TradeStream;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link TradeStream} kept in memory, standing in for a real store in the benchmarks.
+ * It can be switched off with {@link #setAvailable(boolean)} to simulate an outage of the remote store.
+ */
+public class InMemoryTradeStream implements TradeStream {
+
+    private final @NotNull Map<String, NavigableMap<StreamId, Map<String, String>>> streams = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes appends so that IDs are assigned in order, like the single-threaded Redis server does.
+     */
+    private final @NotNull ReentrantLock appendLock = new ReentrantLock();
+    private volatile boolean available = true;
+    private long lastMillis;
+    private long sequence;
+
+    /**
+     * Simulates an outage of the store or its recovery.
+     *
+     * @param available Whether calls succeed.
+     */
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    @Override
+    public @NotNull CompletableFuture<List<String>> append(@NotNull String stream,
+                                                         @NotNull List<Map<String, String>> entries) {
+        if (!available) {
+            return unavailable();
+        }
+
+        NavigableMap<StreamId, Map<String, String>> entriesById =
+                streams.computeIfAbsent(stream, name -> new ConcurrentSkipListMap<>());
+        List<String> ids = new ArrayList<>(entries.size());
+        appendLock.lock();
+        try {
+            for (Map<String, String> fields : entries) {
+                StreamId id = nextId();
+                entriesById.put(id, Map.copyOf(fields));
+                ids.add(id.toString());
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        return CompletableFuture.completedFuture(ids);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<List<StreamEntry>> read(@NotNull String stream, @NotNull String afterId,
+                                                              int count) {
+        if (!available) {
+            return unavailable();
+        }
+
+        NavigableMap<StreamId, Map<String, String>> entriesById = streams.get(stream);
+        if (entriesById == null) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        List<StreamEntry> result = new ArrayList<>(Math.min(count, 1_024));
+        NavigableMap<StreamId, Map<String, String>> after = entriesById.tailMap(StreamId.parse(afterId), false);
+        for (Map.Entry<StreamId, Map<String, String>> entry : after.entrySet()) {
+            if (result.size() >= count) {
+                break;
+            }
+            result.add(new StreamEntry(entry.getKey().toString(), entry.getValue()));
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+
+    /**
+     * Returns the number of entries in a stream.
+     *
+     * @param stream The name of the stream.
+     * @return The number of entries.
+     */
+    public int size(@NotNull String stream) {
+        NavigableMap<StreamId, Map<String, String>> entriesById = streams.get(stream);
+        return entriesById == null ? 0 : entriesById.size();
+    }
+
+    private static <T> @NotNull CompletableFuture<T> unavailable() {
+        return CompletableFuture.failedFuture(new UncheckedIOException(new IOException("Stream store unavailable")));
+    }
+
+    private @NotNull StreamId nextId() {
+        long millis = System.currentTimeMillis();
+        if (millis > lastMillis) {
+            lastMillis = millis;
+            sequence = 0L;
+        } else {
+            sequence++;
+        }
+        return new StreamId(lastMillis, sequence);
+    }
+
+    private record StreamId(long millis, long sequence) implements Comparable<StreamId> {
+
+        static @NotNull StreamId parse(@NotNull String id) {
+            int separator = id.indexOf('-');
+            if (separator < 0) {
+                return new StreamId(Long.parseLong(id), 0L);
+            }
+            return new StreamId(Long.parseLong(id.substring(0, separator)),
+                    Long.parseLong(id.substring(separator + 1)));
+        }
+
+        @Override
+        public int compareTo(@NotNull StreamId other) {
+            int compared = Long.compare(millis, other.millis);
+            return compared != 0 ? compared : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return millis + "-" + sequence;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package de.bukkitnews.trading.benchmark.stub;
+
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.OfflinePlayer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Vault {@link Economy} stand-in keeping player balances in memory. Only the player based methods are supported,
+ * which is what the plugin uses.
+ */
+public final class StubEconomy implements Stubs.Answer {
+
+    private final @NotNull Map<UUID, Double> balances = new ConcurrentHashMap<>();
+    private final @NotNull Economy economy = Stubs.create(this, Economy.class);
+
+    /**
+     * Returns the economy view of this stand-in.
+     *
+     * @return The economy.
+     */
+    public @NotNull Economy economy() {
+        return economy;
+    }
+
+    /**
+     * Sets the balance of a player.
+     *
+     * @param uniqueId The UUID of the player.
+     * @param balance  The new balance.
+     */
+    public void setBalance(@NotNull UUID uniqueId, double balance) {
+        balances.put(uniqueId, balance);
+    }
+
+    /**
+     * Returns the balance of a player.
+     *
+     * @param uniqueId The UUID of the player.
+     * @return The balance, 0 if the player has no account.
+     */
+    public double getBalance(@NotNull UUID uniqueId) {
+        return balances.getOrDefault(uniqueId, 0D);
+    }
+
+    /**
+     * Returns the sum of all balances, which stays constant as long as trades only move coins around.
+     *
+     * @return The total amount of money.
+     */
+    public double getTotal() {
+        return balances.values().stream().mapToDouble(Double::doubleValue).sum();
+    }
+
+    @Override
+    public @Nullable Object answer(@NotNull Object proxy, @NotNull Method method, @Nullable Object[] args) {
+        switch (method.getName()) {
+            case "isEnabled":
+            case "hasAccount":
+                return true;
+            case "getName":
+                return "StubEconomy";
+            case "fractionalDigits":
+                return 2;
+            case "format":
+                return String.format("%.2f", Stubs.<Double>arg(args, 0));
+            default:
+                break;
+        }
+
+        if (args == null || args.length == 0 || !(args[0] instanceof OfflinePlayer player)) {
+            return UNHANDLED;
+        }
+
+        UUID uniqueId = player.getUniqueId();
+        return switch (method.getName()) {
+            case "getBalance" -> getBalance(uniqueId);
+            case "has" -> getBalance(uniqueId) >= Stubs.<Double>arg(args, args.length - 1);
+            case "withdrawPlayer" -> transfer(uniqueId, -Stubs.<Double>arg(args, args.length - 1));
+            case "depositPlayer" -> transfer(uniqueId, Stubs.<Double>arg(args, args.length - 1));
+            case "createPlayerAccount" -> balances.putIfAbsent(uniqueId, 0D) == null;
+            default -> UNHANDLED;
+        };
+    }
+
+    private @NotNull EconomyResponse transfer(@NotNull UUID uniqueId, double amount) {
+        double balance = balances.merge(uniqueId, amount, Double::sum);
+        return new EconomyResponse(Math.abs(amount), balance, EconomyResponse.ResponseType.SUCCESS, null);
+    }
+}
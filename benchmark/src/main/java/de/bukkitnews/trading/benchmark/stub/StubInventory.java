@@ -0,0 +1,159 @@
+package de.bukkitnews.trading.benchmark.stub;
+
+import org.bukkit.Material;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An array-backed {@link Inventory} stand-in. Air is stored as an empty slot like on a real server,
+ * and {@code addItem} stacks onto similar items before it fills empty slots.
+ */
+public final class StubInventory implements Stubs.Answer {
+
+    /**
+     * The number of storage slots of a player inventory, without armor and off hand.
+     */
+    public static final int PLAYER_STORAGE_SLOTS = 36;
+
+    private final @Nullable InventoryHolder holder;
+    private final @NotNull InventoryType type;
+    private final @NotNull ItemStack[] contents;
+    private final int storageSlots;
+    private final @NotNull List<HumanEntity> viewers = new ArrayList<>();
+    private final @NotNull Inventory inventory;
+
+    private StubInventory(@Nullable InventoryHolder holder, @NotNull InventoryType type, int size, int storageSlots,
+                          @NotNull Class<? extends Inventory> inventoryType) {
+        this.holder = holder;
+        this.type = type;
+        this.contents = new ItemStack[size];
+        this.storageSlots = storageSlots;
+        this.inventory = Stubs.create(this, inventoryType);
+    }
+
+    /**
+     * Creates a chest-like inventory, as returned by {@code Bukkit.createInventory}.
+     *
+     * @param holder The holder of the inventory.
+     * @param size   The number of slots.
+     * @return The inventory.
+     */
+    public static @NotNull Inventory chest(@Nullable InventoryHolder holder, int size) {
+        return new StubInventory(holder, InventoryType.CHEST, size, size, Inventory.class).inventory;
+    }
+
+    /**
+     * Creates a player inventory with storage, armor and off hand slots.
+     *
+     * @param holder The player owning the inventory.
+     * @return The inventory.
+     */
+    public static @NotNull PlayerInventory player(@NotNull HumanEntity holder) {
+        return (PlayerInventory) new StubInventory(holder, InventoryType.PLAYER, 41, PLAYER_STORAGE_SLOTS,
+                PlayerInventory.class).inventory;
+    }
+
+    @Override
+    public @Nullable Object answer(@NotNull Object proxy, @NotNull Method method, @Nullable Object[] args) {
+        switch (method.getName()) {
+            case "getSize":
+                return contents.length;
+            case "getType":
+                return type;
+            case "getHolder":
+                return holder;
+            case "getViewers":
+                return viewers;
+            case "getItem":
+                if (args[0] instanceof Integer slot) {
+                    return contents[slot];
+                }
+                return UNHANDLED;
+            case "setItem":
+                if (args.length == 2 && args[0] instanceof Integer slot) {
+                    contents[slot] = normalize(Stubs.arg(args, 1));
+                    return null;
+                }
+                return UNHANDLED;
+            case "addItem":
+                return addItem(Stubs.arg(args, 0));
+            case "firstEmpty":
+                return firstEmpty();
+            case "getContents":
+            case "getStorageContents":
+                return Arrays.copyOf(contents, method.getName().equals("getContents") ? contents.length : storageSlots);
+            case "isEmpty":
+                return Arrays.stream(contents).allMatch(item -> item == null);
+            case "clear":
+                if (args == null || args.length == 0) {
+                    Arrays.fill(contents, null);
+                } else {
+                    contents[Stubs.<Integer>arg(args, 0)] = null;
+                }
+                return null;
+            default:
+                return UNHANDLED;
+        }
+    }
+
+    private @NotNull HashMap<Integer, ItemStack> addItem(@NotNull ItemStack[] items) {
+        HashMap<Integer, ItemStack> leftover = new HashMap<>();
+        for (int i = 0; i < items.length; i++) {
+            ItemStack item = normalize(items[i]);
+            if (item == null) {
+                continue;
+            }
+
+            int remaining = item.getAmount();
+            for (int slot = 0; slot < storageSlots && remaining > 0; slot++) {
+                ItemStack present = contents[slot];
+                if (present != null && present.isSimilar(item)) {
+                    int moved = Math.min(remaining, present.getMaxStackSize() - present.getAmount());
+                    if (moved > 0) {
+                        present.setAmount(present.getAmount() + moved);
+                        remaining -= moved;
+                    }
+                }
+            }
+            while (remaining > 0) {
+                int slot = firstEmpty();
+                if (slot < 0) {
+                    ItemStack rest = item.clone();
+                    rest.setAmount(remaining);
+                    leftover.put(i, rest);
+                    break;
+                }
+                ItemStack placed = item.clone();
+                placed.setAmount(Math.min(remaining, item.getMaxStackSize()));
+                contents[slot] = placed;
+                remaining -= placed.getAmount();
+            }
+        }
+        return leftover;
+    }
+
+    private int firstEmpty() {
+        for (int slot = 0; slot < storageSlots; slot++) {
+            if (contents[slot] == null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static @Nullable ItemStack normalize(@Nullable ItemStack item) {
+        return item == null || item.getType() == Material.AIR || item.getAmount() <= 0 ? null : item;
+    }
+}
@@ -0,0 +1,129 @@
+package de.bukkitnews.trading.benchmark.stub;
+
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemFlag;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.inventory.meta.SkullMeta;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@link ItemMeta} stand-in that stores every property in a map. Setters put a value, getters read it and
+ * {@code has*} methods check for it, which is all the plugin needs to build and compare its GUI items.
+ * <p>
+ * Every meta also implements {@link SkullMeta}, so player heads can be built from it.
+ */
+public final class StubItemMeta implements Stubs.Answer {
+
+    private final @NotNull Map<String, Object> properties;
+    private final @NotNull Map<Enchantment, Integer> enchants;
+    private final @NotNull Set<ItemFlag> flags;
+
+    private StubItemMeta(@NotNull Map<String, Object> properties, @NotNull Map<Enchantment, Integer> enchants,
+                         @NotNull Set<ItemFlag> flags) {
+        this.properties = properties;
+        this.enchants = enchants;
+        this.flags = flags;
+    }
+
+    /**
+     * Creates an empty meta.
+     *
+     * @return The meta.
+     */
+    public static @NotNull ItemMeta create() {
+        return new StubItemMeta(new HashMap<>(), new LinkedHashMap<>(), new HashSet<>()).proxy();
+    }
+
+    /**
+     * Compares two metas the way the item factory does, treating null like an empty meta.
+     *
+     * @param first  The first meta, may be null.
+     * @param second The second meta, may be null.
+     * @return true if both metas carry the same properties.
+     */
+    public static boolean equal(@Nullable ItemMeta first, @Nullable ItemMeta second) {
+        return state(first).equals(state(second));
+    }
+
+    private static @NotNull Object state(@Nullable ItemMeta meta) {
+        if (meta == null) {
+            return Map.of();
+        }
+        return ((StubItemMeta) Stubs.answerOf(meta)).snapshot();
+    }
+
+    private @NotNull ItemMeta proxy() {
+        return Stubs.create(this, SkullMeta.class, ItemMeta.class);
+    }
+
+    private @NotNull Map<String, Object> snapshot() {
+        if (enchants.isEmpty() && flags.isEmpty()) {
+            return properties;
+        }
+        Map<String, Object> state = new HashMap<>(properties);
+        state.put("#enchants", enchants);
+        state.put("#flags", flags);
+        return state;
+    }
+
+    @Override
+    public @Nullable Object answer(@NotNull Object proxy, @NotNull Method method, @Nullable Object[] args) {
+        String name = method.getName();
+        int arguments = method.getParameterCount();
+
+        switch (name) {
+            case "clone":
+                return new StubItemMeta(new HashMap<>(properties), new LinkedHashMap<>(enchants), new HashSet<>(flags)).proxy();
+            case "equals":
+                return args[0] instanceof ItemMeta other && snapshot().equals(state(other));
+            case "hashCode":
+                return snapshot().hashCode();
+            case "getAsString":
+            case "toString":
+                return "StubItemMeta" + snapshot();
+            case "serialize":
+                return Collections.unmodifiableMap(properties);
+            case "addEnchant":
+                return enchants.put(Stubs.arg(args, 0), Stubs.<Integer>arg(args, 1)) == null;
+            case "removeEnchant":
+                return enchants.remove(Stubs.<Enchantment>arg(args, 0)) != null;
+            case "hasEnchants":
+                return !enchants.isEmpty();
+            case "getEnchants":
+                return Collections.unmodifiableMap(enchants);
+            case "addItemFlags":
+                Collections.addAll(flags, Stubs.<ItemFlag[]>arg(args, 0));
+                return null;
+            case "getItemFlags":
+                return Collections.unmodifiableSet(flags);
+            default:
+                break;
+        }
+
+        if (name.startsWith("set") && arguments == 1) {
+            String key = name.substring(3);
+            if (args[0] == null) {
+                properties.remove(key);
+            } else {
+                properties.put(key, args[0]);
+            }
+            return method.getReturnType() == boolean.class ? Boolean.TRUE : null;
+        }
+        if (name.startsWith("get") && arguments == 0 && properties.containsKey(name.substring(3))) {
+            return properties.get(name.substring(3));
+        }
+        if (name.startsWith("has") && arguments == 0) {
+            return properties.containsKey(name.substring(3));
+        }
+        return UNHANDLED;
+    }
+}
@@ -0,0 +1,172 @@
+package de.bukkitnews.trading.benchmark.stub;
+
+import lombok.Getter;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.PlayerInventory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Player} stand-in with a real inventory and an open inventory view.
+ * Closing a view fires an {@link InventoryCloseEvent} through the {@link StubServer}, like a real server does.
+ */
+public final class StubPlayer implements Stubs.Answer {
+
+    @Getter
+    private final @NotNull String name;
+    @Getter
+    private final @NotNull UUID uniqueId;
+    private final @NotNull StubServer server;
+    @Getter
+    private final @NotNull Player player;
+    @Getter
+    private final @NotNull PlayerInventory inventory;
+    private final @NotNull AtomicLong receivedMessages = new AtomicLong();
+    private final @NotNull Location location;
+
+    private @Nullable InventoryView openView;
+
+    StubPlayer(@NotNull StubServer server, @NotNull String name, @NotNull UUID uniqueId, @NotNull World world) {
+        this.server = server;
+        this.name = name;
+        this.uniqueId = uniqueId;
+        this.player = Stubs.create(this, Player.class);
+        this.inventory = StubInventory.player(player);
+        this.location = new Location(world, 0, 64, 0);
+    }
+
+    /**
+     * Returns the number of chat messages sent to this player so far.
+     *
+     * @return The number of received messages.
+     */
+    public long getReceivedMessages() {
+        return receivedMessages.get();
+    }
+
+    /**
+     * Returns the inventory view the player currently has open, or null if only the own inventory is open.
+     *
+     * @return The open view, or null.
+     */
+    public @Nullable InventoryView getOpenView() {
+        return openView;
+    }
+
+    @Override
+    public @Nullable Object answer(@NotNull Object proxy, @NotNull Method method, @Nullable Object[] args) {
+        switch (method.getName()) {
+            case "getName":
+            case "getDisplayName":
+            case "getPlayerListName":
+                return name;
+            case "getUniqueId":
+                return uniqueId;
+            case "getInventory":
+                return inventory;
+            case "getWorld":
+                return location.getWorld();
+            case "getLocation":
+                return location.clone();
+            case "isOnline":
+            case "hasPermission":
+            case "isValid":
+                return true;
+            case "sendMessage":
+                receivedMessages.incrementAndGet();
+                return null;
+            case "getOpenInventory":
+                return openView != null ? openView : ownView();
+            case "openInventory":
+                if (args[0] instanceof Inventory top) {
+                    closeInventory();
+                    openView = view(top);
+                    return openView;
+                }
+                return UNHANDLED;
+            case "closeInventory":
+                closeInventory();
+                return null;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return uniqueId.hashCode();
+            case "toString":
+                return "StubPlayer{" + name + "}";
+            default:
+                return UNHANDLED;
+        }
+    }
+
+    private void closeInventory() {
+        InventoryView closing = openView;
+        if (closing == null) {
+            return;
+        }
+        openView = null;
+        server.callEvent(new InventoryCloseEvent(closing));
+    }
+
+    private @NotNull InventoryView ownView() {
+        return view(StubInventory.chest(player, 5));
+    }
+
+    /**
+     * Creates a view with the given top inventory and the player's inventory at the bottom.
+     * Raw slots are mapped like on a real server: the top inventory comes first, followed by the
+     * main inventory rows and the hotbar.
+     */
+    private @NotNull InventoryView view(@NotNull Inventory top) {
+        return Stubs.create((proxy, method, args) -> switch (method.getName()) {
+            case "getTopInventory" -> top;
+            case "getBottomInventory" -> inventory;
+            case "getPlayer" -> (HumanEntity) player;
+            case "getType" -> top.getType();
+            case "getTitle", "getOriginalTitle" -> "";
+            case "countSlots" -> top.getSize() + StubInventory.PLAYER_STORAGE_SLOTS;
+            case "convertSlot" -> convertSlot(top, Stubs.arg(args, 0));
+            case "getInventory" -> Stubs.<Integer>arg(args, 0) < top.getSize() ? top : inventory;
+            case "getItem" -> {
+                int rawSlot = Stubs.arg(args, 0);
+                yield rawSlot < top.getSize() ? top.getItem(rawSlot) : inventory.getItem(convertSlot(top, rawSlot));
+            }
+            case "setItem" -> {
+                int rawSlot = Stubs.arg(args, 0);
+                if (rawSlot < top.getSize()) {
+                    top.setItem(rawSlot, Stubs.arg(args, 1));
+                } else {
+                    inventory.setItem(convertSlot(top, rawSlot), Stubs.arg(args, 1));
+                }
+                yield null;
+            }
+            case "getSlotType" -> Stubs.<Integer>arg(args, 0) < top.getSize()
+                    ? InventoryType.SlotType.CONTAINER : InventoryType.SlotType.QUICKBAR;
+            case "close" -> {
+                if (openView == proxy) {
+                    closeInventory();
+                }
+                yield null;
+            }
+            default -> UNHANDLED;
+        }, InventoryView.class);
+    }
+
+    private static int convertSlot(@NotNull Inventory top, int rawSlot) {
+        if (rawSlot < top.getSize()) {
+            return rawSlot;
+        }
+        int slot = rawSlot - top.getSize();
+        return slot >= 27 ? slot - 27 : slot + 9;
+    }
+}
@@ -0,0 +1,165 @@
+package de.bukkitnews.trading.benchmark.stub;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link BukkitScheduler} stand-in driven by hand. Tasks may be scheduled from any thread and only run when
+ * the owner of the main thread calls {@link #tick()}, so benchmarks decide exactly when a tick happens.
+ * Asynchronous tasks are not supported, the plugin uses its own executors for those.
+ */
+public final class StubScheduler implements Stubs.Answer {
+
+    private final @NotNull BukkitScheduler scheduler = Stubs.create(this, BukkitScheduler.class);
+    private final @NotNull AtomicInteger nextId = new AtomicInteger(1);
+    private final @NotNull Queue<Task> submitted = new ConcurrentLinkedQueue<>();
+    private final @NotNull PriorityQueue<Task> queue = new PriorityQueue<>(
+            Comparator.comparingLong((Task task) -> task.due).thenComparingInt(task -> task.id));
+    private volatile long currentTick;
+
+    /**
+     * Returns the scheduler view of this stand-in.
+     *
+     * @return The scheduler.
+     */
+    public @NotNull BukkitScheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the number of the current tick.
+     *
+     * @return The current tick.
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Advances to the next tick and runs every task that is due. Must be called from the main thread.
+     *
+     * @return The number of tasks that ran.
+     */
+    public int tick() {
+        long tick = ++currentTick;
+        for (Task task; (task = submitted.poll()) != null; ) {
+            queue.add(task);
+        }
+
+        int ran = 0;
+        while (!queue.isEmpty() && queue.peek().due <= tick) {
+            Task task = queue.poll();
+            if (task.cancelled) {
+                continue;
+            }
+
+            task.runnable.run();
+            ran++;
+            if (task.period > 0 && !task.cancelled) {
+                task.due = tick + task.period;
+                queue.add(task);
+            }
+        }
+        return ran;
+    }
+
+    /**
+     * Returns the number of tasks waiting for a later tick, including repeating ones.
+     *
+     * @return The number of scheduled tasks.
+     */
+    public int getPendingTasks() {
+        return submitted.size() + queue.size();
+    }
+
+    /**
+     * Cancels every scheduled task. The stand-in serves a single plugin, so this equals cancelling its tasks.
+     */
+    public void cancelAll() {
+        submitted.forEach(Task::cancel);
+        queue.forEach(Task::cancel);
+    }
+
+    @Override
+    public @Nullable Object answer(@NotNull Object proxy, @NotNull Method method, @Nullable Object[] args) {
+        if (args == null || args.length < 2 || !(args[1] instanceof Runnable runnable)) {
+            return switch (method.getName()) {
+                case "cancelTasks" -> {
+                    cancelAll();
+                    yield null;
+                }
+                case "isCurrentlyRunning", "isQueued" -> false;
+                default -> UNHANDLED;
+            };
+        }
+
+        Plugin plugin = Stubs.arg(args, 0);
+        return switch (method.getName()) {
+            case "runTask" -> schedule(plugin, runnable, 1L, 0L);
+            case "runTaskLater" -> schedule(plugin, runnable, Stubs.<Long>arg(args, 2), 0L);
+            case "runTaskTimer" -> schedule(plugin, runnable, Stubs.<Long>arg(args, 2), Stubs.<Long>arg(args, 3));
+            case "scheduleSyncDelayedTask" -> schedule(plugin, runnable,
+                    args.length > 2 ? Stubs.<Long>arg(args, 2) : 1L, 0L).getTaskId();
+            default -> UNHANDLED;
+        };
+    }
+
+    private @NotNull Task schedule(@NotNull Plugin plugin, @NotNull Runnable runnable, long delay, long period) {
+        Task task = new Task(nextId.getAndIncrement(), plugin, runnable, period);
+        task.due = currentTick + Math.max(1L, delay);
+        submitted.add(task);
+        return task;
+    }
+
+    private static final class Task implements BukkitTask {
+
+        private final int id;
+        private final @NotNull Plugin owner;
+        private final @NotNull Runnable runnable;
+        private final long period;
+        private long due;
+        private volatile boolean cancelled;
+
+        private Task(int id, @NotNull Plugin owner, @NotNull Runnable runnable, long period) {
+            this.id = id;
+            this.owner = owner;
+            this.runnable = runnable;
+            this.period = period;
+        }
+
+        @Override
+        public int getTaskId() {
+            return id;
+        }
+
+        @Override
+        public @NotNull Plugin getOwner() {
+            return owner;
+        }
+
+        @Override
+        public boolean isSync() {
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
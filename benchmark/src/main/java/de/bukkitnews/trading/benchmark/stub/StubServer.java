@@ -0,0 +1,364 @@
+package de.bukkitnews.trading.benchmark.stub;
+
+import net.milkbowl.vault.economy.Economy;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredServiceProvider;
+import org.bukkit.plugin.ServicePriority;
+import org.bukkit.plugin.ServicesManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A headless {@link Server} for driving the plugin outside of Minecraft.
+ * <p>
+ * It provides what the plugin touches: an item factory, inventories, a hand-driven scheduler, a Vault economy,
+ * online players and a plugin manager that dispatches events to the registered listeners through pre-resolved
+ * method handles. Everything else answers with neutral values.
+ * <p>
+ * Bukkit only accepts one server per JVM, so {@link #install()} always returns the same instance.
+ */
+public final class StubServer implements Stubs.Answer {
+
+    private static volatile StubServer instance;
+
+    private final @NotNull Server server = Stubs.create(this, Server.class);
+    private final @NotNull Logger logger = Logger.getLogger("StubServer");
+    private final @NotNull StubScheduler scheduler = new StubScheduler();
+    private final @NotNull StubEconomy economy = new StubEconomy();
+    private final @NotNull World world;
+    private final @NotNull Plugin vault;
+    private final @NotNull ItemFactory itemFactory;
+    private final @NotNull PluginManager pluginManager;
+    private final @NotNull ServicesManager servicesManager;
+
+    private final @NotNull Map<UUID, StubPlayer> players = new ConcurrentHashMap<>();
+    private final @NotNull Map<String, StubPlayer> playersByName = new ConcurrentHashMap<>();
+    private final @NotNull Collection<Player> onlinePlayers = new CopyOnWriteArrayList<>();
+    private final @NotNull Map<String, PluginCommand> commands = new ConcurrentHashMap<>();
+    private final @NotNull List<RegisteredHandler> handlers = new CopyOnWriteArrayList<>();
+    private final @NotNull Map<Class<?>, MethodHandle[]> dispatch = new ConcurrentHashMap<>();
+
+    private volatile @Nullable Thread mainThread;
+
+    private StubServer() {
+        this.world = Stubs.create((proxy, method, args) -> switch (method.getName()) {
+            case "getName" -> "world";
+            case "getUID" -> new UUID(0L, 0L);
+            default -> UNHANDLED;
+        }, World.class);
+        this.vault = Stubs.create((proxy, method, args) -> switch (method.getName()) {
+            case "getName" -> "Vault";
+            case "isEnabled" -> true;
+            default -> UNHANDLED;
+        }, Plugin.class);
+        this.itemFactory = Stubs.create(this::answerItemFactory, ItemFactory.class);
+        this.pluginManager = Stubs.create(this::answerPluginManager, PluginManager.class);
+        this.servicesManager = Stubs.create(this::answerServicesManager, ServicesManager.class);
+        // Plugin loggers log through this logger, so the filter has to sit on a handler, not on the logger.
+        ConsoleHandler handler = new ConsoleHandler();
+        handler.setLevel(Level.WARNING);
+        this.logger.setUseParentHandlers(false);
+        this.logger.addHandler(handler);
+    }
+
+    /**
+     * Installs the stub server into {@link Bukkit} once and returns it.
+     * The calling thread becomes the main thread.
+     *
+     * @return The installed server.
+     */
+    public static synchronized @NotNull StubServer install() {
+        if (instance == null) {
+            StubServer stub = new StubServer();
+            Bukkit.setServer(stub.server);
+            instance = stub;
+        }
+        instance.claimMainThread();
+        return instance;
+    }
+
+    /**
+     * Makes the calling thread the main thread, so {@code Bukkit.isPrimaryThread()} returns true on it.
+     * Benchmarks call this from their setup, because JMH does not guarantee the same worker thread for every
+     * iteration.
+     */
+    public void claimMainThread() {
+        this.mainThread = Thread.currentThread();
+    }
+
+    /**
+     * Returns the scheduler, used to advance ticks.
+     *
+     * @return The scheduler.
+     */
+    public @NotNull StubScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the economy registered as Vault provider.
+     *
+     * @return The economy.
+     */
+    public @NotNull StubEconomy getEconomy() {
+        return economy;
+    }
+
+    /**
+     * Returns the plugin manager, e.g. to fire events.
+     *
+     * @return The plugin manager.
+     */
+    public @NotNull PluginManager getPluginManager() {
+        return pluginManager;
+    }
+
+    /**
+     * Lets a player join. The player is online afterwards, no join event is fired.
+     *
+     * @param name     The name of the player.
+     * @param uniqueId The UUID of the player.
+     * @return The player.
+     */
+    public @NotNull StubPlayer addPlayer(@NotNull String name, @NotNull UUID uniqueId) {
+        StubPlayer player = new StubPlayer(this, name, uniqueId, world);
+        StubPlayer previous = players.put(uniqueId, player);
+        if (previous != null) {
+            onlinePlayers.remove(previous.getPlayer());
+            playersByName.remove(previous.getName().toLowerCase(Locale.ROOT), previous);
+        }
+        playersByName.put(name.toLowerCase(Locale.ROOT), player);
+        onlinePlayers.add(player.getPlayer());
+        return player;
+    }
+
+    /**
+     * Lets a player quit. No quit event is fired.
+     *
+     * @param player The player.
+     */
+    public void removePlayer(@NotNull StubPlayer player) {
+        if (players.remove(player.getUniqueId(), player)) {
+            onlinePlayers.remove(player.getPlayer());
+            playersByName.remove(player.getName().toLowerCase(Locale.ROOT), player);
+        }
+    }
+
+    /**
+     * Removes every player and registered listener and cancels all scheduled tasks.
+     * Used between benchmark trials, since the server itself lives as long as the JVM.
+     */
+    public void reset() {
+        players.clear();
+        playersByName.clear();
+        onlinePlayers.clear();
+        handlers.clear();
+        dispatch.clear();
+        commands.clear();
+        scheduler.cancelAll();
+    }
+
+    /**
+     * Creates the commands declared by a plugin, so {@code JavaPlugin#getCommand} finds them.
+     *
+     * @param plugin The plugin owning the commands.
+     */
+    public void registerCommands(@NotNull Plugin plugin) {
+        try {
+            Constructor<PluginCommand> constructor = PluginCommand.class.getDeclaredConstructor(String.class, Plugin.class);
+            constructor.setAccessible(true);
+            for (String name : plugin.getDescription().getCommands().keySet()) {
+                commands.put(name.toLowerCase(Locale.ROOT), constructor.newInstance(name, plugin));
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create plugin commands", e);
+        }
+    }
+
+    /**
+     * Fires an event to every listener registered for its type or a super type.
+     *
+     * @param event The event to fire.
+     */
+    public void callEvent(@NotNull Event event) {
+        MethodHandle[] targets = dispatch.computeIfAbsent(event.getClass(), this::resolveHandlers);
+        for (MethodHandle target : targets) {
+            try {
+                target.invoke(event);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Listener failed for " + event.getEventName(), e);
+            }
+        }
+    }
+
+    @Override
+    public @Nullable Object answer(@NotNull Object proxy, @NotNull Method method, @Nullable Object[] args) {
+        return switch (method.getName()) {
+            case "getLogger" -> logger;
+            case "getName" -> "StubServer";
+            case "getVersion" -> "stub";
+            case "getBukkitVersion" -> "1.21.1-R0.1-SNAPSHOT";
+            case "getItemFactory" -> itemFactory;
+            case "getScheduler" -> scheduler.scheduler();
+            case "getServicesManager" -> servicesManager;
+            case "getPluginManager" -> pluginManager;
+            case "getPluginCommand" -> commands.get(Stubs.<String>arg(args, 0).toLowerCase(Locale.ROOT));
+            case "getOnlinePlayers" -> Collections.unmodifiableCollection(onlinePlayers);
+            case "getPlayer", "getPlayerExact" -> findPlayer(args[0], method.getName().equals("getPlayerExact"));
+            case "getOfflinePlayer" -> args[0] instanceof UUID uniqueId ? offlinePlayer(uniqueId) : UNHANDLED;
+            case "isPrimaryThread" -> Thread.currentThread() == mainThread;
+            case "getWorlds" -> List.of(world);
+            case "getWorld" -> world;
+            case "getMaxPlayers" -> Integer.MAX_VALUE;
+            case "createInventory" -> StubInventory.chest(Stubs.<InventoryHolder>arg(args, 0),
+                    args[1] instanceof Integer size ? size : 27);
+            default -> UNHANDLED;
+        };
+    }
+
+    /**
+     * Returns the online player with the UUID, or a stand-in that only knows its UUID if the player is offline.
+     */
+    private @NotNull OfflinePlayer offlinePlayer(@NotNull UUID uniqueId) {
+        StubPlayer player = players.get(uniqueId);
+        if (player != null) {
+            return player.getPlayer();
+        }
+        return Stubs.create((proxy, method, args) -> switch (method.getName()) {
+            case "getUniqueId" -> uniqueId;
+            case "isOnline" -> false;
+            case "getPlayer" -> null;
+            default -> UNHANDLED;
+        }, OfflinePlayer.class);
+    }
+
+    private @Nullable Player findPlayer(@Nullable Object key, boolean exact) {
+        if (key instanceof UUID uniqueId) {
+            StubPlayer player = players.get(uniqueId);
+            return player == null ? null : player.getPlayer();
+        }
+        if (!(key instanceof String name)) {
+            return null;
+        }
+
+        // Like the real server: an exact match first, otherwise the first player whose name starts with the key.
+        StubPlayer found = playersByName.get(name.toLowerCase(Locale.ROOT));
+        if (found != null || exact) {
+            return found == null ? null : found.getPlayer();
+        }
+        for (StubPlayer player : players.values()) {
+            if (player.getName().regionMatches(true, 0, name, 0, name.length())) {
+                return player.getPlayer();
+            }
+        }
+        return null;
+    }
+
+    private @Nullable Object answerItemFactory(@NotNull Object proxy, @NotNull Method method, @Nullable Object[] args) {
+        return switch (method.getName()) {
+            case "getItemMeta" -> args[0] == Material.AIR ? null : StubItemMeta.create();
+            case "isApplicable" -> true;
+            case "asMetaFor", "ensureServerConversions" -> args[0];
+            case "updateMaterial" -> args[1];
+            case "equals" -> args.length == 2
+                    ? StubItemMeta.equal(Stubs.<ItemMeta>arg(args, 0), Stubs.<ItemMeta>arg(args, 1))
+                    : proxy == args[0];
+            default -> UNHANDLED;
+        };
+    }
+
+    private @Nullable Object answerPluginManager(@NotNull Object proxy, @NotNull Method method, @Nullable Object[] args) {
+        return switch (method.getName()) {
+            case "getPlugin" -> "Vault".equals(args[0]) ? vault : null;
+            case "isPluginEnabled" -> args[0] == vault || "Vault".equals(args[0]);
+            case "registerEvents" -> {
+                registerEvents(Stubs.arg(args, 0));
+                yield null;
+            }
+            case "callEvent" -> {
+                callEvent(Stubs.arg(args, 0));
+                yield null;
+            }
+            default -> UNHANDLED;
+        };
+    }
+
+    private @Nullable Object answerServicesManager(@NotNull Object proxy, @NotNull Method method, @Nullable Object[] args) {
+        if (method.getName().equals("getRegistration") && args[0] == Economy.class) {
+            return new RegisteredServiceProvider<>(Economy.class, economy.economy(), ServicePriority.Normal, vault);
+        }
+        if (method.getName().equals("load") && args[0] == Economy.class) {
+            return economy.economy();
+        }
+        return UNHANDLED;
+    }
+
+    private void registerEvents(@NotNull Listener listener) {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (Method method : listener.getClass().getMethods()) {
+            EventHandler annotation = method.getAnnotation(EventHandler.class);
+            if (annotation == null || method.getParameterCount() != 1
+                    || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                continue;
+            }
+            try {
+                MethodHandle handle = lookup.unreflect(method).bindTo(listener)
+                        .asType(MethodType.methodType(void.class, Event.class));
+                handlers.add(new RegisteredHandler(method.getParameterTypes()[0], annotation, handle));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access listener method " + method, e);
+            }
+        }
+        dispatch.clear();
+    }
+
+    private @NotNull MethodHandle[] resolveHandlers(@NotNull Class<?> eventType) {
+        List<RegisteredHandler> matching = new ArrayList<>();
+        for (RegisteredHandler handler : handlers) {
+            if (handler.eventType().isAssignableFrom(eventType)) {
+                matching.add(handler);
+            }
+        }
+        matching.sort(Comparator.comparingInt(handler -> handler.annotation().priority().getSlot()));
+        return matching.stream().map(RegisteredHandler::handle).toArray(MethodHandle[]::new);
+    }
+
+    private record RegisteredHandler(@NotNull Class<?> eventType, @NotNull EventHandler annotation,
+                                     @NotNull MethodHandle handle) {
+    }
+}
@@ -0,0 +1,174 @@
+package de.bukkitnews.trading.benchmark.stub;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Creates stand-in implementations of Bukkit interfaces with {@link Proxy}.
+ * <p>
+ * A stub answers the methods it knows through its {@link Answer}; every other method returns a neutral value:
+ * zero, false, an empty string or collection, or another stub for interface return types. This keeps the large
+ * Bukkit interfaces usable without implementing hundreds of methods by hand.
+ */
+public final class Stubs {
+
+    private Stubs() {
+    }
+
+    /**
+     * Answers a method call on a stub. Returns {@link #UNHANDLED} to fall back to the neutral value.
+     */
+    @FunctionalInterface
+    public interface Answer {
+
+        Object UNHANDLED = new Object();
+
+        @Nullable Object answer(@NotNull Object proxy, @NotNull Method method, @Nullable Object[] args) throws Throwable;
+    }
+
+    /**
+     * Creates a stub implementing the given interfaces.
+     *
+     * @param answer     The answer for the methods the stub implements.
+     * @param interfaces The interfaces to implement, the first one is the type of the stub.
+     * @param <T>        The type of the stub.
+     * @return The stub.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> @NotNull T create(@NotNull Answer answer, @NotNull Class<?>... interfaces) {
+        return (T) Proxy.newProxyInstance(Stubs.class.getClassLoader(), interfaces, new Handler(answer, interfaces[0]));
+    }
+
+    /**
+     * Returns the answer behind a stub created by this class.
+     *
+     * @param stub The stub.
+     * @return The answer of the stub.
+     * @throws IllegalArgumentException If the object is not a stub.
+     */
+    public static @NotNull Answer answerOf(@NotNull Object stub) {
+        if (Proxy.isProxyClass(stub.getClass()) && Proxy.getInvocationHandler(stub) instanceof Handler handler) {
+            return handler.answer;
+        }
+        throw new IllegalArgumentException("Not a stub: " + stub.getClass().getName());
+    }
+
+    /**
+     * Creates a stub that answers every method with its neutral value.
+     *
+     * @param type The interface to implement.
+     * @param <T>  The type of the stub.
+     * @return The stub.
+     */
+    public static <T> @NotNull T empty(@NotNull Class<T> type) {
+        return create((proxy, method, args) -> Answer.UNHANDLED, type);
+    }
+
+    /**
+     * Returns the neutral value for a return type.
+     *
+     * @param type The return type.
+     * @return The neutral value.
+     */
+    public static @Nullable Object neutral(@NotNull Class<?> type) {
+        if (type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class || type == short.class || type == byte.class) {
+            return type == int.class ? 0 : type == short.class ? (short) 0 : (byte) 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0D;
+        }
+        if (type == float.class) {
+            return 0F;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == String.class) {
+            return "";
+        }
+        if (type == Optional.class) {
+            return Optional.empty();
+        }
+        if (type == List.class || type == Collection.class) {
+            return Collections.emptyList();
+        }
+        if (type == Set.class) {
+            return Collections.emptySet();
+        }
+        if (type == Map.class) {
+            return Collections.emptyMap();
+        }
+        if (type.isArray()) {
+            return Array.newInstance(type.getComponentType(), 0);
+        }
+        if (type.isInterface()) {
+            return empty(type);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the argument at the given index, cast to the requested type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T arg(@Nullable Object[] args, int index) {
+        return (T) args[index];
+    }
+
+    private record Handler(@NotNull Answer answer, @NotNull Class<?> type) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = answer.answer(proxy, method, args);
+            if (result != Answer.UNHANDLED) {
+                return result;
+            }
+
+            int arguments = method.getParameterCount();
+            switch (method.getName()) {
+                case "equals":
+                    if (arguments == 1) {
+                        return proxy == args[0];
+                    }
+                    break;
+                case "hashCode":
+                    if (arguments == 0) {
+                        return System.identityHashCode(proxy);
+                    }
+                    break;
+                case "toString":
+                    if (arguments == 0) {
+                        return "Stub" + type.getSimpleName();
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            return neutral(method.getReturnType());
+        }
+    }
+}
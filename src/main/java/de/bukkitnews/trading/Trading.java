@@ -1,22 +1,39 @@
 package de.bukkitnews.trading;
 
+import de.bukkitnews.trading.concurrent.ShutdownCoordinator;
+import de.bukkitnews.trading.concurrent.TradeExecutors;
 import de.bukkitnews.trading.config.ConfigManager;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.config.ConfigWatcher;
+import de.bukkitnews.trading.metrics.MetricsEndpoint;
+import de.bukkitnews.trading.metrics.TradeMetrics;
+import de.bukkitnews.trading.profiler.TickProfiler;
 import de.bukkitnews.trading.trade.TradeManager;
+import de.bukkitnews.trading.trade.anomaly.AnomalyDetector;
+import de.bukkitnews.trading.trade.auction.AuctionHouse;
+import de.bukkitnews.trading.trade.command.PlayerNameTrie;
 import de.bukkitnews.trading.trade.command.TradeCommand;
 import de.bukkitnews.trading.trade.listener.CloseInventoryListener;
+import de.bukkitnews.trading.trade.listener.InventoryClickListener;
+import de.bukkitnews.trading.trade.listener.PlayerJoinListener;
 import de.bukkitnews.trading.trade.listener.PlayerQuitListener;
 import de.bukkitnews.trading.trade.logging.TradeLogger;
-import de.bukkitnews.trading.util.MessageUtil;
+import de.bukkitnews.trading.trade.mailbox.Mailbox;
+import de.bukkitnews.trading.trade.ratelimit.RateLimiter;
+import de.bukkitnews.trading.trade.recording.InputRecorder;
 import lombok.Getter;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashSet;
+import java.io.File;
+import java.io.IOException;
 import java.util.Optional;
-import java.util.Set;
+import java.util.logging.Level;
 
 /**
  * This is the main class for the "TradingSystem" plugin,
@@ -28,10 +45,33 @@ import java.util.Set;
 public class Trading extends JavaPlugin {
 
     private ConfigManager messagesConfig;
+    private TradeExecutors executors;
+    private TradeMetrics metrics;
+    private TickProfiler profiler;
     private TradeManager tradeManager;
     private TradeLogger tradeLogger;
+    private AnomalyDetector anomalyDetector;
+    private AuctionHouse auctionHouse;
+    private Mailbox mailbox;
+    private RateLimiter rateLimiter;
+    private PlayerNameTrie playerNames;
+    private InputRecorder inputRecorder;
+
+    private ConfigWatcher configWatcher;
+    private MetricsEndpoint metricsEndpoint;
+
+    public Trading() {
+        super();
+    }
 
-    private Set<String> blockedWorlds;
+    /**
+     * Creates the plugin outside of a running server, e.g. for the benchmarks.
+     * Bukkit rejects this constructor for plugins loaded by the server.
+     */
+    protected Trading(@NotNull JavaPluginLoader loader, @NotNull PluginDescriptionFile description,
+                      @NotNull File dataFolder, @NotNull File file) {
+        super(loader, description, dataFolder, file);
+    }
 
     @Override
     public void onLoad() {
@@ -42,33 +82,92 @@ public class Trading extends JavaPlugin {
             getServer().getPluginManager().disablePlugin(this);
         }
 
+        saveDefaultConfig();
         this.messagesConfig = new ConfigManager(this, "messages.yml");
-        MessageUtil.loadMessages(messagesConfig);
-
+        ConfigWatcher.reload(this);
     }
 
     @Override
     public void onEnable() {
+        this.executors = new TradeExecutors(this);
+        this.metrics = new TradeMetrics(this);
+        this.profiler = new TickProfiler(this);
+        profiler.schedule();
         this.tradeManager = new TradeManager(this);
         this.tradeLogger = new TradeLogger(this);
+        this.anomalyDetector = new AnomalyDetector(this, ConfigSnapshot.current().anomalyDetection());
+        anomalyDetector.start();
+        this.auctionHouse = new AuctionHouse(this);
+        auctionHouse.start();
+        this.mailbox = new Mailbox(this);
+        mailbox.start();
+        this.rateLimiter = new RateLimiter();
+        this.playerNames = new PlayerNameTrie();
+        Bukkit.getOnlinePlayers().forEach(player -> playerNames.add(player.getName()));
+        this.inputRecorder = new InputRecorder(this, ConfigSnapshot.current().recording());
+        inputRecorder.start();
 
         initListener(Bukkit.getPluginManager());
         initCommands();
-
-        saveDefaultConfig();
-        loadBlockedWorlds();
+        initConfigWatcher();
+        initMetricsEndpoint();
 
         getLogger().info("Successfully started 'TradingSystem'");
     }
 
+    /**
+     * Stops the plugin within the configured shutdown deadline. New trades are refused and open trades cancelled
+     * first, so no items stay behind in trade views. Timers are cancelled before the executors are closed, so no
+     * new background work is started, and the trade log is closed last, after the pending writes have completed,
+     * which flushes it and forces it to disk.
+     */
     @Override
     public void onDisable() {
+        ShutdownCoordinator shutdown = new ShutdownCoordinator(getLogger(),
+                ConfigSnapshot.current().shutdown().deadline());
+        shutdown.step("intake", () -> {
+            if (tradeManager != null) {
+                tradeManager.close();
+            }
+            if (configWatcher != null) {
+                configWatcher.close();
+            }
+            if (metricsEndpoint != null) {
+                metricsEndpoint.close();
+            }
+        });
+        if (tradeManager != null) {
+            shutdown.step("sessions", () -> getLogger().info("Cancelled " + tradeManager.cancelTrades()
+                    + " open trade(s) on shutdown."));
+        }
+        shutdown.step("timers", () -> Bukkit.getScheduler().cancelTasks(this));
+        if (inputRecorder != null) {
+            shutdown.stepWithin("recording", inputRecorder::close);
+        }
+        if (auctionHouse != null) {
+            shutdown.step("auction house", auctionHouse::close);
+        }
+        if (anomalyDetector != null) {
+            shutdown.stepWithin("anomaly detector", anomalyDetector::close);
+        }
+        if (executors != null) {
+            shutdown.stepWithin("executors", executors::close);
+        }
+        if (mailbox != null) {
+            shutdown.step("mailbox", mailbox::close);
+        }
+        if (tradeLogger != null) {
+            shutdown.stepWithin("trade log", tradeLogger::close);
+        }
+        shutdown.report();
         getLogger().info("Successfully stopped 'TradingSystem'");
     }
 
     private void initListener(@NotNull PluginManager pluginManager) {
+        pluginManager.registerEvents(new PlayerJoinListener(this), this);
         pluginManager.registerEvents(new PlayerQuitListener(this), this);
         pluginManager.registerEvents(new CloseInventoryListener(this), this);
+        pluginManager.registerEvents(new InventoryClickListener(this), this);
 
     }
 
@@ -79,11 +178,30 @@ public class Trading extends JavaPlugin {
         getCommand("trade").setTabCompleter(tradeCommand);
     }
 
-    private void loadBlockedWorlds() {
-        this.blockedWorlds = new HashSet<>(getConfig().getStringList("trade-blocked-worlds"));
+    private void initConfigWatcher() {
+        try {
+            this.configWatcher = new ConfigWatcher(this);
+            configWatcher.start();
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Could not watch the configuration, changes require a restart", e);
+        }
+    }
+
+    private void initMetricsEndpoint() {
+        ConfigSnapshot.Metrics settings = ConfigSnapshot.current().metrics();
+        if (!settings.httpEnabled()) {
+            return;
+        }
+
+        try {
+            this.metricsEndpoint = MetricsEndpoint.start(metrics, settings, executors.io());
+            getLogger().info("Serving metrics at http://" + settings.httpHost() + ":" + metricsEndpoint.getAddress().getPort() + "/metrics");
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Could not start the metrics endpoint", e);
+        }
     }
 
     public boolean isWorldBlocked(String worldName) {
-        return blockedWorlds.contains(worldName);
+        return ConfigSnapshot.current().blockedWorlds().contains(worldName);
     }
 }
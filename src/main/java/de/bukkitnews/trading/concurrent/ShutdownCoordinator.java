@@ -0,0 +1,93 @@
+package de.bukkitnews.trading.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the steps of a shutdown in order against a shared deadline and reports how long every step took.
+ * <p>
+ * Steps that wait for background work get the time left until the deadline instead of a fixed timeout, so a slow
+ * step shortens the wait of the following ones rather than delaying the server stop. Steps that do not wait always
+ * run, even past the deadline, as they return items or write data that would otherwise be lost. A failing step is
+ * logged and does not keep the following steps from running.
+ */
+public class ShutdownCoordinator {
+
+    private final @NotNull Logger logger;
+    private final @NotNull Duration timeout;
+    private final long startNanos;
+    private final long deadlineNanos;
+    private final @NotNull List<String> timings = new ArrayList<>();
+
+    /**
+     * Starts the shutdown clock.
+     *
+     * @param logger  The logger the steps and the report are logged to.
+     * @param timeout The time the whole shutdown may take.
+     */
+    public ShutdownCoordinator(@NotNull Logger logger, @NotNull Duration timeout) {
+        this.logger = logger;
+        this.timeout = timeout;
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = startNanos + timeout.toNanos();
+    }
+
+    /**
+     * Runs a step that does not wait for background work.
+     *
+     * @param name The name of the step in the report.
+     * @param step The step.
+     */
+    public void step(@NotNull String name, @NotNull Runnable step) {
+        stepWithin(name, remaining -> step.run());
+    }
+
+    /**
+     * Runs a step that waits for background work at most for the time left until the deadline.
+     *
+     * @param name The name of the step in the report.
+     * @param step The step, receiving the time left, zero once the deadline has passed.
+     */
+    public void stepWithin(@NotNull String name, @NotNull Consumer<Duration> step) {
+        long start = System.nanoTime();
+        try {
+            step.accept(remaining());
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Shutdown step '" + name + "' failed", e);
+        } finally {
+            timings.add(name + " " + formatMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Returns the time left until the deadline.
+     *
+     * @return The time left, zero once the deadline has passed.
+     */
+    public @NotNull Duration remaining() {
+        return Duration.ofNanos(Math.max(0L, deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Logs the total duration of the shutdown and of every step, as a warning if the deadline was missed.
+     */
+    public void report() {
+        long elapsed = System.nanoTime() - startNanos;
+        String message = "Shutdown took " + formatMillis(elapsed) + " (" + String.join(", ", timings) + ")";
+        if (elapsed > timeout.toNanos()) {
+            logger.warning(message + ", exceeding the deadline of " + timeout.toMillis() + " ms");
+        } else {
+            logger.info(message);
+        }
+    }
+
+    private static @NotNull String formatMillis(long nanos) {
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+}
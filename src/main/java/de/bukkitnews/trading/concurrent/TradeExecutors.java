@@ -0,0 +1,332 @@
+package de.bukkitnews.trading.concurrent;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.profiler.ProfilerSection;
+import de.bukkitnews.trading.profiler.TickProfiler;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * TradeExecutors owns every thread the plugin uses for background work, so no task ends up on the shared
+ * common pool other plugins use as well.
+ * <ul>
+ *     <li>I/O tasks (files, databases) run on virtual threads, one per task.</li>
+ *     <li>CPU tasks (sorting, aggregating) run on a small pool of platform threads.</li>
+ *     <li>Results that touch the Bukkit API are handed back to the main thread with {@link #sync(Runnable)},
+ *     where their time counts towards the plugin's tick budget.</li>
+ * </ul>
+ * All submitted tasks are tracked until they complete. {@link #close(Duration)} stops accepting work, waits for
+ * running tasks until the deadline and cancels whatever is still running afterwards.
+ * <p>
+ * Once the plugin is disabled, which is already the case while it shuts down, tasks can no longer be handed to the
+ * main thread. Dropped tasks are counted and logged on close. Handoffs that move escrow, i.e. items or coins that
+ * are neither with their owner nor stored, pass a fallback, which runs instead if the task cannot run on the main
+ * thread, including tasks that were scheduled but not run before the plugin was disabled.
+ */
+public class TradeExecutors {
+
+    private final @NotNull Trading plugin;
+    private final @NotNull ExecutorService io;
+    private final @NotNull ExecutorService cpu;
+    private final @NotNull Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    /**
+     * The fallbacks of handoffs that were scheduled on the main thread but have not run yet.
+     */
+    private final @NotNull Set<Runnable> pendingHandoffs = ConcurrentHashMap.newKeySet();
+    private final @NotNull LongAdder droppedTasks = new LongAdder();
+    private volatile boolean closed;
+
+    public TradeExecutors(@NotNull Trading plugin) {
+        this.plugin = plugin;
+        this.io = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("TradingSystem-IO-", 0).factory());
+        this.cpu = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)),
+                platformThreadFactory());
+    }
+
+    /**
+     * Runs a blocking I/O task on a virtual thread.
+     *
+     * @param task The task to run.
+     * @return A future completed when the task has finished.
+     */
+    public @NotNull CompletableFuture<Void> runIo(@NotNull Runnable task) {
+        return supplyIo(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a blocking I/O task producing a result on a virtual thread.
+     *
+     * @param task The task to run.
+     * @param <T>  The type of the result.
+     * @return A future completed with the result of the task.
+     */
+    public <T> @NotNull CompletableFuture<T> supplyIo(@NotNull Supplier<T> task) {
+        return submit(task, io);
+    }
+
+    /**
+     * Runs a CPU-bound task producing a result on the platform thread pool.
+     *
+     * @param task The task to run.
+     * @param <T>  The type of the result.
+     * @return A future completed with the result of the task.
+     */
+    public <T> @NotNull CompletableFuture<T> supplyCpu(@NotNull Supplier<T> task) {
+        return submit(task, cpu);
+    }
+
+    /**
+     * Returns the executor for blocking work that is driven by other APIs, e.g. request handlers of a server.
+     * Tasks submitted directly to it are not tracked by {@link #getPendingTasks()}.
+     *
+     * @return The I/O executor.
+     */
+    public @NotNull ExecutorService io() {
+        return io;
+    }
+
+    /**
+     * Returns the executor for CPU-bound continuations, e.g. for {@code thenApplyAsync}.
+     *
+     * @return The CPU executor.
+     */
+    public @NotNull ExecutorService cpu() {
+        return cpu;
+    }
+
+    /**
+     * Runs a task on the main thread. If called from the main thread, the task runs immediately.
+     * Once the plugin is disabled, the task is dropped and counted.
+     *
+     * @param task The task to run.
+     */
+    public void sync(@NotNull Runnable task) {
+        if (!trySync(task, TickProfiler.labelOf(task))) {
+            droppedTasks.increment();
+        }
+    }
+
+    /**
+     * Runs a task on the main thread, or the fallback if that is not possible. If called from the main thread, the
+     * task runs immediately. The fallback runs on the calling thread if the plugin is already disabled, and from
+     * {@link #close(Duration)} if the task was scheduled but the plugin was disabled before it ran. Exactly one of
+     * both runs.
+     *
+     * @param task     The task to run on the main thread.
+     * @param rejected The fallback, which must not use the Bukkit API.
+     */
+    public void sync(@NotNull Runnable task, @NotNull Runnable rejected) {
+        sync(task, rejected, TickProfiler.labelOf(task));
+    }
+
+    private void sync(@NotNull Runnable task, @NotNull Runnable rejected, @NotNull String label) {
+        AtomicBoolean claimed = new AtomicBoolean();
+        Runnable fallback = () -> {
+            if (claimed.compareAndSet(false, true)) {
+                rejected.run();
+            }
+        };
+        pendingHandoffs.add(fallback);
+        boolean scheduled = trySync(() -> {
+            pendingHandoffs.remove(fallback);
+            if (claimed.compareAndSet(false, true)) {
+                task.run();
+            }
+        }, label);
+        if (!scheduled) {
+            pendingHandoffs.remove(fallback);
+            fallback.run();
+        }
+    }
+
+    /**
+     * Runs a task on the main thread during the next tick, even if called from the main thread.
+     * Once the plugin is disabled, the task is dropped and counted.
+     *
+     * @param task The task to run.
+     */
+    public void nextTick(@NotNull Runnable task) {
+        if (!schedule(task, TickProfiler.labelOf(task))) {
+            droppedTasks.increment();
+        }
+    }
+
+    /**
+     * Hands the result of a future to the main thread. Failures are logged and not passed to the consumer.
+     *
+     * @param future   The future producing the result.
+     * @param consumer The consumer receiving the result on the main thread.
+     * @param <T>      The type of the result.
+     */
+    public <T> void thenSync(@NotNull CompletableFuture<T> future, @NotNull Consumer<T> consumer) {
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                plugin.getLogger().log(Level.WARNING, "Background task failed", throwable);
+                return;
+            }
+            if (!trySync(() -> consumer.accept(result), TickProfiler.labelOf(consumer))) {
+                droppedTasks.increment();
+            }
+        });
+    }
+
+    /**
+     * Hands the result of a future to the main thread, or to the fallback if that is not possible, see
+     * {@link #sync(Runnable, Runnable)}. Failures are logged and passed to neither.
+     *
+     * @param future   The future producing the result.
+     * @param consumer The consumer receiving the result on the main thread.
+     * @param rejected The fallback receiving the result if it cannot be handed to the main thread.
+     * @param <T>      The type of the result.
+     */
+    public <T> void thenSync(@NotNull CompletableFuture<T> future, @NotNull Consumer<T> consumer,
+                             @NotNull Consumer<T> rejected) {
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                plugin.getLogger().log(Level.WARNING, "Background task failed", throwable);
+                return;
+            }
+            sync(() -> consumer.accept(result), () -> rejected.accept(result), TickProfiler.labelOf(consumer));
+        });
+    }
+
+    /**
+     * Returns the number of submitted tasks that have not completed yet.
+     *
+     * @return The number of pending tasks.
+     */
+    public int getPendingTasks() {
+        return inFlight.size();
+    }
+
+    /**
+     * Stops accepting tasks and waits for running tasks until the deadline. Afterwards, the futures of tasks still
+     * running are cancelled and the executors are shut down with {@link ExecutorService#shutdownNow()}, which
+     * interrupts the threads running them. Cancelling a future does not interrupt its task by itself. The fallbacks
+     * of handoffs that did not reach the main thread run last, on the calling thread.
+     *
+     * @param timeout The maximum time to wait for running tasks.
+     * @return true if all tasks completed in time, false if some had to be cancelled.
+     */
+    public boolean close(@NotNull Duration timeout) {
+        closed = true;
+        io.shutdown();
+        cpu.shutdown();
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        boolean terminated = awaitTermination(io, deadline) & awaitTermination(cpu, deadline);
+
+        if (!terminated) {
+            inFlight.forEach(future -> future.cancel(true));
+            io.shutdownNow();
+            cpu.shutdownNow();
+            plugin.getLogger().warning("Cancelled " + inFlight.size() + " background task(s) on shutdown.");
+        }
+        inFlight.clear();
+
+        List<Runnable> fallbacks = List.copyOf(pendingHandoffs);
+        pendingHandoffs.clear();
+        for (Runnable fallback : fallbacks) {
+            try {
+                fallback.run();
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Fallback of a main thread task failed", e);
+            }
+        }
+        long dropped = droppedTasks.sumThenReset();
+        if (dropped > 0 || !fallbacks.isEmpty()) {
+            plugin.getLogger().warning("Dropped " + dropped + " main thread task(s) and ran " + fallbacks.size()
+                    + " fallback(s) for tasks that could not run on the main thread after the plugin was disabled.");
+        }
+        return terminated;
+    }
+
+    /**
+     * Runs a task right away on the main thread, or schedules it there.
+     *
+     * @return false if the plugin is disabled, so the task will not run.
+     */
+    private boolean trySync(@NotNull Runnable task, @NotNull String label) {
+        if (Bukkit.isPrimaryThread()) {
+            task.run();
+            return true;
+        }
+        return schedule(task, label);
+    }
+
+    /**
+     * Schedules a task for the next tick, labelled for the profiler with the task of the caller, since the task
+     * scheduled is often a wrapper written in this class.
+     *
+     * @return false if the plugin is disabled, so the task will not run.
+     */
+    private boolean schedule(@NotNull Runnable task, @NotNull String label) {
+        if (!plugin.isEnabled()) {
+            return false;
+        }
+        try {
+            Bukkit.getScheduler().runTask(plugin, plugin.getProfiler().wrap(ProfilerSection.SCHEDULED, label, task));
+            return true;
+        } catch (IllegalPluginAccessException e) {
+            // Disabled between the check and scheduling.
+            return false;
+        }
+    }
+
+    private <T> @NotNull CompletableFuture<T> submit(@NotNull Supplier<T> task, @NotNull ExecutorService executor) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("TradeExecutors are closed"));
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        inFlight.add(future);
+        future.whenComplete((result, throwable) -> inFlight.remove(future));
+        return future;
+    }
+
+    private boolean awaitTermination(@NotNull ExecutorService executor, long deadline) {
+        try {
+            return executor.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static @NotNull ThreadFactory platformThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "TradingSystem-CPU-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,424 @@
+package de.bukkitnews.trading.config;
+
+import de.bukkitnews.trading.trade.ratelimit.RateLimitAction;
+import de.bukkitnews.trading.util.MessageTemplate;
+import de.bukkitnews.trading.util.MessageUtil;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, typed view of the plugin configuration (config.yml and messages.yml).
+ * <p>
+ * Snapshots are built and validated off the main thread and published with a single volatile write,
+ * so hot paths read configuration through {@link #current()} without locks or YAML lookups.
+ *
+ * @param messages         The compiled message templates by key.
+ * @param blockedWorlds    The names of the worlds in which trading is not allowed.
+ * @param limits           The limits applied to trade offers.
+ * @param logging          The trade log settings.
+ * @param remoteLog        The settings of the shared remote trade log.
+ * @param rateLimits       The token buckets limiting how often players can perform actions.
+ * @param anomalyDetection The settings of the detector for suspicious trading patterns.
+ * @param auction          The auction house settings.
+ * @param mailbox          The settings of the mailbox for offers to offline players.
+ * @param recording        The settings of the recorder for trade inputs.
+ * @param metrics          The metrics endpoint settings.
+ * @param profiler         The main thread profiler settings.
+ * @param shutdown         The shutdown settings.
+ */
+public record ConfigSnapshot(@NotNull Map<String, MessageTemplate> messages,
+                             @NotNull Set<String> blockedWorlds,
+                             @NotNull Limits limits,
+                             @NotNull Logging logging,
+                             @NotNull RemoteLog remoteLog,
+                             @NotNull RateLimits rateLimits,
+                             @NotNull AnomalyDetection anomalyDetection,
+                             @NotNull Auction auction,
+                             @NotNull Mailbox mailbox,
+                             @NotNull Recording recording,
+                             @NotNull Metrics metrics,
+                             @NotNull Profiler profiler,
+                             @NotNull Shutdown shutdown) {
+
+    /**
+     * The snapshot in use before the configuration has been loaded for the first time.
+     */
+    public static final @NotNull ConfigSnapshot DEFAULT = new ConfigSnapshot(
+            Map.of(), Set.of(), new Limits(10_000_000, 100_000), new Logging(true, 90, 4096, 64, 4096),
+            new RemoteLog(false, "trading:trades", 100, 250, 4, 10_000, 30),
+            new RateLimits(new Bucket(3, 0.2), new Bucket(3, 0.5), new Bucket(2, 0.1), new Bucket(20, 10.0)),
+            new AnomalyDetection(true, 300, 4, 2_000_000L, 8, 60, 10_000, 50_000),
+            new Auction(true, 1000, 100, 10_000_000L, 60), new Mailbox(true, 72, 27),
+            new Recording(false, 65_536, 256), new Metrics(false, "127.0.0.1", 9464), new Profiler(true, 2.0, 30),
+            new Shutdown(10));
+
+    private static volatile @NotNull ConfigSnapshot current = DEFAULT;
+
+    public ConfigSnapshot {
+        messages = Map.copyOf(messages);
+        blockedWorlds = Set.copyOf(blockedWorlds);
+    }
+
+    /**
+     * Returns the currently published snapshot.
+     *
+     * @return The current configuration snapshot.
+     */
+    public static @NotNull ConfigSnapshot current() {
+        return current;
+    }
+
+    /**
+     * Publishes a snapshot, replacing the current one for all subsequent reads.
+     *
+     * @param snapshot The snapshot to publish.
+     */
+    public static void publish(@NotNull ConfigSnapshot snapshot) {
+        current = snapshot;
+    }
+
+    /**
+     * Parses and validates config.yml and messages.yml from the given folder into a new snapshot.
+     *
+     * @param dataFolder The plugin data folder containing the configuration files.
+     * @return The parsed snapshot.
+     * @throws IOException                   If a file could not be read.
+     * @throws InvalidConfigurationException If a file is not valid YAML or contains invalid values.
+     */
+    public static @NotNull ConfigSnapshot load(@NotNull File dataFolder) throws IOException, InvalidConfigurationException {
+        FileConfiguration config = loadFile(new File(dataFolder, "config.yml"));
+        FileConfiguration messages = loadFile(new File(dataFolder, "messages.yml"));
+
+        Limits limits = new Limits(
+                config.getInt("limits.max-coins", DEFAULT.limits().maxCoins()),
+                config.getInt("limits.max-value", DEFAULT.limits().maxValue()));
+        if (limits.maxCoins() <= 0 || limits.maxValue() <= 0) {
+            throw new InvalidConfigurationException("Trade limits must be positive: " + limits);
+        }
+
+        Logging logging = new Logging(
+                config.getBoolean("trade-logs.enabled", DEFAULT.logging().enabled()),
+                config.getInt("trade-logs.retention-days", DEFAULT.logging().retentionDays()),
+                config.getInt("trade-logs.segment-size-kb", DEFAULT.logging().segmentSizeKb()),
+                config.getInt("trade-logs.write-buffer-kb", DEFAULT.logging().writeBufferKb()),
+                config.getInt("trade-logs.hot-cache-records", DEFAULT.logging().hotCacheRecords()));
+        if (logging.retentionDays() <= 0 || logging.segmentSizeKb() <= 0 || logging.writeBufferKb() <= 0
+                || logging.hotCacheRecords() < 0) {
+            throw new InvalidConfigurationException("Trade log retention and sizes must be positive: " + logging);
+        }
+
+        RemoteLog remoteLog = new RemoteLog(
+                config.getBoolean("trade-logs.remote.enabled", DEFAULT.remoteLog().enabled()),
+                config.getString("trade-logs.remote.stream", DEFAULT.remoteLog().stream()),
+                config.getInt("trade-logs.remote.batch-size", DEFAULT.remoteLog().batchSize()),
+                config.getInt("trade-logs.remote.flush-interval-ms", DEFAULT.remoteLog().flushIntervalMillis()),
+                config.getInt("trade-logs.remote.max-in-flight", DEFAULT.remoteLog().maxInFlight()),
+                config.getInt("trade-logs.remote.queue-capacity", DEFAULT.remoteLog().queueCapacity()),
+                config.getInt("trade-logs.remote.retry-interval-seconds", DEFAULT.remoteLog().retryIntervalSeconds()));
+        if (remoteLog.batchSize() <= 0 || remoteLog.flushIntervalMillis() <= 0 || remoteLog.maxInFlight() <= 0
+                || remoteLog.queueCapacity() <= 0 || remoteLog.retryIntervalSeconds() <= 0) {
+            throw new InvalidConfigurationException("Remote trade log settings must be positive: " + remoteLog);
+        }
+
+        RateLimits defaults = DEFAULT.rateLimits();
+        RateLimits rateLimits = new RateLimits(
+                loadBucket(config, RateLimitAction.INVITE, defaults),
+                loadBucket(config, RateLimitAction.ACCEPT, defaults),
+                loadBucket(config, RateLimitAction.LOGS, defaults),
+                loadBucket(config, RateLimitAction.CLICK, defaults));
+
+        AnomalyDetection anomalyDetection = new AnomalyDetection(
+                config.getBoolean("anomaly-detection.enabled", DEFAULT.anomalyDetection().enabled()),
+                config.getInt("anomaly-detection.window-seconds", DEFAULT.anomalyDetection().windowSeconds()),
+                config.getInt("anomaly-detection.max-cycle-length", DEFAULT.anomalyDetection().maxCycleLength()),
+                config.getLong("anomaly-detection.coin-velocity-threshold", DEFAULT.anomalyDetection().coinVelocityThreshold()),
+                config.getInt("anomaly-detection.repeated-item-threshold", DEFAULT.anomalyDetection().repeatedItemThreshold()),
+                config.getInt("anomaly-detection.alert-cooldown-seconds", DEFAULT.anomalyDetection().alertCooldownSeconds()),
+                config.getInt("anomaly-detection.queue-capacity", DEFAULT.anomalyDetection().queueCapacity()),
+                config.getInt("anomaly-detection.max-transfers", DEFAULT.anomalyDetection().maxTransfers()));
+        if (anomalyDetection.windowSeconds() <= 0 || anomalyDetection.maxCycleLength() < 2
+                || anomalyDetection.coinVelocityThreshold() <= 0 || anomalyDetection.repeatedItemThreshold() <= 0
+                || anomalyDetection.alertCooldownSeconds() < 0 || anomalyDetection.queueCapacity() <= 0
+                || anomalyDetection.maxTransfers() <= 0) {
+            throw new InvalidConfigurationException("Anomaly detection thresholds and sizes must be positive and "
+                    + "cycles at least 2 trades long: " + anomalyDetection);
+        }
+
+        Auction auction = new Auction(
+                config.getBoolean("auction-house.enabled", DEFAULT.auction().enabled()),
+                config.getInt("auction-house.settle-batch-size", DEFAULT.auction().settleBatchSize()),
+                config.getInt("auction-house.max-orders-per-player", DEFAULT.auction().maxOrdersPerPlayer()),
+                config.getLong("auction-house.max-price", DEFAULT.auction().maxPrice()),
+                config.getInt("auction-house.save-interval-seconds", DEFAULT.auction().saveIntervalSeconds()));
+        if (auction.settleBatchSize() <= 0 || auction.maxOrdersPerPlayer() <= 0 || auction.maxPrice() <= 0
+                || auction.maxPrice() > Auction.MAX_PRICE_LIMIT || auction.saveIntervalSeconds() <= 0) {
+            throw new InvalidConfigurationException("Auction house sizes must be positive and the maximum price at most "
+                    + Auction.MAX_PRICE_LIMIT + ": " + auction);
+        }
+
+        Mailbox mailbox = new Mailbox(
+                config.getBoolean("mailbox.enabled", DEFAULT.mailbox().enabled()),
+                config.getInt("mailbox.expiry-hours", DEFAULT.mailbox().expiryHours()),
+                config.getInt("mailbox.max-offers-per-recipient", DEFAULT.mailbox().maxOffersPerRecipient()));
+        if (mailbox.expiryHours() <= 0 || mailbox.maxOffersPerRecipient() <= 0) {
+            throw new InvalidConfigurationException("Mailbox expiry and size must be positive: " + mailbox);
+        }
+
+        Recording recording = new Recording(
+                config.getBoolean("recording.enabled", DEFAULT.recording().enabled()),
+                config.getInt("recording.queue-capacity", DEFAULT.recording().queueCapacity()),
+                config.getInt("recording.max-file-mb", DEFAULT.recording().maxFileMb()));
+        if (recording.queueCapacity() <= 0 || recording.maxFileMb() <= 0 || recording.maxFileMb() >= 2048) {
+            throw new InvalidConfigurationException("Recording sizes must be positive and files smaller than 2048 MB: "
+                    + recording);
+        }
+
+        Metrics metrics = new Metrics(
+                config.getBoolean("metrics.http.enabled", DEFAULT.metrics().httpEnabled()),
+                config.getString("metrics.http.host", DEFAULT.metrics().httpHost()),
+                config.getInt("metrics.http.port", DEFAULT.metrics().httpPort()));
+        if (metrics.httpPort() <= 0 || metrics.httpPort() > 65535) {
+            throw new InvalidConfigurationException("Metrics port must be between 1 and 65535: " + metrics);
+        }
+
+        Profiler profiler = new Profiler(
+                config.getBoolean("profiler.enabled", DEFAULT.profiler().enabled()),
+                config.getDouble("profiler.tick-budget-ms", DEFAULT.profiler().tickBudgetMillis()),
+                config.getInt("profiler.warn-interval-seconds", DEFAULT.profiler().warnIntervalSeconds()));
+        if (profiler.tickBudgetMillis() <= 0 || profiler.warnIntervalSeconds() < 0) {
+            throw new InvalidConfigurationException("Profiler budget must be positive and interval not negative: " + profiler);
+        }
+
+        Shutdown shutdown = new Shutdown(
+                config.getInt("shutdown.deadline-seconds", DEFAULT.shutdown().deadlineSeconds()));
+        if (shutdown.deadlineSeconds() <= 0) {
+            throw new InvalidConfigurationException("Shutdown deadline must be positive: " + shutdown);
+        }
+
+        String worldsKey = config.contains("blocked_worlds") ? "blocked_worlds" : "trade-blocked-worlds";
+
+        return new ConfigSnapshot(
+                MessageUtil.compileMessages(messages),
+                Set.copyOf(config.getStringList(worldsKey)),
+                limits,
+                logging,
+                remoteLog,
+                rateLimits,
+                anomalyDetection,
+                auction,
+                mailbox,
+                recording,
+                metrics,
+                profiler,
+                shutdown);
+    }
+
+    private static @NotNull Bucket loadBucket(@NotNull FileConfiguration config, @NotNull RateLimitAction action,
+                                              @NotNull RateLimits defaults) throws InvalidConfigurationException {
+        String path = "rate-limits." + action.getConfigKey();
+        Bucket fallback = defaults.get(action);
+        Bucket bucket = new Bucket(
+                config.getInt(path + ".capacity", fallback.capacity()),
+                config.getDouble(path + ".refill-per-second", fallback.refillPerSecond()));
+
+        if (bucket.capacity() <= 0 || bucket.refillPerSecond() <= 0) {
+            throw new InvalidConfigurationException("Rate limit '" + action.getConfigKey() + "' must be positive: " + bucket);
+        }
+        return bucket;
+    }
+
+    private static @NotNull FileConfiguration loadFile(@NotNull File file) throws IOException, InvalidConfigurationException {
+        YamlConfiguration configuration = new YamlConfiguration();
+        if (file.exists()) {
+            configuration.load(file);
+        }
+        return configuration;
+    }
+
+    /**
+     * The limits applied to trade offers.
+     *
+     * @param maxCoins The maximum amount of coins a player can offer.
+     * @param maxValue The maximum step by which the offered coins can be changed per click.
+     */
+    public record Limits(int maxCoins, int maxValue) {
+    }
+
+    /**
+     * The trade log settings. The sizes are applied when the trade log is opened, so changes to them only apply
+     * after a restart.
+     *
+     * @param enabled         Whether trades are logged.
+     * @param retentionDays   The number of days a trade log is kept.
+     * @param segmentSizeKb   The size of a trade log segment file, after which a new one is started.
+     * @param writeBufferKb   The size of the buffer collecting trades before they are written to the segment file.
+     * @param hotCacheRecords The maximum number of recent trades kept in memory, 0 to disable the cache.
+     */
+    public record Logging(boolean enabled, int retentionDays, int segmentSizeKb, int writeBufferKb,
+                          int hotCacheRecords) {
+
+        /**
+         * Returns the retention period in milliseconds.
+         *
+         * @return The retention period in milliseconds.
+         */
+        public long retentionMillis() {
+            return retentionDays * 24L * 60 * 60 * 1000;
+        }
+    }
+
+    /**
+     * The settings of the remote trade log, which collects the trades of all servers in a shared stream store.
+     * The remote log is set up when the plugin is enabled, so changes only apply after a restart.
+     *
+     * @param enabled              Whether trades are sent to the remote log.
+     * @param stream               The name of the stream the trades are appended to.
+     * @param batchSize            The maximum number of trades sent at once.
+     * @param flushIntervalMillis  The maximum time a trade waits for a batch to fill up.
+     * @param maxInFlight          The maximum number of batches sent without waiting for confirmation.
+     * @param queueCapacity        The maximum number of queued trades before further trades are spooled to disk.
+     * @param retryIntervalSeconds The time between attempts to reach the remote log while it is unavailable.
+     */
+    public record RemoteLog(boolean enabled, @NotNull String stream, int batchSize, int flushIntervalMillis,
+                            int maxInFlight, int queueCapacity, int retryIntervalSeconds) {
+    }
+
+    /**
+     * The token buckets limiting how often players can perform actions.
+     *
+     * @param invite The bucket for sending trade invitations.
+     * @param accept The bucket for accepting trade invitations.
+     * @param logs   The bucket for querying trade logs.
+     * @param click  The bucket for clicks in the trade inventory.
+     */
+    public record RateLimits(@NotNull Bucket invite, @NotNull Bucket accept, @NotNull Bucket logs, @NotNull Bucket click) {
+
+        /**
+         * Returns the bucket limiting the given action.
+         *
+         * @param action The rate limited action.
+         * @return The bucket for the action.
+         */
+        public @NotNull Bucket get(@NotNull RateLimitAction action) {
+            return switch (action) {
+                case INVITE -> invite;
+                case ACCEPT -> accept;
+                case LOGS -> logs;
+                case CLICK -> click;
+            };
+        }
+    }
+
+    /**
+     * The settings of the detector for suspicious trading patterns. The window and the sizes are applied when the
+     * detector is created, so changes to them only apply after a restart.
+     *
+     * @param enabled               Whether settled trades are analysed.
+     * @param windowSeconds         The length of the sliding window the patterns are looked for in.
+     * @param maxCycleLength        The maximum number of trades in which an item can return to a player to count as a loop.
+     * @param coinVelocityThreshold The coins a player may move within the window before an alert is raised.
+     * @param repeatedItemThreshold The number of times an identical item may be traded within the window.
+     * @param alertCooldownSeconds  The minimum time between two alerts for the same pattern.
+     * @param queueCapacity         The maximum number of settled trades waiting to be analysed.
+     * @param maxTransfers          The maximum number of item transfers and tracked keys kept in memory.
+     */
+    public record AnomalyDetection(boolean enabled, int windowSeconds, int maxCycleLength, long coinVelocityThreshold,
+                                   int repeatedItemThreshold, int alertCooldownSeconds, int queueCapacity,
+                                   int maxTransfers) {
+    }
+
+    /**
+     * The auction house settings. The save interval is applied when the auction house is started, so changes to it
+     * only apply after a restart.
+     *
+     * @param enabled             Whether players can place new orders. Open orders are still settled and cancellable.
+     * @param settleBatchSize     The maximum number of matched orders settled per tick.
+     * @param maxOrdersPerPlayer  The maximum number of open orders per player.
+     * @param maxPrice            The maximum price per item in coins.
+     * @param saveIntervalSeconds The time between two attempts to save the open orders after a save failed.
+     */
+    public record Auction(boolean enabled, int settleBatchSize, int maxOrdersPerPlayer, long maxPrice,
+                          int saveIntervalSeconds) {
+
+        /**
+         * The highest configurable price per item, low enough that the price of any quantity fits into a long.
+         */
+        public static final long MAX_PRICE_LIMIT = 1_000_000_000L;
+    }
+
+    /**
+     * The settings of the mailbox, through which players send trade offers to offline players.
+     *
+     * @param enabled               Whether offers can be sent. Open offers can still be accepted and declined.
+     * @param expiryHours           The time after which an offer that was not accepted is returned to its sender.
+     * @param maxOffersPerRecipient The maximum number of open offers a player can receive.
+     */
+    public record Mailbox(boolean enabled, int expiryHours, int maxOffersPerRecipient) {
+    }
+
+    /**
+     * The settings of the recorder for trade inputs. The recorder is started when the plugin is enabled, so changes
+     * only apply after a restart.
+     *
+     * @param enabled       Whether trade inputs are recorded.
+     * @param queueCapacity The maximum number of inputs waiting to be written before further inputs are dropped.
+     * @param maxFileMb     The size of the recording after which recording stops.
+     */
+    public record Recording(boolean enabled, int queueCapacity, int maxFileMb) {
+    }
+
+    /**
+     * The settings of the Prometheus metrics endpoint. The endpoint is started when the plugin is enabled,
+     * so changes only apply after a restart.
+     *
+     * @param httpEnabled Whether the endpoint is started.
+     * @param httpHost    The address the endpoint binds to.
+     * @param httpPort    The port the endpoint listens on.
+     */
+    public record Metrics(boolean httpEnabled, @NotNull String httpHost, int httpPort) {
+    }
+
+    /**
+     * The settings of the main thread profiler.
+     *
+     * @param enabled             Whether sections are measured.
+     * @param tickBudgetMillis    The main thread time per tick above which a warning is logged.
+     * @param warnIntervalSeconds The minimum time between two warnings.
+     */
+    public record Profiler(boolean enabled, double tickBudgetMillis, int warnIntervalSeconds) {
+    }
+
+    /**
+     * The shutdown settings.
+     *
+     * @param deadlineSeconds The time the plugin may take to stop, after which background work is abandoned.
+     */
+    public record Shutdown(int deadlineSeconds) {
+
+        /**
+         * Returns the deadline as a duration.
+         *
+         * @return The deadline.
+         */
+        public @NotNull Duration deadline() {
+            return Duration.ofSeconds(deadlineSeconds);
+        }
+    }
+
+    /**
+     * A token bucket configuration.
+     *
+     * @param capacity        The maximum number of tokens, i.e. the allowed burst.
+     * @param refillPerSecond The number of tokens added per second.
+     */
+    public record Bucket(int capacity, double refillPerSecond) {
+    }
+}
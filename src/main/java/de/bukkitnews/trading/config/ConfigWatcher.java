@@ -0,0 +1,120 @@
+package de.bukkitnews.trading.config;
+
+import de.bukkitnews.trading.Trading;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * The ConfigWatcher watches the plugin data folder for changes to config.yml and messages.yml.
+ * Changed files are parsed and validated on the watcher thread and the resulting {@link ConfigSnapshot}
+ * is published atomically. An invalid file is reported and the previous snapshot stays in use.
+ */
+public class ConfigWatcher implements Runnable, AutoCloseable {
+
+    private static final @NotNull Set<String> WATCHED_FILES = Set.of("config.yml", "messages.yml");
+    private static final long DEBOUNCE_MILLIS = 250L;
+
+    private final @NotNull Trading plugin;
+    private final @NotNull WatchService watchService;
+    private final @NotNull Thread thread;
+
+    public ConfigWatcher(@NotNull Trading plugin) throws IOException {
+        this.plugin = plugin;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        plugin.getDataFolder().toPath().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.thread = new Thread(this, "TradingSystem-ConfigWatcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching the data folder on a dedicated daemon thread.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = drain(key);
+
+                // Editors often write a file in several steps, so wait until the folder is quiet.
+                WatchKey next;
+                while ((next = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(next);
+                }
+
+                if (changed) {
+                    reload(plugin);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // The watcher has been closed on disable.
+        }
+    }
+
+    /**
+     * Consumes the events of a watch key and resets it.
+     *
+     * @param key The signalled watch key.
+     * @return true if one of the watched files was changed, false otherwise.
+     */
+    private boolean drain(@NotNull WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path path && WATCHED_FILES.contains(path.getFileName().toString())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Parses the configuration files and publishes the result. If the files are invalid,
+     * the error is logged and the current snapshot is kept.
+     *
+     * @param plugin The plugin whose data folder contains the configuration files.
+     * @return true if a new snapshot was published, false otherwise.
+     */
+    public static boolean reload(@NotNull Trading plugin) {
+        try {
+            ConfigSnapshot.publish(ConfigSnapshot.load(plugin.getDataFolder()));
+            plugin.getLogger().info("Configuration loaded.");
+            return true;
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Invalid configuration, keeping the previous settings: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stops watching the data folder.
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not close the configuration watcher", e);
+        }
+        thread.interrupt();
+    }
+}
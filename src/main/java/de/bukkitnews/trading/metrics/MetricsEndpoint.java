@@ -0,0 +1,83 @@
+package de.bukkitnews.trading.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+
+/**
+ * Serves the {@link TradeMetrics} at {@code /metrics} in the Prometheus text format, using the HTTP server built
+ * into the JDK. The endpoint is disabled by default and binds to the loopback address unless configured otherwise,
+ * since the metrics are not meant to be public.
+ */
+public class MetricsEndpoint implements AutoCloseable {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final @NotNull HttpServer server;
+
+    private MetricsEndpoint(@NotNull HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Starts the endpoint.
+     *
+     * @param metrics  The metrics to serve.
+     * @param settings The address to bind to.
+     * @param executor The executor handling requests.
+     * @return The running endpoint.
+     * @throws IOException If the address could not be bound.
+     */
+    public static @NotNull MetricsEndpoint start(@NotNull TradeMetrics metrics, @NotNull ConfigSnapshot.Metrics settings,
+                                                 @NotNull Executor executor) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(settings.httpHost(), settings.httpPort()), 0);
+        server.createContext("/metrics", exchange -> handle(exchange, metrics));
+        server.setExecutor(executor);
+        server.start();
+        return new MetricsEndpoint(server);
+    }
+
+    private static void handle(@NotNull HttpExchange exchange, @NotNull TradeMetrics metrics) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Returns the address the endpoint is bound to.
+     *
+     * @return The bound address.
+     */
+    public @NotNull InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops the endpoint, letting requests in progress finish for up to a second.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+    }
+}
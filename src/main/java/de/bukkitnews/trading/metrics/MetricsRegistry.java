@@ -0,0 +1,169 @@
+package de.bukkitnews.trading.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds named metrics and renders them in the Prometheus text exposition format (version 0.0.4).
+ * <p>
+ * Metrics are registered once and then only updated, so the registry itself is read far more often than it is
+ * written and keeps its families in a copy-on-write list. Counters and gauges are read through a
+ * {@link LongSupplier}, which lets existing counters such as the rate limiter's be exposed without copying.
+ * Latency histograms are exposed as summaries in seconds.
+ */
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1.0e9;
+
+    private final @NotNull List<Family> families = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a new counter.
+     *
+     * @param name The metric name, ending in {@code _total}.
+     * @param help The description shown by Prometheus.
+     * @return The counter to increment.
+     */
+    public @NotNull LongAdder counter(@NotNull String name, @NotNull String help) {
+        return counter(name, help, "");
+    }
+
+    /**
+     * Registers a new counter with labels. Counters sharing a name form one family.
+     *
+     * @param name   The metric name, ending in {@code _total}.
+     * @param help   The description shown by Prometheus.
+     * @param labels The labels, e.g. {@code reason="space"}.
+     * @return The counter to increment.
+     */
+    public @NotNull LongAdder counter(@NotNull String name, @NotNull String help, @NotNull String labels) {
+        LongAdder counter = new LongAdder();
+        counter(name, help, labels, counter::sum);
+        return counter;
+    }
+
+    /**
+     * Registers a counter whose value is kept elsewhere.
+     *
+     * @param name   The metric name, ending in {@code _total}.
+     * @param help   The description shown by Prometheus.
+     * @param labels The labels, empty for none.
+     * @param value  The supplier of the current value, called from the exporting thread.
+     */
+    public void counter(@NotNull String name, @NotNull String help, @NotNull String labels, @NotNull LongSupplier value) {
+        family(name, help, Type.COUNTER).samples().add(new Sample(labels, value, null));
+    }
+
+    /**
+     * Registers a gauge.
+     *
+     * @param name  The metric name.
+     * @param help  The description shown by Prometheus.
+     * @param value The supplier of the current value, called from the exporting thread.
+     */
+    public void gauge(@NotNull String name, @NotNull String help, @NotNull LongSupplier value) {
+        family(name, help, Type.GAUGE).samples().add(new Sample("", value, null));
+    }
+
+    /**
+     * Registers a new latency histogram.
+     *
+     * @param name The metric name, ending in {@code _seconds}.
+     * @param help The description shown by Prometheus.
+     * @return The histogram to record latencies in.
+     */
+    public @NotNull LatencyHistogram histogram(@NotNull String name, @NotNull String help) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        family(name, help, Type.SUMMARY).samples().add(new Sample("", null, histogram));
+        return histogram;
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text format.
+     *
+     * @return The exposition text.
+     */
+    public @NotNull String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4_096);
+        for (Family family : families) {
+            out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(family.name()).append(' ').append(family.type().getName()).append('\n');
+
+            for (Sample sample : family.samples()) {
+                if (sample.histogram() == null) {
+                    appendSample(out, family.name(), sample.labels(), Long.toString(sample.value().getAsLong()));
+                    continue;
+                }
+
+                LatencyHistogram histogram = sample.histogram();
+                for (double quantile : QUANTILES) {
+                    String labels = joinLabels(sample.labels(), "quantile=\"" + quantile + "\"");
+                    appendSample(out, family.name(), labels, seconds(histogram.percentile(quantile)));
+                }
+                appendSample(out, family.name() + "_sum", sample.labels(), seconds(histogram.getSumNanos()));
+                appendSample(out, family.name() + "_count", sample.labels(), Long.toString(histogram.getCount()));
+            }
+        }
+        return out.toString();
+    }
+
+    private @NotNull Family family(@NotNull String name, @NotNull String help, @NotNull Type type) {
+        for (Family family : families) {
+            if (family.name().equals(name)) {
+                if (family.type() != type) {
+                    throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type());
+                }
+                return family;
+            }
+        }
+        Family family = new Family(name, help, type, new CopyOnWriteArrayList<>());
+        families.add(family);
+        return family;
+    }
+
+    private static void appendSample(@NotNull StringBuilder out, @NotNull String name, @NotNull String labels,
+                                     @NotNull String value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static @NotNull String joinLabels(@NotNull String labels, @NotNull String label) {
+        return labels.isEmpty() ? label : labels + "," + label;
+    }
+
+    private static @NotNull String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / NANOS_PER_SECOND);
+    }
+
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        SUMMARY("summary");
+
+        private final @NotNull String name;
+
+        Type(@NotNull String name) {
+            this.name = name;
+        }
+
+        @NotNull String getName() {
+            return name;
+        }
+    }
+
+    private record Family(@NotNull String name, @NotNull String help, @NotNull Type type,
+                          @NotNull List<Sample> samples) {
+    }
+
+    private record Sample(@NotNull String labels, LongSupplier value, LatencyHistogram histogram) {
+    }
+}
@@ -0,0 +1,70 @@
+package de.bukkitnews.trading.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events per second in a ring of one-second slots, to report a rate over the last minute.
+ * <p>
+ * A slot is reused once its second has passed a full ring ago; the thread that first marks an event in the
+ * new second resets it with a compare-and-set. An event marked concurrently with that reset may be lost,
+ * which only skews the rate by a single event at second boundaries.
+ */
+public final class RateMeter {
+
+    private static final int SLOTS = 64;
+    private static final int MASK = SLOTS - 1;
+
+    /**
+     * The longest window {@link #perSecond(int)} accepts, the current second is never part of it.
+     */
+    public static final int MAX_WINDOW_SECONDS = SLOTS - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray seconds = new AtomicLongArray(SLOTS);
+
+    public RateMeter() {
+        for (int i = 0; i < SLOTS; i++) {
+            seconds.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Marks one event in the current second.
+     */
+    public void mark() {
+        long second = currentSecond();
+        int slot = (int) (second & MASK);
+        long stamp = seconds.get(slot);
+        if (stamp != second && seconds.compareAndSet(slot, stamp, second)) {
+            counts.set(slot, 0L);
+        }
+        counts.incrementAndGet(slot);
+    }
+
+    /**
+     * Returns the average number of events per second over the last completed seconds.
+     *
+     * @param windowSeconds The number of seconds to average over, at most {@link #MAX_WINDOW_SECONDS}.
+     * @return The events per second.
+     */
+    public double perSecond(int windowSeconds) {
+        if (windowSeconds <= 0 || windowSeconds > MAX_WINDOW_SECONDS) {
+            throw new IllegalArgumentException("Window must be between 1 and " + MAX_WINDOW_SECONDS + " seconds");
+        }
+
+        long now = currentSecond();
+        long events = 0L;
+        for (long second = now - windowSeconds; second < now; second++) {
+            int slot = (int) (second & MASK);
+            if (seconds.get(slot) == second) {
+                events += counts.get(slot);
+            }
+        }
+        return (double) events / windowSeconds;
+    }
+
+    private static long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    }
+}
@@ -0,0 +1,255 @@
+package de.bukkitnews.trading.metrics;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.profiler.TickProfiler;
+import de.bukkitnews.trading.trade.anomaly.Anomaly;
+import de.bukkitnews.trading.trade.logging.store.SegmentPruning;
+import de.bukkitnews.trading.trade.logging.store.StoreFootprint;
+import de.bukkitnews.trading.trade.ratelimit.RateLimitAction;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * The metrics of the trading system. Every update is a lock-free increment, so they are cheap enough to be
+ * recorded on the main thread for every click. Values that other components already track, such as open trades
+ * or rejected requests, are read from them when the metrics are exported instead of being counted twice.
+ * <p>
+ * The metrics are shown by {@code /trade stats} and, if enabled, served in the Prometheus text format by the
+ * {@link MetricsEndpoint}.
+ */
+@Getter
+public class TradeMetrics {
+
+    private static final int CLICK_RATE_WINDOW_SECONDS = 60;
+
+    private final @NotNull MetricsRegistry registry = new MetricsRegistry();
+
+    private final @NotNull LongAdder invites;
+    private final @NotNull LongAdder acceptedInvites;
+    private final @NotNull LongAdder clicks;
+    private final @NotNull RateMeter clickRate = new RateMeter();
+    private final @NotNull LongAdder settlements;
+    private final @NotNull Map<SettlementFailure, LongAdder> settlementFailures = new EnumMap<>(SettlementFailure.class);
+    private final @NotNull LatencyHistogram settlementLatency;
+    private final @NotNull LatencyHistogram logWriteLatency;
+    private final @NotNull LatencyHistogram historyQueryLatency;
+    private final @NotNull LatencyHistogram itemSearchLatency;
+    private final @NotNull LatencyHistogram tickTime;
+    private final @NotNull LongAdder tickBudgetExceeded;
+    private final @NotNull LongAdder remoteAppended;
+    private final @NotNull LongAdder remoteSpooled;
+    private final @NotNull LatencyHistogram remoteAppendLatency;
+    private final @NotNull Map<Anomaly.Type, LongAdder> anomalies = new EnumMap<>(Anomaly.Type.class);
+    private final @NotNull LongAdder anomalyEventsDropped;
+    private final @NotNull LongAdder auctionOrders;
+    private final @NotNull LongAdder auctionFills;
+    private final @NotNull LongAdder mailboxOffersSent;
+    private final @NotNull LongAdder mailboxOffersAccepted;
+    private final @NotNull LongAdder mailboxOffersExpired;
+    private final @NotNull LongAdder recordedInputs;
+    private final @NotNull LongAdder recordedInputsDropped;
+
+    public TradeMetrics(@NotNull Trading plugin) {
+        registry.gauge("trading_active_sessions", "Trades currently open.",
+                () -> plugin.getTradeManager() == null ? 0 : plugin.getTradeManager().getActiveTrades());
+        this.invites = registry.counter("trading_invites_total", "Trade invitations sent.");
+        this.acceptedInvites = registry.counter("trading_invites_accepted_total", "Trade invitations accepted.");
+        this.clicks = registry.counter("trading_clicks_total", "Clicks in trade inventories.");
+        this.settlements = registry.counter("trading_settlements_total", "Trades completed.");
+        for (SettlementFailure failure : SettlementFailure.values()) {
+            settlementFailures.put(failure, registry.counter("trading_settlement_failures_total",
+                    "Settlements aborted, by reason.", "reason=\"" + failure.getLabel() + "\""));
+        }
+        this.settlementLatency = registry.histogram("trading_settlement_duration_seconds",
+                "Time to validate and settle a confirmed trade on the main thread.");
+        registry.gauge("trading_log_write_queue_depth", "Trade log writes waiting to be persisted.",
+                () -> plugin.getTradeLogger() == null ? 0 : plugin.getTradeLogger().getPendingWrites());
+        this.logWriteLatency = registry.histogram("trading_log_write_duration_seconds",
+                "Time to append a trade to the log store, including waiting for its lock.");
+        registry.gauge("trading_log_store_heap_bytes", "Estimated heap used by the trade log write buffer, indexes and cache.",
+                () -> plugin.getTradeLogger() == null ? 0 : plugin.getTradeLogger().getFootprint().heapBytes());
+        registry.gauge("trading_log_store_disk_bytes", "Size of the trade log segment files.",
+                () -> plugin.getTradeLogger() == null ? 0 : plugin.getTradeLogger().getFootprint().diskBytes());
+        registry.gauge("trading_log_store_records", "Trades held by the trade log.",
+                () -> plugin.getTradeLogger() == null ? 0 : plugin.getTradeLogger().getFootprint().records());
+        this.historyQueryLatency = registry.histogram("trading_history_query_duration_seconds",
+                "Time to look up the trade history of a player.");
+        this.itemSearchLatency = registry.histogram("trading_item_search_duration_seconds",
+                "Time to search the trade history for items.");
+        String segmentsHelp = "Trade log segments considered by history queries and item searches, "
+                + "by whether they were searched or skipped by their footer.";
+        registry.counter("trading_log_segments_total", segmentsHelp, "result=\"searched\"",
+                () -> plugin.getTradeLogger() == null ? 0 : plugin.getTradeLogger().getPruning().searched());
+        registry.counter("trading_log_segments_total", segmentsHelp, "result=\"skipped\"",
+                () -> plugin.getTradeLogger() == null ? 0 : plugin.getTradeLogger().getPruning().skipped());
+        this.tickTime = registry.histogram("trading_tick_duration_seconds",
+                "Main thread time used by the plugin per tick, for ticks in which it did any work.");
+        this.tickBudgetExceeded = registry.counter("trading_tick_budget_exceeded_total",
+                "Ticks in which the plugin exceeded its main thread budget.");
+        this.remoteAppended = registry.counter("trading_remote_appended_total",
+                "Trades sent to the remote trade log.");
+        this.remoteSpooled = registry.counter("trading_remote_spooled_total",
+                "Trades spooled to disk because the remote trade log was unavailable or its queue was full.");
+        this.remoteAppendLatency = registry.histogram("trading_remote_append_duration_seconds",
+                "Time until the remote trade log confirmed a batch.");
+        registry.gauge("trading_remote_queue_depth", "Trades waiting to be sent to the remote trade log.",
+                () -> plugin.getTradeLogger() == null || plugin.getTradeLogger().getRemoteSink() == null
+                        ? 0 : plugin.getTradeLogger().getRemoteSink().getQueueDepth());
+        registry.gauge("trading_remote_spool_size", "Trades spooled to disk for the remote trade log.",
+                () -> plugin.getTradeLogger() == null || plugin.getTradeLogger().getRemoteSink() == null
+                        ? 0 : plugin.getTradeLogger().getRemoteSink().getSpoolSize());
+        for (Anomaly.Type type : Anomaly.Type.values()) {
+            anomalies.put(type, registry.counter("trading_anomalies_total",
+                    "Suspicious trading patterns reported to staff, by type.", "type=\"" + type.getLabel() + "\""));
+        }
+        this.anomalyEventsDropped = registry.counter("trading_anomaly_events_dropped_total",
+                "Settled trades not analysed because the anomaly detector queue was full.");
+        registry.gauge("trading_anomaly_queue_depth", "Settled trades waiting to be analysed by the anomaly detector.",
+                () -> plugin.getAnomalyDetector() == null ? 0 : plugin.getAnomalyDetector().getQueueDepth());
+        this.auctionOrders = registry.counter("trading_auction_orders_total", "Orders placed in the auction house.");
+        this.auctionFills = registry.counter("trading_auction_fills_total", "Matched auction house orders settled.");
+        registry.gauge("trading_auction_open_orders", "Orders resting in the auction house books.",
+                () -> plugin.getAuctionHouse() == null ? 0 : plugin.getAuctionHouse().getOpenOrders());
+        registry.gauge("trading_auction_pending_fills", "Matched auction house orders waiting to be settled.",
+                () -> plugin.getAuctionHouse() == null ? 0 : plugin.getAuctionHouse().getPendingFills());
+        this.mailboxOffersSent = registry.counter("trading_mailbox_offers_sent_total", "Offers sent to mailboxes.");
+        this.mailboxOffersAccepted = registry.counter("trading_mailbox_offers_accepted_total",
+                "Mailbox offers accepted by their recipient.");
+        this.mailboxOffersExpired = registry.counter("trading_mailbox_offers_expired_total",
+                "Mailbox offers returned to their sender because they expired.");
+        registry.gauge("trading_mailbox_open_offers", "Offers waiting in mailboxes, including returned ones.",
+                () -> plugin.getMailbox() == null ? 0 : plugin.getMailbox().getOpenOffers());
+        this.recordedInputs = registry.counter("trading_recorded_inputs_total",
+                "Trade inputs handed to the input recorder.");
+        this.recordedInputsDropped = registry.counter("trading_recorded_inputs_dropped_total",
+                "Trade inputs not recorded because the input recorder queue was full.");
+        registry.gauge("trading_recorder_queue_depth", "Trade inputs waiting to be written by the input recorder.",
+                () -> plugin.getInputRecorder() == null ? 0 : plugin.getInputRecorder().getQueueDepth());
+        for (RateLimitAction action : RateLimitAction.values()) {
+            registry.counter("trading_rate_limited_total", "Requests rejected by the rate limiter, by action.",
+                    "action=\"" + action.getConfigKey() + "\"",
+                    () -> plugin.getRateLimiter() == null ? 0L : plugin.getRateLimiter().getRejected(action));
+        }
+    }
+
+    /**
+     * Counts a click in a trade inventory.
+     */
+    public void recordClick() {
+        clicks.increment();
+        clickRate.mark();
+    }
+
+    /**
+     * Counts a settlement that was aborted.
+     *
+     * @param failure The reason the settlement was aborted.
+     */
+    public void recordSettlementFailure(@NotNull SettlementFailure failure) {
+        settlementFailures.get(failure).increment();
+    }
+
+    /**
+     * Returns the number of settlements aborted for the given reason.
+     *
+     * @param failure The reason.
+     * @return The number of aborted settlements.
+     */
+    public long getSettlementFailures(@NotNull SettlementFailure failure) {
+        return settlementFailures.get(failure).sum();
+    }
+
+    /**
+     * Counts a suspicious trading pattern reported to staff.
+     *
+     * @param type The kind of pattern.
+     */
+    public void recordAnomaly(@NotNull Anomaly.Type type) {
+        anomalies.get(type).increment();
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text exposition format.
+     *
+     * @return The exposition text.
+     */
+    public @NotNull String toPrometheusText() {
+        return registry.toPrometheusText();
+    }
+
+    /**
+     * Summarizes the metrics for players, in display order.
+     *
+     * @param plugin The plugin whose components provide the current values.
+     * @return The summary as name-value pairs.
+     */
+    public @NotNull Map<String, String> summarize(@NotNull Trading plugin) {
+        Map<String, String> summary = new LinkedHashMap<>();
+        summary.put("Active trades", String.valueOf(plugin.getTradeManager().getActiveTrades()));
+        summary.put("Invites (sent / accepted)", invites.sum() + " / " + acceptedInvites.sum());
+        summary.put("Clicks per second (" + CLICK_RATE_WINDOW_SECONDS + "s)",
+                String.format(Locale.ROOT, "%.1f", clickRate.perSecond(CLICK_RATE_WINDOW_SECONDS)));
+        summary.put("Settlements (completed / no space / no balance)", settlements.sum() + " / "
+                + getSettlementFailures(SettlementFailure.SPACE) + " / " + getSettlementFailures(SettlementFailure.BALANCE));
+        summary.put("Settlement p50 / p99 / max", describe(settlementLatency));
+        summary.put("Log write queue", String.valueOf(plugin.getTradeLogger().getPendingWrites()));
+        summary.put("Log write p50 / p99 / max", describe(logWriteLatency));
+        StoreFootprint footprint = plugin.getTradeLogger().getFootprint();
+        summary.put("Log store (trades / disk)", footprint.records() + " / " + megabytes(footprint.diskBytes()));
+        summary.put("Log store heap (buffer / index / cache)", megabytes(footprint.writeBufferBytes()) + " / "
+                + megabytes(footprint.indexBytes()) + " / " + megabytes(footprint.cacheBytes()));
+        summary.put("History query p50 / p99 / max", describe(historyQueryLatency));
+        summary.put("Item search p50 / p99 / max", describe(itemSearchLatency));
+        SegmentPruning pruning = plugin.getTradeLogger().getPruning();
+        summary.put("Log segments skipped by footer", String.format(Locale.ROOT, "%.1f%% (%d of %d)",
+                pruning.skipRatio() * 100, pruning.skipped(), pruning.searched() + pruning.skipped()));
+        summary.put("Anomaly alerts (cycle / coins / repeated item)", anomalies.get(Anomaly.Type.CYCLE).sum() + " / "
+                + anomalies.get(Anomaly.Type.COIN_VELOCITY).sum() + " / " + anomalies.get(Anomaly.Type.REPEATED_ITEM).sum());
+        summary.put("Auction house (orders / fills / open)", auctionOrders.sum() + " / " + auctionFills.sum() + " / "
+                + plugin.getAuctionHouse().getOpenOrders());
+        summary.put("Mailbox (sent / accepted / expired / open)", mailboxOffersSent.sum() + " / "
+                + mailboxOffersAccepted.sum() + " / " + mailboxOffersExpired.sum() + " / " + plugin.getMailbox().getOpenOffers());
+        summary.put("Rate limited requests", String.valueOf(plugin.getRateLimiter().getRejectedTotal()));
+
+        TickProfiler profiler = plugin.getProfiler();
+        summary.put("Main thread per tick (avg / max, 5s)", String.format(Locale.ROOT, "%.2f / %.2f ms",
+                profiler.getAverageTickNanos() / 1.0e6, profiler.getMaxTickNanos() / 1.0e6));
+        summary.put("Ticks over budget", String.valueOf(tickBudgetExceeded.sum()));
+        summary.put("Top sections (5s)", profiler.getTopOffenders(3).stream()
+                .map(offender -> offender.section().name().toLowerCase(Locale.ROOT)
+                        + String.format(Locale.ROOT, " %.2f ms", offender.nanos() / 1.0e6))
+                .collect(Collectors.joining(", ")));
+        return summary;
+    }
+
+    private static @NotNull String megabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static @NotNull String describe(@NotNull LatencyHistogram histogram) {
+        return String.format(Locale.ROOT, "%.2f / %.2f / %.2f ms",
+                histogram.percentile(0.5) / 1.0e6, histogram.percentile(0.99) / 1.0e6, histogram.getMaxNanos() / 1.0e6);
+    }
+
+    /**
+     * Enum representing the reasons a confirmed trade could not be settled.
+     */
+    @Getter
+    public enum SettlementFailure {
+        SPACE("space"),
+        BALANCE("balance");
+
+        private final @NotNull String label;
+
+        SettlementFailure(@NotNull String label) {
+            this.label = label;
+        }
+    }
+}
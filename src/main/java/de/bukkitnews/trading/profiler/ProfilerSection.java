@@ -0,0 +1,23 @@
+package de.bukkitnews.trading.profiler;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Enum representing the parts of the plugin whose main thread time is measured by the {@link TickProfiler}.
+ */
+@Getter
+public enum ProfilerSection {
+    CLICK("InventoryClickListener#handleClick"),
+    CLOSE("CloseInventoryListener#onClose"),
+    COMMAND("TradeCommand#onCommand"),
+    RENDER("Trade inventory rendering"),
+    SETTLEMENT("Trade#finishTrade"),
+    SCHEDULED("Scheduled tasks");
+
+    private final @NotNull String callSite;
+
+    ProfilerSection(@NotNull String callSite) {
+        this.callSite = callSite;
+    }
+}
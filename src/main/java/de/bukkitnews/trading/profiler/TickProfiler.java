@@ -0,0 +1,334 @@
+package de.bukkitnews.trading.profiler;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * The TickProfiler measures how much of each server tick the plugin spends on the main thread.
+ * <p>
+ * Instrumented code brackets its work with {@link #start()} and {@link #stop(ProfilerSection, long)}. Sections may
+ * nest, e.g. rendering during a click; every section is charged its self time only, so the per-tick total is the
+ * time spent in the outermost sections. A task running every tick closes the current tick: its total is added to a
+ * rolling window of the last {@value #WINDOW_TICKS} ticks and, if it exceeds the configured budget, a warning with
+ * the breakdown per section and the slowest calls of that tick is logged. Calls can carry a label naming the task
+ * that ran, so the slowest calls point at a task rather than only at its section. Warnings are throttled, ticks over
+ * budget in between are counted and reported with the next warning.
+ * <p>
+ * Ticks are cut where the closing task runs within the scheduler phase, so work done later in a tick (e.g. events
+ * after the scheduler) is attributed to the next one. This class is not thread-safe and must only be used from the
+ * main thread.
+ */
+public class TickProfiler {
+
+    private static final ProfilerSection[] SECTIONS = ProfilerSection.values();
+    private static final int WINDOW_TICKS = 100;
+    private static final int SLOWEST_CALLS = 5;
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    /**
+     * The labels of wrapped tasks without an explicit one, by task class, so they are built once per class.
+     */
+    private static final ClassValue<String> TASK_LABELS = new ClassValue<>() {
+        @Override
+        protected @NotNull String computeValue(@NotNull Class<?> type) {
+            String name = type.getName();
+            int lambda = name.indexOf("$$Lambda");
+            if (lambda >= 0) {
+                name = name.substring(0, lambda);
+            }
+            return name.substring(name.lastIndexOf('.') + 1);
+        }
+    };
+
+    private final @NotNull Trading plugin;
+
+    private long[] childNanos = new long[8];
+    private int depth;
+
+    private final long[] tickNanos = new long[SECTIONS.length];
+    private final int[] tickCalls = new int[SECTIONS.length];
+    private final long[] slowestNanos = new long[SLOWEST_CALLS];
+    private final int[] slowestSections = new int[SLOWEST_CALLS];
+    private final String[] slowestLabels = new String[SLOWEST_CALLS];
+
+    private final long[] windowTotals = new long[WINDOW_TICKS];
+    private final long[] windowSectionNanos = new long[WINDOW_TICKS * SECTIONS.length];
+    private final long[] windowSectionSums = new long[SECTIONS.length];
+    private int windowPosition;
+    private int windowFill;
+    private long tick;
+
+    private long lastWarning = Long.MIN_VALUE;
+    private int suppressedWarnings;
+
+    public TickProfiler(@NotNull Trading plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Schedules the task closing every tick. Must be called once while the plugin is enabled.
+     */
+    public void schedule() {
+        Bukkit.getScheduler().runTaskTimer(plugin, this::endTick, 1L, 1L);
+    }
+
+    /**
+     * Marks the start of a measured section.
+     *
+     * @return The token to pass to {@link #stop(ProfilerSection, long)}.
+     */
+    public long start() {
+        if (!ConfigSnapshot.current().profiler().enabled()) {
+            return NOT_STARTED;
+        }
+        if (depth == childNanos.length) {
+            childNanos = Arrays.copyOf(childNanos, depth * 2);
+        }
+        childNanos[depth++] = 0L;
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a measured section. Must be called in a finally block for every {@link #start()}.
+     *
+     * @param section The section that ended.
+     * @param start   The token returned by {@link #start()}.
+     */
+    public void stop(@NotNull ProfilerSection section, long start) {
+        stop(section, start, null);
+    }
+
+    /**
+     * Marks the end of a measured section run by a specific task. Must be called in a finally block for every
+     * {@link #start()}.
+     *
+     * @param section The section that ended.
+     * @param start   The token returned by {@link #start()}.
+     * @param label   The task that ran, shown with the section if the call is among the slowest of the tick.
+     */
+    public void stop(@NotNull ProfilerSection section, long start, @Nullable String label) {
+        if (start == NOT_STARTED) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long self = elapsed - childNanos[--depth];
+        if (depth > 0) {
+            childNanos[depth - 1] += elapsed;
+        }
+
+        int ordinal = section.ordinal();
+        tickNanos[ordinal] += self;
+        tickCalls[ordinal]++;
+        recordCall(ordinal, self, label);
+    }
+
+    /**
+     * Runs a task as a measured section.
+     *
+     * @param section The section the task belongs to.
+     * @param task    The task to run.
+     */
+    public void run(@NotNull ProfilerSection section, @NotNull Runnable task) {
+        run(section, null, task);
+    }
+
+    /**
+     * Runs a task as a measured section, labelled with the task.
+     *
+     * @param section The section the task belongs to.
+     * @param label   The name of the task, e.g. "Mailbox#expire".
+     * @param task    The task to run.
+     */
+    public void run(@NotNull ProfilerSection section, @Nullable String label, @NotNull Runnable task) {
+        long start = start();
+        try {
+            task.run();
+        } finally {
+            stop(section, start, label);
+        }
+    }
+
+    /**
+     * Wraps a task so that it is measured as a section whenever it runs, e.g. before scheduling it. The task is
+     * labelled with the simple name of its class, which for a lambda is the class it was written in.
+     *
+     * @param section The section the task belongs to.
+     * @param task    The task to wrap.
+     * @return The measured task.
+     */
+    public @NotNull Runnable wrap(@NotNull ProfilerSection section, @NotNull Runnable task) {
+        return wrap(section, labelOf(task), task);
+    }
+
+    /**
+     * Wraps a task so that it is measured as a section whenever it runs, e.g. before scheduling it.
+     *
+     * @param section The section the task belongs to.
+     * @param label   The name of the task, e.g. "Mailbox#expire".
+     * @param task    The task to wrap.
+     * @return The measured task.
+     */
+    public @NotNull Runnable wrap(@NotNull ProfilerSection section, @NotNull String label, @NotNull Runnable task) {
+        return () -> run(section, label, task);
+    }
+
+    /**
+     * Returns the label of a task: the simple name of its class, which for a lambda is the class it was written in.
+     *
+     * @param task The task, e.g. a {@link Runnable} or a callback.
+     * @return The label.
+     */
+    public static @NotNull String labelOf(@NotNull Object task) {
+        return TASK_LABELS.get(task.getClass());
+    }
+
+    /**
+     * Returns the average main thread time per tick over the rolling window.
+     *
+     * @return The average time in nanoseconds.
+     */
+    public long getAverageTickNanos() {
+        if (windowFill == 0) {
+            return 0L;
+        }
+        long sum = 0L;
+        for (int i = 0; i < windowFill; i++) {
+            sum += windowTotals[i];
+        }
+        return sum / windowFill;
+    }
+
+    /**
+     * Returns the highest main thread time of a tick in the rolling window.
+     *
+     * @return The highest time in nanoseconds.
+     */
+    public long getMaxTickNanos() {
+        long max = 0L;
+        for (int i = 0; i < windowFill; i++) {
+            max = Math.max(max, windowTotals[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the sections that used the most main thread time in the rolling window, most expensive first.
+     *
+     * @param limit The maximum number of sections.
+     * @return The sections with their time in the window, in nanoseconds.
+     */
+    public @NotNull List<Offender> getTopOffenders(int limit) {
+        return IntStream.range(0, SECTIONS.length)
+                .filter(ordinal -> windowSectionSums[ordinal] > 0L)
+                .mapToObj(ordinal -> new Offender(SECTIONS[ordinal], windowSectionSums[ordinal]))
+                .sorted(Comparator.comparingLong(Offender::nanos).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Closes the current tick: moves its totals into the rolling window and warns if the budget was exceeded.
+     */
+    private void endTick() {
+        tick++;
+        long total = 0L;
+        int offset = windowPosition * SECTIONS.length;
+        for (int i = 0; i < SECTIONS.length; i++) {
+            total += tickNanos[i];
+            windowSectionSums[i] += tickNanos[i] - windowSectionNanos[offset + i];
+            windowSectionNanos[offset + i] = tickNanos[i];
+        }
+        windowTotals[windowPosition] = total;
+        windowPosition = (windowPosition + 1) % WINDOW_TICKS;
+        windowFill = Math.min(windowFill + 1, WINDOW_TICKS);
+
+        if (total > 0L) {
+            plugin.getMetrics().getTickTime().record(total);
+        }
+
+        ConfigSnapshot.Profiler settings = ConfigSnapshot.current().profiler();
+        long budget = (long) (settings.tickBudgetMillis() * 1_000_000L);
+        if (settings.enabled() && total > budget) {
+            plugin.getMetrics().getTickBudgetExceeded().increment();
+            warn(total, budget, settings);
+        }
+
+        Arrays.fill(tickNanos, 0L);
+        Arrays.fill(tickCalls, 0);
+        Arrays.fill(slowestNanos, 0L);
+    }
+
+    private void warn(long total, long budget, @NotNull ConfigSnapshot.Profiler settings) {
+        long now = System.nanoTime();
+        if (lastWarning != Long.MIN_VALUE && now - lastWarning < TimeUnit.SECONDS.toNanos(settings.warnIntervalSeconds())) {
+            suppressedWarnings++;
+            return;
+        }
+        lastWarning = now;
+
+        List<String> sections = new ArrayList<>();
+        for (int i = 0; i < SECTIONS.length; i++) {
+            if (tickCalls[i] > 0) {
+                sections.add(SECTIONS[i].name().toLowerCase(Locale.ROOT) + " " + millis(tickNanos[i]) + " (" + tickCalls[i] + "x)");
+            }
+        }
+
+        List<String> slowest = new ArrayList<>();
+        Integer[] order = IntStream.range(0, SLOWEST_CALLS).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingLong(i -> -slowestNanos[i]));
+        for (int i : order) {
+            if (slowestNanos[i] > 0L) {
+                String label = slowestLabels[i] == null ? "" : " (" + slowestLabels[i] + ")";
+                slowest.add(SECTIONS[slowestSections[i]].getCallSite() + label + " " + millis(slowestNanos[i]));
+            }
+        }
+
+        plugin.getLogger().warning("Tick " + tick + " spent " + millis(total) + " on the main thread, budget is "
+                + millis(budget) + ". Sections: " + String.join(", ", sections) + ". Slowest calls: "
+                + String.join(", ", slowest) + "."
+                + (suppressedWarnings > 0 ? " " + suppressedWarnings + " more tick(s) over budget since the last warning." : ""));
+        suppressedWarnings = 0;
+    }
+
+    /**
+     * Keeps the slowest calls of the current tick by replacing the fastest kept call.
+     */
+    private void recordCall(int ordinal, long nanos, @Nullable String label) {
+        int fastest = 0;
+        for (int i = 1; i < SLOWEST_CALLS; i++) {
+            if (slowestNanos[i] < slowestNanos[fastest]) {
+                fastest = i;
+            }
+        }
+        if (nanos > slowestNanos[fastest]) {
+            slowestNanos[fastest] = nanos;
+            slowestSections[fastest] = ordinal;
+            slowestLabels[fastest] = label;
+        }
+    }
+
+    private static @NotNull String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f ms", nanos / 1.0e6);
+    }
+
+    /**
+     * A section together with the main thread time it used.
+     *
+     * @param section The measured section.
+     * @param nanos   The time in nanoseconds.
+     */
+    public record Offender(@NotNull ProfilerSection section, long nanos) {
+    }
+}
@@ -0,0 +1,189 @@
+package de.bukkitnews.trading.profiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timestamp;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Java Flight Recorder events for the trade lifecycle, so a recording of a lag spike shows the plugin's work next to
+ * the GC, tick and thread data of the JVM.
+ * <p>
+ * Every event times one step: an invitation, opening a session, a click in a trade view, rendering a view, validating
+ * and committing a settlement, appending to and flushing the trade log, a history query and a cleanup. Instrumented
+ * code creates the event, calls {@link Event#begin()} before the step and fills in the fields only if
+ * {@link Event#shouldCommit()} holds afterwards. While no recording is running, or the event is disabled in the
+ * recording settings, {@code shouldCommit()} is false and the JIT removes the allocation, so the events cost nothing.
+ * <p>
+ * Events are recorded without stack traces, as the step is already identified by the event. Sessions are identified
+ * by {@link de.bukkitnews.trading.trade.model.Trade#id()}, so all events of one trade can be filtered together.
+ */
+@UtilityClass
+public class TradeFlightEvents {
+
+    private static final String CATEGORY = "TradingSystem";
+
+    @Name("de.bukkitnews.trading.Invite")
+    @Label("Trade Invite")
+    @Description("A player invited another player to trade")
+    @Category({CATEGORY, "Sessions"})
+    @StackTrace(false)
+    public static final class Invite extends Event {
+        @Label("Inviter")
+        public String inviter;
+        @Label("Invited")
+        public String invited;
+    }
+
+    @Name("de.bukkitnews.trading.SessionOpen")
+    @Label("Trade Session Open")
+    @Description("A trade session was created and its views were opened")
+    @Category({CATEGORY, "Sessions"})
+    @StackTrace(false)
+    public static final class SessionOpen extends Event {
+        @Label("Session Id")
+        public long sessionId;
+        @Label("Host")
+        public String host;
+        @Label("Target")
+        public String target;
+    }
+
+    @Name("de.bukkitnews.trading.GuiAction")
+    @Label("Trade GUI Action")
+    @Description("A click in a trade view was handled")
+    @Category({CATEGORY, "Sessions"})
+    @StackTrace(false)
+    public static final class GuiAction extends Event {
+        @Label("Session Id")
+        public long sessionId;
+        @Label("Player")
+        public String player;
+        @Label("Raw Slot")
+        public int rawSlot;
+        @Label("Click")
+        public String click;
+        @Label("Item Count")
+        @Description("The number of items the player offers after the click")
+        public int itemCount;
+        @Label("Coins")
+        @Description("The coins the player offers after the click")
+        public int coins;
+    }
+
+    @Name("de.bukkitnews.trading.RenderFlush")
+    @Label("Trade Render Flush")
+    @Description("Items of a trade view were rendered and sent to the viewers")
+    @Category({CATEGORY, "Sessions"})
+    @StackTrace(false)
+    public static final class RenderFlush extends Event {
+        @Label("Session Id")
+        public long sessionId;
+        @Label("Part")
+        @Description("The rendered part of the view: inventory, state or coins")
+        public String part;
+        @Label("Slots")
+        @Description("The number of slots set")
+        public int slots;
+    }
+
+    @Name("de.bukkitnews.trading.SettlementValidate")
+    @Label("Settlement Validate")
+    @Description("Inventory space and balances of a confirmed trade were checked")
+    @Category({CATEGORY, "Settlement"})
+    @StackTrace(false)
+    public static final class SettlementValidate extends Event {
+        @Label("Session Id")
+        public long sessionId;
+        @Label("Item Count")
+        public int itemCount;
+        @Label("Coins")
+        public long coins;
+        @Label("Outcome")
+        @Description("valid, or the reason the settlement was aborted")
+        public String outcome;
+    }
+
+    @Name("de.bukkitnews.trading.SettlementCommit")
+    @Label("Settlement Commit")
+    @Description("Coins and items of a validated trade were handed over")
+    @Category({CATEGORY, "Settlement"})
+    @StackTrace(false)
+    public static final class SettlementCommit extends Event {
+        @Label("Session Id")
+        public long sessionId;
+        @Label("Item Count")
+        public int itemCount;
+        @Label("Coins")
+        public long coins;
+    }
+
+    @Name("de.bukkitnews.trading.LogAppend")
+    @Label("Trade Log Append")
+    @Description("A trade was appended to the trade log")
+    @Category({CATEGORY, "Trade Log"})
+    @StackTrace(false)
+    public static final class LogAppend extends Event {
+        @Label("Trade Id")
+        public String tradeId;
+        @Label("Item Count")
+        public int itemCount;
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+        @Label("Segment")
+        public int segment;
+    }
+
+    @Name("de.bukkitnews.trading.LogFlush")
+    @Label("Trade Log Flush")
+    @Description("The write buffer of the trade log was written and forced to disk")
+    @Category({CATEGORY, "Trade Log"})
+    @StackTrace(false)
+    public static final class LogFlush extends Event {
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytesWritten;
+        @Label("Forced")
+        @Description("Whether the segment file was forced to disk")
+        public boolean forced;
+    }
+
+    @Name("de.bukkitnews.trading.HistoryQuery")
+    @Label("Trade History Query")
+    @Description("The trade log was queried")
+    @Category({CATEGORY, "Trade Log"})
+    @StackTrace(false)
+    public static final class HistoryQuery extends Event {
+        @Label("Kind")
+        @Description("participant or items")
+        public String kind;
+        @Label("Since")
+        @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+        public long since;
+        @Label("Segments Searched")
+        public int segmentsSearched;
+        @Label("Results")
+        public int results;
+    }
+
+    @Name("de.bukkitnews.trading.Cleanup")
+    @Label("Trade Log Cleanup")
+    @Description("Expired segments were deleted from the trade log")
+    @Category({CATEGORY, "Trade Log"})
+    @StackTrace(false)
+    public static final class Cleanup extends Event {
+        @Label("Cutoff")
+        @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+        public long cutoff;
+        @Label("Segments Deleted")
+        public int segments;
+        @Label("Trades Deleted")
+        public int trades;
+    }
+}
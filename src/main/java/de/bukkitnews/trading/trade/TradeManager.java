@@ -1,17 +1,27 @@
 package de.bukkitnews.trading.trade;
 
 import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.profiler.TradeFlightEvents;
 import de.bukkitnews.trading.trade.model.Trade;
+import de.bukkitnews.trading.trade.model.TradeOffer;
 import de.bukkitnews.trading.trade.model.TradePlayer;
 import de.bukkitnews.trading.util.MessageUtil;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The TradeManager handles the trade invitations and active trades between players.
@@ -24,7 +34,10 @@ public class TradeManager {
     private final @NotNull Trading plugin;
 
     private final @NotNull HashMap<UUID, UUID> invites = new HashMap<>();
+    private final @NotNull HashMap<UUID, Set<UUID>> inviters = new HashMap<>();
     private final @NotNull HashMap<UUID, Trade> trades = new HashMap<>();
+    private final @NotNull AtomicInteger activeTrades = new AtomicInteger();
+    private boolean closed;
 
     /**
      * Retrieves the player that has invited the specified player to trade.
@@ -43,13 +56,30 @@ public class TradeManager {
      *
      * @param player The player who is inviting.
      * @param target The player who is being invited.
+     * @return true if the invitation was registered, false if it was refused and the player was told why.
      */
-    public void registerInvite(@NotNull Player player, @NotNull Player target) {
+    public boolean registerInvite(@NotNull Player player, @NotNull Player target) {
+        if (closed) {
+            player.sendMessage(MessageUtil.getMessage("trade_unavailable"));
+            return false;
+        }
         if (isTradeBlocked(player, target)) {
             player.sendMessage(MessageUtil.getMessage("trade_blocked_world"));
-            return;
+            return false;
         }
+
+        TradeFlightEvents.Invite event = new TradeFlightEvents.Invite();
+        event.begin();
+        unregisterInvite(player);
         invites.put(player.getUniqueId(), target.getUniqueId());
+        inviters.computeIfAbsent(target.getUniqueId(), uuid -> new HashSet<>()).add(player.getUniqueId());
+        plugin.getMetrics().getInvites().increment();
+        if (event.shouldCommit()) {
+            event.inviter = player.getName();
+            event.invited = target.getName();
+            event.commit();
+        }
+        return true;
     }
 
     /**
@@ -59,22 +89,53 @@ public class TradeManager {
      * @param player The player whose invitation is being removed.
      */
     public void unregisterInvite(@NotNull Player player) {
-        invites.remove(player.getUniqueId());
+        UUID targetUUID = invites.remove(player.getUniqueId());
+        if (targetUUID == null) {
+            return;
+        }
+
+        Set<UUID> pending = inviters.get(targetUUID);
+        if (pending != null && pending.remove(player.getUniqueId()) && pending.isEmpty()) {
+            inviters.remove(targetUUID);
+        }
+    }
+
+    /**
+     * Removes every pending invitation to the specified player, e.g. when the player leaves.
+     *
+     * @param player The invited player.
+     */
+    public void unregisterInvitesTo(@NotNull Player player) {
+        Set<UUID> pending = inviters.remove(player.getUniqueId());
+        if (pending == null) {
+            return;
+        }
+
+        for (UUID inviter : pending) {
+            invites.remove(inviter, player.getUniqueId());
+        }
     }
 
     /**
      * Checks if the invitation for the specified player is valid.
-     * A valid invitation means the player and their target have mutually agreed to trade.
+     * A valid invitation means the inviter has invited the player and the invitation is still pending.
      *
-     * @param player The player whose invitation validity is being checked.
+     * @param player  The player whose invitation validity is being checked.
+     * @param inviter The player who is supposed to have sent the invitation.
      * @return true if the invitation is valid, false otherwise.
      */
-    public boolean inviteValid(@NotNull Player player) {
-        UUID playerUUID = player.getUniqueId();
-        return getInvited(player)
-                .map(invites::get)
-                .filter(inviteeUUID -> inviteeUUID.equals(playerUUID))
-                .isPresent();
+    public boolean inviteValid(@NotNull Player player, @NotNull Player inviter) {
+        return player.getUniqueId().equals(invites.get(inviter.getUniqueId()));
+    }
+
+    /**
+     * Retrieves the players that have a pending invitation to the specified player.
+     *
+     * @param player The invited player.
+     * @return The UUIDs of the inviting players, or an empty set if there are none.
+     */
+    public @NotNull Set<UUID> getInviters(@NotNull Player player) {
+        return Collections.unmodifiableSet(inviters.getOrDefault(player.getUniqueId(), Collections.emptySet()));
     }
 
     /**
@@ -96,27 +157,96 @@ public class TradeManager {
      * @param target The second player in the trade.
      */
     public void createTrade(@NotNull Player player, Player target) {
+        if (closed) {
+            player.sendMessage(MessageUtil.getMessage("trade_unavailable"));
+            return;
+        }
         if (isTradeBlocked(player, target)) {
             player.sendMessage(MessageUtil.getMessage("trade_blocked_world"));
             return;
         }
 
+        TradeFlightEvents.SessionOpen event = new TradeFlightEvents.SessionOpen();
+        event.begin();
         TradePlayer tpP = new TradePlayer(player);
         TradePlayer tpT = new TradePlayer(target);
-        Trade trade = new Trade(tpP, tpT);
+        Trade trade = new Trade(plugin, tpP, tpT);
 
         trades.put(player.getUniqueId(), trade);
         trades.put(target.getUniqueId(), trade);
+        activeTrades.incrementAndGet();
+        if (event.shouldCommit()) {
+            event.sessionId = trade.id();
+            event.host = player.getName();
+            event.target = target.getName();
+            event.commit();
+        }
     }
 
     /**
      * Unregisters the active trade for a specified player.
-     * This removes the trade from the trades map.
+     * This removes the trade from the trades map. The trade counts as closed once neither player is part of it.
      *
      * @param player The player whose trade is being removed.
      */
     public void unregisterTrade(@NotNull Player player) {
-        trades.remove(player.getUniqueId());
+        Trade trade = trades.remove(player.getUniqueId());
+        if (trade == null) {
+            return;
+        }
+
+        Player partner = trade.host().getPlayer().equals(player) ? trade.target().getPlayer() : trade.host().getPlayer();
+        if (trades.get(partner.getUniqueId()) != trade) {
+            activeTrades.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of open trades. Safe to call from any thread.
+     *
+     * @return The number of open trades.
+     */
+    public int getActiveTrades() {
+        return activeTrades.get();
+    }
+
+    /**
+     * Stops accepting invitations and new trades and drops the pending invitations, e.g. while the plugin shuts down.
+     * Open trades are left alone, see {@link #cancelTrades()}.
+     */
+    public void close() {
+        closed = true;
+        invites.clear();
+        inviters.clear();
+    }
+
+    /**
+     * Cancels every open trade: the offered items are returned to their owners and the trade views are closed.
+     * Items that do not fit into the inventory of their owner are dropped at the owner's location.
+     *
+     * @return The number of cancelled trades.
+     */
+    public int cancelTrades() {
+        Set<Trade> open = new LinkedHashSet<>(trades.values());
+        for (Trade trade : open) {
+            // Unregistering first turns the close events of the views into no-ops.
+            unregisterTrade(trade.host().getPlayer());
+            unregisterTrade(trade.target().getPlayer());
+            for (TradePlayer tradePlayer : List.of(trade.host(), trade.target())) {
+                Player player = tradePlayer.getPlayer();
+                TradeOffer offer = tradePlayer.getOffer();
+                for (int i = offer.nextOccupied(0); i >= 0; i = offer.nextOccupied(i + 1)) {
+                    Map<Integer, ItemStack> leftovers = player.getInventory().addItem(offer.get(i));
+                    for (ItemStack leftover : leftovers.values()) {
+                        player.getWorld().dropItemNaturally(player.getLocation(), leftover);
+                    }
+                }
+                offer.clear();
+                player.closeInventory();
+                player.sendMessage(MessageUtil.getMessage("trade_cancel"));
+            }
+        }
+        return open.size();
     }
 
     /**
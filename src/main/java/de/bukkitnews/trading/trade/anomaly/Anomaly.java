@@ -0,0 +1,37 @@
+package de.bukkitnews.trading.trade.anomaly;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A suspicious pattern found by the {@link AnomalyDetector}.
+ *
+ * @param type      The kind of pattern.
+ * @param players   The names of the players involved.
+ * @param detail    A short description of what was observed.
+ * @param timestamp The time of the settlement that revealed the pattern, in epoch milliseconds.
+ */
+public record Anomaly(@NotNull Type type, @NotNull List<String> players, @NotNull String detail, long timestamp) {
+
+    public Anomaly {
+        players = List.copyOf(players);
+    }
+
+    /**
+     * Enum representing the kinds of suspicious trading patterns.
+     */
+    @Getter
+    public enum Type {
+        CYCLE("cycle"),
+        COIN_VELOCITY("coin_velocity"),
+        REPEATED_ITEM("repeated_item");
+
+        private final @NotNull String label;
+
+        Type(@NotNull String label) {
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package de.bukkitnews.trading.trade.anomaly;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.metrics.TradeMetrics;
+import de.bukkitnews.trading.util.ItemFingerprint;
+import de.bukkitnews.trading.util.MessageUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Watches settled trades, auction fills and accepted mailbox offers for patterns typical of duplication exploits
+ * and alerts staff while they happen. Items are compared by their {@link ItemFingerprint}, which staff can look up
+ * in the trade log with {@code /trade search item:<fingerprint>}.
+ * <p>
+ * Three patterns are detected over a sliding window of {@code window-seconds}:
+ * <ul>
+ *     <li>an identical item moving in a loop between a few players, found in a {@link TransferGraph} of the
+ *     recent item transfers,</li>
+ *     <li>a player moving more coins than {@code coin-velocity-threshold} in total,</li>
+ *     <li>the same item fingerprint being traded more than {@code repeated-item-threshold} times.</li>
+ * </ul>
+ * Settlements are handed over with {@link #submit(SettlementEvent)}, which only offers the event to a bounded
+ * queue, and are analysed by a single detector thread. Memory is bounded by the queue, the maximum number of
+ * transfers in the graph and the maximum number of keys in the counters. Alerts are logged and sent to online
+ * players with the {@value #ALERT_PERMISSION} permission, at most once per pattern within
+ * {@code alert-cooldown-seconds}. Only the delivery of an alert runs on the main thread.
+ */
+public class AnomalyDetector {
+
+    public static final String ALERT_PERMISSION = "trading.alerts";
+
+    private static final long POLL_MILLIS = 1000;
+
+    private final @NotNull Trading plugin;
+    private final @NotNull TradeMetrics metrics;
+    private final @NotNull BlockingQueue<SettlementEvent> queue;
+    private final @NotNull Thread worker;
+
+    /*
+     * The following fields are only accessed by the detector thread.
+     */
+    private final @NotNull TransferGraph transfers;
+    private final @NotNull SlidingWindowCounter<UUID> coinTurnover;
+    private final @NotNull SlidingWindowCounter<Long> itemTransfers;
+    private final @NotNull Map<UUID, String> names;
+    private final @NotNull Map<String, Long> lastAlerts;
+    private long lastSweep;
+
+    private volatile boolean running = true;
+
+    /**
+     * Creates the detector. The window, queue and graph sizes are read once, the thresholds on every settlement.
+     * The detector starts with {@link #start()}.
+     *
+     * @param plugin   The plugin.
+     * @param settings The detector settings.
+     */
+    public AnomalyDetector(@NotNull Trading plugin, @NotNull ConfigSnapshot.AnomalyDetection settings) {
+        this.plugin = plugin;
+        this.metrics = plugin.getMetrics();
+        this.queue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.worker = Thread.ofVirtual().name("TradingSystem-AnomalyDetector").unstarted(this::run);
+
+        long windowMillis = TimeUnit.SECONDS.toMillis(settings.windowSeconds());
+        this.transfers = new TransferGraph(windowMillis, settings.maxTransfers());
+        this.coinTurnover = new SlidingWindowCounter<>(windowMillis, settings.maxTransfers());
+        this.itemTransfers = new SlidingWindowCounter<>(windowMillis, settings.maxTransfers());
+        this.names = boundedMap(settings.maxTransfers());
+        this.lastAlerts = boundedMap(settings.maxTransfers());
+    }
+
+    /**
+     * Starts the detector thread.
+     */
+    public void start() {
+        worker.start();
+    }
+
+    /**
+     * Hands a settled trade to the detector. Never blocks: if the queue is full, the trade is not analysed and
+     * counted as dropped.
+     *
+     * @param event The settled trade.
+     */
+    public void submit(@NotNull SettlementEvent event) {
+        if (!running || !ConfigSnapshot.current().anomalyDetection().enabled()) {
+            return;
+        }
+        if (!queue.offer(event)) {
+            metrics.getAnomalyEventsDropped().increment();
+        }
+    }
+
+    /**
+     * Returns the number of settled trades waiting to be analysed.
+     *
+     * @return The number of queued trades.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the detector after analysing the queued trades, waiting at most until the deadline.
+     *
+     * @param timeout The maximum time to wait.
+     */
+    public void close(@NotNull Duration timeout) {
+        running = false;
+        try {
+            worker.join(timeout);
+            if (worker.isAlive()) {
+                worker.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running || !queue.isEmpty()) {
+                SettlementEvent event = running ? queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS) : queue.poll();
+                long now = System.currentTimeMillis();
+                if (event != null) {
+                    analyse(event);
+                }
+                if (now - lastSweep >= coinTurnover.getWindowMillis() / 10) {
+                    transfers.expire(now);
+                    coinTurnover.evictIdle(now);
+                    itemTransfers.evictIdle(now);
+                    lastSweep = now;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a settled trade to the windows and the transfer graph and raises alerts for the patterns it completes.
+     *
+     * @param event The settled trade.
+     */
+    private void analyse(@NotNull SettlementEvent event) {
+        ConfigSnapshot.AnomalyDetection settings = ConfigSnapshot.current().anomalyDetection();
+        names.put(event.hostId(), event.hostName());
+        names.put(event.targetId(), event.targetName());
+
+        List<Anomaly> anomalies = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        analyseItems(event, event.hostId(), event.targetId(), event.hostItems(), settings, anomalies, keys);
+        analyseItems(event, event.targetId(), event.hostId(), event.targetItems(), settings, anomalies, keys);
+
+        long coins = (long) event.hostCoins() + event.targetCoins();
+        if (coins > 0) {
+            for (UUID player : List.of(event.hostId(), event.targetId())) {
+                long turnover = coinTurnover.add(player, event.timestamp(), coins);
+                if (turnover > settings.coinVelocityThreshold()) {
+                    anomalies.add(new Anomaly(Anomaly.Type.COIN_VELOCITY, List.of(nameOf(player)),
+                            turnover + " coins traded within " + settings.windowSeconds() + "s", event.timestamp()));
+                    keys.add("coins:" + player);
+                }
+            }
+        }
+
+        for (int i = 0; i < anomalies.size(); i++) {
+            alert(keys.get(i), anomalies.get(i), settings);
+        }
+    }
+
+    private void analyseItems(@NotNull SettlementEvent event, @NotNull UUID from, @NotNull UUID to, long @NotNull [] items,
+                              @NotNull ConfigSnapshot.AnomalyDetection settings,
+                              @NotNull List<Anomaly> anomalies, @NotNull List<String> keys) {
+        for (long fingerprint : items) {
+            List<UUID> cycle = transfers.addAndFindCycle(from, to, fingerprint, event.timestamp(),
+                    settings.maxCycleLength());
+            if (cycle != null) {
+                anomalies.add(new Anomaly(Anomaly.Type.CYCLE, cycle.stream().map(this::nameOf).toList(),
+                        "item " + ItemFingerprint.format(fingerprint) + " returned to " + nameOf(from)
+                                + " after " + cycle.size() + " trades", event.timestamp()));
+                keys.add("cycle:" + cycle.stream().map(UUID::toString).sorted().collect(Collectors.joining(",")));
+            }
+
+            long count = itemTransfers.add(fingerprint, event.timestamp(), 1);
+            if (count > settings.repeatedItemThreshold()) {
+                anomalies.add(new Anomaly(Anomaly.Type.REPEATED_ITEM, List.of(nameOf(from), nameOf(to)),
+                        "item " + ItemFingerprint.format(fingerprint) + " traded " + count + " times within "
+                                + settings.windowSeconds() + "s", event.timestamp()));
+                keys.add("item:" + fingerprint);
+            }
+        }
+    }
+
+    /**
+     * Logs an anomaly and sends it to staff, unless the same pattern was reported within the cooldown.
+     */
+    private void alert(@NotNull String key, @NotNull Anomaly anomaly, @NotNull ConfigSnapshot.AnomalyDetection settings) {
+        Long last = lastAlerts.get(key);
+        if (last != null && anomaly.timestamp() - last < TimeUnit.SECONDS.toMillis(settings.alertCooldownSeconds())) {
+            return;
+        }
+        lastAlerts.put(key, anomaly.timestamp());
+        metrics.recordAnomaly(anomaly.type());
+
+        String players = String.join(", ", anomaly.players());
+        plugin.getLogger().warning("Suspicious trading (" + anomaly.type().getLabel() + ") by " + players + ": "
+                + anomaly.detail());
+        String message = MessageUtil.getMessage("anomaly_alert", anomaly.type().getLabel(), players, anomaly.detail());
+        plugin.getExecutors().sync(() -> {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (player.hasPermission(ALERT_PERMISSION)) {
+                    player.sendMessage(message);
+                }
+            }
+        });
+    }
+
+    private @NotNull String nameOf(@NotNull UUID player) {
+        return names.getOrDefault(player, player.toString());
+    }
+
+    private static <K, V> @NotNull Map<K, V> boundedMap(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+}
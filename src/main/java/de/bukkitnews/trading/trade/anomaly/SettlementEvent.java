@@ -0,0 +1,58 @@
+package de.bukkitnews.trading.trade.anomaly;
+
+import de.bukkitnews.trading.trade.model.TradeOffer;
+import de.bukkitnews.trading.trade.model.TradePlayer;
+import de.bukkitnews.trading.util.ItemFingerprint;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * A settled trade, auction fill or accepted mailbox offer as seen by the {@link AnomalyDetector}: who traded, the
+ * coins each side gave and the fingerprints of the items each side gave. It holds no Bukkit objects, so it can be
+ * processed on any thread.
+ *
+ * @param timestamp     The time of the settlement in epoch milliseconds.
+ * @param hostId        The UUID of the player who initiated the trade.
+ * @param hostName      The name of the player who initiated the trade.
+ * @param targetId      The UUID of the trade partner.
+ * @param targetName    The name of the trade partner.
+ * @param hostCoins     The coins the host gave.
+ * @param targetCoins   The coins the partner gave.
+ * @param hostItems     The fingerprints of the items the host gave, see {@link ItemFingerprint}.
+ * @param targetItems   The fingerprints of the items the partner gave.
+ */
+public record SettlementEvent(long timestamp,
+                              @NotNull UUID hostId,
+                              @NotNull String hostName,
+                              @NotNull UUID targetId,
+                              @NotNull String targetName,
+                              int hostCoins,
+                              int targetCoins,
+                              long @NotNull [] hostItems,
+                              long @NotNull [] targetItems) {
+
+    /**
+     * Captures a trade that is being settled. Must be called on the main thread before the offers are handed over.
+     *
+     * @param host   The player who initiated the trade.
+     * @param target The trade partner.
+     * @return The event.
+     */
+    public static @NotNull SettlementEvent capture(@NotNull TradePlayer host, @NotNull TradePlayer target) {
+        return new SettlementEvent(System.currentTimeMillis(),
+                host.getPlayer().getUniqueId(), host.getPlayer().getName(),
+                target.getPlayer().getUniqueId(), target.getPlayer().getName(),
+                host.getCoins(), target.getCoins(),
+                fingerprints(host.getOffer()), fingerprints(target.getOffer()));
+    }
+
+    private static long @NotNull [] fingerprints(@NotNull TradeOffer offer) {
+        long[] fingerprints = new long[offer.size()];
+        int count = 0;
+        for (int i = offer.nextOccupied(0); i >= 0; i = offer.nextOccupied(i + 1)) {
+            fingerprints[count++] = offer.getFingerprint(i);
+        }
+        return fingerprints;
+    }
+}
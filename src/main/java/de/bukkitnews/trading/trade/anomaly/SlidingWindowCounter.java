@@ -0,0 +1,113 @@
+package de.bukkitnews.trading.trade.anomaly;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sums per key over a sliding time window, e.g. the coins a player received in the last five minutes.
+ * <p>
+ * The window is split into a fixed number of buckets, so every key costs a small fixed array regardless of how
+ * many values were added. Sums are exact up to the width of one bucket. The number of keys is bounded: keys that
+ * saw no value within the window are dropped by {@link #evictIdle(long)}, and if there are still too many, the
+ * least recently updated key is dropped.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <K> The type of the keys.
+ */
+final class SlidingWindowCounter<K> {
+
+    private static final int BUCKETS = 10;
+
+    private final long bucketMillis;
+    private final long windowMillis;
+    private final @NotNull LinkedHashMap<K, Window> windows;
+
+    /**
+     * Creates a counter.
+     *
+     * @param windowMillis The length of the window in milliseconds.
+     * @param maxKeys      The maximum number of keys tracked at once.
+     */
+    SlidingWindowCounter(long windowMillis, int maxKeys) {
+        this.bucketMillis = Math.max(1L, windowMillis / BUCKETS);
+        this.windowMillis = bucketMillis * BUCKETS;
+        this.windows = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Window> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    /**
+     * Adds a value for a key and returns the sum over the window.
+     *
+     * @param key    The key.
+     * @param now    The current time in epoch milliseconds.
+     * @param amount The value to add.
+     * @return The sum of the key over the window, including the added value.
+     */
+    long add(@NotNull K key, long now, long amount) {
+        Window window = windows.computeIfAbsent(key, k -> new Window());
+        long bucket = now / bucketMillis;
+        window.advance(bucket);
+        window.sums[(int) (bucket % BUCKETS)] += amount;
+        window.total += amount;
+        return window.total;
+    }
+
+    /**
+     * Drops all keys without values in the window.
+     *
+     * @param now The current time in epoch milliseconds.
+     */
+    void evictIdle(long now) {
+        long bucket = now / bucketMillis;
+        Iterator<Window> iterator = windows.values().iterator();
+        while (iterator.hasNext()) {
+            if (bucket - iterator.next().latest >= BUCKETS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    int size() {
+        return windows.size();
+    }
+
+    long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * The buckets of one key, as a ring indexed by bucket number.
+     */
+    private static final class Window {
+
+        private final long[] sums = new long[BUCKETS];
+        private long latest = Long.MIN_VALUE;
+        private long total;
+
+        /**
+         * Clears the buckets that left the window since the last update.
+         */
+        private void advance(long bucket) {
+            if (latest == Long.MIN_VALUE || bucket - latest >= BUCKETS) {
+                Arrays.fill(sums, 0L);
+                total = 0;
+            } else {
+                for (long expired = latest + 1; expired <= bucket; expired++) {
+                    int index = (int) (expired % BUCKETS);
+                    total -= sums[index];
+                    sums[index] = 0;
+                }
+            }
+            latest = Math.max(latest, bucket);
+        }
+    }
+}
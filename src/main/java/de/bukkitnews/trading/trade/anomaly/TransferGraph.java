@@ -0,0 +1,137 @@
+package de.bukkitnews.trading.trade.anomaly;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The item transfers of a recent time window, as a directed graph between players with one edge per transferred
+ * item fingerprint.
+ * <p>
+ * Edges are grouped by fingerprint, so looking for a loop of one item only walks the few edges that moved an
+ * identical item. Edges are added in time order and expire from the oldest, either when they leave the window or
+ * when the graph holds the maximum number of edges, which bounds its memory.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class TransferGraph {
+
+    private final long windowMillis;
+    private final int maxTransfers;
+    private final @NotNull ArrayDeque<Transfer> transfers = new ArrayDeque<>();
+    private final @NotNull Map<Long, ArrayDeque<Transfer>> byFingerprint = new HashMap<>();
+
+    /**
+     * Creates an empty graph.
+     *
+     * @param windowMillis The time after which a transfer expires.
+     * @param maxTransfers The maximum number of transfers kept.
+     */
+    TransferGraph(long windowMillis, int maxTransfers) {
+        this.windowMillis = windowMillis;
+        this.maxTransfers = maxTransfers;
+    }
+
+    /**
+     * Adds a transfer and checks whether it closes a loop, i.e. whether the same item already moved from the
+     * receiver back to the sender over at most {@code maxLength - 1} earlier transfers within the window.
+     *
+     * @param from        The player giving the item.
+     * @param to          The player receiving the item.
+     * @param fingerprint The fingerprint of the item.
+     * @param now         The time of the transfer in epoch milliseconds.
+     * @param maxLength   The maximum number of transfers in a loop, at least 2.
+     * @return The players of the loop starting with the sender, or null if there is none.
+     */
+    @Nullable List<UUID> addAndFindCycle(@NotNull UUID from, @NotNull UUID to, long fingerprint, long now, int maxLength) {
+        expire(now);
+        ArrayDeque<Transfer> edges = byFingerprint.computeIfAbsent(fingerprint, key -> new ArrayDeque<>());
+
+        List<UUID> cycle = from.equals(to) ? null : findPath(edges, to, from, maxLength - 1);
+
+        Transfer transfer = new Transfer(from, to, fingerprint, now);
+        edges.addLast(transfer);
+        transfers.addLast(transfer);
+        if (transfers.size() > maxTransfers) {
+            remove(transfers.pollFirst());
+        }
+        return cycle;
+    }
+
+    /**
+     * Breadth-first search for the shortest chain of at most {@code maxEdges} transfers from {@code start} to
+     * {@code target}. Every level walks the edges of the fingerprint once, so the search is linear in their number.
+     *
+     * @return The players of the loop, starting with the target, or null if there is no such chain.
+     */
+    private @Nullable List<UUID> findPath(@NotNull ArrayDeque<Transfer> edges, @NotNull UUID start,
+                                          @NotNull UUID target, int maxEdges) {
+        Map<UUID, UUID> parents = new HashMap<>();
+        Set<UUID> frontier = Set.of(start);
+        for (int depth = 0; depth < maxEdges && !frontier.isEmpty(); depth++) {
+            Set<UUID> next = new HashSet<>();
+            for (Transfer edge : edges) {
+                if (!frontier.contains(edge.from()) || edge.to().equals(start) || parents.containsKey(edge.to())) {
+                    continue;
+                }
+                parents.put(edge.to(), edge.from());
+                if (edge.to().equals(target)) {
+                    List<UUID> cycle = new ArrayList<>();
+                    for (UUID player = edge.from(); player != null; player = parents.get(player)) {
+                        cycle.add(player);
+                    }
+                    cycle.add(target);
+                    return cycle.reversed();
+                }
+                next.add(edge.to());
+            }
+            frontier = next;
+        }
+        return null;
+    }
+
+    /**
+     * Drops the transfers that left the window.
+     *
+     * @param now The current time in epoch milliseconds.
+     */
+    void expire(long now) {
+        while (!transfers.isEmpty() && transfers.peekFirst().timestamp() < now - windowMillis) {
+            remove(transfers.pollFirst());
+        }
+    }
+
+    private void remove(@NotNull Transfer transfer) {
+        ArrayDeque<Transfer> edges = byFingerprint.get(transfer.fingerprint());
+        if (edges == null) {
+            return;
+        }
+        edges.pollFirst();
+        if (edges.isEmpty()) {
+            byFingerprint.remove(transfer.fingerprint());
+        }
+    }
+
+    int size() {
+        return transfers.size();
+    }
+
+    /**
+     * One item moving from one player to another.
+     *
+     * @param from        The player giving the item.
+     * @param to          The player receiving the item.
+     * @param fingerprint The fingerprint of the item.
+     * @param timestamp   The time of the transfer in epoch milliseconds.
+     */
+    private record Transfer(@NotNull UUID from, @NotNull UUID to, long fingerprint, long timestamp) {
+    }
+}
@@ -0,0 +1,549 @@
+package de.bukkitnews.trading.trade.auction;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.profiler.ProfilerSection;
+import de.bukkitnews.trading.trade.anomaly.SettlementEvent;
+import de.bukkitnews.trading.util.ItemFingerprint;
+import de.bukkitnews.trading.util.MessageUtil;
+import lombok.Getter;
+import net.milkbowl.vault.economy.Economy;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * The auction house, in which players trade plain items through buy and sell orders without having to be online
+ * at the same time.
+ * <p>
+ * Like a trade, an order escrows its goods when it is placed: a sell order takes the items out of the seller's
+ * inventory, a buy order withdraws the coins for the full quantity at its limit price. Each item has its own
+ * {@link OrderBook}, which matches an incoming order against the resting orders immediately. The matches are
+ * queued as {@link Fill}s and settled in batches of at most {@code settle-batch-size} per tick: the seller is paid,
+ * the buyer receives the items and the difference to their limit price, and the fill is written to the trade log.
+ * Items that do not fit into the buyer's inventory, or are bought while the buyer is offline, wait until they are
+ * claimed with {@code /trade ah claim} or the buyer joins again.
+ * <p>
+ * Every change to the escrow is saved to "auction.yml" at the end of its tick, together with the fills not settled
+ * yet, so a crash loses at most the changes of the last tick. Only one save runs at a time; a failed save is
+ * retried every {@code save-interval-seconds}. When the plugin is disabled, all pending fills are settled and the
+ * state is saved a last time.
+ * <p>
+ * This class is not thread-safe. All methods must be called on the main thread.
+ */
+public class AuctionHouse {
+
+    /**
+     * The inventory slots items are escrowed from and delivered to: the hotbar and the main inventory.
+     */
+    private static final int STORAGE_SLOTS = 36;
+
+    private final @NotNull Trading plugin;
+    private final @NotNull AuctionStorage storage;
+    private final @NotNull Map<Material, OrderBook> books = new EnumMap<>(Material.class);
+    private final @NotNull Map<Long, Order> openOrders = new HashMap<>();
+    private final @NotNull Map<UUID, Set<Order>> ordersByOwner = new HashMap<>();
+    private final @NotNull Map<UUID, Map<Material, Integer>> claims = new HashMap<>();
+    private final @NotNull ArrayDeque<Fill> pendingFills = new ArrayDeque<>();
+
+    /*
+     * Reused by every match to avoid allocating lists per order.
+     */
+    private final @NotNull List<Fill> matched = new ArrayList<>();
+    private final @NotNull List<Order> selfMatched = new ArrayList<>();
+
+    private long nextId = 1;
+    /**
+     * Whether the state changed since the last save. Set again from an I/O thread if a save fails.
+     */
+    private volatile boolean dirty;
+    /**
+     * Whether the state changed during this tick and is to be saved at its end.
+     */
+    private boolean saveRequested;
+    private @Nullable BukkitTask settleTask;
+    private @Nullable BukkitTask saveTask;
+    /**
+     * The last periodic save, which has to complete before the next save writes the same file.
+     */
+    private @NotNull CompletableFuture<Void> pendingSave = CompletableFuture.completedFuture(null);
+
+    public AuctionHouse(@NotNull Trading plugin) {
+        this.plugin = plugin;
+        this.storage = new AuctionStorage(plugin.getDataFolder().toPath().resolve("auction.yml"), plugin.getLogger());
+    }
+
+    /**
+     * Loads the saved orders and unclaimed items and starts settling fills every tick. The saved state is read on
+     * the calling thread, since orders can only be placed once it is known.
+     */
+    public void start() {
+        try {
+            AuctionStorage.Snapshot snapshot = storage.load();
+            nextId = snapshot.nextId();
+            for (Order order : snapshot.orders()) {
+                book(order.getMaterial()).rest(order);
+                track(order);
+            }
+            pendingFills.addAll(snapshot.fills());
+            snapshot.claims().forEach((owner, items) -> claims.put(owner, new EnumMap<>(items)));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not load the auction house, starting without open orders", e);
+        }
+
+        this.settleTask = Bukkit.getScheduler().runTaskTimer(plugin,
+                plugin.getProfiler().wrap(ProfilerSection.SCHEDULED, "AuctionHouse#settlePending", this::settlePending),
+                1L, 1L);
+        long saveInterval = ConfigSnapshot.current().auction().saveIntervalSeconds() * 20L;
+        this.saveTask = Bukkit.getScheduler().runTaskTimer(plugin,
+                plugin.getProfiler().wrap(ProfilerSection.SCHEDULED, "AuctionHouse#saveAsync", this::saveAsync),
+                saveInterval, saveInterval);
+    }
+
+    /**
+     * Places an order: escrows its goods, matches it against the book of the item and rests the unfilled part in
+     * the book. The matches are settled within the next ticks.
+     *
+     * @param player   The player placing the order.
+     * @param side     Whether the player buys or sells.
+     * @param material The item traded. Only items without meta data can be traded.
+     * @param quantity The number of items.
+     * @param price    The limit price per item in coins.
+     * @return The outcome, with the placed order if it was accepted.
+     */
+    public @NotNull Placement place(@NotNull Player player, @NotNull OrderSide side, @NotNull Material material,
+                                    int quantity, long price) {
+        ConfigSnapshot.Auction settings = ConfigSnapshot.current().auction();
+        if (!settings.enabled()) {
+            return new Placement(Placement.Result.DISABLED, null);
+        }
+        if (!material.isItem() || material.isAir() || quantity <= 0 || price <= 0 || price > settings.maxPrice()) {
+            return new Placement(Placement.Result.INVALID, null);
+        }
+        Set<Order> owned = ordersByOwner.get(player.getUniqueId());
+        if (owned != null && owned.size() >= settings.maxOrdersPerPlayer()) {
+            return new Placement(Placement.Result.TOO_MANY_ORDERS, null);
+        }
+
+        if (side == OrderSide.SELL) {
+            if (!takeItems(player.getInventory(), material, quantity)) {
+                return new Placement(Placement.Result.NOT_ENOUGH_ITEMS, null);
+            }
+        } else {
+            Economy economy = economy();
+            long total = price * quantity;
+            if (!economy.has(player, total)) {
+                return new Placement(Placement.Result.NOT_ENOUGH_COINS, null);
+            }
+            economy.withdrawPlayer(player, total);
+        }
+
+        long now = System.currentTimeMillis();
+        Order order = new Order(nextId++, side, player.getUniqueId(), player.getName(), material, price, quantity,
+                quantity, now);
+        OrderBook book = book(material);
+        book.match(order, now, matched, selfMatched);
+
+        for (Fill fill : matched) {
+            Order maker = side == OrderSide.BUY ? fill.sell() : fill.buy();
+            if (maker.isFilled()) {
+                untrack(maker);
+            }
+        }
+        pendingFills.addAll(matched);
+        matched.clear();
+
+        for (Order cancelled : selfMatched) {
+            untrack(cancelled);
+            refund(cancelled);
+        }
+        selfMatched.clear();
+
+        if (!order.isFilled()) {
+            book.rest(order);
+            track(order);
+        }
+        changed();
+        plugin.getMetrics().getAuctionOrders().increment();
+        return new Placement(Placement.Result.PLACED, order);
+    }
+
+    /**
+     * Cancels an open order of a player and returns the escrow of its unfilled part.
+     *
+     * @param player The owner of the order.
+     * @param id     The ID of the order.
+     * @return The cancelled order, or null if the player has no open order with this ID.
+     */
+    public @Nullable Order cancel(@NotNull Player player, long id) {
+        Order order = openOrders.get(id);
+        if (order == null || !order.getOwner().equals(player.getUniqueId())) {
+            return null;
+        }
+
+        book(order.getMaterial()).remove(order);
+        untrack(order);
+        refund(order);
+        changed();
+        return order;
+    }
+
+    /**
+     * Returns the open orders of a player.
+     *
+     * @param owner The UUID of the player.
+     * @return The open orders, oldest first.
+     */
+    public @NotNull List<Order> getOrders(@NotNull UUID owner) {
+        Set<Order> owned = ordersByOwner.get(owner);
+        return owned == null ? List.of() : List.copyOf(owned);
+    }
+
+    /**
+     * Returns the book of an item.
+     *
+     * @param material The item.
+     * @return The book, or null if the item was never traded since the start.
+     */
+    public @Nullable OrderBook getBook(@NotNull Material material) {
+        return books.get(material);
+    }
+
+    /**
+     * Moves the unclaimed items of a player into their inventory, as far as they fit. The rest stays unclaimed.
+     *
+     * @param player The player.
+     * @return The number of items delivered.
+     */
+    public int claim(@NotNull Player player) {
+        Map<Material, Integer> items = claims.remove(player.getUniqueId());
+        if (items == null) {
+            return 0;
+        }
+
+        int delivered = 0;
+        for (Map.Entry<Material, Integer> item : items.entrySet()) {
+            int unclaimed = deliver(player.getUniqueId(), item.getKey(), item.getValue());
+            addClaim(player.getUniqueId(), item.getKey(), unclaimed);
+            delivered += item.getValue() - unclaimed;
+        }
+        changed();
+        return delivered;
+    }
+
+    /**
+     * Returns whether items are waiting to be claimed by a player.
+     *
+     * @param owner The UUID of the player.
+     * @return true if the player has unclaimed items.
+     */
+    public boolean hasClaims(@NotNull UUID owner) {
+        return claims.containsKey(owner);
+    }
+
+    public int getOpenOrders() {
+        return openOrders.size();
+    }
+
+    public int getPendingFills() {
+        return pendingFills.size();
+    }
+
+    /**
+     * Stops the auction house: settles all pending fills and saves the open orders and unclaimed items.
+     * A periodic save still running is waited for first, so it cannot replace the final save with an older state.
+     */
+    public void close() {
+        if (settleTask != null) {
+            settleTask.cancel();
+        }
+        if (saveTask != null) {
+            saveTask.cancel();
+        }
+        settle(Integer.MAX_VALUE);
+        pendingSave.exceptionally(throwable -> null).join();
+
+        try {
+            storage.save(snapshot());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save the auction house", e);
+        }
+    }
+
+    /**
+     * Settles the fills of this tick and saves what changed during it.
+     */
+    private void settlePending() {
+        settle(ConfigSnapshot.current().auction().settleBatchSize());
+        if (saveRequested) {
+            saveAsync();
+        }
+    }
+
+    /**
+     * Settles queued fills, oldest first.
+     *
+     * @param limit The maximum number of fills to settle.
+     */
+    private void settle(int limit) {
+        if (pendingFills.isEmpty()) {
+            return;
+        }
+
+        Economy economy = economy();
+        for (int i = 0; i < limit && !pendingFills.isEmpty(); i++) {
+            settle(pendingFills.pollFirst(), economy);
+        }
+        changed();
+    }
+
+    private void settle(@NotNull Fill fill, @NotNull Economy economy) {
+        Order buy = fill.buy();
+        Order sell = fill.sell();
+        Material material = sell.getMaterial();
+
+        economy.depositPlayer(offlinePlayer(sell.getOwner()), fill.coins());
+        if (fill.buyerRefund() > 0) {
+            economy.depositPlayer(offlinePlayer(buy.getOwner()), fill.buyerRefund());
+        }
+        int unclaimed = deliver(buy.getOwner(), material, fill.quantity());
+        addClaim(buy.getOwner(), material, unclaimed);
+
+        plugin.getTradeLogger().logAuctionFill(sell.getOwner(), sell.getOwnerName(), buy.getOwner(),
+                buy.getOwnerName(), material, fill.quantity(), fill.coins());
+        plugin.getAnomalyDetector().submit(new SettlementEvent(fill.timestamp(), sell.getOwner(), sell.getOwnerName(),
+                buy.getOwner(), buy.getOwnerName(), 0, clampCoins(fill.coins()),
+                new long[]{ItemFingerprint.ofPlain(material, fill.quantity())}, new long[0]));
+        plugin.getMetrics().getAuctionFills().increment();
+
+        notifyFilled(sell, fill);
+        notifyFilled(buy, fill);
+    }
+
+    private void notifyFilled(@NotNull Order order, @NotNull Fill fill) {
+        Player player = Bukkit.getPlayer(order.getOwner());
+        if (player != null) {
+            player.sendMessage(MessageUtil.getMessage("auction_filled", String.valueOf(order.getId()),
+                    String.valueOf(fill.quantity()), order.getMaterial().name(), String.valueOf(fill.price())));
+        }
+    }
+
+    /**
+     * Returns the unfilled escrow of an order to its owner: the items of a sell order, the coins of a buy order.
+     */
+    private void refund(@NotNull Order order) {
+        if (order.getSide() == OrderSide.SELL) {
+            addClaim(order.getOwner(), order.getMaterial(),
+                    deliver(order.getOwner(), order.getMaterial(), order.getRemaining()));
+        } else {
+            economy().depositPlayer(offlinePlayer(order.getOwner()), (double) order.getPrice() * order.getRemaining());
+        }
+    }
+
+    /**
+     * Puts items into the inventory of a player if they are online.
+     *
+     * @return The number of items that did not fit or could not be delivered because the player is offline.
+     */
+    private int deliver(@NotNull UUID owner, @NotNull Material material, int amount) {
+        Player player = Bukkit.getPlayer(owner);
+        if (player == null) {
+            return amount;
+        }
+
+        PlayerInventory inventory = player.getInventory();
+        int maxStackSize = material.getMaxStackSize();
+        int remaining = amount;
+        for (int slot = 0; slot < STORAGE_SLOTS && remaining > 0; slot++) {
+            ItemStack item = inventory.getItem(slot);
+            if (item == null || item.getType().isAir()) {
+                int stack = Math.min(remaining, maxStackSize);
+                inventory.setItem(slot, new ItemStack(material, stack));
+                remaining -= stack;
+            } else if (isPlain(item, material) && item.getAmount() < maxStackSize) {
+                int added = Math.min(remaining, maxStackSize - item.getAmount());
+                item.setAmount(item.getAmount() + added);
+                remaining -= added;
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Takes items out of an inventory if it holds enough of them.
+     *
+     * @return true if the items were taken, false if the inventory holds too few of them.
+     */
+    private static boolean takeItems(@NotNull PlayerInventory inventory, @NotNull Material material, int amount) {
+        int available = 0;
+        for (int slot = 0; slot < STORAGE_SLOTS && available < amount; slot++) {
+            ItemStack item = inventory.getItem(slot);
+            if (item != null && isPlain(item, material)) {
+                available += item.getAmount();
+            }
+        }
+        if (available < amount) {
+            return false;
+        }
+
+        int remaining = amount;
+        for (int slot = 0; slot < STORAGE_SLOTS && remaining > 0; slot++) {
+            ItemStack item = inventory.getItem(slot);
+            if (item == null || !isPlain(item, material)) {
+                continue;
+            }
+            int taken = Math.min(remaining, item.getAmount());
+            remaining -= taken;
+            if (taken == item.getAmount()) {
+                inventory.setItem(slot, null);
+            } else {
+                item.setAmount(item.getAmount() - taken);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether an item is of the given material and carries no meta data, e.g. no name or enchantments,
+     * since orders trade items by their material only.
+     */
+    private static boolean isPlain(@NotNull ItemStack item, @NotNull Material material) {
+        return item.getType() == material && !item.hasItemMeta();
+    }
+
+    private void addClaim(@NotNull UUID owner, @NotNull Material material, int amount) {
+        if (amount > 0) {
+            claims.computeIfAbsent(owner, key -> new EnumMap<>(Material.class)).merge(material, amount, Integer::sum);
+        }
+    }
+
+    private @NotNull OrderBook book(@NotNull Material material) {
+        return books.computeIfAbsent(material, OrderBook::new);
+    }
+
+    private void track(@NotNull Order order) {
+        openOrders.put(order.getId(), order);
+        ordersByOwner.computeIfAbsent(order.getOwner(), owner -> new LinkedHashSet<>()).add(order);
+    }
+
+    private void untrack(@NotNull Order order) {
+        openOrders.remove(order.getId());
+        Set<Order> owned = ordersByOwner.get(order.getOwner());
+        if (owned != null && owned.remove(order) && owned.isEmpty()) {
+            ordersByOwner.remove(order.getOwner());
+        }
+    }
+
+    /**
+     * Marks the state as changed, so it is saved at the end of the tick.
+     */
+    private void changed() {
+        dirty = true;
+        saveRequested = true;
+    }
+
+    /**
+     * Saves the state on an I/O thread if anything changed since the last save. The state is copied on the main
+     * thread first, so the orders are not read while they are being filled. Saves write the same file, so a save is
+     * postponed to the next tick while the previous one is still running, and a failed save marks the state as
+     * changed again, so the periodic save retries it.
+     */
+    private void saveAsync() {
+        if (!pendingSave.isDone()) {
+            return;
+        }
+        saveRequested = false;
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+
+        AuctionStorage.Snapshot snapshot = snapshot();
+        pendingSave = plugin.getExecutors().runIo(() -> {
+            try {
+                storage.save(snapshot);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Could not save the auction house", e);
+                dirty = true;
+            }
+        });
+    }
+
+    /**
+     * Copies the state to be saved. The fills not settled yet are saved as they are, since the orders they filled
+     * no longer hold their escrow, and are settled after a restart.
+     */
+    private @NotNull AuctionStorage.Snapshot snapshot() {
+        List<Order> orders = new ArrayList<>(openOrders.size());
+        for (Order order : openOrders.values()) {
+            orders.add(new Order(order.getId(), order.getSide(), order.getOwner(), order.getOwnerName(),
+                    order.getMaterial(), order.getPrice(), order.getQuantity(), order.getRemaining(),
+                    order.getPlacedAt()));
+        }
+        orders.sort((first, second) -> Long.compare(first.getId(), second.getId()));
+
+        Map<UUID, Map<Material, Integer>> copy = new LinkedHashMap<>();
+        claims.forEach((owner, items) -> copy.put(owner, Map.copyOf(items)));
+        return new AuctionStorage.Snapshot(nextId, orders, List.copyOf(pendingFills), copy);
+    }
+
+    private static @NotNull OfflinePlayer offlinePlayer(@NotNull UUID owner) {
+        return Bukkit.getOfflinePlayer(owner);
+    }
+
+    private static @NotNull Economy economy() {
+        return Bukkit.getServicesManager().getRegistration(Economy.class).getProvider();
+    }
+
+    private static int clampCoins(long coins) {
+        return (int) Math.min(coins, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The outcome of placing an order.
+     *
+     * @param result Whether the order was accepted and, if not, why.
+     * @param order  The placed order, null if it was rejected. It may already be filled completely.
+     */
+    public record Placement(@NotNull Result result, @Nullable Order order) {
+
+        /**
+         * Enum representing the outcomes of placing an order, with the key of the message shown to the player.
+         */
+        @Getter
+        public enum Result {
+            PLACED("auction_placed"),
+            DISABLED("auction_disabled"),
+            INVALID("auction_invalid_order"),
+            TOO_MANY_ORDERS("auction_too_many_orders"),
+            NOT_ENOUGH_ITEMS("auction_not_enough_items"),
+            NOT_ENOUGH_COINS("auction_not_enough_coins");
+
+            private final @NotNull String messageKey;
+
+            Result(@NotNull String messageKey) {
+                this.messageKey = messageKey;
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package de.bukkitnews.trading.trade.auction;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Persists the open orders of the auction house, the fills not settled yet and the items waiting to be claimed, so
+ * their escrow survives a restart. The state is written as a whole to "auction.yml", first to a temporary file
+ * which then replaces the previous one, so a crash while saving never leaves a half-written file.
+ */
+final class AuctionStorage {
+
+    private final @NotNull Path file;
+    private final @NotNull Logger logger;
+
+    AuctionStorage(@NotNull Path file, @NotNull Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    /**
+     * Reads the saved state. Malformed orders are skipped with a warning.
+     *
+     * @return The saved state, empty if nothing was saved yet.
+     * @throws IOException If the file could not be read or is not valid YAML.
+     */
+    @NotNull Snapshot load() throws IOException {
+        if (!Files.exists(file)) {
+            return new Snapshot(1, List.of(), List.of(), Map.of());
+        }
+
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.load(file.toFile());
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("Invalid auction house file " + file.getFileName(), e);
+        }
+
+        List<Order> orders = new ArrayList<>();
+        ConfigurationSection orderSection = config.getConfigurationSection("orders");
+        if (orderSection != null) {
+            for (String key : orderSection.getKeys(false)) {
+                try {
+                    orders.add(readOrder(Long.parseLong(key), orderSection.getConfigurationSection(key)));
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    logger.warning("Skipping malformed auction order " + key + ": " + e.getMessage());
+                }
+            }
+        }
+        orders.sort(Comparator.comparingLong(Order::getId));
+
+        List<Fill> fills = new ArrayList<>();
+        ConfigurationSection fillSection = config.getConfigurationSection("fills");
+        if (fillSection != null) {
+            for (String key : fillSection.getKeys(false)) {
+                try {
+                    fills.add(readFill(fillSection.getConfigurationSection(key)));
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    logger.warning("Skipping malformed auction fill " + key + ": " + e.getMessage());
+                }
+            }
+        }
+
+        Map<UUID, Map<Material, Integer>> claims = new HashMap<>();
+        ConfigurationSection claimSection = config.getConfigurationSection("claims");
+        if (claimSection != null) {
+            for (String owner : claimSection.getKeys(false)) {
+                ConfigurationSection items = claimSection.getConfigurationSection(owner);
+                Map<Material, Integer> amounts = new EnumMap<>(Material.class);
+                for (String material : items == null ? List.<String>of() : items.getKeys(false)) {
+                    Material type = Material.matchMaterial(material);
+                    int amount = items.getInt(material);
+                    if (type != null && amount > 0) {
+                        amounts.put(type, amount);
+                    }
+                }
+                if (!amounts.isEmpty()) {
+                    claims.put(UUID.fromString(owner), amounts);
+                }
+            }
+        }
+
+        long nextId = Math.max(config.getLong("next-id", 1), orders.isEmpty() ? 1 : orders.getLast().getId() + 1);
+        return new Snapshot(nextId, orders, fills, claims);
+    }
+
+    private static @NotNull Order readOrder(long id, @NotNull ConfigurationSection section) {
+        Material material = Material.matchMaterial(section.getString("material", ""));
+        if (material == null) {
+            throw new IllegalArgumentException("unknown material " + section.getString("material"));
+        }
+        int quantity = section.getInt("quantity");
+        int remaining = section.getInt("remaining");
+        long price = section.getLong("price");
+        if (quantity <= 0 || remaining <= 0 || remaining > quantity || price <= 0) {
+            throw new IllegalArgumentException("invalid quantity or price");
+        }
+        return new Order(id, OrderSide.valueOf(section.getString("side", "")),
+                UUID.fromString(section.getString("owner", "")),
+                section.getString("name", "?"), material, price, quantity, remaining, section.getLong("placed"));
+    }
+
+    /**
+     * Reads a fill. Only what settling needs is saved of its orders, which are restored as filled orders.
+     */
+    private static @NotNull Fill readFill(@NotNull ConfigurationSection section) {
+        Material material = Material.matchMaterial(section.getString("material", ""));
+        if (material == null) {
+            throw new IllegalArgumentException("unknown material " + section.getString("material"));
+        }
+        int quantity = section.getInt("quantity");
+        long price = section.getLong("price");
+        long buyPrice = section.getLong("buy-price");
+        if (quantity <= 0 || price <= 0 || buyPrice < price) {
+            throw new IllegalArgumentException("invalid quantity or price");
+        }
+        long timestamp = section.getLong("time");
+        Order buy = new Order(section.getLong("buy-id"), OrderSide.BUY, UUID.fromString(section.getString("buyer", "")),
+                section.getString("buyer-name", "?"), material, buyPrice, quantity, 0, timestamp);
+        Order sell = new Order(section.getLong("sell-id"), OrderSide.SELL,
+                UUID.fromString(section.getString("seller", "")), section.getString("seller-name", "?"), material,
+                price, quantity, 0, timestamp);
+        return new Fill(buy, sell, price, quantity, timestamp);
+    }
+
+    /**
+     * Writes the state, replacing the previously saved one.
+     *
+     * @param snapshot The state to save. Its orders must not be modified while saving. Of the orders of its fills,
+     *                 only the fields that never change are read.
+     * @throws IOException If the file could not be written.
+     */
+    void save(@NotNull Snapshot snapshot) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("next-id", snapshot.nextId());
+        for (Order order : snapshot.orders()) {
+            String path = "orders." + order.getId() + ".";
+            config.set(path + "side", order.getSide().name());
+            config.set(path + "owner", order.getOwner().toString());
+            config.set(path + "name", order.getOwnerName());
+            config.set(path + "material", order.getMaterial().name());
+            config.set(path + "price", order.getPrice());
+            config.set(path + "quantity", order.getQuantity());
+            config.set(path + "remaining", order.getRemaining());
+            config.set(path + "placed", order.getPlacedAt());
+        }
+        List<Fill> fills = snapshot.fills();
+        for (int i = 0; i < fills.size(); i++) {
+            Fill fill = fills.get(i);
+            String path = "fills." + i + ".";
+            config.set(path + "buy-id", fill.buy().getId());
+            config.set(path + "buyer", fill.buy().getOwner().toString());
+            config.set(path + "buyer-name", fill.buy().getOwnerName());
+            config.set(path + "buy-price", fill.buy().getPrice());
+            config.set(path + "sell-id", fill.sell().getId());
+            config.set(path + "seller", fill.sell().getOwner().toString());
+            config.set(path + "seller-name", fill.sell().getOwnerName());
+            config.set(path + "material", fill.sell().getMaterial().name());
+            config.set(path + "price", fill.price());
+            config.set(path + "quantity", fill.quantity());
+            config.set(path + "time", fill.timestamp());
+        }
+        for (Map.Entry<UUID, Map<Material, Integer>> claim : snapshot.claims().entrySet()) {
+            for (Map.Entry<Material, Integer> item : claim.getValue().entrySet()) {
+                config.set("claims." + claim.getKey() + "." + item.getKey().name(), item.getValue());
+            }
+        }
+
+        Files.createDirectories(file.getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temporary, config.saveToString());
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The persistent state of the auction house.
+     *
+     * @param nextId The ID of the next order.
+     * @param orders The open orders, oldest first, with their unfilled quantity.
+     * @param fills  The fills not settled yet, oldest first.
+     * @param claims The items waiting to be claimed, by owner and material.
+     */
+    record Snapshot(long nextId, @NotNull List<Order> orders, @NotNull List<Fill> fills,
+                    @NotNull Map<UUID, Map<Material, Integer>> claims) {
+    }
+}
@@ -0,0 +1,33 @@
+package de.bukkitnews.trading.trade.auction;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A match between a buy and a sell order, waiting to be settled.
+ *
+ * @param buy       The buy order.
+ * @param sell      The sell order.
+ * @param price     The price per item in coins, the price of the order that was resting in the book.
+ * @param quantity  The number of items traded.
+ * @param timestamp The time of the match in epoch milliseconds.
+ */
+public record Fill(@NotNull Order buy, @NotNull Order sell, long price, int quantity, long timestamp) {
+
+    /**
+     * Returns the coins the seller receives.
+     *
+     * @return The price times the quantity.
+     */
+    public long coins() {
+        return price * quantity;
+    }
+
+    /**
+     * Returns the coins the buyer escrowed above the price actually paid, which are refunded on settlement.
+     *
+     * @return The refund for the buyer.
+     */
+    public long buyerRefund() {
+        return (buy.getPrice() - price) * quantity;
+    }
+}
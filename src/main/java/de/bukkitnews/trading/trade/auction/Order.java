@@ -0,0 +1,67 @@
+package de.bukkitnews.trading.trade.auction;
+
+import lombok.Getter;
+import org.bukkit.Material;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * A limit order in the auction house: an offer to buy or sell up to a quantity of an item at a price per item.
+ * <p>
+ * The goods of an order are escrowed when it is placed: a sell order holds the items taken from the seller's
+ * inventory, a buy order the coins for the full quantity at its limit price. The escrow of the part that is not
+ * filled yet is returned when the order is cancelled.
+ */
+@Getter
+public final class Order {
+
+    private final long id;
+    private final @NotNull OrderSide side;
+    private final @NotNull UUID owner;
+    private final @NotNull String ownerName;
+    private final @NotNull Material material;
+    private final long price;
+    private final int quantity;
+    private final long placedAt;
+    private int remaining;
+
+    /**
+     * Creates an order.
+     *
+     * @param id        The ID of the order, which also orders orders of the same price by time.
+     * @param side      Whether the order buys or sells.
+     * @param owner     The UUID of the player who placed the order.
+     * @param ownerName The name of the player who placed the order.
+     * @param material  The item traded.
+     * @param price     The limit price per item in coins.
+     * @param quantity  The number of items.
+     * @param remaining The number of items not filled yet.
+     * @param placedAt  The time the order was placed in epoch milliseconds.
+     */
+    public Order(long id, @NotNull OrderSide side, @NotNull UUID owner, @NotNull String ownerName,
+                 @NotNull Material material, long price, int quantity, int remaining, long placedAt) {
+        this.id = id;
+        this.side = side;
+        this.owner = owner;
+        this.ownerName = ownerName;
+        this.material = material;
+        this.price = price;
+        this.quantity = quantity;
+        this.remaining = remaining;
+        this.placedAt = placedAt;
+    }
+
+    /**
+     * Takes items from the unfilled part of the order.
+     *
+     * @param amount The number of items filled.
+     */
+    void fill(int amount) {
+        remaining -= amount;
+    }
+
+    public boolean isFilled() {
+        return remaining == 0;
+    }
+}
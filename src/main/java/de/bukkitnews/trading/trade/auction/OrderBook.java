@@ -0,0 +1,121 @@
+package de.bukkitnews.trading.trade.auction;
+
+import org.bukkit.Material;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * The resting buy and sell orders of one item, matched with price-time priority: an incoming order is matched
+ * against the best opposite price first and, within a price, against the oldest order first. The trade happens at
+ * the price of the resting order.
+ * <p>
+ * This class is not thread-safe. The {@link AuctionHouse} uses it on the main thread only.
+ */
+public final class OrderBook {
+
+    private final @NotNull Material material;
+    private final @NotNull PriceLevels bids = new PriceLevels(OrderSide.BUY);
+    private final @NotNull PriceLevels asks = new PriceLevels(OrderSide.SELL);
+
+    OrderBook(@NotNull Material material) {
+        this.material = material;
+    }
+
+    /**
+     * Matches an incoming order against the resting orders as far as the prices cross. Resting orders of the same
+     * owner are not traded against but taken out of the book, so a player never trades with themselves.
+     *
+     * @param taker     The incoming order.
+     * @param now       The current time in epoch milliseconds.
+     * @param fills     Receives the matches.
+     * @param cancelled Receives the resting orders taken out because they belonged to the owner of the taker.
+     */
+    void match(@NotNull Order taker, long now, @NotNull List<Fill> fills, @NotNull List<Order> cancelled) {
+        boolean buying = taker.getSide() == OrderSide.BUY;
+        PriceLevels opposite = buying ? asks : bids;
+
+        while (taker.getRemaining() > 0 && !opposite.isEmpty()) {
+            long price = opposite.bestPrice();
+            if (buying ? price > taker.getPrice() : price < taker.getPrice()) {
+                break;
+            }
+
+            ArrayDeque<Order> queue = opposite.best();
+            while (taker.getRemaining() > 0 && !queue.isEmpty()) {
+                Order maker = queue.peekFirst();
+                if (maker.getOwner().equals(taker.getOwner())) {
+                    queue.pollFirst();
+                    cancelled.add(maker);
+                    continue;
+                }
+
+                int quantity = Math.min(taker.getRemaining(), maker.getRemaining());
+                taker.fill(quantity);
+                maker.fill(quantity);
+                fills.add(buying ? new Fill(taker, maker, price, quantity, now) : new Fill(maker, taker, price, quantity, now));
+                if (maker.isFilled()) {
+                    queue.pollFirst();
+                }
+            }
+            if (queue.isEmpty()) {
+                opposite.removeBest();
+            }
+        }
+    }
+
+    /**
+     * Adds an order to the book. Its price must not cross the best opposite price, i.e. it must have been matched
+     * first.
+     *
+     * @param order The order.
+     */
+    void rest(@NotNull Order order) {
+        (order.getSide() == OrderSide.BUY ? bids : asks).add(order);
+    }
+
+    /**
+     * Removes a resting order.
+     *
+     * @param order The order.
+     * @return true if the order was resting in this book.
+     */
+    boolean remove(@NotNull Order order) {
+        return (order.getSide() == OrderSide.BUY ? bids : asks).remove(order);
+    }
+
+    public @NotNull Material getMaterial() {
+        return material;
+    }
+
+    /**
+     * Summarizes the best price levels of one side.
+     *
+     * @param side   The side.
+     * @param levels The maximum number of levels.
+     * @return The levels, best first.
+     */
+    public @NotNull List<Level> depth(@NotNull OrderSide side, int levels) {
+        PriceLevels book = side == OrderSide.BUY ? bids : asks;
+        int count = Math.min(levels, book.levels());
+        Level[] depth = new Level[count];
+        for (int i = 0; i < count; i++) {
+            depth[i] = new Level(book.priceAt(i), book.quantityAt(i));
+        }
+        return List.of(depth);
+    }
+
+    public boolean isEmpty() {
+        return bids.isEmpty() && asks.isEmpty();
+    }
+
+    /**
+     * A price level of the book.
+     *
+     * @param price    The price per item in coins.
+     * @param quantity The number of items offered at the price.
+     */
+    public record Level(long price, long quantity) {
+    }
+}
@@ -0,0 +1,9 @@
+package de.bukkitnews.trading.trade.auction;
+
+/**
+ * Enum representing the side of an order in the auction house.
+ */
+public enum OrderSide {
+    BUY,
+    SELL
+}
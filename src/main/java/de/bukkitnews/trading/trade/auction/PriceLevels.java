@@ -0,0 +1,150 @@
+package de.bukkitnews.trading.trade.auction;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * One side of an order book: the resting orders grouped into price levels, each a FIFO queue in time order.
+ * <p>
+ * The prices are kept in a sorted primitive {@code long[]} with the queues in a parallel array, sorted so the best
+ * price is the last element. The best level, which every match touches, is therefore reached and removed without
+ * shifting, and looking up a price is a binary search without boxing. For bids the best price is the highest,
+ * for asks the lowest, so asks store their prices negated.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class PriceLevels {
+
+    private final boolean ascending;
+    private long[] keys = new long[16];
+    @SuppressWarnings("unchecked")
+    private ArrayDeque<Order>[] queues = new ArrayDeque[16];
+    private int size;
+
+    /**
+     * Creates an empty side.
+     *
+     * @param side The side of the orders held, which decides whether high or low prices are best.
+     */
+    PriceLevels(@NotNull OrderSide side) {
+        this.ascending = side == OrderSide.BUY;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of price levels.
+     *
+     * @return The number of distinct prices with resting orders.
+     */
+    int levels() {
+        return size;
+    }
+
+    /**
+     * Returns the best price. The side must not be empty.
+     *
+     * @return The highest bid or the lowest ask.
+     */
+    long bestPrice() {
+        return toPrice(keys[size - 1]);
+    }
+
+    /**
+     * Returns the orders at the best price, oldest first. The side must not be empty.
+     *
+     * @return The queue of the best level.
+     */
+    @NotNull ArrayDeque<Order> best() {
+        return queues[size - 1];
+    }
+
+    /**
+     * Removes the best level, e.g. once all its orders have been filled.
+     */
+    void removeBest() {
+        queues[--size] = null;
+    }
+
+    /**
+     * Adds an order behind all orders of the same price.
+     *
+     * @param order The order.
+     */
+    void add(@NotNull Order order) {
+        long key = toKey(order.getPrice());
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index >= 0) {
+            queues[index].addLast(order);
+            return;
+        }
+
+        int insert = -index - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            queues = Arrays.copyOf(queues, size * 2);
+        }
+        System.arraycopy(keys, insert, keys, insert + 1, size - insert);
+        System.arraycopy(queues, insert, queues, insert + 1, size - insert);
+        keys[insert] = key;
+        ArrayDeque<Order> queue = new ArrayDeque<>();
+        queue.add(order);
+        queues[insert] = queue;
+        size++;
+    }
+
+    /**
+     * Removes a resting order, e.g. when it is cancelled.
+     *
+     * @param order The order.
+     * @return true if the order was resting on this side.
+     */
+    boolean remove(@NotNull Order order) {
+        int index = Arrays.binarySearch(keys, 0, size, toKey(order.getPrice()));
+        if (index < 0 || !queues[index].remove(order)) {
+            return false;
+        }
+        if (queues[index].isEmpty()) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(queues, index + 1, queues, index, size - index - 1);
+            queues[--size] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the price of a level, counted from the best one.
+     *
+     * @param level The level, 0 for the best.
+     * @return The price of the level.
+     */
+    long priceAt(int level) {
+        return toPrice(keys[size - 1 - level]);
+    }
+
+    /**
+     * Returns the number of items resting at a level, counted from the best one.
+     *
+     * @param level The level, 0 for the best.
+     * @return The unfilled quantity of all orders at the level.
+     */
+    long quantityAt(int level) {
+        long quantity = 0;
+        for (Order order : queues[size - 1 - level]) {
+            quantity += order.getRemaining();
+        }
+        return quantity;
+    }
+
+    private long toKey(long price) {
+        return ascending ? price : -price;
+    }
+
+    private long toPrice(long key) {
+        return ascending ? key : -key;
+    }
+}
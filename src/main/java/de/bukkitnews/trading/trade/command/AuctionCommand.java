@@ -0,0 +1,238 @@
+package de.bukkitnews.trading.trade.command;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.trade.auction.AuctionHouse;
+import de.bukkitnews.trading.trade.auction.Order;
+import de.bukkitnews.trading.trade.auction.OrderBook;
+import de.bukkitnews.trading.trade.auction.OrderSide;
+import de.bukkitnews.trading.util.MessageUtil;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class handles the "/trade ah" sub commands of the auction house:
+ * placing buy and sell orders, cancelling and listing them, showing the book of an item and claiming items.
+ */
+@RequiredArgsConstructor
+class AuctionCommand {
+
+    static final @NotNull String PERMISSION = "trading.command.ah";
+
+    private static final @NotNull List<String> ACTIONS = List.of("buy", "sell", "cancel", "orders", "book", "claim");
+    private static final int BOOK_DEPTH = 5;
+
+    private final @NotNull Trading plugin;
+
+    /**
+     * Executes an auction house sub command.
+     *
+     * @param player The player executing the command.
+     * @param args   The arguments after "ah".
+     */
+    void execute(@NotNull Player player, @NotNull List<String> args) {
+        String action = args.isEmpty() ? "" : args.get(0).toLowerCase(Locale.ROOT);
+        switch (action) {
+            case "buy", "sell" -> {
+                if (args.size() == 4) {
+                    placeOrder(player, action.equals("buy") ? OrderSide.BUY : OrderSide.SELL, args.get(1), args.get(2), args.get(3));
+                    return;
+                }
+            }
+            case "cancel" -> {
+                if (args.size() == 2) {
+                    cancelOrder(player, args.get(1));
+                    return;
+                }
+            }
+            case "orders" -> {
+                if (args.size() == 1) {
+                    displayOrders(player);
+                    return;
+                }
+            }
+            case "book" -> {
+                if (args.size() == 2) {
+                    displayBook(player, args.get(1));
+                    return;
+                }
+            }
+            case "claim" -> {
+                if (args.size() == 1) {
+                    claimItems(player);
+                    return;
+                }
+            }
+            default -> {
+            }
+        }
+        player.sendMessage(MessageUtil.getMessage("auction_usage"));
+    }
+
+    /**
+     * This method handles the '/trade ah <buy|sell> <item> <amount> <price>' command.
+     */
+    private void placeOrder(@NotNull Player player, @NotNull OrderSide side, @NotNull String item,
+                            @NotNull String amount, @NotNull String price) {
+        Material material = Material.matchMaterial(item);
+        if (material == null) {
+            player.sendMessage(MessageUtil.getMessage("auction_unknown_item", item));
+            return;
+        }
+
+        int quantity;
+        long pricePerItem;
+        try {
+            quantity = Integer.parseInt(amount);
+            pricePerItem = Long.parseLong(price);
+        } catch (NumberFormatException e) {
+            player.sendMessage(MessageUtil.getMessage("auction_invalid_order"));
+            return;
+        }
+
+        AuctionHouse.Placement placement = plugin.getAuctionHouse().place(player, side, material, quantity, pricePerItem);
+        Order order = placement.order();
+        if (order == null) {
+            player.sendMessage(MessageUtil.getMessage(placement.result().getMessageKey()));
+            return;
+        }
+        player.sendMessage(MessageUtil.getMessage("auction_placed", String.valueOf(order.getId()), describe(side),
+                String.valueOf(quantity), material.name(), String.valueOf(pricePerItem)));
+    }
+
+    /**
+     * This method handles the '/trade ah cancel <id>' command.
+     */
+    private void cancelOrder(@NotNull Player player, @NotNull String id) {
+        Order order;
+        try {
+            order = plugin.getAuctionHouse().cancel(player, Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            order = null;
+        }
+
+        if (order == null) {
+            player.sendMessage(MessageUtil.getMessage("auction_unknown_order", id));
+            return;
+        }
+        player.sendMessage(MessageUtil.getMessage("auction_cancelled", id));
+    }
+
+    /**
+     * This method handles the '/trade ah orders' command.
+     */
+    private void displayOrders(@NotNull Player player) {
+        List<Order> orders = plugin.getAuctionHouse().getOrders(player.getUniqueId());
+        if (orders.isEmpty()) {
+            player.sendMessage(MessageUtil.getMessage("auction_orders_empty"));
+            return;
+        }
+
+        player.sendMessage(MessageUtil.getMessage("auction_orders_header", String.valueOf(orders.size())));
+        for (Order order : orders) {
+            player.sendMessage(MessageUtil.getMessage("auction_order_line", String.valueOf(order.getId()),
+                    describe(order.getSide()), String.valueOf(order.getRemaining()), String.valueOf(order.getQuantity()),
+                    order.getMaterial().name(), String.valueOf(order.getPrice())));
+        }
+    }
+
+    /**
+     * This method handles the '/trade ah book <item>' command. It shows the best prices of both sides,
+     * the asks from the highest to the lowest price above the bids, so the spread is in the middle.
+     */
+    private void displayBook(@NotNull Player player, @NotNull String item) {
+        Material material = Material.matchMaterial(item);
+        if (material == null) {
+            player.sendMessage(MessageUtil.getMessage("auction_unknown_item", item));
+            return;
+        }
+
+        OrderBook book = plugin.getAuctionHouse().getBook(material);
+        if (book == null || book.isEmpty()) {
+            player.sendMessage(MessageUtil.getMessage("auction_book_empty", material.name()));
+            return;
+        }
+
+        player.sendMessage(MessageUtil.getMessage("auction_book_header", material.name()));
+        for (OrderBook.Level level : book.depth(OrderSide.SELL, BOOK_DEPTH).reversed()) {
+            sendLevel(player, OrderSide.SELL, level);
+        }
+        for (OrderBook.Level level : book.depth(OrderSide.BUY, BOOK_DEPTH)) {
+            sendLevel(player, OrderSide.BUY, level);
+        }
+    }
+
+    private void sendLevel(@NotNull Player player, @NotNull OrderSide side, @NotNull OrderBook.Level level) {
+        player.sendMessage(MessageUtil.getMessage("auction_book_line", describe(side),
+                String.valueOf(level.quantity()), String.valueOf(level.price())));
+    }
+
+    /**
+     * This method handles the '/trade ah claim' command.
+     */
+    private void claimItems(@NotNull Player player) {
+        AuctionHouse auctionHouse = plugin.getAuctionHouse();
+        if (!auctionHouse.hasClaims(player.getUniqueId())) {
+            player.sendMessage(MessageUtil.getMessage("auction_nothing_to_claim"));
+            return;
+        }
+
+        int delivered = auctionHouse.claim(player);
+        if (delivered > 0) {
+            player.sendMessage(MessageUtil.getMessage("auction_claimed", String.valueOf(delivered)));
+        }
+        if (auctionHouse.hasClaims(player.getUniqueId())) {
+            player.sendMessage(MessageUtil.getMessage("auction_claims_waiting"));
+        }
+    }
+
+    /**
+     * Suggests completions for an auction house sub command.
+     *
+     * @param player      The player completing the command.
+     * @param args        The arguments after "ah".
+     * @param suggestions Receives the suggestions.
+     */
+    void complete(@NotNull Player player, @NotNull List<String> args, @NotNull List<String> suggestions) {
+        String last = args.getLast();
+        if (args.size() == 1) {
+            for (String action : ACTIONS) {
+                if (action.startsWith(last.toLowerCase(Locale.ROOT))) {
+                    suggestions.add(action);
+                }
+            }
+            return;
+        }
+        if (args.size() != 2) {
+            return;
+        }
+
+        String action = args.get(0).toLowerCase(Locale.ROOT);
+        if (action.equals("cancel")) {
+            for (Order order : plugin.getAuctionHouse().getOrders(player.getUniqueId())) {
+                String id = String.valueOf(order.getId());
+                if (id.startsWith(last)) {
+                    suggestions.add(id);
+                }
+            }
+        } else if (action.equals("buy") || action.equals("sell") || action.equals("book")) {
+            String prefix = last.toUpperCase(Locale.ROOT);
+            for (Material material : Material.values()) {
+                if (suggestions.size() >= TradeCommand.MAX_SUGGESTIONS) {
+                    break;
+                }
+                if (material.isItem() && !material.isAir() && !material.isLegacy() && material.name().startsWith(prefix)) {
+                    suggestions.add(material.name().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+    }
+
+    private static @NotNull String describe(@NotNull OrderSide side) {
+        return side.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,135 @@
+package de.bukkitnews.trading.trade.command;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.trade.logging.export.ExportResult;
+import de.bukkitnews.trading.trade.logging.export.TradeAggregates;
+import de.bukkitnews.trading.util.MessageUtil;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class handles the "/trade export" sub commands: exporting the trade log into a columnar file and showing
+ * aggregates of the newest export.
+ */
+@RequiredArgsConstructor
+class ExportCommand {
+
+    static final @NotNull String PERMISSION = "trading.command.export";
+
+    private static final int TOP_GROUPS = 10;
+
+    private final @NotNull Trading plugin;
+
+    /**
+     * Executes an export sub command.
+     *
+     * @param player The player executing the command.
+     * @param args   The arguments after "export".
+     */
+    void execute(@NotNull Player player, @NotNull List<String> args) {
+        if (args.size() == 2 && args.get(0).equalsIgnoreCase("top")) {
+            TradeAggregates.GroupBy groupBy;
+            try {
+                groupBy = TradeAggregates.GroupBy.valueOf(args.get(1).toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                player.sendMessage(MessageUtil.getMessage("export_usage"));
+                return;
+            }
+            displayTop(player, groupBy);
+            return;
+        }
+
+        if (args.size() <= 1) {
+            long sinceMillis = 0L;
+            if (args.size() == 1) {
+                try {
+                    int days = Integer.parseInt(args.get(0));
+                    if (days <= 0) {
+                        throw new NumberFormatException();
+                    }
+                    sinceMillis = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days);
+                } catch (NumberFormatException e) {
+                    player.sendMessage(MessageUtil.getMessage("export_usage"));
+                    return;
+                }
+            }
+            export(player, sinceMillis);
+            return;
+        }
+        player.sendMessage(MessageUtil.getMessage("export_usage"));
+    }
+
+    /**
+     * This method handles the '/trade export [days]' command.
+     */
+    private void export(@NotNull Player player, long sinceMillis) {
+        player.sendMessage(MessageUtil.getMessage("export_started"));
+        plugin.getExecutors().thenSync(plugin.getTradeLogger().export(sinceMillis), result -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            if (result.isEmpty()) {
+                player.sendMessage(MessageUtil.getMessage("export_failed"));
+                return;
+            }
+
+            ExportResult export = result.get();
+            player.sendMessage(MessageUtil.getMessage("export_done", String.valueOf(export.trades()),
+                    export.file().getFileName().toString(),
+                    String.format(Locale.ROOT, "%.1f", export.bytes() / (1024.0 * 1024.0)),
+                    String.valueOf(export.durationMillis())));
+        });
+    }
+
+    /**
+     * This method handles the '/trade export top <day|player|material>' command. It shows the groups with the
+     * largest sums, or the most recent days.
+     */
+    private void displayTop(@NotNull Player player, @NotNull TradeAggregates.GroupBy groupBy) {
+        plugin.getExecutors().thenSync(plugin.getTradeLogger().aggregateLatestExport(groupBy), result -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            if (result.isEmpty()) {
+                player.sendMessage(MessageUtil.getMessage("export_not_found"));
+                return;
+            }
+
+            List<TradeAggregates.Aggregate> aggregates = result.get();
+            List<TradeAggregates.Aggregate> top = groupBy == TradeAggregates.GroupBy.DAY
+                    ? aggregates.subList(Math.max(0, aggregates.size() - TOP_GROUPS), aggregates.size())
+                    : aggregates.subList(0, Math.min(TOP_GROUPS, aggregates.size()));
+            player.sendMessage(MessageUtil.getMessage("export_top_header", groupBy.name().toLowerCase(Locale.ROOT),
+                    String.valueOf(aggregates.size())));
+            for (TradeAggregates.Aggregate aggregate : top) {
+                player.sendMessage(MessageUtil.getMessage("export_top_line", aggregate.key(),
+                        String.valueOf(aggregate.count()), String.valueOf(aggregate.sum())));
+            }
+        });
+    }
+
+    /**
+     * Suggests completions for an export sub command.
+     *
+     * @param args        The arguments after "export".
+     * @param suggestions Receives the suggestions.
+     */
+    void complete(@NotNull List<String> args, @NotNull List<String> suggestions) {
+        String last = args.getLast().toLowerCase(Locale.ROOT);
+        if (args.size() == 1 && "top".startsWith(last)) {
+            suggestions.add("top");
+        } else if (args.size() == 2 && args.get(0).equalsIgnoreCase("top")) {
+            for (TradeAggregates.GroupBy groupBy : TradeAggregates.GroupBy.values()) {
+                String name = groupBy.name().toLowerCase(Locale.ROOT);
+                if (name.startsWith(last)) {
+                    suggestions.add(name);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package de.bukkitnews.trading.trade.command;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.trade.mailbox.Mailbox;
+import de.bukkitnews.trading.util.MessageUtil;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class handles the "/trade mail" sub commands of the mailbox:
+ * sending offers to offline players, listing the own offers and accepting or declining them.
+ */
+@RequiredArgsConstructor
+class MailCommand {
+
+    static final @NotNull String PERMISSION = "trading.command.mail";
+
+    private static final @NotNull List<String> ACTIONS = List.of("send", "list", "accept", "decline");
+
+    private final @NotNull Trading plugin;
+
+    /**
+     * Executes a mailbox sub command.
+     *
+     * @param player The player executing the command.
+     * @param args   The arguments after "mail".
+     */
+    void execute(@NotNull Player player, @NotNull List<String> args) {
+        Mailbox mailbox = plugin.getMailbox();
+        String action = args.isEmpty() ? "list" : args.get(0).toLowerCase(Locale.ROOT);
+        switch (action) {
+            case "list" -> {
+                if (args.size() <= 1) {
+                    mailbox.list(player);
+                    return;
+                }
+            }
+            case "send" -> {
+                if (args.size() == 2 || args.size() == 3) {
+                    int coins;
+                    try {
+                        coins = args.size() == 3 ? Integer.parseInt(args.get(2)) : 0;
+                    } catch (NumberFormatException e) {
+                        player.sendMessage(MessageUtil.getMessage("mailbox_usage"));
+                        return;
+                    }
+                    mailbox.send(player, args.get(1), coins);
+                    return;
+                }
+            }
+            case "accept", "decline" -> {
+                if (args.size() == 2) {
+                    long id;
+                    try {
+                        id = Long.parseLong(args.get(1));
+                    } catch (NumberFormatException e) {
+                        player.sendMessage(MessageUtil.getMessage("mailbox_unknown_offer", args.get(1)));
+                        return;
+                    }
+                    if (action.equals("accept")) {
+                        mailbox.accept(player, id);
+                    } else {
+                        mailbox.decline(player, id);
+                    }
+                    return;
+                }
+            }
+            default -> {
+            }
+        }
+        player.sendMessage(MessageUtil.getMessage("mailbox_usage"));
+    }
+
+    /**
+     * Suggests completions for a mailbox sub command.
+     *
+     * @param args        The arguments after "mail".
+     * @param suggestions Receives the suggestions.
+     */
+    void complete(@NotNull List<String> args, @NotNull List<String> suggestions) {
+        String last = args.getLast();
+        if (args.size() == 1) {
+            for (String action : ACTIONS) {
+                if (action.startsWith(last.toLowerCase(Locale.ROOT))) {
+                    suggestions.add(action);
+                }
+            }
+        } else if (args.size() == 2 && args.get(0).equalsIgnoreCase("send")) {
+            plugin.getPlayerNames().complete(last, TradeCommand.MAX_SUGGESTIONS, suggestions);
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package de.bukkitnews.trading.trade.command;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A case-insensitive prefix trie of the names of all online players, used for tab completion.
+ * It is updated incrementally when players join and quit, so completing a prefix only walks the prefix
+ * and the matching subtree instead of every online player.
+ * <p>
+ * Children are kept in small sorted arrays, which results in alphabetically ordered suggestions.
+ * This class is not thread-safe and must only be used from the main thread.
+ */
+public class PlayerNameTrie {
+
+    private final @NotNull Node root = new Node();
+    private int size;
+
+    /**
+     * Adds a player name. An existing name that only differs in case is replaced.
+     *
+     * @param name The player name to add.
+     */
+    public void add(@NotNull String name) {
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) {
+            node = node.childOrCreate(Character.toLowerCase(name.charAt(i)));
+        }
+
+        if (node.name == null) {
+            size++;
+            for (Node n = node; n != null; n = n.parent) {
+                n.count++;
+            }
+        }
+        node.name = name;
+    }
+
+    /**
+     * Removes a player name, ignoring case.
+     *
+     * @param name The player name to remove.
+     */
+    public void remove(@NotNull String name) {
+        Node node = find(name);
+        if (node == null || node.name == null) {
+            return;
+        }
+
+        node.name = null;
+        size--;
+        for (Node n = node; n != null; n = n.parent) {
+            n.count--;
+        }
+
+        while (node.parent != null && node.count == 0) {
+            node.parent.removeChild(node.key);
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Collects the names starting with the given prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix The prefix typed so far.
+     * @param limit  The maximum number of names to collect.
+     * @param result The list the matching names are added to.
+     */
+    public void complete(@NotNull String prefix, int limit, @NotNull List<String> result) {
+        Node node = find(prefix);
+        if (node != null) {
+            collect(node, limit, result);
+        }
+    }
+
+    /**
+     * Returns the number of names in the trie.
+     *
+     * @return The number of names.
+     */
+    public int size() {
+        return size;
+    }
+
+    private @Nullable Node find(@NotNull String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(prefix.charAt(i)));
+        }
+        return node;
+    }
+
+    private void collect(@NotNull Node node, int limit, @NotNull List<String> result) {
+        if (result.size() >= limit) {
+            return;
+        }
+        if (node.name != null) {
+            result.add(node.name);
+        }
+        for (int i = 0; i < node.childCount && result.size() < limit; i++) {
+            collect(node.children[i], limit, result);
+        }
+    }
+
+    /**
+     * A node of the trie. The children are stored sorted by their key character.
+     */
+    private static final class Node {
+
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private final char key;
+        private final @Nullable Node parent;
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private int childCount;
+        private @Nullable String name;
+        private int count;
+
+        private Node() {
+            this('\0', null);
+        }
+
+        private Node(char key, @Nullable Node parent) {
+            this.key = key;
+            this.parent = parent;
+        }
+
+        private @Nullable Node child(char c) {
+            int index = Arrays.binarySearch(keys, 0, childCount, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private @NotNull Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, 0, childCount, c);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            int insertAt = -index - 1;
+            if (childCount == keys.length) {
+                int capacity = Math.max(2, keys.length * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, insertAt, keys, insertAt + 1, childCount - insertAt);
+            System.arraycopy(children, insertAt, children, insertAt + 1, childCount - insertAt);
+
+            Node child = new Node(c, this);
+            keys[insertAt] = c;
+            children[insertAt] = child;
+            childCount++;
+            return child;
+        }
+
+        private void removeChild(char c) {
+            int index = Arrays.binarySearch(keys, 0, childCount, c);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(keys, index + 1, keys, index, childCount - index - 1);
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package de.bukkitnews.trading.trade.command;
 
 import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.concurrent.TradeExecutors;
+import de.bukkitnews.trading.profiler.ProfilerSection;
+import de.bukkitnews.trading.profiler.TickProfiler;
+import de.bukkitnews.trading.trade.logging.ItemSearch;
+import de.bukkitnews.trading.trade.ratelimit.RateLimitAction;
 import de.bukkitnews.trading.util.MessageUtil;
-import lombok.RequiredArgsConstructor;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -12,8 +16,12 @@ import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -21,10 +29,24 @@ import java.util.stream.Collectors;
  * This class handles the "/trade" command logic, allowing players to invite others to trade
  * and to accept trade invitations.
  */
-@RequiredArgsConstructor
 public class TradeCommand implements CommandExecutor, TabCompleter {
 
+    private static final @NotNull List<String> SUB_COMMANDS = List.of("accept", "ah", "export", "logs", "mail", "search", "stats");
+    private static final @NotNull List<String> SEARCH_PREFIXES = List.of("material:", "name:", "enchant:", "item:",
+            "days:", "limit:");
+    static final int MAX_SUGGESTIONS = 50;
+
     private final @NotNull Trading plugin;
+    private final @NotNull AuctionCommand auctionCommand;
+    private final @NotNull MailCommand mailCommand;
+    private final @NotNull ExportCommand exportCommand;
+
+    public TradeCommand(@NotNull Trading plugin) {
+        this.plugin = plugin;
+        this.auctionCommand = new AuctionCommand(plugin);
+        this.mailCommand = new MailCommand(plugin);
+        this.exportCommand = new ExportCommand(plugin);
+    }
 
     @Override
     public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
@@ -32,64 +54,162 @@ public class TradeCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
+        plugin.getInputRecorder().recordCommand(player, args);
+        TickProfiler profiler = plugin.getProfiler();
+        long start = profiler.start();
+        try {
+            execute(player, args);
+        } finally {
+            profiler.stop(ProfilerSection.COMMAND, start);
+        }
+        return true;
+    }
+
+    /**
+     * Executes the "/trade" command for a player.
+     *
+     * @param player The player executing the command.
+     * @param args   The command arguments.
+     */
+    private void execute(@NotNull Player player, @NotNull String[] args) {
         if (args.length == 0) {
             player.sendMessage(MessageUtil.getMessage("command_trade_usage"));
-            return true;
+            return;
+        }
+
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            if (!player.hasPermission("trading.command.stats")) {
+                player.sendMessage(MessageUtil.getMessage("no_permission"));
+                return;
+            }
+            displayStats(player);
+            return;
+        }
+
+        if (args[0].equalsIgnoreCase("ah")) {
+            if (!player.hasPermission(AuctionCommand.PERMISSION)) {
+                player.sendMessage(MessageUtil.getMessage("no_permission"));
+                return;
+            }
+            auctionCommand.execute(player, Arrays.asList(args).subList(1, args.length));
+            return;
+        }
+
+        if (args[0].equalsIgnoreCase("mail")) {
+            if (!player.hasPermission(MailCommand.PERMISSION)) {
+                player.sendMessage(MessageUtil.getMessage("no_permission"));
+                return;
+            }
+            mailCommand.execute(player, Arrays.asList(args).subList(1, args.length));
+            return;
+        }
+
+        if (args[0].equalsIgnoreCase("export")) {
+            if (!player.hasPermission(ExportCommand.PERMISSION)) {
+                player.sendMessage(MessageUtil.getMessage("no_permission"));
+                return;
+            }
+            if (tryAcquire(player, RateLimitAction.LOGS)) {
+                exportCommand.execute(player, Arrays.asList(args).subList(1, args.length));
+            }
+            return;
         }
 
+        if (args.length >= 1 && args[0].equalsIgnoreCase("search")) {
+            if (!player.hasPermission("trading.command.search")) {
+                player.sendMessage(MessageUtil.getMessage("no_permission"));
+                return;
+            }
+            if (args.length == 1) {
+                player.sendMessage(MessageUtil.getMessage("search_usage"));
+                return;
+            }
+            if (tryAcquire(player, RateLimitAction.LOGS)) {
+                searchItems(player, Arrays.asList(args).subList(1, args.length));
+            }
+            return;
+        }
 
         if (args.length == 2 && args[0].equalsIgnoreCase("logs")) {
             if (!player.hasPermission("trading.command.logs")) {
                 player.sendMessage(MessageUtil.getMessage("no_permission"));
-                return true;
+                return;
+            }
+            if (!tryAcquire(player, RateLimitAction.LOGS)) {
+                return;
             }
             Optional<Player> targetOpt = Optional.ofNullable(Bukkit.getPlayer(args[1]));
             if (targetOpt.isEmpty()) {
                 player.sendMessage(MessageUtil.getMessage("player_not_online"));
-                return true;
+                return;
             }
 
             Player target = targetOpt.get();
             displayTradeLogs(player, target);
-            return true;
+            return;
         }
 
         Optional<Player> targetOpt = Optional.ofNullable(Bukkit.getPlayer(args[args.length - 1]));
 
         if (targetOpt.isEmpty()) {
             player.sendMessage(MessageUtil.getMessage("player_not_online"));
-            return true;
+            return;
         }
 
         Player target = targetOpt.get();
 
         if (args.length == 2 && args[0].equalsIgnoreCase("accept")) {
-            handleAcceptCommand(player, target);
-            return true;
+            if (tryAcquire(player, RateLimitAction.ACCEPT)) {
+                handleAcceptCommand(player, target);
+            }
+            return;
         }
 
         if (args.length == 1) {
-            handleInviteCommand(player, target);
-            return true;
+            if (tryAcquire(player, RateLimitAction.INVITE)) {
+                handleInviteCommand(player, target);
+            }
+            return;
         }
 
         player.sendMessage(MessageUtil.getMessage("command_main_usage"));
-        return true;
+    }
+
+    /**
+     * Takes a token from the player's rate limit bucket for the given action and informs the player
+     * if they are sending too many requests.
+     *
+     * @param player The player executing the command.
+     * @param action The rate limited action.
+     * @return true if the command may be executed, false otherwise.
+     */
+    private boolean tryAcquire(@NotNull Player player, @NotNull RateLimitAction action) {
+        if (plugin.getRateLimiter().tryAcquire(player, action)) {
+            return true;
+        }
+        player.sendMessage(MessageUtil.getMessage("rate_limited"));
+        return false;
     }
 
     /**
      * This method handles the '/trade accept <Player>' command.
      * It checks if the player has a valid trade invitation and accepts the trade if valid.
+     * Trades either player still has open are cancelled first.
      *
      * @param player The player accepting the trade.
      * @param target The player who sent the trade invitation.
      */
     private void handleAcceptCommand(@NotNull Player player, @NotNull Player target) {
-        if (!plugin.getTradeManager().inviteValid(player)) {
+        if (!plugin.getTradeManager().inviteValid(player, target)) {
             player.sendMessage(MessageUtil.getMessage("trade_no_invites"));
             return;
         }
 
+        plugin.getMetrics().getAcceptedInvites().increment();
+        plugin.getTradeManager().unregisterInvite(target);
+        // Closing the view of an open trade cancels it, which returns the offered items and closes the partner's view.
+        player.closeInventory();
+        target.closeInventory();
         plugin.getTradeManager().unregisterTrade(player);
         plugin.getTradeManager().unregisterTrade(target);
         plugin.getTradeManager().createTrade(player, target);
@@ -110,38 +230,89 @@ public class TradeCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        plugin.getTradeManager().registerInvite(player, target);
+        if (!plugin.getTradeManager().registerInvite(player, target)) {
+            return;
+        }
         player.sendMessage(MessageUtil.getMessage("player_trade_invite", target.getName()));
         target.sendMessage(MessageUtil.getMessage("target_trade_invite", player.getName()));
     }
 
     /**
      * Displays all trade logs for a player sorted by timestamp, most recent first.
+     * The logs are loaded on an I/O thread and sorted on a CPU thread, only sending them happens on the main thread.
      *
      * @param player The player requesting the logs.
      * @param target The target player whose logs are being displayed.
      */
     private void displayTradeLogs(@NotNull Player player, @NotNull Player target) {
-        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-            Optional<List<String>> tradeLogsOpt = plugin.getTradeLogger().getTradeLogsForPlayer(target);
+        String targetName = target.getName();
+        TradeExecutors executors = plugin.getExecutors();
+
+        CompletableFuture<Optional<List<String>>> logs = executors.supplyIo(() -> plugin.getTradeLogger().getTradeLogsForPlayer(target))
+                .thenApplyAsync(tradeLogsOpt -> tradeLogsOpt.map(tradeLogs -> tradeLogs.stream()
+                        .sorted((log1, log2) -> {
+                            String timestamp1 = extractTimestamp(log1);
+                            String timestamp2 = extractTimestamp(log2);
+                            return timestamp2.compareTo(timestamp1);
+                        })
+                        .collect(Collectors.toList())), executors.cpu());
+
+        executors.thenSync(logs, sortedLogsOpt -> {
+            if (!player.isOnline()) {
+                return;
+            }
+
+            if (sortedLogsOpt.isEmpty()) {
+                player.sendMessage(MessageUtil.getMessage("no_trade_logs_found", targetName));
+                return;
+            }
+
+            sortedLogsOpt.get().forEach(player::sendMessage);
+        });
+    }
+
+    /**
+     * Searches the trade log for trades of matching items and sends the results, most recent first.
+     * The search runs on an I/O thread, only sending the results happens on the main thread.
+     *
+     * @param player The player searching.
+     * @param args   The search arguments, see {@link ItemSearch#parse(List, long)}.
+     */
+    private void searchItems(@NotNull Player player, @NotNull List<String> args) {
+        ItemSearch search;
+        try {
+            search = ItemSearch.parse(args, System.currentTimeMillis());
+        } catch (IllegalArgumentException e) {
+            player.sendMessage(MessageUtil.getMessage("search_invalid", e.getMessage()));
+            return;
+        }
 
-            if (tradeLogsOpt.isEmpty()) {
-                player.sendMessage(MessageUtil.getMessage("no_trade_logs_found", target.getName()));
+        TradeExecutors executors = plugin.getExecutors();
+        executors.thenSync(executors.supplyIo(() -> plugin.getTradeLogger().searchItems(search)), tradeLogs -> {
+            if (!player.isOnline()) {
                 return;
             }
 
-            List<String> sortedLogs = tradeLogsOpt.get().stream()
-                    .sorted((log1, log2) -> {
-                        String timestamp1 = extractTimestamp(log1);
-                        String timestamp2 = extractTimestamp(log2);
-                        return timestamp2.compareTo(timestamp1);
-                    })
-                    .collect(Collectors.toList());
+            if (tradeLogs.isEmpty()) {
+                player.sendMessage(MessageUtil.getMessage("search_no_results"));
+                return;
+            }
 
-            sortedLogs.forEach(player::sendMessage);
+            player.sendMessage(MessageUtil.getMessage("search_header", String.valueOf(tradeLogs.size())));
+            tradeLogs.forEach(player::sendMessage);
         });
+    }
 
-        future.join();
+    /**
+     * Displays the current metrics of the trading system.
+     *
+     * @param player The player requesting the statistics.
+     */
+    private void displayStats(@NotNull Player player) {
+        player.sendMessage(MessageUtil.getMessage("stats_header"));
+        for (Map.Entry<String, String> entry : plugin.getMetrics().summarize(plugin).entrySet()) {
+            player.sendMessage(MessageUtil.getMessage("stats_line", entry.getKey(), entry.getValue()));
+        }
     }
 
     /**
@@ -159,16 +330,65 @@ public class TradeCommand implements CommandExecutor, TabCompleter {
 
     @Override
     public @NotNull List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (!(sender instanceof Player player)) {
+            return Collections.emptyList();
+        }
+
         List<String> suggestions = new ArrayList<>();
 
-        if (args.length == 1 && args[0].equalsIgnoreCase("trade")) {
-            suggestions.add("logs");
+        if (args.length == 1) {
+            for (String subCommand : SUB_COMMANDS) {
+                if (startsWithIgnoreCase(subCommand, args[0]) && (subCommand.equals("accept") || player.hasPermission("trading.command." + subCommand))) {
+                    suggestions.add(subCommand);
+                }
+            }
+            plugin.getPlayerNames().complete(args[0], MAX_SUGGESTIONS, suggestions);
+            suggestions.remove(player.getName());
+            return suggestions;
+        }
+
+        if (args.length == 2 && args[0].equalsIgnoreCase("accept")) {
+            for (UUID inviterUUID : plugin.getTradeManager().getInviters(player)) {
+                Player inviter = Bukkit.getPlayer(inviterUUID);
+                if (inviter != null && startsWithIgnoreCase(inviter.getName(), args[1])) {
+                    suggestions.add(inviter.getName());
+                }
+            }
+            return suggestions;
+        }
+
+        if (args.length >= 2 && args[0].equalsIgnoreCase("ah") && player.hasPermission(AuctionCommand.PERMISSION)) {
+            auctionCommand.complete(player, Arrays.asList(args).subList(1, args.length), suggestions);
+            return suggestions;
+        }
+
+        if (args.length >= 2 && args[0].equalsIgnoreCase("mail") && player.hasPermission(MailCommand.PERMISSION)) {
+            mailCommand.complete(Arrays.asList(args).subList(1, args.length), suggestions);
+            return suggestions;
         }
 
-        if (args.length == 2 && args[0].equalsIgnoreCase("trade")) {
-            suggestions.add("accept");
+        if (args.length >= 2 && args[0].equalsIgnoreCase("export") && player.hasPermission(ExportCommand.PERMISSION)) {
+            exportCommand.complete(Arrays.asList(args).subList(1, args.length), suggestions);
+            return suggestions;
+        }
+
+        if (args.length >= 2 && args[0].equalsIgnoreCase("search") && player.hasPermission("trading.command.search")) {
+            for (String prefix : SEARCH_PREFIXES) {
+                if (startsWithIgnoreCase(prefix, args[args.length - 1])) {
+                    suggestions.add(prefix);
+                }
+            }
+            return suggestions;
+        }
+
+        if (args.length == 2 && args[0].equalsIgnoreCase("logs") && player.hasPermission("trading.command.logs")) {
+            plugin.getPlayerNames().complete(args[1], MAX_SUGGESTIONS, suggestions);
         }
 
         return suggestions;
     }
+
+    private static boolean startsWithIgnoreCase(@NotNull String value, @NotNull String prefix) {
+        return value.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
 }
@@ -1,10 +1,14 @@
 package de.bukkitnews.trading.trade.listener;
 
 import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.profiler.ProfilerSection;
+import de.bukkitnews.trading.profiler.TickProfiler;
+import de.bukkitnews.trading.trade.model.Trade;
+import de.bukkitnews.trading.trade.model.TradeInventoryHolder;
+import de.bukkitnews.trading.trade.model.TradeOffer;
 import de.bukkitnews.trading.trade.model.TradePlayer;
 import de.bukkitnews.trading.util.MessageUtil;
 import lombok.RequiredArgsConstructor;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryCloseEvent;
@@ -27,16 +31,36 @@ public class CloseInventoryListener implements Listener {
      */
     @EventHandler
     public void onClose(@NotNull InventoryCloseEvent event) {
-        Player player = (Player) event.getPlayer();
-
-        if (!event.getView().getTitle().equals(MessageUtil.getMessage("inventory"))) {
+        if (!(event.getInventory().getHolder() instanceof TradeInventoryHolder holder)) {
             return;
         }
 
-        trading.getTradeManager().getTrade(player).ifPresent(trade -> trade.getPlayer(player).ifPresent(tradePlayer -> {
-            tradePlayer.getItems().forEach(itemStack ->
-                    tradePlayer.getPlayer().getInventory().addItem(itemStack)
-            );
+        TickProfiler profiler = trading.getProfiler();
+        long start = profiler.start();
+        try {
+            cancelTrade(holder);
+        } finally {
+            profiler.stop(ProfilerSection.CLOSE, start);
+        }
+    }
+
+    /**
+     * Cancels the trade of a closed trade view, if it is still open, and returns the offered items to the viewer.
+     * Only closes that cancel a trade are recorded; the views the plugin closes itself follow from them on replay.
+     *
+     * @param holder The holder of the closed trade view.
+     */
+    private void cancelTrade(@NotNull TradeInventoryHolder holder) {
+        Trade trade = holder.getTrade();
+        TradePlayer tradePlayer = holder.getViewer();
+
+        if (trading.getTradeManager().getTrade(tradePlayer.getPlayer()).filter(trade::equals).isPresent()) {
+            trading.getInputRecorder().recordClose(tradePlayer.getPlayer());
+            TradeOffer offer = tradePlayer.getOffer();
+            for (int i = offer.nextOccupied(0); i >= 0; i = offer.nextOccupied(i + 1)) {
+                tradePlayer.getPlayer().getInventory().addItem(offer.get(i));
+            }
+            offer.clear();
 
             tradePlayer.getPlayer().sendMessage(MessageUtil.getMessage("trade_cancel"));
 
@@ -44,7 +68,6 @@ public class CloseInventoryListener implements Listener {
 
             TradePlayer target = trade.getTarget(tradePlayer);
             target.getPlayer().getOpenInventory().close();
-        }));
-
+        }
     }
 }
@@ -1,22 +1,26 @@
 package de.bukkitnews.trading.trade.listener;
 
 import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.profiler.ProfilerSection;
+import de.bukkitnews.trading.profiler.TickProfiler;
+import de.bukkitnews.trading.profiler.TradeFlightEvents;
 import de.bukkitnews.trading.trade.model.Trade;
+import de.bukkitnews.trading.trade.model.TradeInventoryHolder;
+import de.bukkitnews.trading.trade.model.TradeOffer;
 import de.bukkitnews.trading.trade.model.TradePlayer;
-import de.bukkitnews.trading.util.MessageUtil;
+import de.bukkitnews.trading.trade.ratelimit.RateLimitAction;
+import de.bukkitnews.trading.util.ItemFingerprint;
 import de.bukkitnews.trading.util.TradeItems;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.Material;
 import org.bukkit.Sound;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryType;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Optional;
-
 /**
  * This listener handles inventory click events during a trade.
  * It ensures that the player can modify their trade items, coins, and trade state correctly.
@@ -26,43 +30,64 @@ public class InventoryClickListener implements Listener {
 
     private final @NotNull Trading trading;
 
+    /**
+     * This event handler is triggered when a player clicks in an inventory.
+     * Trade views are recognized by their {@link TradeInventoryHolder}, which also carries the trade and the viewer.
+     *
+     * @param event The InventoryClickEvent that is fired when the player clicks.
+     */
     @EventHandler
     public void handleClick(@NotNull InventoryClickEvent event) {
-        Player player = (Player) event.getWhoClicked();
-
-        if (!event.getView().getTitle().equals(MessageUtil.getMessage("inventory"))) {
+        if (!(event.getInventory().getHolder() instanceof TradeInventoryHolder holder)) {
             return;
         }
 
         event.setCancelled(true);
-
-        Optional<Trade> tradeOptional = trading.getTradeManager().getTrade(player);
-        if (tradeOptional.isEmpty()) {
-            event.getView().close();
-            return;
-        }
-
-        Trade trade = tradeOptional.get();
-
-        Optional<TradePlayer> tradePlayerOptional = trade.getPlayer(player);
-        if (tradePlayerOptional.isEmpty()) {
-            event.getView().close();
-            return;
+        trading.getMetrics().recordClick();
+        trading.getInputRecorder().recordClick(holder.getViewer().getPlayer(), event.getRawSlot(), event.getClick(),
+                event.getCurrentItem());
+
+        TickProfiler profiler = trading.getProfiler();
+        long start = profiler.start();
+        TradeFlightEvents.GuiAction action = new TradeFlightEvents.GuiAction();
+        action.begin();
+        try {
+            handleTradeClick(event, holder);
+        } finally {
+            profiler.stop(ProfilerSection.CLICK, start);
+            if (action.shouldCommit()) {
+                TradePlayer viewer = holder.getViewer();
+                action.sessionId = holder.getTrade().id();
+                action.player = viewer.getPlayer().getName();
+                action.rawSlot = event.getRawSlot();
+                action.click = event.getClick().name();
+                action.itemCount = viewer.getOffer().size();
+                action.coins = viewer.getCoins();
+                action.commit();
+            }
         }
+    }
 
-        TradePlayer tradePlayer = tradePlayerOptional.get();
+    /**
+     * Handles a click in a trade view, after it has been cancelled.
+     *
+     * @param event  The InventoryClickEvent that is fired when the player clicks.
+     * @param holder The holder of the clicked trade view.
+     */
+    private void handleTradeClick(@NotNull InventoryClickEvent event, @NotNull TradeInventoryHolder holder) {
+        Trade trade = holder.getTrade();
+        TradePlayer tradePlayer = holder.getViewer();
 
         if (event.getCurrentItem() == null) {
             return;
         }
 
-        if (event.getCurrentItem().equals(TradeItems.ITEM_HANDLING_PROCESSING) && event.getSlot() == 22) {
-            trade.updateState(tradePlayer, Trade.State.PROCESSING);
+        if (!trading.getRateLimiter().tryAcquire(tradePlayer.getPlayer(), RateLimitAction.CLICK)) {
             return;
         }
 
-        if (event.getCurrentItem().equals(TradeItems.ITEM_HANDLING_SURE) && event.getSlot() == 22) {
-            trade.updateState(tradePlayer, Trade.State.DONE);
+        if (event.getRawSlot() == 22) {
+            handleStateControl(event, trade, tradePlayer);
             return;
         }
 
@@ -74,6 +99,24 @@ public class InventoryClickListener implements Listener {
         handleItemModification(event, trade, tradePlayer);
     }
 
+    /**
+     * Handles a click on the state control of the trade view. The control is recognized by its fingerprint, which
+     * is only computed for clicks on the control slot and compared with the precomputed fingerprints of the
+     * control items, instead of comparing the full meta of every clicked item.
+     *
+     * @param event       The InventoryClickEvent that is fired when the player clicks the control slot.
+     * @param trade       The active trade involving the player.
+     * @param tradePlayer The TradePlayer representing the player in the trade.
+     */
+    private void handleStateControl(@NotNull InventoryClickEvent event, @NotNull Trade trade, @NotNull TradePlayer tradePlayer) {
+        long control = ItemFingerprint.of(event.getCurrentItem());
+        if (control == TradeItems.FINGERPRINT_HANDLING_PROCESSING) {
+            trade.updateState(tradePlayer, Trade.State.PROCESSING);
+        } else if (control == TradeItems.FINGERPRINT_HANDLING_SURE) {
+            trade.updateState(tradePlayer, Trade.State.DONE);
+        }
+    }
+
     /**
      * This method handles coin modifications when sunflower items are clicked.
      * The player can modify their coin amount based on the type of click (left, right, shift-left, shift-right).
@@ -83,10 +126,11 @@ public class InventoryClickListener implements Listener {
      * @param trade       The active trade involving the player.
      */
     private void handleCoinModification(@NotNull InventoryClickEvent event, @NotNull TradePlayer tradePlayer, @NotNull Trade trade) {
+        ConfigSnapshot.Limits limits = ConfigSnapshot.current().limits();
         switch (event.getClick()) {
             case LEFT:
                 int newCoinsLeft = tradePlayer.getCoins() + tradePlayer.getValue();
-                if (newCoinsLeft <= 10000000) {
+                if (newCoinsLeft <= limits.maxCoins()) {
                     trade.setCoins(tradePlayer, newCoinsLeft);
                 }
                 break;
@@ -98,7 +142,7 @@ public class InventoryClickListener implements Listener {
                 break;
             case SHIFT_LEFT:
                 int newValueLeft = tradePlayer.getValue() * 10;
-                if (newValueLeft <= 100000) {
+                if (newValueLeft <= limits.maxValue()) {
                     trade.setValue(tradePlayer, newValueLeft);
                 }
                 break;
@@ -120,7 +164,7 @@ public class InventoryClickListener implements Listener {
      * @param tradePlayer The TradePlayer representing the player in the trade.
      */
     private void handleItemModification(@NotNull InventoryClickEvent event, @NotNull Trade trade, @NotNull TradePlayer tradePlayer) {
-        if (trade.getValidSlots().contains(event.getRawSlot())) {
+        if (TradeOffer.toIndex(event.getRawSlot()) >= 0) {
             trade.removeItem(tradePlayer, event.getRawSlot());
         } else {
             if (event.getClickedInventory() == null || event.getClickedInventory().getType() != InventoryType.PLAYER)
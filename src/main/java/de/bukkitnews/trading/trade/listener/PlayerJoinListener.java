@@ -0,0 +1,43 @@
+package de.bukkitnews.trading.trade.listener;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.util.MessageUtil;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This listener handles players joining the server.
+ * It adds the player's name to the name index used for tab completion, delivers the items bought in the
+ * auction house while the player was offline and tells the player about offers waiting in their mailbox.
+ */
+@RequiredArgsConstructor
+public class PlayerJoinListener implements Listener {
+
+    private final @NotNull Trading trading;
+
+    /**
+     * This method registers the joining player's name for tab completion, delivers their unclaimed auction items
+     * and announces their mailbox offers.
+     */
+    @EventHandler
+    public void handleJoin(@NotNull PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        trading.getPlayerNames().add(player.getName());
+        trading.getInputRecorder().recordJoin(player);
+
+        if (trading.getAuctionHouse().hasClaims(player.getUniqueId())) {
+            int delivered = trading.getAuctionHouse().claim(player);
+            if (delivered > 0) {
+                player.sendMessage(MessageUtil.getMessage("auction_claimed", String.valueOf(delivered)));
+            }
+            if (trading.getAuctionHouse().hasClaims(player.getUniqueId())) {
+                player.sendMessage(MessageUtil.getMessage("auction_claims_waiting"));
+            }
+        }
+        trading.getMailbox().notifyJoin(player);
+    }
+}
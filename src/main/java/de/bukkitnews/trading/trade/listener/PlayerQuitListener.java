@@ -19,12 +19,17 @@ public class PlayerQuitListener implements Listener {
 
     /**
      * This method unregisters a player's trade and invite status from the TradeManager.
-     * It ensures that the player is no longer involved in any trade or invitation after disconnecting.
+     * It ensures that the player is no longer involved in any trade or invitation after disconnecting,
+     * neither as inviter nor as invited player.
      */
     @EventHandler
     public void handleQuit(@NotNull PlayerQuitEvent event) {
         Player player = event.getPlayer();
+        trading.getInputRecorder().recordQuit(player);
         trading.getTradeManager().unregisterTrade(player);
         trading.getTradeManager().unregisterInvite(player);
+        trading.getTradeManager().unregisterInvitesTo(player);
+        trading.getRateLimiter().remove(player.getUniqueId());
+        trading.getPlayerNames().remove(player.getName());
     }
 }
\ No newline at end of file
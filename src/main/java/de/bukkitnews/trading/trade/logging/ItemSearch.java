@@ -0,0 +1,102 @@
+package de.bukkitnews.trading.trade.logging;
+
+import org.bukkit.Material;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A search for trades by the items traded in them, answered by the {@link TradeSearchIndex}.
+ *
+ * @param terms       The terms every matching trade must contain.
+ * @param sinceMillis The earliest trade time in epoch milliseconds, 0 for no limit.
+ * @param limit       The maximum number of results.
+ */
+public record ItemSearch(@NotNull Set<String> terms, long sinceMillis, int limit) {
+
+    /**
+     * The number of results returned if no limit is given.
+     */
+    public static final int DEFAULT_LIMIT = 10;
+
+    public ItemSearch {
+        terms = Set.copyOf(terms);
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("An item search needs at least one term");
+        }
+    }
+
+    /**
+     * Parses a search from command arguments. Supported arguments are {@code material:<material>},
+     * {@code name:<word>}, {@code enchant:<key>}, {@code item:<fingerprint>}, {@code days:<n>} and
+     * {@code limit:<n>}. Other words are taken as a material if one has that name, otherwise as a word of the
+     * display name.
+     * For example, {@code netherite_sword name:excalibur enchant:sharpness days:30}.
+     *
+     * @param args      The arguments.
+     * @param nowMillis The current time in epoch milliseconds.
+     * @return The search.
+     * @throws IllegalArgumentException If an argument is invalid or no term was given.
+     */
+    public static @NotNull ItemSearch parse(@NotNull List<String> args, long nowMillis) {
+        Set<String> terms = new LinkedHashSet<>();
+        long sinceMillis = 0L;
+        int limit = DEFAULT_LIMIT;
+
+        for (String arg : args) {
+            int separator = arg.indexOf(':');
+            String key = separator < 0 ? "" : arg.substring(0, separator).toLowerCase(Locale.ROOT);
+            String value = arg.substring(separator + 1);
+
+            switch (key) {
+                case "material" -> terms.add(TradeSearchIndex.materialTerm(parseMaterial(value)));
+                case "name" -> terms.addAll(TradeSearchIndex.nameTerms(value));
+                case "enchant" -> terms.add(TradeSearchIndex.enchantmentTerm(value));
+                case "item" -> terms.add(TradeSearchIndex.fingerprintTerm(parseFingerprint(value)));
+                case "days" -> sinceMillis = nowMillis - TimeUnit.DAYS.toMillis(parsePositive(arg, value));
+                case "limit" -> limit = parsePositive(arg, value);
+                default -> {
+                    Material material = Material.matchMaterial(arg);
+                    if (material != null) {
+                        terms.add(TradeSearchIndex.materialTerm(material));
+                    } else {
+                        terms.addAll(TradeSearchIndex.nameTerms(arg));
+                    }
+                }
+            }
+        }
+
+        return new ItemSearch(terms, sinceMillis, limit);
+    }
+
+    private static @NotNull Material parseMaterial(@NotNull String value) {
+        Material material = Material.matchMaterial(value);
+        if (material == null) {
+            throw new IllegalArgumentException("Unknown material: " + value);
+        }
+        return material;
+    }
+
+    private static long parseFingerprint(@NotNull String value) {
+        try {
+            return Long.parseUnsignedLong(value, 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a hex item fingerprint: " + value);
+        }
+    }
+
+    private static int parsePositive(@NotNull String arg, @NotNull String value) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Expected a positive number: " + arg);
+    }
+}
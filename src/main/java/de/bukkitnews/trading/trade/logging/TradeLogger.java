@@ -1,189 +1,650 @@
 package de.bukkitnews.trading.trade.logging;
 
 import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.profiler.ProfilerSection;
+import de.bukkitnews.trading.trade.logging.export.ExportResult;
+import de.bukkitnews.trading.trade.logging.export.TradeAggregates;
+import de.bukkitnews.trading.trade.logging.export.TradeExport;
+import de.bukkitnews.trading.trade.logging.remote.RemoteLogSink;
+import de.bukkitnews.trading.trade.logging.remote.TradeStream;
+import de.bukkitnews.trading.trade.logging.store.SegmentPruning;
+import de.bukkitnews.trading.trade.logging.store.StoreFootprint;
+import de.bukkitnews.trading.trade.logging.store.TradeLogStore;
 import de.bukkitnews.trading.trade.logging.task.LogCleanupTask;
+import de.bukkitnews.trading.trade.model.TradeOffer;
+import de.bukkitnews.trading.trade.model.TradePlayer;
+import de.bukkitnews.trading.util.ItemFingerprint;
 import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.entity.Item;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
 /**
  * This class is responsible for logging trade transactions between players.
  * It records the trade details such as trade ID, participants, coin amount, and items exchanged.
- * The log is saved in a YAML file, which is specified by the provided log file.
+ * The log is kept in a {@link TradeLogStore} in the "logs/segments" directory, which holds only its indexes and
+ * the most recent trades in memory.
  */
 public class TradeLogger {
 
-    private final @NotNull File logFile;
-    private final @NotNull FileConfiguration config;
+    private static final String TIMESTAMP_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+    /**
+     * Stands in for players of migrated trades whose UUID is unknown.
+     */
+    private static final UUID LEGACY_UNKNOWN_PLAYER = new UUID(0L, 0L);
+
+    private static final long FLUSH_INTERVAL_TICKS = 20L;
+    private static final String EXPORT_NAME_FORMAT = "yyyyMMdd-HHmmss";
+
     private final @NotNull Trading plugin;
+    private final @NotNull File logsDir;
 
-    private final @NotNull Map<UUID, List<String>> tradeLogCache;
-    private static final int MAX_CACHE_SIZE = 200;
+    /**
+     * The store holding the trade log, null if it could not be opened.
+     */
+    private final @Nullable TradeLogStore store;
+
+    private final @NotNull AtomicInteger pendingWrites = new AtomicInteger();
+
+    /**
+     * Sends logged trades to the shared remote log, null if the remote log is disabled or unavailable.
+     */
+    private final @Nullable RemoteLogSink remoteSink;
 
     public TradeLogger(@NotNull Trading plugin) {
         this.plugin = plugin;
-        this.logFile = createFile();
+        this.logsDir = new File(plugin.getDataFolder(), "logs");
+        this.store = openStore();
 
-        this.config = YamlConfiguration.loadConfiguration(logFile);
-
-        this.tradeLogCache = new LinkedHashMap<>(MAX_CACHE_SIZE, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<UUID, List<String>> eldest) {
-                return size() > MAX_CACHE_SIZE;
-            }
-        };
+        if (store != null) {
+            plugin.getExecutors().runIo(() -> migrateLegacyLog(store));
+            startLogCleanupTask(store);
+            startFlushTask(store);
+        }
+        this.remoteSink = createRemoteSink();
+    }
 
-        startLogCleanupTask();
+    /**
+     * Opens the trade log store in "logs/segments". Its segments are loaded in the background on the CPU executor,
+     * so startup does not wait for the trade history.
+     *
+     * @return The store, or null if it could not be opened.
+     */
+    private @Nullable TradeLogStore openStore() {
+        try {
+            return new TradeLogStore(logsDir.toPath().resolve("segments"), ConfigSnapshot.current().logging(),
+                    plugin.getLogger(), plugin.getExecutors().cpu());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not open the trade log, trades will not be logged", e);
+            return null;
+        }
     }
 
     /**
-     * Creates the "logs" directory and the "logs.yml" file if they do not exist.
+     * Moves the trades of a "logs.yml" written by earlier versions into the store, oldest first, and renames the
+     * file to "logs.yml.migrated" afterwards. Trades logged before search terms were stored are indexed by the
+     * materials of their items only, and trades logged before UUIDs were stored get the UUIDs of their players'
+     * names. Once the trades are in the store, a "logs.yml.imported" marker keeps a crash before the rename from
+     * importing them twice. If a trade could not be read, the file and the marker are kept for a manual look.
+     * <p>
+     * This method blocks on file I/O and is run on an I/O thread.
      *
-     * @return The log file.
+     * @param store The store to migrate into.
      */
-    private @NotNull File createFile() {
-        File logsDir = new File(plugin.getDataFolder(), "logs");
-        if (!logsDir.exists() && !logsDir.mkdir()) {
-            plugin.getLogger().severe("Could not create logs directory.");
+    private void migrateLegacyLog(@NotNull TradeLogStore store) {
+        File legacyFile = new File(logsDir, "logs.yml");
+        if (!legacyFile.exists()) {
+            return;
         }
 
-        File logFile = new File(logsDir, "logs.yml");
-        if (!logFile.exists()) {
-            try {
-                if (!logFile.createNewFile()) {
-                    plugin.getLogger().severe("Could not create logs.yml file.");
+        FileConfiguration legacy = YamlConfiguration.loadConfiguration(legacyFile);
+        ConfigurationSection section = legacy.getConfigurationSection("trade-logs");
+        List<TradeRecord> records = new ArrayList<>();
+        int skipped = 0;
+        if (section != null) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat(TIMESTAMP_FORMAT);
+            Map<String, UUID> playerIds = new HashMap<>();
+            for (String tradeId : section.getKeys(false)) {
+                if (!section.isConfigurationSection(tradeId)) {
+                    continue;
+                }
+                try {
+                    records.add(readLegacyTrade(legacy, tradeId, dateFormat, playerIds));
+                } catch (IllegalArgumentException e) {
+                    skipped++;
                 }
-            } catch (IOException e) {
-                plugin.getLogger().severe("Error creating logs.yml file: " + e.getMessage());
             }
         }
+        records.sort(Comparator.comparingLong(TradeRecord::timestamp));
+
+        Path legacyPath = legacyFile.toPath();
+        Path marker = legacyPath.resolveSibling("logs.yml.imported");
+        boolean imported = Files.exists(marker);
+        try {
+            if (!imported) {
+                for (TradeRecord record : records) {
+                    store.append(record);
+                }
+                store.flush();
+                Files.createFile(marker);
+            }
+            if (skipped == 0) {
+                Files.move(legacyPath, legacyPath.resolveSibling("logs.yml.migrated"),
+                        StandardCopyOption.REPLACE_EXISTING);
+                Files.delete(marker);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not migrate logs.yml into the trade log", e);
+            return;
+        }
+
+        if (skipped > 0) {
+            String migrated = imported ? "The trades from logs.yml were already migrated"
+                    : "Migrated " + records.size() + " trade(s) from logs.yml";
+            plugin.getLogger().warning(migrated + ", but " + skipped + " malformed trade(s) could not be read."
+                    + " The file is kept, delete it once it has been checked.");
+        } else if (!imported && !records.isEmpty()) {
+            plugin.getLogger().info("Migrated " + records.size() + " trade(s) from logs.yml.");
+        }
+    }
+
+    /**
+     * Reads a trade from "logs.yml". Versions before the segmented store only wrote the names of the players and
+     * their items as "Name: amount"; those are resolved and converted here.
+     *
+     * @throws IllegalArgumentException If a stored UUID is malformed.
+     */
+    private static @NotNull TradeRecord readLegacyTrade(@NotNull FileConfiguration legacy, @NotNull String tradeId,
+                                                        @NotNull SimpleDateFormat dateFormat,
+                                                        @NotNull Map<String, UUID> playerIds) {
+        String path = "trade-logs." + tradeId;
+        List<String> items = readLegacyItems(legacy.getStringList(path + ".items"));
+        List<String> targetItems = readLegacyItems(legacy.getStringList(path + ".target-items"));
+        List<String> terms = legacy.getStringList(path + ".search-terms");
+        if (terms.isEmpty()) {
+            terms = new ArrayList<>();
+            for (String item : items) {
+                addMaterialTerm(item, terms);
+            }
+            for (String item : targetItems) {
+                addMaterialTerm(item, terms);
+            }
+        }
+
+        String initiator = legacy.getString(path + ".initiator", "");
+        String target = legacy.getString(path + ".target", "");
+        return new TradeRecord(tradeId,
+                parseTimestamp(dateFormat, legacy.getString(path + ".timestamp", "")),
+                readLegacyPlayerId(legacy.getString(path + ".initiator-uuid"), initiator, playerIds),
+                initiator,
+                readLegacyPlayerId(legacy.getString(path + ".target-uuid"), target, playerIds),
+                target,
+                legacy.getInt(path + ".coins"),
+                legacy.getInt(path + ".target-coins"),
+                items,
+                targetItems,
+                terms);
+    }
+
+    /**
+     * Returns the stored UUID of a player, or looks it up by name if none was stored. Unknown players get the
+     * nil UUID, so their trades are kept without matching anyone's history.
+     */
+    private static @NotNull UUID readLegacyPlayerId(@Nullable String storedId, @NotNull String name,
+                                                    @NotNull Map<String, UUID> playerIds) {
+        if (storedId != null && !storedId.isEmpty()) {
+            return UUID.fromString(storedId);
+        }
+        if (name.isEmpty()) {
+            return LEGACY_UNKNOWN_PLAYER;
+        }
+        return playerIds.computeIfAbsent(name, key -> Bukkit.getOfflinePlayer(key).getUniqueId());
+    }
+
+    /**
+     * Converts items written as "Name: amount" to "MATERIAL x amount". Items already in that format, and names
+     * that match no material, are kept as they are.
+     */
+    private static @NotNull List<String> readLegacyItems(@NotNull List<String> items) {
+        List<String> converted = new ArrayList<>(items.size());
+        for (String item : items) {
+            int separator = item.lastIndexOf(": ");
+            Material material = separator < 0 ? null : Material.matchMaterial(item.substring(0, separator));
+            converted.add(material == null ? item : material.name() + " x " + item.substring(separator + 2).trim());
+        }
+        return converted;
+    }
+
+    private static void addMaterialTerm(@NotNull String item, @NotNull List<String> terms) {
+        Material material = TradeSearchIndex.materialOf(item);
+        if (material != null && !terms.contains(TradeSearchIndex.materialTerm(material))) {
+            terms.add(TradeSearchIndex.materialTerm(material));
+        }
+    }
+
+    private static long parseTimestamp(@NotNull SimpleDateFormat dateFormat, @NotNull String timestamp) {
+        try {
+            return dateFormat.parse(timestamp).getTime();
+        } catch (ParseException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Creates the sink for the remote trade log if it is enabled. The stream store itself is provided by another
+     * plugin, which registers a {@link TradeStream} with the services manager.
+     *
+     * @return The started sink, or null if the remote log is disabled or no stream store is registered.
+     */
+    private @Nullable RemoteLogSink createRemoteSink() {
+        ConfigSnapshot.RemoteLog settings = ConfigSnapshot.current().remoteLog();
+        if (!settings.enabled()) {
+            return null;
+        }
 
-        return logFile;
+        TradeStream stream = Bukkit.getServicesManager().load(TradeStream.class);
+        if (stream == null) {
+            plugin.getLogger().warning("The remote trade log is enabled, but no plugin provides a trade stream.");
+            return null;
+        }
+
+        try {
+            RemoteLogSink sink = new RemoteLogSink(plugin, stream, settings, logsDir.toPath().resolve("remote-spool.log"));
+            sink.start();
+            return sink;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not open the spool of the remote trade log", e);
+            return null;
+        }
     }
 
     /**
      * Starts the log cleanup task which removes old logs.
      * This is scheduled to run at regular intervals.
      */
-    private void startLogCleanupTask() {
-        LogCleanupTask cleanupTask = new LogCleanupTask(logFile, config);
+    private void startLogCleanupTask(@NotNull TradeLogStore store) {
+        LogCleanupTask cleanupTask = new LogCleanupTask(plugin, store);
+
+        Bukkit.getScheduler().runTaskTimer(plugin,
+                plugin.getProfiler().wrap(ProfilerSection.SCHEDULED, "LogCleanupTask#run", cleanupTask), 0L, 60L * 20L);
+    }
+
+    /**
+     * Starts the task which writes the write buffer of the store to disk every second, so a crash loses at most
+     * the trades of the last second.
+     */
+    private void startFlushTask(@NotNull TradeLogStore store) {
+        Bukkit.getScheduler().runTaskTimer(plugin,
+                plugin.getProfiler().wrap(ProfilerSection.SCHEDULED, "TradeLogger#flush",
+                        () -> plugin.getExecutors().runIo(() -> flush(store))),
+                FLUSH_INTERVAL_TICKS, FLUSH_INTERVAL_TICKS);
+    }
 
-        Bukkit.getScheduler().runTaskTimer(plugin, cleanupTask, 0L, 60L * 20L);
+    private void flush(@NotNull TradeLogStore store) {
+        try {
+            store.flush();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error writing the trade log", e);
+        }
     }
 
     /**
      * Logs a trade transaction between two players. If the logging is enabled in the config,
-     * it stores the trade details (trade ID, initiator, target, coins, and items) in the log file.
+     * it stores the trade details (trade ID, initiator, target, coins, and items of both sides) in the log
+     * and adds the trade to the search index.
+     * The offers are read on the calling thread, only the write itself happens asynchronously.
      *
      * @param initiator The player initiating the trade.
      * @param target    The player receiving the trade.
-     * @param coins     The number of coins exchanged in the trade.
-     * @param items     A map of items exchanged during the trade, where the key is the item and the value is the quantity.
      */
-    public void logTrade(Player initiator, Player target, int coins, Map<Item, Integer> items) {
-        if (config.getBoolean("trade-logs.enabled")) {
-            CompletableFuture.runAsync(() -> {
-                String tradeId = UUID.randomUUID().toString();
-                String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+    public void logTrade(@NotNull TradePlayer initiator, @NotNull TradePlayer target) {
+        if (!ConfigSnapshot.current().logging().enabled() || store == null) {
+            return;
+        }
 
-                config.set("trade-logs." + tradeId + ".initiator", initiator.getName());
-                config.set("trade-logs." + tradeId + ".target", target.getName());
-                config.set("trade-logs." + tradeId + ".coins", coins);
-                config.set("trade-logs." + tradeId + ".items", items.entrySet().stream()
-                        .map(entry -> entry.getKey().getName() + ": " + entry.getValue())
-                        .collect(Collectors.toList()));
-                config.set("trade-logs." + tradeId + ".timestamp", timestamp);
+        String initiatorName = initiator.getPlayer().getName();
+        UUID initiatorUUID = initiator.getPlayer().getUniqueId();
+        String targetName = target.getPlayer().getName();
+        UUID targetUUID = target.getPlayer().getUniqueId();
+        int initiatorCoins = initiator.getCoins();
+        int targetCoins = target.getCoins();
+        List<String> initiatorItems = describeOffer(initiator.getOffer());
+        List<String> targetItems = describeOffer(target.getOffer());
+        List<String> searchTerms = collectSearchTerms(initiator.getOffer(), target.getOffer());
 
-                saveConfig();
-            });
+        write(store, () -> new TradeRecord(UUID.randomUUID().toString(), System.currentTimeMillis(),
+                initiatorUUID, initiatorName, targetUUID, targetName, initiatorCoins, targetCoins,
+                initiatorItems, targetItems, searchTerms));
+    }
+
+    /**
+     * Logs a settled auction house fill as a trade in which the seller gave the items and the buyer the coins.
+     * Coins above {@link Integer#MAX_VALUE} are logged as {@link Integer#MAX_VALUE}.
+     *
+     * @param sellerId   The UUID of the seller.
+     * @param sellerName The name of the seller.
+     * @param buyerId    The UUID of the buyer.
+     * @param buyerName  The name of the buyer.
+     * @param material   The item traded.
+     * @param quantity   The number of items traded.
+     * @param coins      The coins the buyer paid.
+     */
+    public void logAuctionFill(@NotNull UUID sellerId, @NotNull String sellerName, @NotNull UUID buyerId,
+                               @NotNull String buyerName, @NotNull Material material, int quantity, long coins) {
+        if (!ConfigSnapshot.current().logging().enabled() || store == null) {
+            return;
         }
+
+        int loggedCoins = (int) Math.min(coins, Integer.MAX_VALUE);
+        List<String> terms = List.of(TradeSearchIndex.materialTerm(material),
+                TradeSearchIndex.fingerprintTerm(ItemFingerprint.ofPlain(material, quantity)));
+        write(store, () -> new TradeRecord(UUID.randomUUID().toString(), System.currentTimeMillis(),
+                sellerId, sellerName, buyerId, buyerName, 0, loggedCoins,
+                List.of(material.name() + " x" + quantity), List.of(), terms));
     }
 
     /**
-     * Retrieves all trade logs for a player based on their name or UUID.
-     * This method will return an Optional containing a list of trade data for the player,
-     * or an empty Optional if no trades are found.
+     * Logs a one-sided transfer, e.g. an accepted mailbox offer, as a trade in which only the sender gave coins and
+     * items.
      *
-     * @param player The player whose trade logs you want to retrieve.
-     * @return An Optional containing the list of trade data for the player, or an empty Optional if no trades are found.
+     * @param senderId      The UUID of the sender.
+     * @param senderName    The name of the sender.
+     * @param recipientId   The UUID of the recipient.
+     * @param recipientName The name of the recipient.
+     * @param coins         The coins transferred.
+     * @param items         The items transferred.
      */
-    public @NotNull Optional<List<String>> getTradeLogsForPlayer(@NotNull Player player) {
-        if (tradeLogCache.containsKey(player.getUniqueId())) {
-            return Optional.of(tradeLogCache.get(player.getUniqueId()));
+    public void logTransfer(@NotNull UUID senderId, @NotNull String senderName, @NotNull UUID recipientId,
+                            @NotNull String recipientName, int coins, @NotNull List<ItemStack> items) {
+        if (!ConfigSnapshot.current().logging().enabled() || store == null) {
+            return;
         }
 
-        List<String> tradeLogs = new ArrayList<>();
-        String playerName = player.getName();
-        UUID playerUUID = player.getUniqueId();
+        List<String> described = new ArrayList<>(items.size());
+        Set<String> terms = new LinkedHashSet<>();
+        for (ItemStack itemStack : items) {
+            described.add(itemStack.getType().name() + " x" + itemStack.getAmount());
+            terms.addAll(TradeSearchIndex.termsOf(itemStack));
+            terms.add(TradeSearchIndex.fingerprintTerm(ItemFingerprint.of(itemStack)));
+        }
+        write(store, () -> new TradeRecord(UUID.randomUUID().toString(), System.currentTimeMillis(),
+                senderId, senderName, recipientId, recipientName, coins, 0, described, List.of(), new ArrayList<>(terms)));
+    }
+
+    /**
+     * Appends a trade to the store and sends it to the remote log on an I/O thread.
+     *
+     * @param store  The store to append to.
+     * @param record Creates the trade to log, called on the I/O thread.
+     */
+    private void write(@NotNull TradeLogStore store, @NotNull Supplier<TradeRecord> record) {
+        pendingWrites.incrementAndGet();
+        plugin.getExecutors().runIo(() -> {
+            TradeRecord trade = record.get();
 
-        for (String tradeId : config.getConfigurationSection("trade-logs").getKeys(false)) {
-            String initiator = config.getString("trade-logs." + tradeId + ".initiator");
-            String target = config.getString("trade-logs." + tradeId + ".target");
+            long start = System.nanoTime();
+            try {
+                store.append(trade);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Error writing trade log", e);
+            } finally {
+                pendingWrites.decrementAndGet();
+                plugin.getMetrics().getLogWriteLatency().recordSince(start);
+            }
 
-            if (isPlayerInvolvedInTrade(playerName, playerUUID, initiator, target)) {
-                String tradeLog = buildTradeLog(tradeId, initiator, target);
-                tradeLogs.add(tradeLog);
+            if (remoteSink != null) {
+                remoteSink.submit(trade);
             }
-        }
+        }).whenComplete((result, throwable) -> {
+            if (throwable instanceof RejectedExecutionException) {
+                pendingWrites.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Returns the number of logged trades that have not been written to the log file yet.
+     *
+     * @return The number of pending writes.
+     */
+    public int getPendingWrites() {
+        return pendingWrites.get();
+    }
+
+    /**
+     * Returns the sink of the remote trade log.
+     *
+     * @return The sink, or null if the remote log is disabled or unavailable.
+     */
+    public @Nullable RemoteLogSink getRemoteSink() {
+        return remoteSink;
+    }
+
+    /**
+     * Returns the memory and disk usage of the trade log.
+     *
+     * @return The footprint, all zero if the log could not be opened.
+     */
+    public @NotNull StoreFootprint getFootprint() {
+        return store == null ? new StoreFootprint(0, 0, 0, 0, 0, 0, 0) : store.getFootprint();
+    }
 
-        if (!tradeLogs.isEmpty()) {
-            tradeLogCache.put(playerUUID, tradeLogs);
+    /**
+     * Exports the trades since the given time into a new columnar file in the "exports" directory on an I/O thread.
+     * See {@link TradeExport} for the file format.
+     *
+     * @param sinceMillis The earliest trade time in epoch milliseconds, 0 for the whole history.
+     * @return A future completed with the result, or with an empty optional if the export failed.
+     */
+    public @NotNull CompletableFuture<Optional<ExportResult>> export(long sinceMillis) {
+        TradeLogStore exported = store;
+        if (exported == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
         }
 
-        return tradeLogs.isEmpty() ? Optional.empty() : Optional.of(tradeLogs);
+        String name = "trades-" + new SimpleDateFormat(EXPORT_NAME_FORMAT).format(new Date()) + TradeExport.EXTENSION;
+        Path file = getExportDirectory().resolve(name);
+        return plugin.getExecutors().supplyIo(() -> {
+            try {
+                ExportResult result = TradeExport.export(exported, file, sinceMillis, Long.MAX_VALUE);
+                plugin.getLogger().info("Exported " + result.trades() + " trade(s) to " + file.getFileName() + " in "
+                        + result.durationMillis() + " ms.");
+                return Optional.of(result);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Could not export the trade log to " + file.getFileName(), e);
+                return Optional.empty();
+            }
+        });
     }
 
     /**
-     * Checks if a player (by name or UUID) is involved in a specific trade.
+     * Aggregates the trades of the newest export file on an I/O thread.
      *
-     * @param playerName The name of the player.
-     * @param playerUUID The UUID of the player.
-     * @param initiator  The name of the trade initiator.
-     * @param target     The name of the trade target.
-     * @return true if the player is involved in the trade, false otherwise.
+     * @param groupBy What to group the trades by.
+     * @return A future completed with the groups, see {@link TradeAggregates#aggregate(Path, TradeAggregates.GroupBy)},
+     * or with an empty optional if there is no export or it could not be read.
      */
-    private boolean isPlayerInvolvedInTrade(@NotNull String playerName, @NotNull UUID playerUUID, @NotNull String initiator, @NotNull String target) {
-        return initiator.equals(playerName) || target.equals(playerName) ||
-                config.getString("trade-logs." + target + ".initiator").equals(playerUUID.toString()) ||
-                config.getString("trade-logs." + target + ".target").equals(playerUUID.toString());
+    public @NotNull CompletableFuture<Optional<List<TradeAggregates.Aggregate>>> aggregateLatestExport(
+            @NotNull TradeAggregates.GroupBy groupBy) {
+        return plugin.getExecutors().supplyIo(() -> {
+            Path latest = null;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(getExportDirectory(), "trades-*" + TradeExport.EXTENSION)) {
+                for (Path file : files) {
+                    if (latest == null || file.getFileName().toString().compareTo(latest.getFileName().toString()) > 0) {
+                        latest = file;
+                    }
+                }
+                return latest == null ? Optional.empty() : Optional.of(TradeAggregates.aggregate(latest, groupBy));
+            } catch (NoSuchFileException e) {
+                return Optional.empty();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not aggregate the trade export "
+                        + (latest == null ? "" : latest.getFileName()), e);
+                return Optional.empty();
+            }
+        });
+    }
+
+    private @NotNull Path getExportDirectory() {
+        return plugin.getDataFolder().toPath().resolve("exports");
     }
 
     /**
-     * Builds a trade log entry as a formatted string.
+     * Returns how many segments of the trade log store history queries and item searches searched and skipped.
      *
-     * @param tradeId   The trade ID.
-     * @param initiator The name of the trade initiator.
-     * @param target    The name of the trade target.
-     * @return A formatted string representing the trade log.
+     * @return The counts, zero if the store could not be opened.
      */
-    private @NotNull String buildTradeLog(@NotNull String tradeId, @NotNull String initiator, @NotNull String target) {
-        return "Trade ID: " + tradeId + "\n" +
-                "Initiator: " + initiator + "\n" +
-                "Target: " + target + "\n" +
-                "Coins: " + config.getInt("trade-logs." + tradeId + ".coins") + "\n" +
-                "Items: " + String.join(", ", config.getStringList("trade-logs." + tradeId + ".items"));
+    public @NotNull SegmentPruning getPruning() {
+        return store == null ? new SegmentPruning(0, 0) : store.getPruning();
     }
 
     /**
-     * Saves the current configuration asynchronously to avoid blocking the server thread.
+     * Stops sending trades to the remote log and closes the trade log. Trades that could not be sent in time are
+     * spooled to disk and sent after the next start. Must be called after pending log writes have completed.
+     *
+     * @param timeout The maximum time to wait for the remote log.
      */
-    private void saveConfig() {
-        CompletableFuture.runAsync(() -> {
+    public void close(@NotNull Duration timeout) {
+        if (remoteSink != null) {
+            remoteSink.close(timeout);
+        }
+        if (store != null) {
             try {
-                config.save(logFile);
+                store.close();
             } catch (IOException e) {
-                Bukkit.getLogger().severe("Error saving trade log: " + e.getMessage());
+                plugin.getLogger().log(Level.SEVERE, "Error closing the trade log", e);
             }
-        });
+        }
+    }
+
+    /**
+     * Describes every offered item as "MATERIAL x amount", in offer slot order.
+     *
+     * @param offer The offer to describe.
+     * @return A list with one entry per offered item.
+     */
+    private @NotNull List<String> describeOffer(@NotNull TradeOffer offer) {
+        List<String> items = new ArrayList<>(offer.size());
+        for (int i = offer.nextOccupied(0); i >= 0; i = offer.nextOccupied(i + 1)) {
+            ItemStack itemStack = offer.get(i);
+            items.add(itemStack.getType().name() + " x" + itemStack.getAmount());
+        }
+        return items;
+    }
+
+    /**
+     * Collects the search terms of all items offered by both players, see {@link TradeSearchIndex#termsOf(ItemStack)},
+     * and their fingerprints, which the offers computed when the items were added.
+     *
+     * @param offers The offers of the trade.
+     * @return The distinct terms.
+     */
+    private @NotNull List<String> collectSearchTerms(@NotNull TradeOffer... offers) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (TradeOffer offer : offers) {
+            for (int i = offer.nextOccupied(0); i >= 0; i = offer.nextOccupied(i + 1)) {
+                terms.addAll(TradeSearchIndex.termsOf(offer.get(i)));
+                terms.add(TradeSearchIndex.fingerprintTerm(offer.getFingerprint(i)));
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * Searches the trade log for trades in which items matching the search were traded, using the search indexes
+     * instead of reading the log. Blocks on file I/O, so it should be called on an I/O thread.
+     *
+     * @param search The item search.
+     * @return The matching trade logs, most recent first.
+     */
+    public @NotNull List<String> searchItems(@NotNull ItemSearch search) {
+        if (store == null) {
+            return List.of();
+        }
+
+        long start = System.nanoTime();
+        try {
+            long since = Math.max(search.sinceMillis(), retentionCutoff());
+            return store.searchItems(search.terms(), since, search.limit()).stream()
+                    .map(this::buildTradeLog)
+                    .toList();
+        } finally {
+            plugin.getMetrics().getItemSearchLatency().recordSince(start);
+        }
+    }
+
+    /**
+     * Retrieves all trade logs for a player based on their UUID.
+     * This method will return an Optional containing a list of trade data for the player,
+     * or an empty Optional if no trades are found.
+     * Recent trades are served from memory, older ones are read from disk, so it should be called on an I/O thread.
+     *
+     * @param player The player whose trade logs you want to retrieve.
+     * @return An Optional containing the list of trade data for the player, or an empty Optional if no trades are found.
+     */
+    public @NotNull Optional<List<String>> getTradeLogsForPlayer(@NotNull Player player) {
+        if (store == null) {
+            return Optional.empty();
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<String> tradeLogs = store.findByParticipant(player.getUniqueId(), retentionCutoff()).stream()
+                    .map(this::buildTradeLog)
+                    .toList();
+            return tradeLogs.isEmpty() ? Optional.empty() : Optional.of(tradeLogs);
+        } finally {
+            plugin.getMetrics().getHistoryQueryLatency().recordSince(start);
+        }
+    }
+
+    /**
+     * Returns the time before which trades are expired and no longer shown, even if their segment has not been
+     * deleted yet.
+     *
+     * @return The cutoff in epoch milliseconds.
+     */
+    private static long retentionCutoff() {
+        return System.currentTimeMillis() - ConfigSnapshot.current().logging().retentionMillis();
+    }
+
+    /**
+     * Builds a trade log entry as a formatted string.
+     *
+     * @param record The logged trade.
+     * @return A formatted string representing the trade log.
+     */
+    private @NotNull String buildTradeLog(@NotNull TradeRecord record) {
+        return "Trade ID: " + record.tradeId() + "\n" +
+                "Timestamp: " + new SimpleDateFormat(TIMESTAMP_FORMAT).format(new Date(record.timestamp())) + "\n" +
+                "Initiator: " + record.initiatorName() + "\n" +
+                "Target: " + record.targetName() + "\n" +
+                "Coins: " + record.coins() + " / " + record.targetCoins() + "\n" +
+                "Items: " + String.join(", ", record.items()) + " / " +
+                String.join(", ", record.targetItems());
     }
 }
@@ -0,0 +1,111 @@
+package de.bukkitnews.trading.trade.logging;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A completed trade as written to the trade log.
+ *
+ * @param tradeId        The ID of the trade.
+ * @param timestamp      The time of the trade in epoch milliseconds.
+ * @param initiatorId    The UUID of the player who initiated the trade.
+ * @param initiatorName  The name of the player who initiated the trade.
+ * @param targetId       The UUID of the trade partner.
+ * @param targetName     The name of the trade partner.
+ * @param coins          The coins offered by the initiator.
+ * @param targetCoins    The coins offered by the partner.
+ * @param items          The items offered by the initiator, as "MATERIAL x amount".
+ * @param targetItems    The items offered by the partner, as "MATERIAL x amount".
+ * @param searchTerms    The search terms of all traded items, see {@link TradeSearchIndex#termsOf}.
+ */
+public record TradeRecord(@NotNull String tradeId,
+                          long timestamp,
+                          @NotNull UUID initiatorId,
+                          @NotNull String initiatorName,
+                          @NotNull UUID targetId,
+                          @NotNull String targetName,
+                          int coins,
+                          int targetCoins,
+                          @NotNull List<String> items,
+                          @NotNull List<String> targetItems,
+                          @NotNull List<String> searchTerms) {
+
+    /**
+     * Separates list elements in {@link #toFields()}. Item descriptions and search terms never contain it.
+     */
+    private static final char LIST_SEPARATOR = '\u001F';
+
+    public TradeRecord {
+        items = List.copyOf(items);
+        targetItems = List.copyOf(targetItems);
+        searchTerms = List.copyOf(searchTerms);
+    }
+
+    /**
+     * Flattens the record into string fields, e.g. for a stream entry.
+     *
+     * @return The fields in a stable order.
+     */
+    public @NotNull Map<String, String> toFields() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("trade-id", tradeId);
+        fields.put("timestamp", Long.toString(timestamp));
+        fields.put("initiator-uuid", initiatorId.toString());
+        fields.put("initiator", initiatorName);
+        fields.put("target-uuid", targetId.toString());
+        fields.put("target", targetName);
+        fields.put("coins", Integer.toString(coins));
+        fields.put("target-coins", Integer.toString(targetCoins));
+        fields.put("items", joinList(items));
+        fields.put("target-items", joinList(targetItems));
+        fields.put("search-terms", joinList(searchTerms));
+        return fields;
+    }
+
+    /**
+     * Restores a record from the fields created by {@link #toFields()}.
+     *
+     * @param fields The fields.
+     * @return The record.
+     * @throws IllegalArgumentException If a field is missing or malformed.
+     */
+    public static @NotNull TradeRecord fromFields(@NotNull Map<String, String> fields) {
+        try {
+            return new TradeRecord(
+                    require(fields, "trade-id"),
+                    Long.parseLong(require(fields, "timestamp")),
+                    UUID.fromString(require(fields, "initiator-uuid")),
+                    require(fields, "initiator"),
+                    UUID.fromString(require(fields, "target-uuid")),
+                    require(fields, "target"),
+                    Integer.parseInt(require(fields, "coins")),
+                    Integer.parseInt(require(fields, "target-coins")),
+                    splitList(fields.getOrDefault("items", "")),
+                    splitList(fields.getOrDefault("target-items", "")),
+                    splitList(fields.getOrDefault("search-terms", "")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed trade record: " + fields, e);
+        }
+    }
+
+    private static @NotNull String require(@NotNull Map<String, String> fields, @NotNull String key) {
+        String value = fields.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Trade record is missing '" + key + "': " + fields);
+        }
+        return value;
+    }
+
+    private static @NotNull String joinList(@NotNull List<String> values) {
+        return String.join(String.valueOf(LIST_SEPARATOR), values);
+    }
+
+    private static @NotNull List<String> splitList(@NotNull String value) {
+        return value.isEmpty() ? List.of() : Arrays.asList(value.split(String.valueOf(LIST_SEPARATOR), -1));
+    }
+}
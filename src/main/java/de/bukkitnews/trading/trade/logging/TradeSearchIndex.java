@@ -0,0 +1,264 @@
+package de.bukkitnews.trading.trade.logging;
+
+import de.bukkitnews.trading.util.ItemFingerprint;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.EnchantmentStorageMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * An inverted index from item terms to the records of a trade log segment, so item searches do not have to read
+ * the whole trade log.
+ * <p>
+ * Every trade is indexed under the terms of the items offered by both players: the material, every word of the
+ * display name and every enchantment (see {@link #termsOf(ItemStack)}), and under the {@link ItemFingerprint} of
+ * every item (see {@link #fingerprintTerm(long)}), which finds one exact stack, e.g. from an anomaly alert.
+ * Records are added with ascending record numbers, so every posting list is sorted and lists are intersected by
+ * walking the shortest one and binary-searching the others. Segments are only ever appended to and are dropped as
+ * a whole when they expire, so the index needs no removal.
+ * <p>
+ * This class is not thread-safe. The {@link de.bukkitnews.trading.trade.logging.store.TradeLogStore} guards it
+ * with its lock.
+ */
+public class TradeSearchIndex {
+
+    private static final String MATERIAL_PREFIX = "material:";
+    private static final String NAME_PREFIX = "name:";
+    private static final String ENCHANTMENT_PREFIX = "enchant:";
+    private static final String FINGERPRINT_PREFIX = "item:";
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final @NotNull Map<String, Postings> postings = new HashMap<>();
+    private long[] timestamps = new long[64];
+    private int size;
+    private long postingCount;
+
+    /**
+     * Adds a record to the index.
+     *
+     * @param record    The number of the record, greater than that of every record added before.
+     * @param timestamp The time of the trade in epoch milliseconds.
+     * @param terms     The terms of the traded items.
+     * @throws IllegalArgumentException If the record number is not ascending.
+     */
+    public void add(int record, long timestamp, @NotNull Collection<String> terms) {
+        if (record < size) {
+            throw new IllegalArgumentException("Record " + record + " added after record " + (size - 1));
+        }
+        if (record >= timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, Math.max(record + 1, timestamps.length * 2));
+        }
+
+        timestamps[record] = timestamp;
+        size = record + 1;
+        for (String term : terms) {
+            Postings list = postings.computeIfAbsent(term, key -> new Postings());
+            if (list.size == 0 || list.records[list.size - 1] != record) {
+                list.add(record);
+                postingCount++;
+            }
+        }
+    }
+
+    /**
+     * Finds the records of trades containing items that match all given terms.
+     *
+     * @param terms       The terms every matching trade must contain, see {@link #termsOf(ItemStack)}.
+     * @param sinceMillis The earliest trade time in epoch milliseconds, 0 for no limit.
+     * @param limit       The maximum number of results.
+     * @return The numbers of the matching records, most recent trade first.
+     */
+    public int @NotNull [] search(@NotNull Collection<String> terms, long sinceMillis, int limit) {
+        if (terms.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+
+        Postings[] lists = new Postings[terms.size()];
+        int count = 0;
+        for (String term : terms) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                return new int[0];
+            }
+            lists[count++] = list;
+        }
+        Arrays.sort(lists, 0, count, Comparator.comparingInt((Postings list) -> list.size));
+
+        List<Integer> matches = new ArrayList<>();
+        Postings shortest = lists[0];
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int record = shortest.records[i];
+            if (timestamps[record] < sinceMillis) {
+                continue;
+            }
+            for (int j = 1; j < count; j++) {
+                if (Arrays.binarySearch(lists[j].records, 0, lists[j].size, record) < 0) {
+                    continue candidates;
+                }
+            }
+            matches.add(record);
+        }
+
+        return matches.stream()
+                .sorted(Comparator.comparingLong((Integer record) -> timestamps[record]).reversed())
+                .limit(limit)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * Returns the distinct terms of the indexed items.
+     *
+     * @return An unmodifiable view of the terms.
+     */
+    public @NotNull Set<String> terms() {
+        return Collections.unmodifiableSet(postings.keySet());
+    }
+
+    /**
+     * Returns the number of distinct terms.
+     *
+     * @return The number of terms.
+     */
+    public int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * Estimates the heap used by the index: the timestamps, the posting lists and one map entry per term.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long estimateBytes() {
+        return timestamps.length * 8L + postingCount * 4L + postings.size() * 96L;
+    }
+
+    /**
+     * Collects the search terms of an item: its material, the words of its display name and its enchantments,
+     * including those stored in enchanted books.
+     *
+     * @param itemStack The item.
+     * @return The terms of the item.
+     */
+    public static @NotNull Set<String> termsOf(@NotNull ItemStack itemStack) {
+        Set<String> terms = new LinkedHashSet<>();
+        terms.add(materialTerm(itemStack.getType()));
+
+        ItemMeta meta = itemStack.getItemMeta();
+        if (meta == null) {
+            return terms;
+        }
+        if (meta.hasDisplayName()) {
+            terms.addAll(nameTerms(meta.getDisplayName()));
+        }
+        meta.getEnchants().keySet().forEach(enchantment -> terms.add(enchantmentTerm(enchantment)));
+        if (meta instanceof EnchantmentStorageMeta storage) {
+            storage.getStoredEnchants().keySet().forEach(enchantment -> terms.add(enchantmentTerm(enchantment)));
+        }
+        return terms;
+    }
+
+    /**
+     * Returns the term matching items of a material.
+     *
+     * @param material The material.
+     * @return The term.
+     */
+    public static @NotNull String materialTerm(@NotNull Material material) {
+        return MATERIAL_PREFIX + material.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the terms matching items whose display name contains all words of the given text.
+     * Color codes are ignored and words are compared case-insensitively.
+     *
+     * @param displayName The display name or part of it.
+     * @return The terms, one per word.
+     */
+    public static @NotNull List<String> nameTerms(@NotNull String displayName) {
+        String plain = ChatColor.stripColor(displayName);
+        List<String> terms = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(plain == null ? displayName : plain)) {
+            if (!word.isEmpty()) {
+                terms.add(NAME_PREFIX + word.toLowerCase(Locale.ROOT));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Returns the term matching items with an enchantment.
+     *
+     * @param enchantment The enchantment.
+     * @return The term.
+     */
+    public static @NotNull String enchantmentTerm(@NotNull Enchantment enchantment) {
+        return enchantmentTerm(enchantment.getKey().getKey());
+    }
+
+    /**
+     * Returns the term matching items with the enchantment of the given key, e.g. "sharpness".
+     *
+     * @param key The key of the enchantment without namespace.
+     * @return The term.
+     */
+    public static @NotNull String enchantmentTerm(@NotNull String key) {
+        return ENCHANTMENT_PREFIX + key.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the term matching items with the given fingerprint, i.e. exactly one kind of stack.
+     *
+     * @param fingerprint The fingerprint, see {@link ItemFingerprint}.
+     * @return The term.
+     */
+    public static @NotNull String fingerprintTerm(long fingerprint) {
+        return FINGERPRINT_PREFIX + ItemFingerprint.format(fingerprint);
+    }
+
+    /**
+     * Parses a material from a logged item description such as "DIAMOND x3", for trades logged before
+     * search terms were stored.
+     *
+     * @param description The logged item description.
+     * @return The material, or null if the description does not start with one.
+     */
+    static @Nullable Material materialOf(@NotNull String description) {
+        int separator = description.indexOf(' ');
+        return Material.getMaterial(separator < 0 ? description : description.substring(0, separator));
+    }
+
+    /**
+     * A growable, sorted list of record numbers.
+     */
+    private static final class Postings {
+
+        private int[] records = new int[4];
+        private int size;
+
+        private void add(int record) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+            }
+            records[size++] = record;
+        }
+    }
+}
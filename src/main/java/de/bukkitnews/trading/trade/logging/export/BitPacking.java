@@ -0,0 +1,166 @@
+package de.bukkitnews.trading.trade.logging.export;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes the integer and timestamp columns of a {@link RowGroup}.
+ * <p>
+ * Integer columns are stored with frame-of-reference bit packing: the smallest value of the column, the number of
+ * bits needed for the largest difference to it, and the differences packed into longs with that many bits each.
+ * Dictionary indexes and item counts need only a few bits, and coin amounts need no more bits than the largest
+ * amount in the row group. Timestamps are stored as the first value followed by the differences between
+ * consecutive values as zig-zag variable-length integers, which takes one to three bytes for trades logged in order.
+ */
+final class BitPacking {
+
+    private BitPacking() {
+    }
+
+    /**
+     * Writes the first values of an array with frame-of-reference bit packing.
+     *
+     * @param out    The stream to write to.
+     * @param values The values.
+     * @param count  The number of values to write.
+     * @throws IOException If the stream could not be written.
+     */
+    static void writeInts(@NotNull DataOutputStream out, int @NotNull [] values, int count) throws IOException {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        if (count == 0) {
+            min = max = 0;
+        }
+
+        int width = 64 - Long.numberOfLeadingZeros((long) max - min);
+        out.writeInt(min);
+        out.writeByte(width);
+        if (width == 0) {
+            return;
+        }
+
+        long word = 0;
+        int used = 0;
+        for (int i = 0; i < count; i++) {
+            long value = (long) values[i] - min;
+            word |= value << used;
+            used += width;
+            if (used >= 64) {
+                out.writeLong(word);
+                used -= 64;
+                word = used == 0 ? 0 : value >>> (width - used);
+            }
+        }
+        if (used > 0) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads values written by {@link #writeInts(DataOutputStream, int[], int)}.
+     *
+     * @param in     The stream to read from.
+     * @param values The array to read into, with room for at least the given number of values.
+     * @param count  The number of values that were written.
+     * @throws IOException If the stream could not be read or the column is damaged.
+     */
+    static void readInts(@NotNull DataInputStream in, int @NotNull [] values, int count) throws IOException {
+        int min = in.readInt();
+        int width = in.readUnsignedByte();
+        if (width > 32) {
+            throw new IOException("Invalid bit width " + width);
+        }
+        if (width == 0) {
+            Arrays.fill(values, 0, count, min);
+            return;
+        }
+
+        long mask = (1L << width) - 1;
+        long word = 0;
+        int available = 0;
+        for (int i = 0; i < count; i++) {
+            long value;
+            if (available >= width) {
+                value = word & mask;
+                word >>>= width;
+                available -= width;
+            } else {
+                long next = in.readLong();
+                value = (word | (next << available)) & mask;
+                word = next >>> (width - available);
+                available = 64 - (width - available);
+            }
+            values[i] = (int) (value + min);
+        }
+    }
+
+    /**
+     * Writes the first values of an array as a start value followed by zig-zag encoded differences.
+     *
+     * @param out    The stream to write to.
+     * @param values The values.
+     * @param count  The number of values to write.
+     * @throws IOException If the stream could not be written.
+     */
+    static void writeDeltas(@NotNull DataOutputStream out, long @NotNull [] values, int count) throws IOException {
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                out.writeLong(values[0]);
+            } else {
+                long delta = values[i] - previous;
+                writeVarLong(out, (delta << 1) ^ (delta >> 63));
+            }
+            previous = values[i];
+        }
+    }
+
+    /**
+     * Reads values written by {@link #writeDeltas(DataOutputStream, long[], int)}.
+     *
+     * @param in     The stream to read from.
+     * @param values The array to read into, with room for at least the given number of values.
+     * @param count  The number of values that were written.
+     * @throws IOException If the stream could not be read or the column is damaged.
+     */
+    static void readDeltas(@NotNull DataInputStream in, long @NotNull [] values, int count) throws IOException {
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                previous = in.readLong();
+            } else {
+                long zigZag = readVarLong(in);
+                previous += (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+            values[i] = previous;
+        }
+    }
+
+    private static void writeVarLong(@NotNull DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(@NotNull DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Variable-length integer is too long");
+    }
+}
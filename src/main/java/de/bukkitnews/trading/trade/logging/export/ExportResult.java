@@ -0,0 +1,16 @@
+package de.bukkitnews.trading.trade.logging.export;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+
+/**
+ * The outcome of a {@link TradeExport#export trade export}.
+ *
+ * @param file           The written export file.
+ * @param trades         The number of exported trades.
+ * @param bytes          The size of the export file.
+ * @param durationMillis The time the export took in milliseconds.
+ */
+public record ExportResult(@NotNull Path file, long trades, long bytes, long durationMillis) {
+}
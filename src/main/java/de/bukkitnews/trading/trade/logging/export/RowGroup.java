@@ -0,0 +1,215 @@
+package de.bukkitnews.trading.trade.logging.export;
+
+import de.bukkitnews.trading.trade.logging.TradeRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A block of up to {@link #MAX_ROWS} trades of a columnar export, held as one primitive array per column.
+ * <p>
+ * Players and materials are dictionary-encoded per row group: the group stores every distinct player (UUID and name)
+ * and material once, and the columns hold indexes into these dictionaries. The items of both sides of all trades
+ * are flattened into one material and one amount column; the item counts per trade tell which items belong to which
+ * trade and side. Written columns are encoded with {@link BitPacking}.
+ * <p>
+ * A row group is reused for the next block of trades after it has been written or scanned, so exporting and
+ * scanning use the same memory however long the history is.
+ */
+final class RowGroup {
+
+    /**
+     * The number of trades in a full row group.
+     */
+    static final int MAX_ROWS = 1 << 16;
+
+    /**
+     * The largest number of items accepted in a row group when reading, to reject garbage counts before allocating.
+     */
+    private static final int MAX_ITEMS = MAX_ROWS * 128;
+
+    int rows;
+    final long[] timestamps = new long[MAX_ROWS];
+    final int[] initiators = new int[MAX_ROWS];
+    final int[] targets = new int[MAX_ROWS];
+    final int[] coins = new int[MAX_ROWS];
+    final int[] targetCoins = new int[MAX_ROWS];
+    final int[] initiatorItemCounts = new int[MAX_ROWS];
+    final int[] targetItemCounts = new int[MAX_ROWS];
+
+    int items;
+    int[] itemMaterials = new int[MAX_ROWS];
+    int[] itemAmounts = new int[MAX_ROWS];
+
+    final List<UUID> players = new ArrayList<>();
+    final List<String> playerNames = new ArrayList<>();
+    final List<String> materials = new ArrayList<>();
+    private final Map<UUID, Integer> playerIndexes = new HashMap<>();
+    private final Map<String, Integer> materialIndexes = new HashMap<>();
+
+    boolean isFull() {
+        return rows == MAX_ROWS;
+    }
+
+    /**
+     * Adds a trade as the next row.
+     *
+     * @param record The trade.
+     */
+    void add(@NotNull TradeRecord record) {
+        int row = rows++;
+        timestamps[row] = record.timestamp();
+        initiators[row] = playerIndex(record.initiatorId(), record.initiatorName());
+        targets[row] = playerIndex(record.targetId(), record.targetName());
+        coins[row] = record.coins();
+        targetCoins[row] = record.targetCoins();
+        initiatorItemCounts[row] = addItems(record.items());
+        targetItemCounts[row] = addItems(record.targetItems());
+    }
+
+    private int playerIndex(@NotNull UUID player, @NotNull String name) {
+        Integer index = playerIndexes.get(player);
+        if (index == null) {
+            index = players.size();
+            playerIndexes.put(player, index);
+            players.add(player);
+            playerNames.add(name);
+        }
+        return index;
+    }
+
+    /**
+     * Adds logged item descriptions such as "DIAMOND x3" to the item columns. Descriptions without an amount
+     * count as a single item.
+     */
+    private int addItems(@NotNull List<String> descriptions) {
+        for (String description : descriptions) {
+            int separator = description.lastIndexOf(" x");
+            String material = separator < 0 ? description : description.substring(0, separator);
+            int amount = 1;
+            if (separator >= 0) {
+                try {
+                    amount = Integer.parseInt(description.substring(separator + 2));
+                } catch (NumberFormatException ignored) {
+                    material = description;
+                }
+            }
+
+            if (items == itemMaterials.length) {
+                itemMaterials = Arrays.copyOf(itemMaterials, items * 2);
+                itemAmounts = Arrays.copyOf(itemAmounts, items * 2);
+            }
+            itemMaterials[items] = materialIndexes.computeIfAbsent(material, key -> {
+                materials.add(key);
+                return materials.size() - 1;
+            });
+            itemAmounts[items] = amount;
+            items++;
+        }
+        return descriptions.size();
+    }
+
+    /**
+     * Writes the row group: the row and item counts, the dictionaries and then every column.
+     *
+     * @param out The stream to write to.
+     * @throws IOException If the stream could not be written.
+     */
+    void write(@NotNull DataOutputStream out) throws IOException {
+        out.writeInt(rows);
+        out.writeInt(items);
+        out.writeInt(players.size());
+        for (int i = 0; i < players.size(); i++) {
+            out.writeLong(players.get(i).getMostSignificantBits());
+            out.writeLong(players.get(i).getLeastSignificantBits());
+            out.writeUTF(playerNames.get(i));
+        }
+        out.writeInt(materials.size());
+        for (String material : materials) {
+            out.writeUTF(material);
+        }
+
+        BitPacking.writeDeltas(out, timestamps, rows);
+        BitPacking.writeInts(out, initiators, rows);
+        BitPacking.writeInts(out, targets, rows);
+        BitPacking.writeInts(out, coins, rows);
+        BitPacking.writeInts(out, targetCoins, rows);
+        BitPacking.writeInts(out, initiatorItemCounts, rows);
+        BitPacking.writeInts(out, targetItemCounts, rows);
+        BitPacking.writeInts(out, itemMaterials, items);
+        BitPacking.writeInts(out, itemAmounts, items);
+    }
+
+    /**
+     * Reads the next row group written by {@link #write(DataOutputStream)}, replacing the contents of this one.
+     *
+     * @param in The stream to read from.
+     * @return false if the end of the row groups was reached.
+     * @throws IOException If the stream could not be read or the row group is damaged.
+     */
+    boolean read(@NotNull DataInputStream in) throws IOException {
+        clear();
+        int rowCount = in.readInt();
+        if (rowCount == 0) {
+            return false;
+        }
+        int itemCount = in.readInt();
+        if (rowCount < 0 || rowCount > MAX_ROWS || itemCount < 0 || itemCount > MAX_ITEMS) {
+            throw new IOException("Damaged row group with " + rowCount + " row(s) and " + itemCount + " item(s)");
+        }
+
+        int playerCount = in.readInt();
+        if (playerCount < 0 || playerCount > 2 * rowCount) {
+            throw new IOException("Damaged row group with " + playerCount + " player(s) for " + rowCount + " row(s)");
+        }
+        for (int i = 0; i < playerCount; i++) {
+            players.add(new UUID(in.readLong(), in.readLong()));
+            playerNames.add(in.readUTF());
+        }
+        int materialCount = in.readInt();
+        if (materialCount < 0 || materialCount > itemCount) {
+            throw new IOException("Damaged row group with " + materialCount + " material(s) for " + itemCount + " item(s)");
+        }
+        for (int i = 0; i < materialCount; i++) {
+            materials.add(in.readUTF());
+        }
+
+        rows = rowCount;
+        items = itemCount;
+        if (items > itemMaterials.length) {
+            itemMaterials = new int[items];
+            itemAmounts = new int[items];
+        }
+        BitPacking.readDeltas(in, timestamps, rows);
+        BitPacking.readInts(in, initiators, rows);
+        BitPacking.readInts(in, targets, rows);
+        BitPacking.readInts(in, coins, rows);
+        BitPacking.readInts(in, targetCoins, rows);
+        BitPacking.readInts(in, initiatorItemCounts, rows);
+        BitPacking.readInts(in, targetItemCounts, rows);
+        BitPacking.readInts(in, itemMaterials, items);
+        BitPacking.readInts(in, itemAmounts, items);
+        return true;
+    }
+
+    /**
+     * Empties the row group for the next block of trades, keeping its arrays.
+     */
+    void clear() {
+        rows = 0;
+        items = 0;
+        players.clear();
+        playerNames.clear();
+        materials.clear();
+        playerIndexes.clear();
+        materialIndexes.clear();
+    }
+}
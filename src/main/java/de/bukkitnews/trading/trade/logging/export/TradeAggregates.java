@@ -0,0 +1,168 @@
+package de.bukkitnews.trading.trade.logging.export;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates the trades of an export file, e.g. the coins moved per day or the items traded per material.
+ * <p>
+ * The file is scanned one {@link RowGroup} at a time. Every group is aggregated with tight loops over its column
+ * arrays into arrays indexed by its dictionaries, and only the per-group totals are merged into the result, so the
+ * work per trade is a few array accesses and the memory used depends on the number of groups in the result, not on
+ * the number of trades. This blocks on file I/O and must be called on an I/O thread.
+ */
+public final class TradeAggregates {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private TradeAggregates() {
+    }
+
+    /**
+     * What the trades are grouped by and what is summed up.
+     */
+    public enum GroupBy {
+        /**
+         * Groups trades by their UTC day. Counts the trades and sums the coins of both sides.
+         */
+        DAY,
+        /**
+         * Groups trades by their participants, so every trade counts for both players. Counts the trades and sums
+         * the coins the player offered.
+         */
+        PLAYER,
+        /**
+         * Groups traded items by their material. Counts the stacks and sums the items.
+         */
+        MATERIAL
+    }
+
+    /**
+     * The totals of one group.
+     *
+     * @param key   The day as "yyyy-MM-dd", the last known name of the player or the material.
+     * @param count The number of trades or item stacks.
+     * @param sum   The sum of coins or items.
+     */
+    public record Aggregate(@NotNull String key, long count, long sum) {
+    }
+
+    /**
+     * Aggregates the trades of an export file.
+     *
+     * @param file    The export file.
+     * @param groupBy What to group by.
+     * @return The groups, by day in ascending order, otherwise by descending sum.
+     * @throws IOException If the file could not be read or is damaged.
+     */
+    public static @NotNull List<Aggregate> aggregate(@NotNull Path file, @NotNull GroupBy groupBy) throws IOException {
+        try {
+            return switch (groupBy) {
+                case DAY -> byDay(file);
+                case PLAYER -> byPlayer(file);
+                case MATERIAL -> byMaterial(file);
+            };
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Trade export " + file.getFileName() + " refers to missing dictionary entries", e);
+        }
+    }
+
+    /**
+     * Sums up runs of trades on the same day. Trades are exported in the order they were logged, so a run
+     * usually spans thousands of rows and the map is only touched once per run.
+     */
+    private static @NotNull List<Aggregate> byDay(@NotNull Path file) throws IOException {
+        Map<Long, long[]> days = new TreeMap<>();
+        TradeExport.scan(file, group -> {
+            int row = 0;
+            while (row < group.rows) {
+                long day = Math.floorDiv(group.timestamps[row], DAY_MILLIS);
+                long count = 0;
+                long sum = 0;
+                for (; row < group.rows && Math.floorDiv(group.timestamps[row], DAY_MILLIS) == day; row++) {
+                    count++;
+                    sum += (long) group.coins[row] + group.targetCoins[row];
+                }
+                long[] totals = days.computeIfAbsent(day, key -> new long[2]);
+                totals[0] += count;
+                totals[1] += sum;
+            }
+        });
+
+        List<Aggregate> aggregates = new ArrayList<>(days.size());
+        days.forEach((day, totals) -> aggregates.add(new Aggregate(LocalDate.ofEpochDay(day).toString(), totals[0], totals[1])));
+        return aggregates;
+    }
+
+    private static @NotNull List<Aggregate> byPlayer(@NotNull Path file) throws IOException {
+        Map<UUID, PlayerTotals> players = new HashMap<>();
+        TradeExport.scan(file, group -> {
+            int size = group.players.size();
+            long[] counts = new long[size];
+            long[] sums = new long[size];
+            for (int row = 0; row < group.rows; row++) {
+                int initiator = group.initiators[row];
+                int target = group.targets[row];
+                counts[initiator]++;
+                sums[initiator] += group.coins[row];
+                counts[target]++;
+                sums[target] += group.targetCoins[row];
+            }
+
+            for (int player = 0; player < size; player++) {
+                PlayerTotals totals = players.computeIfAbsent(group.players.get(player), key -> new PlayerTotals());
+                totals.name = group.playerNames.get(player);
+                totals.count += counts[player];
+                totals.sum += sums[player];
+            }
+        });
+
+        List<Aggregate> aggregates = new ArrayList<>(players.size());
+        players.values().forEach(totals -> aggregates.add(new Aggregate(totals.name, totals.count, totals.sum)));
+        aggregates.sort(Comparator.comparingLong(Aggregate::sum).reversed());
+        return aggregates;
+    }
+
+    private static @NotNull List<Aggregate> byMaterial(@NotNull Path file) throws IOException {
+        Map<String, long[]> materials = new HashMap<>();
+        TradeExport.scan(file, group -> {
+            int size = group.materials.size();
+            long[] counts = new long[size];
+            long[] sums = new long[size];
+            for (int item = 0; item < group.items; item++) {
+                int material = group.itemMaterials[item];
+                counts[material]++;
+                sums[material] += group.itemAmounts[item];
+            }
+
+            for (int material = 0; material < size; material++) {
+                long[] totals = materials.computeIfAbsent(group.materials.get(material), key -> new long[2]);
+                totals[0] += counts[material];
+                totals[1] += sums[material];
+            }
+        });
+
+        List<Aggregate> aggregates = new ArrayList<>(materials.size());
+        materials.forEach((material, totals) -> aggregates.add(new Aggregate(material, totals[0], totals[1])));
+        aggregates.sort(Comparator.comparingLong(Aggregate::sum).reversed());
+        return aggregates;
+    }
+
+    private static final class PlayerTotals {
+
+        private String name;
+        private long count;
+        private long sum;
+    }
+}
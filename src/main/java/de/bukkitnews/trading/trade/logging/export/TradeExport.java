@@ -0,0 +1,131 @@
+package de.bukkitnews.trading.trade.logging.export;
+
+import de.bukkitnews.trading.trade.logging.store.TradeLogStore;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Exports the trade log into a columnar file for analysis outside the server, and reads such files back.
+ * <p>
+ * An export file starts with a header of a magic number, the format version, the exported time range and the
+ * creation time. It is followed by {@link RowGroup row groups} of up to 65536 trades each and ends with a row group
+ * of zero rows and the total number of trades. All numbers are big-endian, strings are modified UTF-8 as written
+ * by {@link DataOutputStream#writeUTF(String)}.
+ * <p>
+ * Exporting streams the trades from the segment files of the {@link TradeLogStore} through a single row group, and
+ * scanning streams the row groups of a file the same way, so both use constant memory. Both block on file I/O and
+ * must be called on an I/O thread.
+ */
+public final class TradeExport {
+
+    /**
+     * The file extension of export files.
+     */
+    public static final @NotNull String EXTENSION = ".tcol";
+
+    private static final int MAGIC = 0x54434F4C;
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private TradeExport() {
+    }
+
+    /**
+     * Exports the trades in a time range. The file is written next to its target and moved into place once it is
+     * complete, so readers never see a partial export.
+     *
+     * @param store       The trade log store to export.
+     * @param file        The export file, replaced if it exists.
+     * @param sinceMillis The earliest trade time in epoch milliseconds, inclusive.
+     * @param untilMillis The latest trade time in epoch milliseconds, exclusive.
+     * @return The result of the export.
+     * @throws IOException If the trade log could not be read or the file could not be written.
+     */
+    public static @NotNull ExportResult export(@NotNull TradeLogStore store, @NotNull Path file,
+                                               long sinceMillis, long untilMillis) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        RowGroup group = new RowGroup();
+        long trades;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sinceMillis);
+            out.writeLong(untilMillis);
+            out.writeLong(System.currentTimeMillis());
+
+            try {
+                trades = store.scan(sinceMillis, untilMillis, record -> {
+                    group.add(record);
+                    if (group.isFull()) {
+                        writeGroup(out, group);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (group.rows > 0) {
+                writeGroup(out, group);
+            }
+            out.writeInt(0);
+            out.writeLong(trades);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new ExportResult(file, trades, Files.size(file),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static void writeGroup(@NotNull DataOutputStream out, @NotNull RowGroup group) {
+        try {
+            group.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        group.clear();
+    }
+
+    /**
+     * Reads the row groups of an export file one after another into the same row group.
+     *
+     * @param file     The export file.
+     * @param consumer Receives the row group after each read. It must not keep it.
+     * @throws IOException If the file could not be read or is not a complete export file.
+     */
+    static void scan(@NotNull Path file, @NotNull Consumer<RowGroup> consumer) throws IOException {
+        RowGroup group = new RowGroup();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a trade export file: " + file.getFileName());
+            }
+            in.skipNBytes(3 * Long.BYTES);
+
+            long rows = 0;
+            while (group.read(in)) {
+                rows += group.rows;
+                consumer.accept(group);
+            }
+            long expected = in.readLong();
+            if (rows != expected) {
+                throw new IOException("Trade export " + file.getFileName() + " holds " + rows + " of "
+                        + expected + " trade(s)");
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package de.bukkitnews.trading.trade.logging.remote;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.metrics.TradeMetrics;
+import de.bukkitnews.trading.trade.logging.TradeRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Forwards logged trades to a {@link TradeStream} shared by all servers, so trade history can be read across the
+ * network. The local trade log stays the source of truth for this server.
+ * <p>
+ * Trades are queued without blocking and sent by a single flusher thread in batches of up to
+ * {@code batch-size} records, at the latest every {@code flush-interval-ms}. Up to {@code max-in-flight} batches
+ * are pipelined without waiting for earlier ones. If the store fails, the failed batch and everything queued after
+ * it go to a local {@link SpoolFile} instead, and every {@code retry-interval-seconds} the flusher tries to replay
+ * the spool. Once the spool has been replayed completely, trades are sent directly again. A spool left over from
+ * a previous run is replayed before new trades are sent.
+ * <p>
+ * Batches pipelined while the store goes down may be spooled after later batches that succeeded, so consumers
+ * should order trades by their timestamp rather than by stream ID.
+ */
+public class RemoteLogSink {
+
+    private static final Duration REPLAY_TIMEOUT = Duration.ofSeconds(10);
+
+    private final @NotNull Trading plugin;
+    private final @NotNull TradeStream stream;
+    private final @NotNull ConfigSnapshot.RemoteLog settings;
+    private final @NotNull SpoolFile spool;
+    private final @NotNull TradeMetrics metrics;
+    private final @NotNull BlockingQueue<TradeRecord> queue;
+    private final @NotNull Semaphore inFlight;
+    private final @NotNull Thread flusher;
+
+    private volatile boolean running = true;
+    private volatile boolean available = true;
+    private volatile long nextRetry;
+
+    /**
+     * Creates the sink and opens its spool file. The sink starts sending with {@link #start()}.
+     *
+     * @param plugin    The plugin.
+     * @param stream    The remote stream store.
+     * @param settings  The sink settings.
+     * @param spoolPath The path of the spool file.
+     * @throws IOException If the spool file could not be opened.
+     */
+    public RemoteLogSink(@NotNull Trading plugin, @NotNull TradeStream stream,
+                         @NotNull ConfigSnapshot.RemoteLog settings, @NotNull Path spoolPath) throws IOException {
+        this.plugin = plugin;
+        this.stream = stream;
+        this.settings = settings;
+        this.spool = new SpoolFile(spoolPath, plugin.getLogger());
+        this.metrics = plugin.getMetrics();
+        this.queue = new LinkedBlockingQueue<>(settings.queueCapacity());
+        this.inFlight = new Semaphore(settings.maxInFlight());
+        this.flusher = Thread.ofVirtual().name("TradingSystem-RemoteLog").unstarted(this::run);
+    }
+
+    /**
+     * Starts the flusher thread.
+     */
+    public void start() {
+        flusher.start();
+    }
+
+    /**
+     * Queues a trade for the remote store. Never waits for the store: if the queue is full or the sink is closed,
+     * the trade is spooled directly, so this should be called on an I/O thread.
+     *
+     * @param record The logged trade.
+     */
+    public void submit(@NotNull TradeRecord record) {
+        if (!running || !queue.offer(record)) {
+            spool(List.of(record));
+        }
+    }
+
+    /**
+     * Reads trades from the remote store, e.g. to look up history written by other servers.
+     *
+     * @param afterId The stream ID after which to read, {@code 0-0} to read from the start.
+     * @param count   The maximum number of trades.
+     * @return A future completed with the stream entries, whose fields can be restored with
+     * {@link TradeRecord#fromFields(Map)}.
+     */
+    public @NotNull CompletableFuture<List<TradeStream.StreamEntry>> read(@NotNull String afterId, int count) {
+        return stream.read(settings.stream(), afterId, count);
+    }
+
+    /**
+     * Returns whether the remote store accepted the last batch.
+     *
+     * @return true if trades are sent directly, false if they are spooled.
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Returns the number of trades waiting to be sent.
+     *
+     * @return The number of queued trades.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of trades in the spool file.
+     *
+     * @return The number of spooled trades.
+     */
+    public int getSpoolSize() {
+        return spool.size();
+    }
+
+    /**
+     * Stops the sink: queued trades are sent or spooled and in-flight batches are awaited until the deadline.
+     * Trades still queued afterwards are spooled, so they are replayed on the next start.
+     *
+     * @param timeout The maximum time to wait.
+     */
+    public void close(@NotNull Duration timeout) {
+        running = false;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            flusher.join(Duration.ofNanos(Math.max(0L, deadline - System.nanoTime())));
+            if (flusher.isAlive()) {
+                flusher.interrupt();
+                flusher.join(Duration.ofSeconds(1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<TradeRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spool(remaining);
+        }
+    }
+
+    private void run() {
+        try {
+            while (running || !queue.isEmpty()) {
+                List<TradeRecord> batch = nextBatch();
+
+                if (available && spool.size() > 0) {
+                    replaySpool();
+                }
+                if (!available) {
+                    if (!batch.isEmpty()) {
+                        spool(batch);
+                    }
+                    if (System.nanoTime() >= nextRetry) {
+                        replaySpool();
+                    }
+                    continue;
+                }
+                if (!batch.isEmpty()) {
+                    send(batch);
+                }
+            }
+
+            if (!inFlight.tryAcquire(settings.maxInFlight(), REPLAY_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                plugin.getLogger().warning("Remote trade log did not confirm all batches before shutdown.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits up to the flush interval for the first trade, then takes whatever else is queued up to the batch size.
+     */
+    private @NotNull List<TradeRecord> nextBatch() throws InterruptedException {
+        List<TradeRecord> batch = new ArrayList<>(settings.batchSize());
+        TradeRecord first = running ? queue.poll(settings.flushIntervalMillis(), TimeUnit.MILLISECONDS) : queue.poll();
+        if (first != null) {
+            batch.add(first);
+            queue.drainTo(batch, settings.batchSize() - 1);
+        }
+        return batch;
+    }
+
+    /**
+     * Sends a batch without waiting for the result, once fewer than {@code max-in-flight} batches are pending.
+     */
+    private void send(@NotNull List<TradeRecord> batch) throws InterruptedException {
+        inFlight.acquire();
+        long start = System.nanoTime();
+
+        CompletableFuture<List<String>> result;
+        try {
+            result = stream.append(settings.stream(), toEntries(batch));
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.whenComplete((ids, throwable) -> {
+            inFlight.release();
+            if (throwable != null) {
+                markUnavailable(throwable);
+                spool(batch);
+                return;
+            }
+            metrics.getRemoteAppended().add(batch.size());
+            metrics.getRemoteAppendLatency().recordSince(start);
+        });
+    }
+
+    /**
+     * Sends the spool in batches, waiting for each, and advances past what was sent. Stops at the first failure. The
+     * replayed head is compacted away once at the end instead of after every batch.
+     */
+    private void replaySpool() {
+        int replayed = 0;
+        try {
+            while (spool.size() > 0) {
+                SpoolFile.Batch batch = spool.readFirst(settings.batchSize());
+                if (batch.lines() == 0) {
+                    break;
+                }
+                if (!batch.records().isEmpty()) {
+                    long start = System.nanoTime();
+                    stream.append(settings.stream(), toEntries(batch.records()))
+                            .get(REPLAY_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                    metrics.getRemoteAppended().add(batch.records().size());
+                    metrics.getRemoteAppendLatency().recordSince(start);
+                }
+                spool.advance(batch);
+                replayed += batch.records().size();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            markUnavailable(e);
+            return;
+        } finally {
+            compactSpool();
+        }
+
+        if (!available) {
+            available = true;
+            plugin.getLogger().info("Remote trade log is available again, replayed " + replayed + " spooled trade(s).");
+        }
+    }
+
+    private void compactSpool() {
+        try {
+            spool.compact();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not compact the trade log spool", e);
+        }
+    }
+
+    private void markUnavailable(@NotNull Throwable cause) {
+        nextRetry = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.retryIntervalSeconds());
+        if (available) {
+            available = false;
+            plugin.getLogger().log(Level.WARNING,
+                    "Remote trade log is unavailable, spooling trades until it recovers", cause);
+        }
+    }
+
+    private void spool(@NotNull List<TradeRecord> records) {
+        try {
+            spool.append(records);
+            metrics.getRemoteSpooled().add(records.size());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE,
+                    "Could not spool " + records.size() + " trade(s) for the remote trade log", e);
+        }
+    }
+
+    private static @NotNull List<Map<String, String>> toEntries(@NotNull List<TradeRecord> batch) {
+        List<Map<String, String>> entries = new ArrayList<>(batch.size());
+        for (TradeRecord record : batch) {
+            entries.add(record.toFields());
+        }
+        return entries;
+    }
+}
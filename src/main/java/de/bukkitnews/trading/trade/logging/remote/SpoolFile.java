@@ -0,0 +1,321 @@
+package de.bukkitnews.trading.trade.logging.remote;
+
+import de.bukkitnews.trading.trade.logging.TradeRecord;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An append-only local file holding trade records that could not be sent to the remote store.
+ * <p>
+ * Every record is one line of tab-separated {@code key=value} fields, with backslash, tab and line breaks escaped.
+ * Appends are forced to disk before they return, so spooled trades survive a crash. Replayed records are not removed
+ * one batch at a time: the byte offset of the first record not yet replayed is kept in a small file next to the
+ * spool, and {@link #compact()} drops the replayed head once a replay ends. A crash after a batch was sent but before
+ * its offset was stored sends the batch again, so records are replayed at least once.
+ */
+public class SpoolFile {
+
+    private final @NotNull Path path;
+    private final @NotNull Path offsetPath;
+    private final @NotNull Logger logger;
+    private final @NotNull ReentrantLock lock = new ReentrantLock();
+    private long readOffset;
+    private volatile int size;
+
+    /**
+     * Opens the spool file, creating it if it does not exist.
+     *
+     * @param path   The path of the spool file.
+     * @param logger The logger for malformed lines.
+     * @throws IOException If the file could not be created or read.
+     */
+    public SpoolFile(@NotNull Path path, @NotNull Logger logger) throws IOException {
+        this.path = path;
+        this.offsetPath = path.resolveSibling(path.getFileName() + ".offset");
+        this.logger = logger;
+        Files.createDirectories(path.getParent());
+        if (!Files.exists(path)) {
+            Files.createFile(path);
+        }
+        this.readOffset = Math.min(readOffset(), Files.size(path));
+        try (InputStream in = openAt(readOffset)) {
+            int lines = 0;
+            for (Line line = readLine(in); line != null; line = readLine(in)) {
+                if (!line.text().isEmpty()) {
+                    lines++;
+                }
+            }
+            this.size = lines;
+        }
+    }
+
+    /**
+     * Appends records to the end of the spool and forces them to disk.
+     *
+     * @param records The records to append.
+     * @throws IOException If the records could not be written.
+     */
+    public void append(@NotNull List<TradeRecord> records) throws IOException {
+        StringBuilder lines = new StringBuilder(records.size() * 256);
+        for (TradeRecord record : records) {
+            encode(record, lines);
+            lines.append('\n');
+        }
+
+        lock.lock();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            size += records.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads up to the given number of records from the head of the spool, without removing them. Malformed lines
+     * are logged and skipped, but still count towards the limit and are consumed by {@link #advance(Batch)}.
+     *
+     * @param limit The maximum number of lines to read.
+     * @return The records, in the order they were spooled, and the lines they were read from.
+     * @throws IOException If the spool could not be read.
+     */
+    public @NotNull Batch readFirst(int limit) throws IOException {
+        List<TradeRecord> records = new ArrayList<>(Math.min(limit, size));
+        lock.lock();
+        try (InputStream in = openAt(readOffset)) {
+            long offset = readOffset;
+            int read = 0;
+            Line line;
+            while (read < limit && (line = readLine(in)) != null) {
+                offset += line.bytes();
+                if (line.text().isEmpty()) {
+                    continue;
+                }
+                read++;
+                try {
+                    records.add(decode(line.text()));
+                } catch (IllegalArgumentException e) {
+                    logger.log(Level.WARNING, "Skipping malformed spooled trade record", e);
+                }
+            }
+            return new Batch(records, read, offset);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the lines of a batch read with {@link #readFirst(int)} as replayed, by storing the offset after them.
+     * Only the lines that were actually read are consumed, so records appended in the meantime stay in the spool.
+     *
+     * @param batch The replayed batch.
+     * @throws IOException If the offset could not be stored.
+     */
+    public void advance(@NotNull Batch batch) throws IOException {
+        lock.lock();
+        try {
+            writeOffset(batch.endOffset());
+            readOffset = batch.endOffset();
+            size -= batch.lines();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the replayed head of the spool, by truncating it if everything was replayed or by rewriting the rest
+     * otherwise. The offset is reset first, so a crash in between replays the old head again instead of skipping
+     * records.
+     *
+     * @throws IOException If the spool could not be rewritten.
+     */
+    public void compact() throws IOException {
+        lock.lock();
+        try {
+            if (readOffset == 0) {
+                return;
+            }
+            long length = Files.size(path);
+            if (readOffset >= length) {
+                writeOffset(0);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(0);
+                    channel.force(true);
+                }
+            } else {
+                Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+                try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+                     FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                             StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    long position = readOffset;
+                    while (position < length) {
+                        position += source.transferTo(position, length - position, target);
+                    }
+                    target.force(true);
+                }
+                writeOffset(0);
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            readOffset = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of spooled records.
+     *
+     * @return The number of records.
+     */
+    public int size() {
+        return size;
+    }
+
+    private long readOffset() throws IOException {
+        if (!Files.exists(offsetPath)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(offsetPath, StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "Replaying the whole spool, its offset file is malformed", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Stores the read offset, replacing the offset file atomically. Must be called while holding the lock.
+     */
+    private void writeOffset(long offset) throws IOException {
+        Path temporary = offsetPath.resolveSibling(offsetPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(Long.toString(offset));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, offsetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private @NotNull InputStream openAt(long offset) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        channel.position(offset);
+        return new BufferedInputStream(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Reads a line and the number of bytes it takes up, including the line break.
+     *
+     * @return The line, or null at the end of the file or before an incomplete last line.
+     */
+    private static @Nullable Line readLine(@NotNull InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                String text = bytes.toString(StandardCharsets.UTF_8);
+                return new Line(text.endsWith("\r") ? text.substring(0, text.length() - 1) : text, bytes.size() + 1);
+            }
+            bytes.write(b);
+        }
+        return null;
+    }
+
+    private static void encode(@NotNull TradeRecord record, @NotNull StringBuilder out) {
+        boolean first = true;
+        for (Map.Entry<String, String> field : record.toFields().entrySet()) {
+            if (!first) {
+                out.append('\t');
+            }
+            first = false;
+            out.append(field.getKey()).append('=');
+            escape(field.getValue(), out);
+        }
+    }
+
+    private static @NotNull TradeRecord decode(@NotNull String line) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (String field : line.split("\t", -1)) {
+            int separator = field.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Field without value: " + field);
+            }
+            fields.put(field.substring(0, separator), unescape(field.substring(separator + 1)));
+        }
+        return TradeRecord.fromFields(fields);
+    }
+
+    private static void escape(@NotNull String value, @NotNull StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static @NotNull String unescape(@NotNull String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                out.append(c);
+                continue;
+            }
+            char escaped = value.charAt(++i);
+            out.append(switch (escaped) {
+                case 't' -> '\t';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                default -> escaped;
+            });
+        }
+        return out.toString();
+    }
+
+    /**
+     * Records read from the head of the spool.
+     *
+     * @param records   The decoded records.
+     * @param lines     The number of lines read, including malformed ones.
+     * @param endOffset The offset after the last line read.
+     */
+    public record Batch(@NotNull List<TradeRecord> records, int lines, long endOffset) {
+    }
+
+    private record Line(@NotNull String text, int bytes) {
+    }
+}
@@ -0,0 +1,51 @@
+package de.bukkitnews.trading.trade.logging.remote;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An append-only stream store shared by all servers of a network, modelled after Redis Streams.
+ * <p>
+ * Entries are flat string maps identified by IDs of the form {@code <milliseconds>-<sequence>}, which increase
+ * within a stream. Implementations are provided by other plugins through Bukkit's services manager, e.g. an adapter
+ * issuing {@code XADD} and {@code XRANGE} commands. Calls must not block: results are delivered through the returned
+ * futures, so several appends can be in flight at once.
+ */
+public interface TradeStream {
+
+    /**
+     * Appends entries to a stream in one round trip, like a pipeline of {@code XADD} commands.
+     *
+     * @param stream  The name of the stream.
+     * @param entries The entries to append, in order.
+     * @return A future completed with the IDs assigned to the entries, or completed exceptionally if the store
+     * is unavailable. Either all entries are appended or none.
+     */
+    @NotNull CompletableFuture<List<String>> append(@NotNull String stream, @NotNull List<Map<String, String>> entries);
+
+    /**
+     * Reads entries after the given ID, like {@code XRANGE stream (afterId + COUNT count}.
+     *
+     * @param stream  The name of the stream.
+     * @param afterId The ID after which to read, {@code 0-0} to read from the start.
+     * @param count   The maximum number of entries.
+     * @return A future completed with the entries in ID order.
+     */
+    @NotNull CompletableFuture<List<StreamEntry>> read(@NotNull String stream, @NotNull String afterId, int count);
+
+    /**
+     * An entry of a stream.
+     *
+     * @param id     The ID of the entry.
+     * @param fields The fields of the entry.
+     */
+    record StreamEntry(@NotNull String id, @NotNull Map<String, String> fields) {
+
+        public StreamEntry {
+            fields = Map.copyOf(fields);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package de.bukkitnews.trading.trade.logging.store;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * A bloom filter over the keys of a sealed {@link LogSegment}: the UUIDs of the participants and the search terms of
+ * the traded items. It answers whether a segment may hold trades of a key without loading the segment. It never
+ * misses a key it holds and wrongly claims about one in a hundred other keys.
+ * <p>
+ * Keys are hashed to 64 bits once per query (see {@link #hash(UUID)} and {@link #hash(String)}), and the bit
+ * positions are derived from the two halves of the hash by double hashing. The hashes only depend on the key, so
+ * filters written by one server can be read by any other.
+ * <p>
+ * A filter is immutable once it has been written to a footer and may then be read concurrently.
+ */
+final class BloomFilter {
+
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+    private static final int MAX_WORDS = 1 << 20;
+
+    private final long[] words;
+    private final int hashes;
+
+    private BloomFilter(long[] words, int hashes) {
+        this.words = words;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Creates an empty filter sized for the given number of keys.
+     *
+     * @param keys The number of keys that will be added.
+     * @return The filter.
+     */
+    static @NotNull BloomFilter create(int keys) {
+        long bits = Math.max(64L, (long) keys * BITS_PER_KEY);
+        return new BloomFilter(new long[(int) Math.min(MAX_WORDS, (bits + 63) / 64)], HASHES);
+    }
+
+    /**
+     * Reads a filter written by {@link #write(ByteBuffer)}.
+     *
+     * @param buffer The buffer positioned at the filter.
+     * @return The filter.
+     * @throws IOException If the filter is damaged.
+     */
+    static @NotNull BloomFilter read(@NotNull ByteBuffer buffer) throws IOException {
+        int hashes = buffer.getInt();
+        int length = buffer.getInt();
+        if (hashes <= 0 || length <= 0 || length > MAX_WORDS || length > buffer.remaining() / Long.BYTES) {
+            throw new IOException("Damaged bloom filter");
+        }
+        long[] words = new long[length];
+        buffer.asLongBuffer().get(words);
+        buffer.position(buffer.position() + length * Long.BYTES);
+        return new BloomFilter(words, hashes);
+    }
+
+    /**
+     * Writes the filter to a buffer.
+     *
+     * @param buffer The buffer with at least {@link #serializedBytes()} bytes remaining.
+     */
+    void write(@NotNull ByteBuffer buffer) {
+        buffer.putInt(hashes).putInt(words.length);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+    }
+
+    /**
+     * Returns the size of the filter written by {@link #write(ByteBuffer)}.
+     *
+     * @return The size in bytes.
+     */
+    int serializedBytes() {
+        return 8 + words.length * Long.BYTES;
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param hash The hash of the key.
+     */
+    void add(long hash) {
+        long bits = words.length * 64L;
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1L;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Returns whether the filter may hold a key.
+     *
+     * @param hash The hash of the key.
+     * @return false if the key was certainly never added.
+     */
+    boolean mightContain(long hash) {
+        long bits = words.length * 64L;
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1L;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the filter may hold all given keys.
+     *
+     * @param hashes The hashes of the keys.
+     * @return false if at least one key was certainly never added.
+     */
+    boolean mightContainAll(long @NotNull [] hashes) {
+        for (long hash : hashes) {
+            if (!mightContain(hash)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes a player UUID.
+     *
+     * @param uuid The UUID.
+     * @return The hash.
+     */
+    static long hash(@NotNull UUID uuid) {
+        return mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+    }
+
+    /**
+     * Hashes a search term with 64-bit FNV-1a over its characters.
+     *
+     * @param term The term.
+     * @return The hash.
+     */
+    static long hash(@NotNull String term) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < term.length(); i++) {
+            hash ^= term.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalizer of SplitMix64, spreading every input bit over the whole hash.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,557 @@
+package de.bukkitnews.trading.trade.logging.store;
+
+import de.bukkitnews.trading.trade.logging.TradeRecord;
+import de.bukkitnews.trading.trade.logging.TradeSearchIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * One file of the {@link TradeLogStore}, holding a contiguous range of logged trades.
+ * <p>
+ * Only the index of a segment is kept in memory: the file offset and time of every record, the records of every
+ * participant and a {@link TradeSearchIndex} over the traded items. The records themselves are read from the file
+ * when they are needed. Records are only ever appended, so record numbers are positions in the file order.
+ * <p>
+ * Once a segment is full it is sealed: a footer with its record count, its time bounds and a {@link BloomFilter}
+ * of its participants and search terms is appended after the records. Opening a segment only reads its header and
+ * footer; the index is built later by {@link #load(Logger)}, and the footer lets queries skip the segment without
+ * waiting for that.
+ * <p>
+ * This class is not thread-safe. The store guards it with its lock, except for {@link #read(long)}, which uses
+ * positional reads and may be called concurrently, and {@link #load(Logger)}, which runs before the index is
+ * published through {@link #getLoaded()}.
+ */
+final class LogSegment {
+
+    private static final int MAGIC = 0x544C4F47;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final long FOOTER_MAGIC = 0x544C4F47464F4F54L;
+    private static final int FOOTER_VERSION = 2;
+    private static final int FOOTER_BYTES = 32;
+    private static final int TRAILER_BYTES = 16;
+
+    private final int id;
+    private final @NotNull Path path;
+    private final @NotNull FileChannel channel;
+    private final @NotNull CompletableFuture<Void> loaded = new CompletableFuture<>();
+
+    private final @NotNull Map<UUID, RecordList> participants = new HashMap<>();
+    private final @NotNull TradeSearchIndex searchIndex = new TradeSearchIndex();
+    private long[] offsets = new long[256];
+    private long[] timestamps = new long[256];
+    private int count;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private long size;
+    private long participantEntries;
+
+    private volatile @Nullable Footer footer;
+    private volatile boolean retired;
+
+    private LogSegment(int id, @NotNull Path path, @NotNull FileChannel channel) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates a new, empty segment file, which counts as loaded.
+     *
+     * @param id   The ID of the segment.
+     * @param path The path of the file, which must not exist.
+     * @return The segment.
+     * @throws IOException If the file could not be created.
+     */
+    static @NotNull LogSegment create(int id, @NotNull Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        LogSegment segment = new LogSegment(id, path, channel);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+        segment.write(header);
+        channel.force(true);
+        segment.loaded.complete(null);
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment file, reading only its header and, if it is sealed, its footer.
+     * The index is built by {@link #load(Logger)}.
+     *
+     * @param id   The ID of the segment.
+     * @param path The path of the file.
+     * @return The segment.
+     * @throws IOException If the file could not be read or is not a segment file.
+     */
+    static @NotNull LogSegment open(int id, @NotNull Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        LogSegment segment = new LogSegment(id, path, channel);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            segment.readFully(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a trade log segment: " + path);
+            }
+            segment.footer = segment.readFooter();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return segment;
+    }
+
+    /**
+     * Reads the footer at the end of the file.
+     *
+     * @return The footer, or null if the segment is not sealed or the footer is damaged.
+     */
+    private @Nullable Footer readFooter() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_BYTES + TRAILER_BYTES) {
+            return null;
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+        readFully(trailer, fileSize - TRAILER_BYTES);
+        int length = trailer.getInt(0);
+        int checksum = trailer.getInt(4);
+        if (trailer.getLong(8) != FOOTER_MAGIC || length <= 0 || length > fileSize - HEADER_BYTES - TRAILER_BYTES) {
+            return null;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, fileSize - TRAILER_BYTES - length);
+        int version = payload.getInt(0);
+        if (RecordCodec.checksum(payload.array(), 0, length) != checksum || length < FOOTER_BYTES
+                || version < 1 || version > FOOTER_VERSION) {
+            return null;
+        }
+
+        BloomFilter filter = null;
+        if (version >= 2) {
+            try {
+                filter = BloomFilter.read(payload.position(FOOTER_BYTES));
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+        return new Footer(payload.getInt(4), payload.getLong(8), payload.getLong(16), payload.getLong(24), filter);
+    }
+
+    /**
+     * Reads all records and builds the index of the segment. Sealed segments are verified against their footer.
+     * A damaged or incomplete tail of an unsealed segment, e.g. from a crash in the middle of a write, is cut off,
+     * so new records are appended after the last valid one. Completes {@link #getLoaded()} on success.
+     *
+     * @param logger The logger for damaged files.
+     * @throws IOException If the file could not be read.
+     */
+    void load(@NotNull Logger logger) throws IOException {
+        Footer sealed = footer;
+        long end = sealed != null ? sealed.recordsEnd() : channel.size();
+        long position = readFrames(end, this::add);
+
+        if (sealed != null) {
+            if (position != end || sealed.count() != count) {
+                logger.warning("Trade log segment " + path.getFileName() + " does not match its footer, "
+                        + count + " of " + sealed.count() + " record(s) are readable.");
+            }
+        } else if (position < end) {
+            logger.warning("Trade log segment " + path.getFileName() + " has a damaged tail, discarding "
+                    + (end - position) + " byte(s) after " + count + " record(s).");
+            channel.truncate(position);
+        }
+        size = position;
+        loaded.complete(null);
+    }
+
+    /**
+     * Reads the records of the segment in file order, without using or changing its index. The file is read
+     * sequentially with a fixed buffer, so the memory used does not depend on the size of the segment.
+     *
+     * @param end     The offset up to which records are read, e.g. {@link #getSize()} captured under the lock.
+     * @param visitor Receives the offset and the record of every frame.
+     * @return The offset after the last valid record, which is less than the end if a damaged frame was found.
+     * @throws IOException If the file could not be read.
+     */
+    long readFrames(long end, @NotNull FrameVisitor visitor) throws IOException {
+        long position = HEADER_BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            in.skipNBytes(HEADER_BYTES);
+            while (position + RecordCodec.FRAME_HEADER_BYTES <= end) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > RecordCodec.MAX_PAYLOAD_BYTES
+                        || position + RecordCodec.FRAME_HEADER_BYTES + length > end) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (RecordCodec.checksum(payload, 0, length) != checksum) {
+                    break;
+                }
+                visitor.visit(position, RecordCodec.decode(payload));
+                position += RecordCodec.FRAME_HEADER_BYTES + length;
+            }
+        } catch (EOFException ignored) {
+            // The file ends inside a frame, which the caller sees from the returned position.
+        }
+        return position;
+    }
+
+    /**
+     * Adds a record to the index of the segment. The record must have been written at the given offset, or be
+     * about to be written there.
+     *
+     * @param offset The offset of the frame of the record in the file.
+     * @param record The record.
+     * @return The number of the record in the segment.
+     */
+    int add(long offset, @NotNull TradeRecord record) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            timestamps = Arrays.copyOf(timestamps, count * 2);
+        }
+
+        int number = count++;
+        offsets[number] = offset;
+        timestamps[number] = record.timestamp();
+        minTimestamp = Math.min(minTimestamp, record.timestamp());
+        maxTimestamp = Math.max(maxTimestamp, record.timestamp());
+        participants.computeIfAbsent(record.initiatorId(), key -> new RecordList()).add(number);
+        participantEntries++;
+        if (!record.targetId().equals(record.initiatorId())) {
+            participants.computeIfAbsent(record.targetId(), key -> new RecordList()).add(number);
+            participantEntries++;
+        }
+        searchIndex.add(number, record.timestamp(), record.searchTerms());
+        return number;
+    }
+
+    /**
+     * Writes bytes at the end of the file. The bytes are not forced to disk.
+     *
+     * @param buffer The bytes to write.
+     * @throws IOException If the bytes could not be written.
+     */
+    void write(@NotNull ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer, size);
+        }
+    }
+
+    /**
+     * Appends the footer after the records and forces the file to disk. No records can be appended afterwards.
+     * A segment sealed by an earlier version is sealed again, replacing its footer with one that has a bloom filter.
+     * The segment must be loaded.
+     *
+     * @throws IOException If the footer could not be written.
+     */
+    void seal() throws IOException {
+        Set<String> terms = searchIndex.terms();
+        BloomFilter filter = BloomFilter.create(participants.size() + terms.size());
+        participants.keySet().forEach(participant -> filter.add(BloomFilter.hash(participant)));
+        terms.forEach(term -> filter.add(BloomFilter.hash(term)));
+
+        Footer sealed = new Footer(count, minTimestamp, maxTimestamp, size, filter);
+        ByteBuffer payload = ByteBuffer.allocate(FOOTER_BYTES + filter.serializedBytes())
+                .putInt(FOOTER_VERSION).putInt(sealed.count())
+                .putLong(sealed.minTimestamp()).putLong(sealed.maxTimestamp()).putLong(sealed.recordsEnd());
+        filter.write(payload);
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES)
+                .putInt(payload.capacity()).putInt(RecordCodec.checksum(payload.array(), 0, payload.capacity()))
+                .putLong(FOOTER_MAGIC);
+
+        long position = size;
+        for (ByteBuffer buffer : new ByteBuffer[]{payload.flip(), trailer.flip()}) {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+        channel.truncate(position);
+        channel.force(true);
+        footer = sealed;
+    }
+
+    /**
+     * Forces all written bytes to disk.
+     *
+     * @throws IOException If the bytes could not be forced.
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Reads a record from the file.
+     *
+     * @param offset The offset of the frame of the record.
+     * @return The record.
+     * @throws IOException If the record could not be read or is damaged.
+     */
+    @NotNull TradeRecord read(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RecordCodec.FRAME_HEADER_BYTES);
+        readFully(header, offset);
+        int length = header.getInt(0);
+        int checksum = header.getInt(4);
+        if (length <= 0 || length > RecordCodec.MAX_PAYLOAD_BYTES) {
+            throw new IOException("Damaged record at offset " + offset + " of " + path.getFileName());
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + RecordCodec.FRAME_HEADER_BYTES);
+        if (RecordCodec.checksum(payload.array(), 0, length) != checksum) {
+            throw new IOException("Checksum mismatch at offset " + offset + " of " + path.getFileName());
+        }
+        return RecordCodec.decode(payload.array());
+    }
+
+    private void readFully(@NotNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + path.getFileName() + " at offset " + position);
+            }
+        }
+    }
+
+    /**
+     * Marks the segment as no longer part of the store and closes the file. Queries that waited for the segment
+     * skip it.
+     *
+     * @throws IOException If the file could not be closed.
+     */
+    void close() throws IOException {
+        retired = true;
+        channel.close();
+        loaded.complete(null);
+    }
+
+    /**
+     * Closes and deletes the file.
+     *
+     * @throws IOException If the file could not be deleted.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Returns a future completed once the index of the segment has been built, or the segment has been closed.
+     *
+     * @return The future.
+     */
+    @NotNull CompletableFuture<Void> getLoaded() {
+        return loaded;
+    }
+
+    boolean isLoaded() {
+        return loaded.isDone();
+    }
+
+    boolean isRetired() {
+        return retired;
+    }
+
+    boolean isSealed() {
+        return footer != null;
+    }
+
+    /**
+     * Returns whether the segment was sealed by an earlier version, without a bloom filter in its footer, and can
+     * be sealed again. Segments that do not match their footer are left as they are, so no records are cut off.
+     * The segment must be loaded.
+     *
+     * @return true if the segment should be sealed again.
+     */
+    boolean needsReseal() {
+        Footer sealed = footer;
+        return sealed != null && sealed.filter() == null && size == sealed.recordsEnd() && count == sealed.count();
+    }
+
+    /**
+     * Returns whether the segment may hold trades of a player, judging by the bloom filter in its footer.
+     *
+     * @param playerHash The {@link BloomFilter#hash(UUID) hash} of the UUID of the player.
+     * @return false if the player certainly did not trade in this segment, true if the segment is not sealed.
+     */
+    boolean mightContain(long playerHash) {
+        Footer sealed = footer;
+        return sealed == null || sealed.filter() == null || sealed.filter().mightContain(playerHash);
+    }
+
+    /**
+     * Returns whether the segment may hold trades of items matching all given search terms, judging by the bloom
+     * filter in its footer. A trade matches only if it contains every term, so the segment must contain all of them.
+     *
+     * @param termHashes The {@link BloomFilter#hash(String) hashes} of the terms.
+     * @return false if no trade in this segment can match, true if the segment is not sealed.
+     */
+    boolean mightContainAll(long @NotNull [] termHashes) {
+        Footer sealed = footer;
+        return sealed == null || sealed.filter() == null || sealed.filter().mightContainAll(termHashes);
+    }
+
+    /**
+     * Returns the number of records, taken from the footer until the segment is loaded.
+     *
+     * @return The number of records, 0 if unknown.
+     */
+    int getCount() {
+        Footer sealed = footer;
+        return isLoaded() ? count : sealed != null ? sealed.count() : 0;
+    }
+
+    /**
+     * Returns the end of the records in the file, where the next record is appended.
+     *
+     * @return The offset after the last record.
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the size of the file, including the footer.
+     *
+     * @return The size of the file in bytes.
+     */
+    long getFileSize() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Returns the time of the oldest trade, taken from the footer until the segment is loaded.
+     *
+     * @return The time in epoch milliseconds, {@link Long#MIN_VALUE} if unknown.
+     */
+    long getMinTimestamp() {
+        Footer sealed = footer;
+        return isLoaded() ? minTimestamp : sealed != null ? sealed.minTimestamp() : Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the time of the newest trade, taken from the footer until the segment is loaded.
+     *
+     * @return The time in epoch milliseconds, {@link Long#MAX_VALUE} if unknown.
+     */
+    long getMaxTimestamp() {
+        Footer sealed = footer;
+        return isLoaded() ? maxTimestamp : sealed != null ? sealed.maxTimestamp() : Long.MAX_VALUE;
+    }
+
+    long getOffset(int record) {
+        return offsets[record];
+    }
+
+    long getTimestamp(int record) {
+        return timestamps[record];
+    }
+
+    /**
+     * Returns the records in which a player took part.
+     *
+     * @param player The UUID of the player.
+     * @return The records in ascending order, or null if the player did not trade in this segment.
+     */
+    @Nullable RecordList getRecordsOf(@NotNull UUID player) {
+        return participants.get(player);
+    }
+
+    @NotNull TradeSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Estimates the heap used by the index of the segment.
+     *
+     * @return The estimated size in bytes, 0 until the segment is loaded.
+     */
+    long estimateIndexBytes() {
+        Footer sealed = footer;
+        long filterBytes = sealed != null && sealed.filter() != null ? sealed.filter().serializedBytes() : 0L;
+        if (!isLoaded()) {
+            return filterBytes;
+        }
+        return filterBytes + offsets.length * 16L + participants.size() * 112L + participantEntries * 4L
+                + searchIndex.estimateBytes();
+    }
+
+    /**
+     * The footer of a sealed segment.
+     *
+     * @param count        The number of records.
+     * @param minTimestamp The time of the oldest trade.
+     * @param maxTimestamp The time of the newest trade.
+     * @param recordsEnd   The offset after the last record, where the footer starts.
+     * @param filter       The bloom filter of the participants and search terms, null in footers of version 1.
+     */
+    private record Footer(int count, long minTimestamp, long maxTimestamp, long recordsEnd,
+                          @Nullable BloomFilter filter) {
+    }
+
+    /**
+     * Receives the records read by {@link #readFrames(long, FrameVisitor)}.
+     */
+    @FunctionalInterface
+    interface FrameVisitor {
+
+        /**
+         * Visits a record.
+         *
+         * @param offset The offset of the frame of the record in the file.
+         * @param record The record.
+         */
+        void visit(long offset, @NotNull TradeRecord record);
+    }
+
+    /**
+     * A growable, ascending list of record numbers.
+     */
+    static final class RecordList {
+
+        private int[] records = new int[2];
+        private int size;
+
+        private void add(int record) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+            }
+            records[size++] = record;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return records[index];
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package de.bukkitnews.trading.trade.logging.store;
+
+import de.bukkitnews.trading.trade.logging.TradeRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Encodes trade records for the segment files of the {@link TradeLogStore}.
+ * <p>
+ * Every record is stored as a frame of its payload length, a CRC-32C checksum of the payload and the payload itself.
+ * The payload holds the fields of the record in a fixed order: strings in modified UTF-8, UUIDs as two longs and
+ * lists as their size followed by their elements. A frame whose checksum does not match marks the end of the valid
+ * data, e.g. after a crash in the middle of a write.
+ */
+final class RecordCodec {
+
+    /**
+     * The size of the length and checksum preceding every payload.
+     */
+    static final int FRAME_HEADER_BYTES = 8;
+
+    /**
+     * The largest payload accepted when reading, to reject garbage lengths before allocating.
+     */
+    static final int MAX_PAYLOAD_BYTES = 1 << 20;
+
+    private RecordCodec() {
+    }
+
+    /**
+     * Encodes a record into its payload, without the frame header.
+     *
+     * @param record The record.
+     * @return The payload.
+     */
+    static byte @NotNull [] encode(@NotNull TradeRecord record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(record.tradeId());
+            out.writeLong(record.timestamp());
+            writeUuid(out, record.initiatorId());
+            out.writeUTF(record.initiatorName());
+            writeUuid(out, record.targetId());
+            out.writeUTF(record.targetName());
+            out.writeInt(record.coins());
+            out.writeInt(record.targetCoins());
+            writeList(out, record.items());
+            writeList(out, record.targetItems());
+            writeList(out, record.searchTerms());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing to memory failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a payload created by {@link #encode(TradeRecord)}.
+     *
+     * @param payload The payload, without the frame header.
+     * @return The record.
+     * @throws IOException If the payload is malformed.
+     */
+    static @NotNull TradeRecord decode(byte @NotNull [] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return new TradeRecord(
+                    in.readUTF(),
+                    in.readLong(),
+                    readUuid(in),
+                    in.readUTF(),
+                    readUuid(in),
+                    in.readUTF(),
+                    in.readInt(),
+                    in.readInt(),
+                    readList(in),
+                    readList(in),
+                    readList(in));
+        }
+    }
+
+    /**
+     * Computes the checksum stored in the frame header.
+     *
+     * @param payload The payload.
+     * @param offset  The offset of the payload in the array.
+     * @param length  The length of the payload.
+     * @return The checksum.
+     */
+    static int checksum(byte @NotNull [] payload, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeUuid(@NotNull DataOutputStream out, @NotNull UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static @NotNull UUID readUuid(@NotNull DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeList(@NotNull DataOutputStream out, @NotNull List<String> values) throws IOException {
+        out.writeShort(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static @NotNull List<String> readList(@NotNull DataInputStream in) throws IOException {
+        int size = in.readUnsignedShort();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,21 @@
+package de.bukkitnews.trading.trade.logging.store;
+
+/**
+ * How many segments of the {@link TradeLogStore} history queries and item searches had to search, and how many
+ * they skipped because the time bounds or the bloom filter in the footer ruled them out.
+ *
+ * @param searched The number of segments searched.
+ * @param skipped  The number of segments skipped.
+ */
+public record SegmentPruning(long searched, long skipped) {
+
+    /**
+     * Returns the share of segments skipped.
+     *
+     * @return The share between 0 and 1, 0 if no segment was queried yet.
+     */
+    public double skipRatio() {
+        long total = searched + skipped;
+        return total == 0 ? 0.0 : (double) skipped / total;
+    }
+}
@@ -0,0 +1,31 @@
+package de.bukkitnews.trading.trade.logging.store;
+
+/**
+ * The memory and disk usage of the {@link TradeLogStore} at one point in time. Heap sizes are estimates from the
+ * sizes of the arrays and maps involved, not measurements.
+ *
+ * @param writeBufferBytes The size of the write buffer.
+ * @param indexBytes       The estimated heap used by the segment indexes.
+ * @param cacheBytes       The estimated heap used by the cached records.
+ * @param cachedRecords    The number of cached records.
+ * @param records          The number of stored records.
+ * @param segments         The number of segment files.
+ * @param diskBytes        The size of all segment files.
+ */
+public record StoreFootprint(long writeBufferBytes,
+                             long indexBytes,
+                             long cacheBytes,
+                             int cachedRecords,
+                             long records,
+                             int segments,
+                             long diskBytes) {
+
+    /**
+     * Returns the estimated heap used by the store in total.
+     *
+     * @return The estimated heap in bytes.
+     */
+    public long heapBytes() {
+        return writeBufferBytes + indexBytes + cacheBytes;
+    }
+}
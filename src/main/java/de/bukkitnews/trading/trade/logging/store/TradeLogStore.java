@@ -0,0 +1,750 @@
+package de.bukkitnews.trading.trade.logging.store;
+
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.profiler.TradeFlightEvents;
+import de.bukkitnews.trading.trade.logging.TradeRecord;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An append-only trade log whose heap usage does not grow with the records it holds, only with their indexes.
+ * <p>
+ * Records are appended to segment files of a configured size in a binary format (see {@link RecordCodec}). In memory
+ * the store keeps a write buffer for the active segment, the index of every segment (see {@link LogSegment}) and an
+ * LRU cache of recently written or read records. Everything else is read from the segment files on demand, using
+ * positional reads outside the lock, so slow disk reads do not hold up appends. Expired trades are removed by
+ * deleting whole segments once their newest record is older than the retention period.
+ * <p>
+ * Opening the store only reads the headers and footers of the segments. Their indexes are built in the background,
+ * newest segment first, so the plugin does not wait for the whole history on startup. Appends wait for the active
+ * segment and queries only for the segments they need: the time bounds and the bloom filter in the footer of a
+ * sealed segment rule it out before its index is consulted. The share of segments skipped this way is counted
+ * (see {@link #getPruning()}).
+ * <p>
+ * All methods block on file I/O and should be called on an I/O thread.
+ */
+public class TradeLogStore {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+
+    private final @NotNull Path directory;
+    private final @NotNull Logger logger;
+    private final long segmentBytes;
+    private final int hotCacheRecords;
+
+    /**
+     * Guards the segments, the write buffer and the cache. Segment files are read without it.
+     */
+    private final @NotNull ReentrantLock lock = new ReentrantLock();
+
+    private final @NotNull List<LogSegment> segments = new ArrayList<>();
+    private final @NotNull ByteBuffer buffer;
+    private final @NotNull Map<Long, TradeRecord> cache;
+    private @NotNull LogSegment active;
+    private int nextSegmentId = 1;
+    private long cacheBytes;
+    private boolean unforced;
+    private boolean closed;
+    private volatile @NotNull StoreFootprint footprint = new StoreFootprint(0, 0, 0, 0, 0, 0, 0);
+    private final @NotNull LongAdder segmentsSearched = new LongAdder();
+    private final @NotNull LongAdder segmentsSkipped = new LongAdder();
+    private final @NotNull CompletableFuture<Void> loaded;
+
+    /**
+     * Opens the store in the given directory and starts building the indexes of its segments on the given executor.
+     *
+     * @param directory The directory of the segment files, created if it does not exist.
+     * @param settings  The trade log settings.
+     * @param logger    The logger for damaged segments.
+     * @param loader    The executor the segments are loaded on, one task per segment.
+     * @throws IOException If the directory could not be read or the active segment could not be created.
+     */
+    public TradeLogStore(@NotNull Path directory, @NotNull ConfigSnapshot.Logging settings, @NotNull Logger logger,
+                         @NotNull Executor loader) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.logger = logger;
+        this.segmentBytes = settings.segmentSizeKb() * 1024L;
+        this.hotCacheRecords = settings.hotCacheRecords();
+        this.buffer = ByteBuffer.allocate(settings.writeBufferKb() * 1024);
+        this.cache = new LinkedHashMap<>(Math.min(hotCacheRecords, 1 << 16), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, TradeRecord> eldest) {
+                if (size() <= hotCacheRecords) {
+                    return false;
+                }
+                cacheBytes -= estimateBytes(eldest.getValue());
+                return true;
+            }
+        };
+
+        openSegments();
+        LogSegment last = segments.isEmpty() ? null : segments.getLast();
+        this.active = last != null && !last.isSealed() && last.getFileSize() < segmentBytes ? last : createSegment();
+        updateFootprint();
+        this.loaded = loadSegments(loader);
+    }
+
+    private void openSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.log")) {
+            stream.forEach(files::add);
+        }
+
+        files.sort(Comparator.comparing(Path::getFileName));
+        for (Path file : files) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+            if (!matcher.matches()) {
+                continue;
+            }
+
+            int id = Integer.parseInt(matcher.group(1));
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+            try {
+                segments.add(LogSegment.open(id, file));
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not open trade log segment " + file.getFileName() + ", skipping it", e);
+            }
+        }
+    }
+
+    /**
+     * Schedules the loading of all segments that are not loaded yet, newest first.
+     *
+     * @return A future completed once all segments have been loaded or skipped.
+     */
+    private @NotNull CompletableFuture<Void> loadSegments(@NotNull Executor loader) {
+        long start = System.nanoTime();
+        List<LogSegment> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            for (LogSegment segment : segments.reversed()) {
+                if (!segment.isLoaded()) {
+                    pending.add(segment);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[pending.size()];
+        for (int i = 0; i < futures.length; i++) {
+            LogSegment segment = pending.get(i);
+            futures[i] = CompletableFuture.runAsync(() -> loadSegment(segment), loader);
+        }
+        return CompletableFuture.allOf(futures).thenRun(() -> {
+            if (pending.isEmpty()) {
+                return;
+            }
+            StoreFootprint current = footprint;
+            logger.info("Loaded " + pending.size() + " trade log segment(s) with " + current.records() + " trade(s) in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+        });
+    }
+
+    /**
+     * Builds the index of a segment. Segments that were left unsealed, but are no longer the active segment, are
+     * sealed afterwards, and so are segments sealed by an earlier version without a bloom filter. A segment that
+     * could not be read is dropped from the store.
+     */
+    private void loadSegment(@NotNull LogSegment segment) {
+        try {
+            segment.load(logger);
+            lock.lock();
+            try {
+                if (segment != active && !segment.isRetired() && (!segment.isSealed() || segment.needsReseal())) {
+                    segment.seal();
+                }
+                updateFootprint();
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (segment.isRetired()) {
+                return;
+            }
+            logger.log(Level.SEVERE, "Could not load trade log segment " + segment.getId() + ", skipping it", e);
+            lock.lock();
+            try {
+                segments.remove(segment);
+                closeQuietly(segment);
+                updateFootprint();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns a future completed once the indexes of all segments present on startup have been built. The store
+     * can be used before that; queries then wait for the segments they need.
+     *
+     * @return The future.
+     */
+    public @NotNull CompletableFuture<Void> getLoaded() {
+        return loaded;
+    }
+
+    private @NotNull LogSegment createSegment() throws IOException {
+        int id = nextSegmentId++;
+        LogSegment segment = LogSegment.create(id, directory.resolve(String.format("segment-%08d.log", id)));
+        segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * Appends a record. The record is visible to queries right away, but only written to the segment file once
+     * the write buffer is full or {@link #flush()} is called.
+     *
+     * @param record The record.
+     * @throws IOException If the write buffer had to be written and that failed.
+     */
+    public void append(@NotNull TradeRecord record) throws IOException {
+        TradeFlightEvents.LogAppend event = new TradeFlightEvents.LogAppend();
+        event.begin();
+        byte[] payload = RecordCodec.encode(record);
+        int frameBytes = RecordCodec.FRAME_HEADER_BYTES + payload.length;
+        int checksum = RecordCodec.checksum(payload, 0, payload.length);
+
+        active.getLoaded().join();
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("The trade log store is closed");
+            }
+            if (active.isRetired()) {
+                active = createSegment();
+            }
+            if (active.getCount() > 0 && active.getSize() + buffer.position() + frameBytes > segmentBytes) {
+                roll();
+            }
+            if (frameBytes > buffer.remaining()) {
+                writeBuffer();
+            }
+
+            long offset = active.getSize() + buffer.position();
+            if (frameBytes > buffer.capacity()) {
+                active.write(ByteBuffer.allocate(frameBytes).putInt(payload.length).putInt(checksum).put(payload).flip());
+                unforced = true;
+            } else {
+                buffer.putInt(payload.length).putInt(checksum).put(payload);
+            }
+
+            int number = active.add(offset, record);
+            cache(key(active, number), record);
+            if (event.shouldCommit()) {
+                event.tradeId = record.tradeId();
+                event.itemCount = record.items().size() + record.targetItems().size();
+                event.bytes = frameBytes;
+                event.segment = active.getId();
+                event.commit();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the write buffer to the active segment and forces it to disk. Does nothing if nothing was written
+     * since the last flush.
+     *
+     * @throws IOException If the buffer could not be written.
+     */
+    public void flush() throws IOException {
+        TradeFlightEvents.LogFlush event = new TradeFlightEvents.LogFlush();
+        lock.lock();
+        try {
+            event.begin();
+            int bytes = buffer.position();
+            writeBuffer();
+            boolean forced = unforced;
+            if (unforced) {
+                active.force();
+                unforced = false;
+            }
+            updateFootprint();
+            if (event.shouldCommit()) {
+                event.bytesWritten = bytes;
+                event.forced = forced;
+                event.commit();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the trades in which a player took part.
+     *
+     * @param player      The UUID of the player.
+     * @param sinceMillis The earliest trade time in epoch milliseconds, 0 for no limit.
+     * @return The trades, oldest first.
+     */
+    public @NotNull List<TradeRecord> findByParticipant(@NotNull UUID player, long sinceMillis) {
+        TradeFlightEvents.HistoryQuery event = new TradeFlightEvents.HistoryQuery();
+        event.begin();
+        long playerHash = BloomFilter.hash(player);
+        List<LogSegment> candidates = candidates(sinceMillis, segment -> segment.mightContain(playerHash));
+        segmentsSearched.add(candidates.size());
+        for (LogSegment segment : candidates) {
+            segment.getLoaded().join();
+        }
+
+        List<Location> locations = new ArrayList<>();
+        lock.lock();
+        try {
+            for (LogSegment segment : candidates) {
+                LogSegment.RecordList records = segment.isRetired() ? null : segment.getRecordsOf(player);
+                if (records == null || segment.getMaxTimestamp() < sinceMillis) {
+                    continue;
+                }
+                for (int i = 0; i < records.size(); i++) {
+                    int record = records.get(i);
+                    if (segment.getTimestamp(record) >= sinceMillis) {
+                        locations.add(new Location(segment, record));
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        List<TradeRecord> found = load(locations);
+        commitQuery(event, "participant", sinceMillis, candidates.size(), found.size());
+        return found;
+    }
+
+    /**
+     * Finds the trades containing items that match all given terms, using the search index of every segment.
+     * Segments are searched newest first, and older segments are skipped once they cannot contribute to the result
+     * or their bloom filter lacks one of the terms.
+     *
+     * @param terms       The terms every matching trade must contain.
+     * @param sinceMillis The earliest trade time in epoch milliseconds, 0 for no limit.
+     * @param limit       The maximum number of results.
+     * @return The matching trades, most recent first.
+     */
+    public @NotNull List<TradeRecord> searchItems(@NotNull Collection<String> terms, long sinceMillis, int limit) {
+        TradeFlightEvents.HistoryQuery event = new TradeFlightEvents.HistoryQuery();
+        event.begin();
+        long[] termHashes = terms.stream().mapToLong(BloomFilter::hash).toArray();
+        List<Location> locations = new ArrayList<>();
+        int searched = 0;
+        for (LogSegment segment : candidates(sinceMillis, candidate -> candidate.mightContainAll(termHashes)).reversed()) {
+            if (locations.size() >= limit && segment.getMaxTimestamp() < locations.getLast().timestamp()) {
+                segmentsSkipped.increment();
+                continue;
+            }
+
+            segmentsSearched.increment();
+            searched++;
+            segment.getLoaded().join();
+            lock.lock();
+            try {
+                if (segment.isRetired()) {
+                    continue;
+                }
+                for (int record : segment.getSearchIndex().search(terms, sinceMillis, limit)) {
+                    locations.add(new Location(segment, record));
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            locations.sort(Comparator.comparingLong(Location::timestamp).reversed());
+            if (locations.size() > limit) {
+                locations.subList(limit, locations.size()).clear();
+            }
+        }
+        List<TradeRecord> found = load(locations);
+        commitQuery(event, "items", sinceMillis, searched, found.size());
+        return found;
+    }
+
+    private static void commitQuery(@NotNull TradeFlightEvents.HistoryQuery event, @NotNull String kind,
+                                    long sinceMillis, int segmentsSearched, int results) {
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.since = sinceMillis;
+            event.segmentsSearched = segmentsSearched;
+            event.results = results;
+            event.commit();
+        }
+    }
+
+    /**
+     * Streams all trades in a time range, oldest segment first and in the order they were logged within a segment.
+     * The write buffer is flushed first, so the scan also covers the trades logged right before it. The segment
+     * files are read sequentially, without their indexes and the cache, so the memory used does not depend on the
+     * size of the history. Segments deleted during the scan are skipped.
+     *
+     * @param sinceMillis The earliest trade time in epoch milliseconds, inclusive.
+     * @param untilMillis The latest trade time in epoch milliseconds, exclusive.
+     * @param consumer    Receives the trades.
+     * @return The number of trades passed to the consumer.
+     * @throws IOException If the write buffer could not be flushed.
+     */
+    public long scan(long sinceMillis, long untilMillis, @NotNull Consumer<TradeRecord> consumer) throws IOException {
+        flush();
+        List<LogSegment> candidates = new ArrayList<>();
+        lock.lock();
+        try {
+            for (LogSegment segment : segments) {
+                if (segment.getMaxTimestamp() >= sinceMillis && segment.getMinTimestamp() < untilMillis) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long[] scanned = new long[1];
+        for (LogSegment segment : candidates) {
+            segment.getLoaded().join();
+            long end;
+            lock.lock();
+            try {
+                if (segment.isRetired()) {
+                    continue;
+                }
+                writeBuffer();
+                end = segment.getSize();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                segment.readFrames(end, (offset, record) -> {
+                    if (record.timestamp() >= sinceMillis && record.timestamp() < untilMillis) {
+                        consumer.accept(record);
+                        scanned[0]++;
+                    }
+                });
+            } catch (IOException e) {
+                if (!segment.isRetired()) {
+                    logger.log(Level.WARNING, "Could not scan trade log segment " + segment.getId(), e);
+                }
+            }
+        }
+        return scanned[0];
+    }
+
+    /**
+     * Returns the segments that may hold trades at or after the given time and pass the given footer check, oldest
+     * first. Segments that are not loaded yet count as candidates unless their footer rules them out. The segments
+     * left out are counted as skipped.
+     *
+     * @param sinceMillis The earliest trade time in epoch milliseconds, 0 for no limit.
+     * @param footer      The check of the bloom filter of a segment, which passes for unsealed segments.
+     */
+    private @NotNull List<LogSegment> candidates(long sinceMillis, @NotNull Predicate<LogSegment> footer) {
+        List<LogSegment> candidates = new ArrayList<>();
+        int total;
+        lock.lock();
+        try {
+            total = segments.size();
+            for (LogSegment segment : segments) {
+                if (segment.getMaxTimestamp() >= sinceMillis && footer.test(segment)) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        segmentsSkipped.add(total - candidates.size());
+        return candidates;
+    }
+
+    /**
+     * Returns how many segments queries searched and how many they skipped by the footers, since the store was
+     * opened. Does not take the lock, so it can be called on the main thread.
+     *
+     * @return The counts.
+     */
+    public @NotNull SegmentPruning getPruning() {
+        return new SegmentPruning(segmentsSearched.sum(), segmentsSkipped.sum());
+    }
+
+    /**
+     * Resolves record locations from the cache, the write buffer or the segment files, keeping their order.
+     * Records of segments deleted in the meantime are left out.
+     */
+    private @NotNull List<TradeRecord> load(@NotNull List<Location> locations) {
+        TradeRecord[] records = new TradeRecord[locations.size()];
+        List<Integer> cold = new ArrayList<>();
+
+        lock.lock();
+        try {
+            for (int i = 0; i < records.length; i++) {
+                Location location = locations.get(i);
+                records[i] = cache.get(location.key());
+                if (records[i] == null && location.segment() == active
+                        && location.offset() >= active.getSize()) {
+                    records[i] = decodeBuffered(location.offset() - active.getSize());
+                }
+                if (records[i] == null) {
+                    cold.add(i);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (!cold.isEmpty()) {
+            for (int i : cold) {
+                records[i] = readRecord(locations.get(i));
+            }
+
+            lock.lock();
+            try {
+                for (int i : cold) {
+                    if (records[i] != null) {
+                        cache(locations.get(i).key(), records[i]);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<TradeRecord> result = new ArrayList<>(records.length);
+        for (TradeRecord record : records) {
+            if (record != null) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    private @Nullable TradeRecord readRecord(@NotNull Location location) {
+        try {
+            return location.segment().read(location.offset());
+        } catch (ClosedChannelException e) {
+            return null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not read trade log record " + location.record()
+                    + " of segment " + location.segment().getId(), e);
+            return null;
+        }
+    }
+
+    private @Nullable TradeRecord decodeBuffered(long position) {
+        int start = (int) position;
+        int length = buffer.getInt(start);
+        byte[] payload = new byte[length];
+        buffer.get(start + RecordCodec.FRAME_HEADER_BYTES, payload);
+        try {
+            return RecordCodec.decode(payload);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not decode buffered trade log record", e);
+            return null;
+        }
+    }
+
+    /**
+     * Deletes all segments whose newest trade is older than the given time. If the active segment only holds
+     * such trades, a new active segment is started first. Segments that are not loaded yet are only deleted if
+     * their footer shows that they have expired.
+     *
+     * @param cutoffMillis The time in epoch milliseconds before which trades are expired.
+     * @return The number of deleted trades.
+     * @throws IOException If a new active segment could not be created.
+     */
+    public int deleteBefore(long cutoffMillis) throws IOException {
+        TradeFlightEvents.Cleanup event = new TradeFlightEvents.Cleanup();
+        event.begin();
+        List<LogSegment> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            if (active.getCount() > 0 && active.getMaxTimestamp() < cutoffMillis) {
+                roll();
+            }
+
+            for (LogSegment segment : segments) {
+                if (segment != active && segment.getMaxTimestamp() < cutoffMillis) {
+                    expired.add(segment);
+                }
+            }
+            segments.removeAll(expired);
+            cache.values().removeIf(record -> {
+                boolean remove = record.timestamp() < cutoffMillis;
+                if (remove) {
+                    cacheBytes -= estimateBytes(record);
+                }
+                return remove;
+            });
+            updateFootprint();
+        } finally {
+            lock.unlock();
+        }
+
+        int deleted = 0;
+        int deletedSegments = 0;
+        for (LogSegment segment : expired) {
+            try {
+                int count = segment.getCount();
+                segment.delete();
+                deleted += count;
+                deletedSegments++;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not delete expired trade log segment " + segment.getId(), e);
+            }
+        }
+        if (event.shouldCommit()) {
+            event.cutoff = cutoffMillis;
+            event.segments = deletedSegments;
+            event.trades = deleted;
+            event.commit();
+        }
+        return deleted;
+    }
+
+    /**
+     * Returns the memory and disk usage of the store as of the last flush, which is at most a flush interval old.
+     * Does not take the lock, so it can be called on the main thread.
+     *
+     * @return The footprint.
+     */
+    public @NotNull StoreFootprint getFootprint() {
+        return footprint;
+    }
+
+    /**
+     * Recomputes the footprint. Must be called while holding the lock.
+     */
+    private void updateFootprint() {
+        long indexBytes = 0;
+        long records = 0;
+        long diskBytes = 0;
+        for (LogSegment segment : segments) {
+            indexBytes += segment.estimateIndexBytes();
+            records += segment.getCount();
+            diskBytes += segment.getFileSize();
+        }
+        footprint = new StoreFootprint(buffer.capacity(), indexBytes, cacheBytes, cache.size(), records,
+                segments.size(), diskBytes);
+    }
+
+    /**
+     * Flushes the write buffer and closes all segment files. Segments that are still loading are skipped by the
+     * loader. The active segment is left unsealed, so it is continued on the next start.
+     *
+     * @throws IOException If the buffer could not be written.
+     */
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            flush();
+            closed = true;
+            for (LogSegment segment : segments) {
+                closeQuietly(segment);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seals the active segment and starts a new one. Must be called while holding the lock.
+     */
+    private void roll() throws IOException {
+        writeBuffer();
+        active.seal();
+        unforced = false;
+        active = createSegment();
+    }
+
+    /**
+     * Writes the write buffer to the active segment without forcing it. Must be called while holding the lock.
+     */
+    private void writeBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            active.write(buffer);
+        } finally {
+            buffer.compact();
+            unforced = true;
+        }
+    }
+
+    private void closeQuietly(@NotNull LogSegment segment) {
+        try {
+            segment.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not close trade log segment " + segment.getId(), e);
+        }
+    }
+
+    private void cache(long key, @NotNull TradeRecord record) {
+        if (hotCacheRecords <= 0) {
+            return;
+        }
+        TradeRecord previous = cache.put(key, record);
+        cacheBytes += estimateBytes(record) - (previous == null ? 0 : estimateBytes(previous));
+    }
+
+    private static long key(@NotNull LogSegment segment, int record) {
+        return ((long) segment.getId() << 32) | record;
+    }
+
+    /**
+     * Estimates the heap used by a record: the strings at two bytes per character plus object headers.
+     */
+    private static long estimateBytes(@NotNull TradeRecord record) {
+        long chars = record.tradeId().length() + record.initiatorName().length() + record.targetName().length();
+        for (List<String> values : List.of(record.items(), record.targetItems(), record.searchTerms())) {
+            for (String value : values) {
+                chars += value.length() + 24;
+            }
+        }
+        return 160 + chars * 2;
+    }
+
+    /**
+     * The position of a record in the store, captured under the lock so it can be read without it.
+     *
+     * @param segment   The segment holding the record.
+     * @param record    The number of the record in the segment.
+     * @param offset    The offset of the record in the segment file.
+     * @param timestamp The time of the trade in epoch milliseconds.
+     */
+    private record Location(@NotNull LogSegment segment, int record, long offset, long timestamp) {
+
+        private Location(@NotNull LogSegment segment, int record) {
+            this(segment, record, segment.getOffset(record), segment.getTimestamp(record));
+        }
+
+        private long key() {
+            return TradeLogStore.key(segment, record);
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package de.bukkitnews.trading.trade.mailbox;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.concurrent.TradeExecutors;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.profiler.ProfilerSection;
+import de.bukkitnews.trading.trade.anomaly.SettlementEvent;
+import de.bukkitnews.trading.util.ItemFingerprint;
+import de.bukkitnews.trading.util.MessageUtil;
+import net.milkbowl.vault.economy.Economy;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * The mailbox, through which players send trade offers to players who are not online.
+ * <p>
+ * Sending an offer escrows its goods right away: the item stack in the sender's main hand and the offered coins
+ * are taken from the sender and written to the {@link MailboxStore}. The recipient accepts the offer with
+ * {@code /trade mail accept} to receive them, or declines it, which sends the escrow back to the sender as a
+ * returned offer. Offers not accepted within {@code expiry-hours} are returned the same way. Returned offers never
+ * expire, and coins are only ever paid out when an offer is accepted on the main thread.
+ * <p>
+ * The main thread only takes and pays out escrow; reading and writing the store runs on I/O threads.
+ */
+public class Mailbox {
+
+    private static final long EXPIRY_INTERVAL_TICKS = 60L * 20L;
+    private static final int EXPIRY_BATCH_SIZE = 1000;
+
+    private final @NotNull Trading plugin;
+    private final @NotNull TradeExecutors executors;
+
+    /**
+     * The store holding the offers, null if it could not be opened.
+     */
+    private final @Nullable MailboxStore store;
+
+    public Mailbox(@NotNull Trading plugin) {
+        this.plugin = plugin;
+        this.executors = plugin.getExecutors();
+        this.store = openStore();
+    }
+
+    private @Nullable MailboxStore openStore() {
+        try {
+            return MailboxStore.open(plugin.getDataFolder().toPath().resolve("mailbox").resolve("offers.dat"),
+                    plugin.getLogger());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not open the mailbox, offers cannot be sent", e);
+            return null;
+        }
+    }
+
+    /**
+     * Starts the task which returns expired offers to their senders every minute.
+     */
+    public void start() {
+        if (store == null) {
+            return;
+        }
+        Bukkit.getScheduler().runTaskTimer(plugin,
+                plugin.getProfiler().wrap(ProfilerSection.SCHEDULED, "Mailbox#expire",
+                        () -> executors.runIo(this::expire)), EXPIRY_INTERVAL_TICKS, EXPIRY_INTERVAL_TICKS);
+    }
+
+    /**
+     * Sends the item stack in the player's main hand and the given coins to another player, who may be offline.
+     * The recipient is looked up on an I/O thread, since it may be resolved through the Mojang API. The player is
+     * informed about the outcome.
+     *
+     * @param sender        The sending player.
+     * @param recipientName The name of the recipient.
+     * @param coins         The coins to send.
+     */
+    public void send(@NotNull Player sender, @NotNull String recipientName, int coins) {
+        ConfigSnapshot snapshot = ConfigSnapshot.current();
+        if (!snapshot.mailbox().enabled() || store == null) {
+            sender.sendMessage(MessageUtil.getMessage("mailbox_disabled"));
+            return;
+        }
+        if (coins < 0 || coins > snapshot.limits().maxCoins()) {
+            sender.sendMessage(MessageUtil.getMessage("mailbox_invalid_coins", String.valueOf(snapshot.limits().maxCoins())));
+            return;
+        }
+
+        Player online = Bukkit.getPlayerExact(recipientName);
+        if (online != null) {
+            sendTo(sender, online, coins, store);
+            return;
+        }
+        @SuppressWarnings("deprecation")
+        CompletableFuture<OfflinePlayer> lookup = executors.supplyIo(() -> Bukkit.getOfflinePlayer(recipientName));
+        executors.thenSync(lookup, recipient -> {
+            if (!sender.isOnline()) {
+                return;
+            }
+            if (!recipient.hasPlayedBefore() || recipient.getName() == null) {
+                sender.sendMessage(MessageUtil.getMessage("mailbox_unknown_player", recipientName));
+                return;
+            }
+            sendTo(sender, recipient, coins, store);
+        });
+    }
+
+    /**
+     * Escrows the offer on the main thread and appends it to the store on an I/O thread. If it cannot be written,
+     * the escrow is given back.
+     */
+    private void sendTo(@NotNull Player sender, @NotNull OfflinePlayer recipient, int coins, @NotNull MailboxStore store) {
+        if (recipient.getUniqueId().equals(sender.getUniqueId())) {
+            sender.sendMessage(MessageUtil.getMessage("command_trade_yourself"));
+            return;
+        }
+        if (store.count(recipient.getUniqueId()) >= ConfigSnapshot.current().mailbox().maxOffersPerRecipient()) {
+            sender.sendMessage(MessageUtil.getMessage("mailbox_full", recipient.getName()));
+            return;
+        }
+
+        PlayerInventory inventory = sender.getInventory();
+        ItemStack item = inventory.getItemInMainHand();
+        boolean hasItem = !item.getType().isAir() && item.getAmount() > 0;
+        if (!hasItem && coins == 0) {
+            sender.sendMessage(MessageUtil.getMessage("mailbox_nothing_to_send"));
+            return;
+        }
+        Economy economy = economy();
+        if (coins > 0 && !economy.has(sender, coins)) {
+            sender.sendMessage(MessageUtil.getMessage("trade_notcoins"));
+            return;
+        }
+
+        List<ItemStack> items = hasItem ? List.of(item.clone()) : List.of();
+        if (hasItem) {
+            inventory.setItemInMainHand(null);
+        }
+        if (coins > 0) {
+            economy.withdrawPlayer(sender, coins);
+        }
+
+        long now = System.currentTimeMillis();
+        long expiresAt = now + TimeUnit.HOURS.toMillis(ConfigSnapshot.current().mailbox().expiryHours());
+        String recipientName = recipient.getName();
+        CompletableFuture<MailboxOffer> sent = executors.supplyIo(() -> {
+            MailboxOffer offer = new MailboxOffer(store.nextId(), sender.getUniqueId(), sender.getName(),
+                    recipient.getUniqueId(), recipientName, coins, items, now, expiresAt, false);
+            try {
+                store.append(offer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return offer;
+        });
+
+        sent.whenComplete((offer, throwable) -> {
+            if (throwable != null) {
+                plugin.getLogger().log(Level.SEVERE, "Could not send an offer of " + sender.getName() + ", returning it", throwable);
+                executors.sync(() -> giveBack(sender.getUniqueId(), items, coins),
+                        () -> storeForSender(store, new MailboxOffer(0, sender.getUniqueId(), sender.getName(),
+                                recipient.getUniqueId(), recipientName, coins, items, now, expiresAt, false)));
+                return;
+            }
+            plugin.getMetrics().getMailboxOffersSent().increment();
+            executors.sync(() -> {
+                if (sender.isOnline()) {
+                    sender.sendMessage(MessageUtil.getMessage("mailbox_sent", String.valueOf(offer.id()), recipientName));
+                }
+                Player target = Bukkit.getPlayer(offer.recipientId());
+                if (target != null) {
+                    target.sendMessage(MessageUtil.getMessage("mailbox_received", sender.getName()));
+                }
+            });
+        });
+    }
+
+    /**
+     * Gives the escrow of an offer that could not be stored back to its sender: the coins, and the items as far as
+     * they fit into the inventory, the rest is dropped at the sender's feet. If the sender went offline in the
+     * meantime, the items are lost, which is logged.
+     */
+    private void giveBack(@NotNull UUID senderId, @NotNull List<ItemStack> items, int coins) {
+        if (coins > 0) {
+            economy().depositPlayer(Bukkit.getOfflinePlayer(senderId), coins);
+        }
+        Player sender = Bukkit.getPlayer(senderId);
+        if (sender == null) {
+            if (!items.isEmpty()) {
+                plugin.getLogger().severe("Could not return " + describe(items) + " to " + senderId + ", who is offline.");
+            }
+            return;
+        }
+        deliver(sender, items);
+        sender.sendMessage(MessageUtil.getMessage("mailbox_send_failed"));
+    }
+
+    /**
+     * Stores an offer that could neither be sent nor given back, e.g. because the plugin shut down in between,
+     * as returned to its sender, who gets the escrow from their mailbox. If that fails as well, the escrow is
+     * logged, so staff can restore it.
+     */
+    private void storeForSender(@NotNull MailboxStore store, @NotNull MailboxOffer offer) {
+        try {
+            MailboxOffer returned = offer.toReturn(store.nextId(), System.currentTimeMillis());
+            store.append(returned);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not return an offer of " + offer.senderName() + " ("
+                    + offer.coins() + " coins, " + describe(offer.items()) + ")", e);
+        }
+    }
+
+    /**
+     * Lists the open offers of a player. They are read on an I/O thread, only sending them happens on the main
+     * thread.
+     *
+     * @param player The player.
+     */
+    public void list(@NotNull Player player) {
+        if (store == null) {
+            player.sendMessage(MessageUtil.getMessage("mailbox_disabled"));
+            return;
+        }
+
+        executors.thenSync(executors.supplyIo(() -> read(store, player.getUniqueId())), offers -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            if (offers.isEmpty()) {
+                player.sendMessage(MessageUtil.getMessage("mailbox_empty"));
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            player.sendMessage(MessageUtil.getMessage("mailbox_header", String.valueOf(offers.size())));
+            for (MailboxOffer offer : offers) {
+                if (offer.returned()) {
+                    player.sendMessage(MessageUtil.getMessage("mailbox_returned_line", String.valueOf(offer.id()),
+                            offer.senderName(), String.valueOf(offer.coins()), describe(offer.items())));
+                } else {
+                    player.sendMessage(MessageUtil.getMessage("mailbox_offer_line", String.valueOf(offer.id()),
+                            offer.senderName(), String.valueOf(offer.coins()), describe(offer.items()),
+                            String.valueOf(Math.max(0, TimeUnit.MILLISECONDS.toHours(offer.expiresAt() - now)))));
+                }
+            }
+        });
+    }
+
+    /**
+     * Tells a joining player about the offers waiting for them. Only their own offers are read from the store.
+     *
+     * @param player The joining player.
+     */
+    public void notifyJoin(@NotNull Player player) {
+        if (store == null || store.count(player.getUniqueId()) == 0) {
+            return;
+        }
+
+        executors.thenSync(executors.supplyIo(() -> read(store, player.getUniqueId())), offers -> {
+            if (!player.isOnline() || offers.isEmpty()) {
+                return;
+            }
+            String senders = offers.stream().map(MailboxOffer::senderName).distinct().collect(Collectors.joining(", "));
+            player.sendMessage(MessageUtil.getMessage("mailbox_join", String.valueOf(offers.size()), senders));
+        });
+    }
+
+    /**
+     * Accepts an offer: checks on the main thread that the items fit into the inventory, removes the offer from the
+     * store on an I/O thread and pays out its items and coins on the main thread. Removing is atomic, so an offer
+     * accepted twice at the same time is only paid out once. If the removed offer cannot be handed to the main
+     * thread any more, e.g. because the plugin is shutting down, it is put back into the store instead.
+     *
+     * @param player The recipient of the offer.
+     * @param id     The ID of the offer.
+     */
+    public void accept(@NotNull Player player, long id) {
+        if (store == null) {
+            player.sendMessage(MessageUtil.getMessage("mailbox_disabled"));
+            return;
+        }
+
+        UUID recipient = player.getUniqueId();
+        executors.thenSync(executors.supplyIo(() -> get(store, id, recipient)), offer -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            if (offer == null) {
+                player.sendMessage(MessageUtil.getMessage("mailbox_unknown_offer", String.valueOf(id)));
+                return;
+            }
+            if (freeSlots(player.getInventory()) < offer.items().size()) {
+                player.sendMessage(MessageUtil.getMessage("trade_notenough"));
+                return;
+            }
+
+            executors.thenSync(executors.supplyIo(() -> remove(store, id, recipient)), removed -> {
+                if (removed == null) {
+                    if (player.isOnline()) {
+                        player.sendMessage(MessageUtil.getMessage("mailbox_unknown_offer", String.valueOf(id)));
+                    }
+                    return;
+                }
+                payOut(player, removed);
+            }, removed -> {
+                if (removed != null) {
+                    restore(removed);
+                }
+            });
+        });
+    }
+
+    /**
+     * Pays out an accepted offer. If the recipient went offline after it was removed, the escrow goes back into
+     * the store as a returned offer to them, so nothing is lost. Accepted offers are logged and handed to the
+     * anomaly detection like settled trades.
+     */
+    private void payOut(@NotNull Player player, @NotNull MailboxOffer offer) {
+        if (!player.isOnline()) {
+            executors.runIo(() -> restore(offer));
+            return;
+        }
+
+        if (offer.coins() > 0) {
+            economy().depositPlayer(player, offer.coins());
+        }
+        deliver(player, offer.items());
+        if (!offer.returned()) {
+            plugin.getTradeLogger().logTransfer(offer.senderId(), offer.senderName(), offer.recipientId(),
+                    offer.recipientName(), offer.coins(), offer.items());
+            plugin.getAnomalyDetector().submit(new SettlementEvent(System.currentTimeMillis(), offer.senderId(),
+                    offer.senderName(), offer.recipientId(), offer.recipientName(), offer.coins(), 0,
+                    offer.items().stream().mapToLong(ItemFingerprint::of).toArray(), new long[0]));
+            plugin.getMetrics().getMailboxOffersAccepted().increment();
+        }
+        player.sendMessage(MessageUtil.getMessage("mailbox_accepted", String.valueOf(offer.id()), offer.senderName()));
+
+        Player sender = Bukkit.getPlayer(offer.senderId());
+        if (sender != null && !offer.returned()) {
+            sender.sendMessage(MessageUtil.getMessage("mailbox_offer_accepted", String.valueOf(offer.id()),
+                    offer.recipientName()));
+        }
+    }
+
+    /**
+     * Declines an offer, which returns its escrow to the sender. Returned offers cannot be declined.
+     *
+     * @param player The recipient of the offer.
+     * @param id     The ID of the offer.
+     */
+    public void decline(@NotNull Player player, long id) {
+        if (store == null) {
+            player.sendMessage(MessageUtil.getMessage("mailbox_disabled"));
+            return;
+        }
+
+        UUID recipient = player.getUniqueId();
+        executors.thenSync(executors.supplyIo(() -> {
+            MailboxOffer offer = get(store, id, recipient);
+            if (offer == null || offer.returned()) {
+                return null;
+            }
+            MailboxOffer removed = remove(store, id, recipient);
+            if (removed != null) {
+                returnToSender(removed);
+            }
+            return removed;
+        }), removed -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            player.sendMessage(removed == null
+                    ? MessageUtil.getMessage("mailbox_unknown_offer", String.valueOf(id))
+                    : MessageUtil.getMessage("mailbox_declined", String.valueOf(id), removed.senderName()));
+        });
+    }
+
+    /**
+     * Returns expired offers to their senders. Runs on an I/O thread.
+     */
+    private void expire() {
+        if (store == null) {
+            return;
+        }
+        try {
+            List<MailboxOffer> expired = store.removeExpired(System.currentTimeMillis(), EXPIRY_BATCH_SIZE);
+            for (MailboxOffer offer : expired) {
+                returnToSender(offer);
+            }
+            plugin.getMetrics().getMailboxOffersExpired().add(expired.size());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not expire mailbox offers", e);
+        }
+    }
+
+    /**
+     * Appends the returned offer for a declined or expired offer. Runs on an I/O thread, right after the offer
+     * was removed. If it cannot be written, the escrow is logged, so staff can restore it.
+     */
+    private void returnToSender(@NotNull MailboxOffer offer) {
+        try {
+            MailboxOffer returned = offer.toReturn(store.nextId(), System.currentTimeMillis());
+            store.append(returned);
+            executors.sync(() -> {
+                Player sender = Bukkit.getPlayer(returned.recipientId());
+                if (sender != null) {
+                    sender.sendMessage(MessageUtil.getMessage("mailbox_returned", String.valueOf(offer.id()),
+                            offer.recipientName()));
+                }
+            });
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not return mailbox offer " + offer.id() + " of "
+                    + offer.senderName() + " (" + offer.coins() + " coins, " + describe(offer.items()) + ")", e);
+        }
+    }
+
+    /**
+     * Puts an offer that was removed but could not be paid out back into the recipient's mailbox. Runs on an I/O
+     * thread, or on the closing thread for payouts that did not reach the main thread before the plugin was disabled.
+     */
+    private void restore(@NotNull MailboxOffer offer) {
+        try {
+            store.append(new MailboxOffer(store.nextId(), offer.senderId(), offer.senderName(), offer.recipientId(),
+                    offer.recipientName(), offer.coins(), offer.items(), offer.sentAt(), Long.MAX_VALUE, offer.returned()));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not restore mailbox offer " + offer.id() + " for "
+                    + offer.recipientName() + " (" + offer.coins() + " coins, " + describe(offer.items()) + ")", e);
+        }
+    }
+
+    /**
+     * Returns the number of offers waiting in all mailboxes.
+     *
+     * @return The number of open offers, 0 if the mailbox could not be opened.
+     */
+    public int getOpenOffers() {
+        return store == null ? 0 : store.size();
+    }
+
+    /**
+     * Closes the store. Must be called after pending I/O tasks have completed.
+     */
+    public void close() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error closing the mailbox", e);
+        }
+    }
+
+    private static @NotNull List<MailboxOffer> read(@NotNull MailboxStore store, @NotNull UUID recipient) {
+        try {
+            return store.getOffers(recipient);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static @Nullable MailboxOffer get(@NotNull MailboxStore store, long id, @NotNull UUID recipient) {
+        try {
+            MailboxOffer offer = store.get(id);
+            return offer != null && offer.recipientId().equals(recipient) ? offer : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static @Nullable MailboxOffer remove(@NotNull MailboxStore store, long id, @NotNull UUID recipient) {
+        try {
+            return store.remove(id, recipient);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Puts items into a player's inventory and drops what does not fit at the player's feet.
+     */
+    private static void deliver(@NotNull Player player, @NotNull List<ItemStack> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        Map<Integer, ItemStack> leftovers = player.getInventory().addItem(items.stream().map(ItemStack::clone).toArray(ItemStack[]::new));
+        for (ItemStack leftover : leftovers.values()) {
+            player.getWorld().dropItemNaturally(player.getLocation(), leftover);
+        }
+    }
+
+    private static int freeSlots(@NotNull PlayerInventory inventory) {
+        int free = 0;
+        for (ItemStack item : inventory.getStorageContents()) {
+            if (item == null || item.getType().isAir()) {
+                free++;
+            }
+        }
+        return free;
+    }
+
+    private static @NotNull String describe(@NotNull List<ItemStack> items) {
+        return items.isEmpty() ? "-" : items.stream()
+                .map(item -> item.getType().name() + " x" + item.getAmount())
+                .collect(Collectors.joining(", "));
+    }
+
+    private static @NotNull Economy economy() {
+        return Bukkit.getServicesManager().getRegistration(Economy.class).getProvider();
+    }
+}
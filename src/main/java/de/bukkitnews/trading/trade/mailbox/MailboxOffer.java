@@ -0,0 +1,59 @@
+package de.bukkitnews.trading.trade.mailbox;
+
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A trade offer waiting in the mailbox of its recipient. Its items and coins were taken from the sender when it was
+ * sent and are held by the mailbox until the recipient accepts or declines it, or it expires.
+ *
+ * @param id            The ID of the offer.
+ * @param senderId      The UUID of the player who sent the offer.
+ * @param senderName    The name of the player who sent the offer.
+ * @param recipientId   The UUID of the player the offer was sent to.
+ * @param recipientName The name of the player the offer was sent to.
+ * @param coins         The coins offered.
+ * @param items         The items offered. The stacks must not be modified.
+ * @param sentAt        The time the offer was sent in epoch milliseconds.
+ * @param expiresAt     The time the offer expires in epoch milliseconds, {@link Long#MAX_VALUE} if it never expires.
+ * @param returned      Whether this offer returns the escrow of a declined or expired offer to its sender.
+ */
+public record MailboxOffer(long id,
+                           @NotNull UUID senderId,
+                           @NotNull String senderName,
+                           @NotNull UUID recipientId,
+                           @NotNull String recipientName,
+                           int coins,
+                           @NotNull List<ItemStack> items,
+                           long sentAt,
+                           long expiresAt,
+                           boolean returned) {
+
+    public MailboxOffer {
+        items = List.copyOf(items);
+    }
+
+    /**
+     * Returns whether the offer expires at some point.
+     *
+     * @return false for returned items, which wait until they are accepted.
+     */
+    public boolean expires() {
+        return expiresAt != Long.MAX_VALUE;
+    }
+
+    /**
+     * Creates the offer returning the items and coins of this offer to its sender. It never expires, so the escrow
+     * cannot bounce back and forth.
+     *
+     * @param id  The ID of the returning offer.
+     * @param now The current time in epoch milliseconds.
+     * @return The returning offer.
+     */
+    public @NotNull MailboxOffer toReturn(long id, long now) {
+        return new MailboxOffer(id, recipientId, recipientName, senderId, senderName, coins, items, now, Long.MAX_VALUE, true);
+    }
+}
@@ -0,0 +1,532 @@
+package de.bukkitnews.trading.trade.mailbox;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * The persistent storage of the mailbox: an append-only file of offers and removals with its indexes in memory.
+ * <p>
+ * Sending an offer appends it, accepting, declining or expiring it appends a removal; the file is never rewritten
+ * in place. Only the indexes are held in memory: the file offset of every open offer, the offers of every
+ * recipient in sending order and the offers ordered by expiry. Loading a mailbox therefore reads just the offers
+ * of that player, and expiring offers only looks at the head of the expiry index. Every write is forced to disk
+ * before it returns, since the file holds the escrow of the offers.
+ * <p>
+ * When the file is opened, the indexes are rebuilt by reading it once. If more than half of it is taken up by
+ * removed offers, the open offers are copied to a new file which replaces the old one.
+ * <p>
+ * This class is thread-safe. All methods block on file I/O and should be called on an I/O thread.
+ */
+final class MailboxStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x4D41494C;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int FRAME_HEADER_BYTES = 8;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+    private static final long MIN_COMPACT_BYTES = 64 * 1024;
+
+    private static final byte TYPE_OFFER = 1;
+    private static final byte TYPE_REMOVAL = 2;
+
+    private final @NotNull Path path;
+    private final @NotNull ReentrantLock lock = new ReentrantLock();
+    private @NotNull FileChannel channel;
+    private long size;
+    private long nextId = 1;
+
+    /*
+     * The indexes, guarded by the lock.
+     */
+    private final @NotNull Map<Long, Entry> offers = new HashMap<>();
+    private final @NotNull Map<UUID, Set<Long>> byRecipient = new HashMap<>();
+    private final @NotNull NavigableSet<Expiry> byExpiry = new TreeSet<>();
+    private long liveBytes;
+
+    private MailboxStore(@NotNull Path path, @NotNull FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the mailbox file, creating it if it does not exist, and builds the indexes. A damaged or incomplete
+     * tail, e.g. from a crash in the middle of a write, is cut off.
+     *
+     * @param path   The path of the file.
+     * @param logger The logger for damaged files.
+     * @return The store.
+     * @throws IOException If the file could not be created or read, or is not a mailbox file.
+     */
+    static @NotNull MailboxStore open(@NotNull Path path, @NotNull Logger logger) throws IOException {
+        Files.createDirectories(path.getParent());
+        boolean created = !Files.exists(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MailboxStore store = new MailboxStore(path, channel);
+        try {
+            if (created || channel.size() == 0) {
+                store.writeHeader(channel);
+                store.size = HEADER_BYTES;
+            } else {
+                store.load(logger);
+            }
+            if (store.size - HEADER_BYTES - store.liveBytes > Math.max(store.liveBytes, MIN_COMPACT_BYTES)) {
+                store.compact();
+            }
+        } catch (IOException e) {
+            store.channel.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Writes the file header, which holds the next free ID, so IDs of offers removed by a compaction are not reused.
+     */
+    private void writeHeader(@NotNull FileChannel target) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(nextId).flip();
+        while (header.hasRemaining()) {
+            target.write(header, header.position());
+        }
+        target.force(true);
+    }
+
+    private void load(@NotNull Logger logger) throws IOException {
+        long end = channel.size();
+        long position = HEADER_BYTES;
+        int removed = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a mailbox file: " + path);
+            }
+            nextId = in.readLong();
+            while (position + FRAME_HEADER_BYTES <= end) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_PAYLOAD_BYTES || position + FRAME_HEADER_BYTES + length > end) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (checksum(payload) != checksum) {
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                long id = record.readLong();
+                if (type == TYPE_OFFER) {
+                    MailboxOffer offer = decodeHeader(id, record);
+                    index(offer, position, FRAME_HEADER_BYTES + length);
+                } else if (type == TYPE_REMOVAL) {
+                    unindex(id);
+                    removed++;
+                }
+                nextId = Math.max(nextId, id + 1);
+                position += FRAME_HEADER_BYTES + length;
+            }
+        } catch (EOFException ignored) {
+            // The file ends inside a frame, which is handled below.
+        }
+
+        if (position < end) {
+            logger.warning("The mailbox file has a damaged tail, discarding " + (end - position) + " byte(s) after "
+                    + offers.size() + " open and " + removed + " removed offer(s).");
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    /**
+     * Copies the open offers to a new file, which replaces the current one. The offers keep their order.
+     */
+    private void compact() throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<Long, Entry> moved = new HashMap<>();
+        try (FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(target);
+            long position = HEADER_BYTES;
+            for (Map.Entry<Long, Entry> offer : new TreeMap<>(offers).entrySet()) {
+                Entry entry = offer.getValue();
+                ByteBuffer frame = ByteBuffer.allocate(entry.length());
+                readFully(frame, entry.offset());
+                frame.flip();
+                while (frame.hasRemaining()) {
+                    position += target.write(frame, position);
+                }
+                moved.put(offer.getKey(), new Entry(position - entry.length(), entry.length(), entry.recipient(),
+                        entry.expiresAt()));
+            }
+            target.force(true);
+        }
+
+        channel.close();
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        offers.putAll(moved);
+        size = HEADER_BYTES + liveBytes;
+    }
+
+    /**
+     * Reserves the ID of a new offer.
+     *
+     * @return The ID.
+     */
+    long nextId() {
+        lock.lock();
+        try {
+            return nextId++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends an offer and forces it to disk.
+     *
+     * @param offer The offer, with an ID from {@link #nextId()}.
+     * @throws IOException If the offer could not be written.
+     */
+    void append(@NotNull MailboxOffer offer) throws IOException {
+        byte[] payload = encode(offer);
+        lock.lock();
+        try {
+            long offset = size;
+            int length = writeFrame(payload);
+            index(offer, offset, length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes an open offer of a recipient, appending the removal to the file. Only one of several concurrent calls
+     * for the same offer gets it, so its escrow is paid out exactly once.
+     *
+     * @param id        The ID of the offer.
+     * @param recipient The UUID of the recipient the offer must have been sent to.
+     * @return The removed offer, or null if the recipient has no open offer with this ID.
+     * @throws IOException If the offer could not be read or the removal could not be written.
+     */
+    @Nullable MailboxOffer remove(long id, @NotNull UUID recipient) throws IOException {
+        lock.lock();
+        try {
+            Entry entry = offers.get(id);
+            return entry == null || !entry.recipient().equals(recipient) ? null : remove(id, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes an open offer. The lock must be held.
+     */
+    private @NotNull MailboxOffer remove(long id, @NotNull Entry entry) throws IOException {
+        MailboxOffer offer = read(entry);
+        writeFrame(encodeRemoval(id));
+        unindex(id);
+        return offer;
+    }
+
+    /**
+     * Reads an open offer.
+     *
+     * @param id The ID of the offer.
+     * @return The offer, or null if there is no open offer with this ID.
+     * @throws IOException If the offer could not be read.
+     */
+    @Nullable MailboxOffer get(long id) throws IOException {
+        lock.lock();
+        try {
+            Entry entry = offers.get(id);
+            return entry == null ? null : read(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the open offers of a recipient, reading only their records from the file.
+     *
+     * @param recipient The UUID of the recipient.
+     * @return The offers, oldest first.
+     * @throws IOException If an offer could not be read.
+     */
+    @NotNull List<MailboxOffer> getOffers(@NotNull UUID recipient) throws IOException {
+        lock.lock();
+        try {
+            Set<Long> ids = byRecipient.get(recipient);
+            if (ids == null) {
+                return List.of();
+            }
+            List<MailboxOffer> result = new ArrayList<>(ids.size());
+            for (long id : ids) {
+                result.add(read(offers.get(id)));
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of open offers of a recipient. Does not touch the file.
+     *
+     * @param recipient The UUID of the recipient.
+     * @return The number of open offers.
+     */
+    int count(@NotNull UUID recipient) {
+        lock.lock();
+        try {
+            Set<Long> ids = byRecipient.get(recipient);
+            return ids == null ? 0 : ids.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of open offers.
+     *
+     * @return The number of open offers of all recipients.
+     */
+    int size() {
+        lock.lock();
+        try {
+            return offers.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes offers that have expired, oldest expiry first.
+     *
+     * @param now   The current time in epoch milliseconds.
+     * @param limit The maximum number of offers to remove.
+     * @return The removed offers.
+     * @throws IOException If an offer could not be read or its removal could not be written.
+     */
+    @NotNull List<MailboxOffer> removeExpired(long now, int limit) throws IOException {
+        List<MailboxOffer> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            while (expired.size() < limit && !byExpiry.isEmpty() && byExpiry.first().expiresAt() <= now) {
+                long id = byExpiry.first().id();
+                expired.add(remove(id, offers.get(id)));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return expired;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void index(@NotNull MailboxOffer offer, long offset, int length) {
+        Entry entry = new Entry(offset, length, offer.recipientId(), offer.expiresAt());
+        offers.put(offer.id(), entry);
+        byRecipient.computeIfAbsent(offer.recipientId(), key -> new LinkedHashSet<>()).add(offer.id());
+        if (offer.expires()) {
+            byExpiry.add(new Expiry(offer.expiresAt(), offer.id()));
+        }
+        liveBytes += length;
+    }
+
+    private void unindex(long id) {
+        Entry entry = offers.remove(id);
+        if (entry == null) {
+            return;
+        }
+        Set<Long> ids = byRecipient.get(entry.recipient());
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            byRecipient.remove(entry.recipient());
+        }
+        byExpiry.remove(new Expiry(entry.expiresAt(), id));
+        liveBytes -= entry.length();
+    }
+
+    /**
+     * Writes a frame at the end of the file and forces it to disk.
+     *
+     * @return The length of the frame.
+     */
+    private int writeFrame(byte @NotNull [] payload) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + payload.length)
+                .putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        long position = size;
+        while (frame.hasRemaining()) {
+            position += channel.write(frame, position);
+        }
+        channel.force(false);
+        size = position;
+        return frame.capacity();
+    }
+
+    private @NotNull MailboxOffer read(@NotNull Entry entry) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(entry.length());
+        readFully(frame, entry.offset());
+        int length = frame.getInt(0);
+        byte[] payload = new byte[length];
+        frame.get(FRAME_HEADER_BYTES, payload);
+        if (checksum(payload) != frame.getInt(4)) {
+            throw new IOException("Checksum mismatch at offset " + entry.offset() + " of " + path.getFileName());
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        in.readByte();
+        long id = in.readLong();
+        MailboxOffer header = decodeHeader(id, in);
+        byte[] items = new byte[in.readInt()];
+        in.readFully(items);
+        return new MailboxOffer(id, header.senderId(), header.senderName(), header.recipientId(), header.recipientName(),
+                header.coins(), decodeItems(items), header.sentAt(), header.expiresAt(), header.returned());
+    }
+
+    private void readFully(@NotNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + path.getFileName() + " at offset " + position);
+            }
+        }
+    }
+
+    private static byte @NotNull [] encode(@NotNull MailboxOffer offer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_OFFER);
+        out.writeLong(offer.id());
+        out.writeLong(offer.sentAt());
+        out.writeLong(offer.expiresAt());
+        out.writeBoolean(offer.returned());
+        out.writeLong(offer.senderId().getMostSignificantBits());
+        out.writeLong(offer.senderId().getLeastSignificantBits());
+        out.writeUTF(offer.senderName());
+        out.writeLong(offer.recipientId().getMostSignificantBits());
+        out.writeLong(offer.recipientId().getLeastSignificantBits());
+        out.writeUTF(offer.recipientName());
+        out.writeInt(offer.coins());
+        byte[] items = encodeItems(offer.items());
+        out.writeInt(items.length);
+        out.write(items);
+        if (bytes.size() > MAX_PAYLOAD_BYTES) {
+            throw new IOException("Offer " + offer.id() + " is too large to be stored");
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte @NotNull [] encodeRemoval(long id) {
+        return ByteBuffer.allocate(9).put(TYPE_REMOVAL).putLong(id).array();
+    }
+
+    /**
+     * Reads the fields of an offer up to its items, which only the index needs.
+     */
+    private static @NotNull MailboxOffer decodeHeader(long id, @NotNull DataInputStream in) throws IOException {
+        long sentAt = in.readLong();
+        long expiresAt = in.readLong();
+        boolean returned = in.readBoolean();
+        UUID sender = new UUID(in.readLong(), in.readLong());
+        String senderName = in.readUTF();
+        UUID recipient = new UUID(in.readLong(), in.readLong());
+        String recipientName = in.readUTF();
+        int coins = in.readInt();
+        return new MailboxOffer(id, sender, senderName, recipient, recipientName, coins, List.of(), sentAt, expiresAt,
+                returned);
+    }
+
+    /**
+     * Serializes items with the Bukkit configuration serialization, which keeps all their data.
+     */
+    private static byte @NotNull [] encodeItems(@NotNull List<ItemStack> items) {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("items", items);
+        return config.saveToString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static @NotNull List<ItemStack> decodeItems(byte @NotNull [] bytes) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.loadFromString(new String(bytes, StandardCharsets.UTF_8));
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("Damaged items in the mailbox file", e);
+        }
+        List<ItemStack> items = new ArrayList<>();
+        for (Object item : config.getList("items", List.of())) {
+            if (item instanceof ItemStack itemStack) {
+                items.add(itemStack);
+            }
+        }
+        return items;
+    }
+
+    private static int checksum(byte @NotNull [] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * The location of an open offer in the file.
+     *
+     * @param offset    The offset of its frame.
+     * @param length    The length of its frame.
+     * @param recipient The UUID of its recipient.
+     * @param expiresAt The time it expires in epoch milliseconds.
+     */
+    private record Entry(long offset, int length, @NotNull UUID recipient, long expiresAt) {
+    }
+
+    /**
+     * An entry of the expiry index, ordered by expiry and then by ID.
+     */
+    private record Expiry(long expiresAt, long id) implements Comparable<Expiry> {
+
+        @Override
+        public int compareTo(@NotNull Expiry other) {
+            int compare = Long.compare(expiresAt, other.expiresAt);
+            return compare != 0 ? compare : Long.compare(id, other.id);
+        }
+    }
+}
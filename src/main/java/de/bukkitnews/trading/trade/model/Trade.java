@@ -1,5 +1,11 @@
 package de.bukkitnews.trading.trade.model;
 
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.metrics.TradeMetrics;
+import de.bukkitnews.trading.profiler.ProfilerSection;
+import de.bukkitnews.trading.profiler.TickProfiler;
+import de.bukkitnews.trading.profiler.TradeFlightEvents;
+import de.bukkitnews.trading.trade.anomaly.SettlementEvent;
 import de.bukkitnews.trading.util.MessageUtil;
 import de.bukkitnews.trading.util.TradeItems;
 import de.bukkitnews.trading.util.ItemUtil;
@@ -9,15 +15,15 @@ import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 
 import static org.bukkit.Bukkit.getServer;
@@ -26,16 +32,32 @@ import static org.bukkit.Bukkit.getServer;
  * This class represents a trade between two players, allowing them to exchange items and coins.
  * It handles the various actions that can be performed during the trade, such as adding/removing items,
  * setting coins, and managing the state of the trade.
+ * Every trade gets an id, unique for the server run, that identifies its session in flight recordings.
  */
-public record Trade(@NotNull TradePlayer host,
-                    @NotNull TradePlayer target) implements TradeActions {
+public record Trade(@NotNull Trading plugin,
+                    @NotNull TradePlayer host,
+                    @NotNull TradePlayer target,
+                    long id) implements TradeActions {
 
-    public Trade(@NotNull TradePlayer host, @NotNull TradePlayer target) {
+    private static final @NotNull AtomicLong NEXT_ID = new AtomicLong();
+
+    private static final @NotNull List<Integer> VALID_SLOTS = IntStream.range(0, TradeOffer.CAPACITY)
+            .map(TradeOffer::toSlot)
+            .boxed()
+            .toList();
+
+    public Trade(@NotNull Trading plugin, @NotNull TradePlayer host, @NotNull TradePlayer target, long id) {
+        this.plugin = plugin;
         this.host = host;
         this.target = target;
+        this.id = id;
         Arrays.asList(host, target).forEach(this::createInventory);
     }
 
+    public Trade(@NotNull Trading plugin, @NotNull TradePlayer host, @NotNull TradePlayer target) {
+        this(plugin, host, target, NEXT_ID.incrementAndGet());
+    }
+
     /**
      * Retrieves the TradePlayer corresponding to the provided player.
      *
@@ -71,19 +93,21 @@ public record Trade(@NotNull TradePlayer host,
      */
     @Override
     public boolean addItem(@NotNull TradePlayer tradePlayer, int slot, @NotNull ItemStack itemStack) {
-        return getValidSlots().stream()
-                .filter(i -> tradePlayer.getPlayer().getOpenInventory().getItem(i) == null)
-                .findFirst()
-                .map(i -> {
-                    TradePlayer target = getTarget(tradePlayer);
-                    updateState(tradePlayer, State.UNFINISHED);
-                    updateState(target, State.UNFINISHED);
-                    tradePlayer.getPlayer().getOpenInventory().setItem(i, itemStack);
-                    tradePlayer.getPlayer().getInventory().setItem(slot, new ItemStack(Material.AIR));
-                    tradePlayer.getItems().add(itemStack);
-                    target.getPlayer().getOpenInventory().setItem(getTargetSlots(i), itemStack);
-                    return true;
-                }).orElse(false);
+        TradeOffer offer = tradePlayer.getOffer();
+        int index = offer.firstFree();
+        if (index < 0) {
+            return false;
+        }
+
+        ItemStack offered = itemStack.clone();
+        TradePlayer target = getTarget(tradePlayer);
+        updateState(tradePlayer, State.UNFINISHED);
+        updateState(target, State.UNFINISHED);
+        offer.put(index, offered);
+        tradePlayer.getPlayer().getInventory().setItem(slot, new ItemStack(Material.AIR));
+        tradePlayer.getPlayer().getOpenInventory().setItem(TradeOffer.toSlot(index), offered);
+        target.getPlayer().getOpenInventory().setItem(TradeOffer.toMirrorSlot(index), offered);
+        return true;
     }
 
     /**
@@ -95,20 +119,23 @@ public record Trade(@NotNull TradePlayer host,
      */
     @Override
     public void removeItem(@NotNull TradePlayer tradePlayer, int slot) {
+        int index = TradeOffer.toIndex(slot);
+        if (index < 0) {
+            return;
+        }
+
+        ItemStack itemStack = tradePlayer.getOffer().remove(index);
+        if (itemStack == null) {
+            return;
+        }
+
         TradePlayer target = getTarget(tradePlayer);
         updateState(tradePlayer, State.UNFINISHED);
         updateState(target, State.UNFINISHED);
 
-        ItemStack itemStack = tradePlayer.getPlayer().getOpenInventory().getItem(slot);
-
-        if (itemStack != null && !itemStack.getType().isAir()) {
-            tradePlayer.getPlayer().getInventory().addItem(itemStack);
-
-            tradePlayer.getPlayer().getOpenInventory().setItem(slot, new ItemStack(Material.AIR));
-            tradePlayer.getItems().remove(itemStack);
-
-            target.getPlayer().getOpenInventory().setItem(getTargetSlots(slot), new ItemStack(Material.AIR));
-        }
+        tradePlayer.getPlayer().getInventory().addItem(itemStack);
+        tradePlayer.getPlayer().getOpenInventory().setItem(slot, new ItemStack(Material.AIR));
+        target.getPlayer().getOpenInventory().setItem(TradeOffer.toMirrorSlot(index), new ItemStack(Material.AIR));
     }
 
     /**
@@ -150,15 +177,24 @@ public record Trade(@NotNull TradePlayer host,
 
         tradePlayer.setState(state);
 
-        ItemStack statusItem = state.getStatusItem();
-        IntStream.range(18, 22).forEach(i -> tradePlayer.getPlayer().getOpenInventory().setItem(i, statusItem));
-        TradePlayer target = getTarget(tradePlayer);
-        IntStream.range(23, 27).forEach(i -> target.getPlayer().getOpenInventory().setItem(i, statusItem));
-
-        tradePlayer.getPlayer().getOpenInventory().setItem(22, state.getActionItem());
+        TickProfiler profiler = plugin.getProfiler();
+        long start = profiler.start();
+        TradeFlightEvents.RenderFlush event = new TradeFlightEvents.RenderFlush();
+        event.begin();
+        try {
+            ItemStack statusItem = state.getStatusItem();
+            IntStream.range(18, 22).forEach(i -> tradePlayer.getPlayer().getOpenInventory().setItem(i, statusItem));
+            TradePlayer target = getTarget(tradePlayer);
+            IntStream.range(23, 27).forEach(i -> target.getPlayer().getOpenInventory().setItem(i, statusItem));
+
+            tradePlayer.getPlayer().getOpenInventory().setItem(22, state.getActionItem());
+        } finally {
+            profiler.stop(ProfilerSection.RENDER, start);
+            commitRender(event, "state", 9);
+        }
 
         if (state == State.DONE) {
-            finishTradeAsync();
+            finishTradeLater();
         }
     }
 
@@ -170,7 +206,7 @@ public record Trade(@NotNull TradePlayer host,
      */
     @Override
     public @NotNull List<Integer> getValidSlots() {
-        return Arrays.asList(27, 28, 29, 30, 36, 37, 38, 39, 45, 46, 47, 48);
+        return VALID_SLOTS;
     }
 
     /**
@@ -181,31 +217,71 @@ public record Trade(@NotNull TradePlayer host,
      */
     @Override
     public int getTargetSlots(int i) {
-        return 0; // Slot mapping logic can be added here.
+        int index = TradeOffer.toIndex(i);
+        return index < 0 ? i : TradeOffer.toMirrorSlot(index);
     }
 
     /**
      * Completes the trade by transferring items and coins between the two players.
      * This method ensures that the trade conditions are met before proceeding.
+     * Both confirmations schedule a settlement, and the trade may have been cancelled in the meantime, so only a
+     * trade that is still registered is settled. Settling unregisters it, which makes settlement happen at most once.
+     * The time taken and the reason of an aborted settlement are recorded in the {@link TradeMetrics}.
      */
     @Override
     public void finishTrade() {
-        Player hostPlayer = host.getPlayer();
-        Player targetPlayer = target.getPlayer();
-        Economy economy = getServer().getServicesManager().getRegistration(Economy.class).getProvider();
-
         if (host.getState() != State.DONE || target.getState() != State.DONE) {
             return;
         }
-
-        if (!checkInventorySpace(hostPlayer, targetPlayer)) {
+        if (plugin.getTradeManager().getTrade(host.getPlayer()).filter(this::equals).isEmpty()) {
             return;
         }
 
-        if (!checkBalance(hostPlayer, targetPlayer, economy)) {
+        TradeMetrics metrics = plugin.getMetrics();
+        TickProfiler profiler = plugin.getProfiler();
+        long profilerStart = profiler.start();
+        long start = System.nanoTime();
+        try {
+            settle(metrics);
+        } finally {
+            metrics.getSettlementLatency().recordSince(start);
+            profiler.stop(ProfilerSection.SETTLEMENT, profilerStart);
+        }
+    }
+
+    /**
+     * Validates and settles the trade after both players have confirmed it.
+     *
+     * @param metrics The metrics recording the outcome.
+     */
+    private void settle(@NotNull TradeMetrics metrics) {
+        Player hostPlayer = host.getPlayer();
+        Player targetPlayer = target.getPlayer();
+        Economy economy = getServer().getServicesManager().getRegistration(Economy.class).getProvider();
+
+        TradeFlightEvents.SettlementValidate validate = new TradeFlightEvents.SettlementValidate();
+        validate.begin();
+        TradeMetrics.SettlementFailure failure = null;
+        if (!checkInventorySpace(hostPlayer, targetPlayer)) {
+            failure = TradeMetrics.SettlementFailure.SPACE;
+        } else if (!checkBalance(hostPlayer, targetPlayer, economy)) {
+            failure = TradeMetrics.SettlementFailure.BALANCE;
+        }
+        if (validate.shouldCommit()) {
+            validate.sessionId = id;
+            validate.itemCount = host.getOffer().size() + target.getOffer().size();
+            validate.coins = (long) host.getCoins() + target.getCoins();
+            validate.outcome = failure == null ? "valid" : failure.name().toLowerCase(Locale.ROOT);
+            validate.commit();
+        }
+        if (failure != null) {
+            metrics.recordSettlementFailure(failure);
             return;
         }
 
+        TradeFlightEvents.SettlementCommit commit = new TradeFlightEvents.SettlementCommit();
+        commit.begin();
+        int itemCount = host.getOffer().size() + target.getOffer().size();
         if (host.getCoins() > 0) {
             economy.withdrawPlayer(hostPlayer, host.getCoins());
             economy.depositPlayer(targetPlayer, host.getCoins());
@@ -216,9 +292,21 @@ public record Trade(@NotNull TradePlayer host,
             economy.depositPlayer(hostPlayer, target.getCoins());
         }
 
-        host.getItems().forEach(item -> targetPlayer.getInventory().addItem(item));
-        target.getItems().forEach(item -> hostPlayer.getInventory().addItem(item));
+        plugin.getTradeLogger().logTrade(host, target);
+        plugin.getAnomalyDetector().submit(SettlementEvent.capture(host, target));
+        metrics.getSettlements().increment();
+
+        transferOffer(host.getOffer(), targetPlayer);
+        transferOffer(target.getOffer(), hostPlayer);
+        if (commit.shouldCommit()) {
+            commit.sessionId = id;
+            commit.itemCount = itemCount;
+            commit.coins = (long) host.getCoins() + target.getCoins();
+            commit.commit();
+        }
 
+        plugin.getTradeManager().unregisterTrade(hostPlayer);
+        plugin.getTradeManager().unregisterTrade(targetPlayer);
         hostPlayer.closeInventory();
         targetPlayer.closeInventory();
         hostPlayer.sendMessage(MessageUtil.getMessage("trade_success"));
@@ -232,9 +320,28 @@ public record Trade(@NotNull TradePlayer host,
      */
     @Override
     public void createInventory(@NotNull TradePlayer tradePlayer) {
+        TickProfiler profiler = plugin.getProfiler();
+        long start = profiler.start();
+        TradeFlightEvents.RenderFlush event = new TradeFlightEvents.RenderFlush();
+        event.begin();
+        try {
+            renderInventory(tradePlayer);
+        } finally {
+            profiler.stop(ProfilerSection.RENDER, start);
+            commitRender(event, "inventory", 54);
+        }
+    }
+
+    /**
+     * Builds the trade inventory of a player and opens it.
+     *
+     * @param tradePlayer The TradePlayer whose inventory is to be created.
+     */
+    private void renderInventory(@NotNull TradePlayer tradePlayer) {
         TradePlayer target = getTarget(tradePlayer);
-        Inventory inventory = Bukkit.createInventory((InventoryHolder) tradePlayer.getPlayer(),
-                54, MessageUtil.getMessage("inventory"));
+        TradeInventoryHolder holder = new TradeInventoryHolder(this, tradePlayer);
+        Inventory inventory = Bukkit.createInventory(holder, 54, MessageUtil.getMessage("inventory"));
+        holder.bind(inventory);
 
         inventory.setItem(0, new ItemUtil(Material.PLAYER_HEAD)
                 .setSkullOwner(tradePlayer.getPlayer().getName())
@@ -275,10 +382,36 @@ public record Trade(@NotNull TradePlayer host,
         TradePlayer target = getTarget(tradePlayer);
         updateState(tradePlayer, State.UNFINISHED);
         updateState(target, State.UNFINISHED);
-        tradePlayer.getPlayer().getOpenInventory().setItem(3, tradePlayer.getCoinsItem());
-        target.getPlayer().getOpenInventory().setItem(5, new ItemUtil(Material.SUNFLOWER)
-                .setDisplayname("Coins:" + tradePlayer.getCoins())
-                .build());
+
+        TickProfiler profiler = plugin.getProfiler();
+        long start = profiler.start();
+        TradeFlightEvents.RenderFlush event = new TradeFlightEvents.RenderFlush();
+        event.begin();
+        try {
+            tradePlayer.getPlayer().getOpenInventory().setItem(3, tradePlayer.getCoinsItem());
+            target.getPlayer().getOpenInventory().setItem(5, new ItemUtil(Material.SUNFLOWER)
+                    .setDisplayname("Coins:" + tradePlayer.getCoins())
+                    .build());
+        } finally {
+            profiler.stop(ProfilerSection.RENDER, start);
+            commitRender(event, "coins", 2);
+        }
+    }
+
+    /**
+     * Commits a render event of this trade if it is recorded.
+     *
+     * @param event The event, begun before rendering.
+     * @param part  The rendered part of the view.
+     * @param slots The number of slots set.
+     */
+    private void commitRender(@NotNull TradeFlightEvents.RenderFlush event, @NotNull String part, int slots) {
+        if (event.shouldCommit()) {
+            event.sessionId = id;
+            event.part = part;
+            event.slots = slots;
+            event.commit();
+        }
     }
 
     /**
@@ -308,13 +441,13 @@ public record Trade(@NotNull TradePlayer host,
      * @return Returns true if both players have enough inventory space, false otherwise.
      */
     private boolean checkInventorySpace(Player hostPlayer, Player targetPlayer) {
-        if (host.getItems().size() > target.amountOfEmptySlots()) {
+        if (host.getOffer().size() > target.amountOfEmptySlots()) {
             targetPlayer.sendMessage(MessageUtil.getMessage("trade_notenough"));
             targetPlayer.closeInventory();
             return false;
         }
 
-        if (target.getItems().size() > host.amountOfEmptySlots()) {
+        if (target.getOffer().size() > host.amountOfEmptySlots()) {
             hostPlayer.sendMessage(MessageUtil.getMessage("trade_notenough"));
             hostPlayer.closeInventory();
             return false;
@@ -352,10 +485,24 @@ public record Trade(@NotNull TradePlayer host,
     }
 
     /**
-     * Initiates the trade completion asynchronously.
-     * This method runs the `finishTrade` method in a separate thread to avoid blocking the main thread.
+     * Moves every offered item of an offer into the receiving player's inventory and empties the offer.
+     *
+     * @param offer    The offer whose items are handed over.
+     * @param receiver The player receiving the items.
+     */
+    private void transferOffer(@NotNull TradeOffer offer, @NotNull Player receiver) {
+        for (int i = offer.nextOccupied(0); i >= 0; i = offer.nextOccupied(i + 1)) {
+            receiver.getInventory().addItem(offer.get(i));
+        }
+        offer.clear();
+    }
+
+    /**
+     * Initiates the trade completion on the main thread during the next tick.
+     * Settlement moves items between inventories, closes the trade views and calls the economy, none of which
+     * may happen off the main thread or while the triggering click event is still being handled.
      */
-    private void finishTradeAsync() {
-        CompletableFuture.runAsync(this::finishTrade);
+    private void finishTradeLater() {
+        plugin.getExecutors().nextTick(this::finishTrade);
     }
 }
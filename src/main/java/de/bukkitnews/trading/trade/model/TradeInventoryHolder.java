@@ -0,0 +1,38 @@
+package de.bukkitnews.trading.trade.model;
+
+import lombok.Getter;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This class is the holder of every trade inventory.
+ * It binds the inventory to its trade and to the player viewing it, so listeners can identify a trade view
+ * and resolve the trade with a single {@code instanceof} check on the inventory holder.
+ */
+@Getter
+public class TradeInventoryHolder implements InventoryHolder {
+
+    private final @NotNull Trade trade;
+    private final @NotNull TradePlayer viewer;
+    private Inventory inventory;
+
+    public TradeInventoryHolder(@NotNull Trade trade, @NotNull TradePlayer viewer) {
+        this.trade = trade;
+        this.viewer = viewer;
+    }
+
+    /**
+     * Binds the inventory created for this holder. Called once right after the inventory has been created.
+     *
+     * @param inventory The trade inventory owned by this holder.
+     */
+    void bind(@NotNull Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    @Override
+    public @NotNull Inventory getInventory() {
+        return inventory;
+    }
+}
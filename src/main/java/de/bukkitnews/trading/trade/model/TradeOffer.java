@@ -0,0 +1,212 @@
+package de.bukkitnews.trading.trade.model;
+
+import de.bukkitnews.trading.util.ItemFingerprint;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * This class represents the items a single player offers in a trade.
+ * Every offered item is bound to one of the fixed offer slots of the trade inventory, so adding and removing
+ * an item is a direct array access instead of a search by {@link ItemStack#equals(Object)}.
+ * <p>
+ * Occupied slots are tracked in a bitmask, which allows counting and iterating the offer without allocating.
+ * For every occupied slot the {@link ItemFingerprint} is computed once when the item is added, so settlement, the
+ * trade log and the anomaly detection can compare and index the offered items without serializing them again.
+ */
+public class TradeOffer {
+
+    /**
+     * The inventory slots of the trade GUI in which a player places their own offer, ordered by offer index.
+     */
+    private static final int[] OFFER_SLOTS = {27, 28, 29, 30, 36, 37, 38, 39, 45, 46, 47, 48};
+
+    /**
+     * The number of columns between a player's own offer slot and the slot mirroring it in the partner's view.
+     */
+    private static final int MIRROR_OFFSET = 5;
+
+    /**
+     * The maximum amount of items a player can offer in a single trade.
+     */
+    public static final int CAPACITY = OFFER_SLOTS.length;
+
+    private static final int FULL_MASK = (1 << CAPACITY) - 1;
+    private static final int[] SLOT_TO_INDEX = createSlotLookup();
+
+    private final @Nullable ItemStack[] items = new ItemStack[CAPACITY];
+    private final long[] fingerprints = new long[CAPACITY];
+    private int occupied;
+
+    /**
+     * Places an item in the given offer slot, replacing nothing.
+     *
+     * @param index     The offer index (0 until {@link #CAPACITY}) to place the item in.
+     * @param itemStack The item being offered.
+     * @return true if the slot was free and the item was placed, false otherwise.
+     */
+    public boolean put(int index, @NotNull ItemStack itemStack) {
+        int bit = 1 << index;
+        if ((occupied & bit) != 0) {
+            return false;
+        }
+
+        items[index] = itemStack;
+        fingerprints[index] = ItemFingerprint.of(itemStack);
+        occupied |= bit;
+        return true;
+    }
+
+    /**
+     * Removes the item from the given offer slot.
+     *
+     * @param index The offer index to clear.
+     * @return The removed item, or null if the slot was empty.
+     */
+    public @Nullable ItemStack remove(int index) {
+        int bit = 1 << index;
+        if ((occupied & bit) == 0) {
+            return null;
+        }
+
+        ItemStack itemStack = items[index];
+        items[index] = null;
+        fingerprints[index] = ItemFingerprint.NONE;
+        occupied &= ~bit;
+        return itemStack;
+    }
+
+    /**
+     * Retrieves the item placed in the given offer slot.
+     *
+     * @param index The offer index.
+     * @return The item, or null if the slot is empty.
+     */
+    public @Nullable ItemStack get(int index) {
+        return items[index];
+    }
+
+    /**
+     * Retrieves the fingerprint of the item placed in the given offer slot.
+     *
+     * @param index The offer index.
+     * @return The fingerprint, or {@link ItemFingerprint#NONE} if the slot is empty.
+     */
+    public long getFingerprint(int index) {
+        return fingerprints[index];
+    }
+
+    /**
+     * Returns the first free offer index.
+     *
+     * @return The lowest free offer index, or -1 if the offer is full.
+     */
+    public int firstFree() {
+        int free = ~occupied & FULL_MASK;
+        return free == 0 ? -1 : Integer.numberOfTrailingZeros(free);
+    }
+
+    /**
+     * Returns the next occupied offer index starting at (and including) the given index.
+     * Used to walk the offer without allocating:
+     * {@code for (int i = offer.nextOccupied(0); i >= 0; i = offer.nextOccupied(i + 1))}.
+     *
+     * @param from The offer index to start searching at.
+     * @return The next occupied offer index, or -1 if there is none.
+     */
+    public int nextOccupied(int from) {
+        if (from >= CAPACITY) {
+            return -1;
+        }
+        int remaining = occupied & (FULL_MASK << from);
+        return remaining == 0 ? -1 : Integer.numberOfTrailingZeros(remaining);
+    }
+
+    /**
+     * Performs the given action for every offered item in slot order.
+     *
+     * @param action The action to perform for each item.
+     */
+    public void forEach(@NotNull Consumer<ItemStack> action) {
+        for (int i = nextOccupied(0); i >= 0; i = nextOccupied(i + 1)) {
+            action.accept(items[i]);
+        }
+    }
+
+    /**
+     * Removes all items from the offer.
+     */
+    public void clear() {
+        Arrays.fill(items, null);
+        Arrays.fill(fingerprints, ItemFingerprint.NONE);
+        occupied = 0;
+    }
+
+    /**
+     * Returns the number of offered items.
+     *
+     * @return The number of occupied offer slots.
+     */
+    public int size() {
+        return Integer.bitCount(occupied);
+    }
+
+    public boolean isEmpty() {
+        return occupied == 0;
+    }
+
+    public boolean isFull() {
+        return occupied == FULL_MASK;
+    }
+
+    /**
+     * Returns the occupancy bitmask, where bit {@code i} is set if offer index {@code i} holds an item.
+     *
+     * @return The occupancy bitmask.
+     */
+    public int getOccupancy() {
+        return occupied;
+    }
+
+    /**
+     * Maps an offer index to the inventory slot showing it in the owner's view.
+     *
+     * @param index The offer index.
+     * @return The raw inventory slot.
+     */
+    public static int toSlot(int index) {
+        return OFFER_SLOTS[index];
+    }
+
+    /**
+     * Maps an offer index to the inventory slot mirroring it in the trade partner's view.
+     *
+     * @param index The offer index.
+     * @return The raw inventory slot in the partner's view.
+     */
+    public static int toMirrorSlot(int index) {
+        return OFFER_SLOTS[index] + MIRROR_OFFSET;
+    }
+
+    /**
+     * Maps a raw inventory slot of the owner's view to its offer index.
+     *
+     * @param slot The raw inventory slot.
+     * @return The offer index, or -1 if the slot is not an offer slot.
+     */
+    public static int toIndex(int slot) {
+        return slot >= 0 && slot < SLOT_TO_INDEX.length ? SLOT_TO_INDEX[slot] : -1;
+    }
+
+    private static int @NotNull [] createSlotLookup() {
+        int[] lookup = new int[54];
+        Arrays.fill(lookup, -1);
+        for (int i = 0; i < OFFER_SLOTS.length; i++) {
+            lookup[OFFER_SLOTS[i]] = i;
+        }
+        return lookup;
+    }
+}
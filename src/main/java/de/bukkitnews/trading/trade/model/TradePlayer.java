@@ -8,12 +8,11 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
 import java.util.Optional;
 
 /**
  * This class represents a player involved in a trade.
- * It stores the player's inventory items, coin balance, trade value,
+ * It stores the player's offered items, coin balance, trade value,
  * and the state of the trade for the player.
  */
 @Getter
@@ -22,7 +21,7 @@ public class TradePlayer {
 
     private final @NotNull Player player;
     private @NotNull Trade.State state;
-    private final @NotNull ArrayList<ItemStack> items;
+    private final @NotNull TradeOffer offer;
 
     private @NotNull Optional<Integer> coins;
     private @NotNull Optional<Integer> value;
@@ -30,7 +29,7 @@ public class TradePlayer {
     public TradePlayer(@NotNull Player player) {
         this.player = player;
         this.state = Trade.State.UNFINISHED;
-        this.items = new ArrayList<>();
+        this.offer = new TradeOffer();
         this.coins = Optional.of(0);
         this.value = Optional.of(1);
     }
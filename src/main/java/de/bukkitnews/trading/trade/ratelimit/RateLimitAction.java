@@ -0,0 +1,21 @@
+package de.bukkitnews.trading.trade.ratelimit;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Enum representing the player actions that are rate limited, each with its own token bucket per player.
+ */
+@Getter
+public enum RateLimitAction {
+    INVITE("invite"),
+    ACCEPT("accept"),
+    LOGS("logs"),
+    CLICK("click");
+
+    private final @NotNull String configKey;
+
+    RateLimitAction(@NotNull String configKey) {
+        this.configKey = configKey;
+    }
+}
@@ -0,0 +1,224 @@
+package de.bukkitnews.trading.trade.ratelimit;
+
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The RateLimiter keeps one token bucket per player and {@link RateLimitAction}.
+ * <p>
+ * Buckets are stored in an open-addressing table keyed by the two halves of the player's UUID, with the
+ * token state of all actions of a player laid out next to each other in primitive arrays. Tokens are refilled
+ * lazily when a bucket is used, so no scheduled task is needed. The limits are read from the current
+ * {@link ConfigSnapshot} on every call and therefore follow configuration reloads.
+ * <p>
+ * This class is not thread-safe and must only be used from the main thread.
+ */
+public class RateLimiter {
+
+    private static final int ACTIONS = RateLimitAction.values().length;
+    private static final RateLimitAction[] ACTION_VALUES = RateLimitAction.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] mostBits;
+    private long[] leastBits;
+    private boolean[] used;
+    private double[] tokens;
+    private long[] lastRefill;
+    private int size;
+    private int mask;
+
+    private final @NotNull AtomicLongArray rejected = new AtomicLongArray(ACTIONS);
+
+    public RateLimiter() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Takes a token from the player's bucket for the given action.
+     *
+     * @param player The player performing the action.
+     * @param action The action being performed.
+     * @return true if the action is allowed, false if the player exceeded the limit.
+     */
+    public boolean tryAcquire(@NotNull Player player, @NotNull RateLimitAction action) {
+        return tryAcquire(player.getUniqueId(), action);
+    }
+
+    /**
+     * Takes a token from the bucket of the player with the given UUID for the given action.
+     *
+     * @param uuid   The UUID of the player performing the action.
+     * @param action The action being performed.
+     * @return true if the action is allowed, false if the player exceeded the limit.
+     */
+    public boolean tryAcquire(@NotNull UUID uuid, @NotNull RateLimitAction action) {
+        ConfigSnapshot.Bucket bucket = ConfigSnapshot.current().rateLimits().get(action);
+        int cell = findOrInsert(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) * ACTIONS + action.ordinal();
+
+        long now = System.nanoTime();
+        double available = tokens[cell];
+        if (Double.isNaN(available)) {
+            available = bucket.capacity();
+        } else {
+            double refill = (now - lastRefill[cell]) * bucket.refillPerSecond() / 1_000_000_000D;
+            available = Math.min(bucket.capacity(), available + refill);
+        }
+        lastRefill[cell] = now;
+
+        if (available < 1D) {
+            tokens[cell] = available;
+            rejected.incrementAndGet(action.ordinal());
+            return false;
+        }
+
+        tokens[cell] = available - 1D;
+        return true;
+    }
+
+    /**
+     * Removes all buckets of a player, e.g. when they leave the server.
+     *
+     * @param uuid The UUID of the player.
+     */
+    public void remove(@NotNull UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+
+        int slot = indexFor(most, least);
+        while (used[slot]) {
+            if (mostBits[slot] == most && leastBits[slot] == least) {
+                delete(slot);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the number of rejected attempts for an action since the plugin was enabled.
+     *
+     * @param action The rate limited action.
+     * @return The number of rejected attempts.
+     */
+    public long getRejected(@NotNull RateLimitAction action) {
+        return rejected.get(action.ordinal());
+    }
+
+    /**
+     * Returns the number of rejected attempts over all actions since the plugin was enabled.
+     *
+     * @return The total number of rejected attempts.
+     */
+    public long getRejectedTotal() {
+        long total = 0;
+        for (RateLimitAction action : ACTION_VALUES) {
+            total += getRejected(action);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of players that currently have buckets.
+     *
+     * @return The number of tracked players.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int findOrInsert(long most, long least) {
+        int slot = indexFor(most, least);
+        while (used[slot]) {
+            if (mostBits[slot] == most && leastBits[slot] == least) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if ((size + 1) * 2 > used.length) {
+            resize();
+            return findOrInsert(most, least);
+        }
+
+        used[slot] = true;
+        mostBits[slot] = most;
+        leastBits[slot] = least;
+        Arrays.fill(tokens, slot * ACTIONS, slot * ACTIONS + ACTIONS, Double.NaN);
+        size++;
+        return slot;
+    }
+
+    /**
+     * Deletes a slot and shifts back the following entries of its probe sequence, so lookups never
+     * stop early at a hole.
+     */
+    private void delete(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (used[next]) {
+            int home = indexFor(mostBits[next], leastBits[next]);
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                moveSlot(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        used[hole] = false;
+        size--;
+    }
+
+    private void moveSlot(int from, int to) {
+        used[to] = true;
+        mostBits[to] = mostBits[from];
+        leastBits[to] = leastBits[from];
+        System.arraycopy(tokens, from * ACTIONS, tokens, to * ACTIONS, ACTIONS);
+        System.arraycopy(lastRefill, from * ACTIONS, lastRefill, to * ACTIONS, ACTIONS);
+    }
+
+    private void resize() {
+        long[] oldMost = mostBits;
+        long[] oldLeast = leastBits;
+        boolean[] oldUsed = used;
+        double[] oldTokens = tokens;
+        long[] oldRefill = lastRefill;
+
+        allocate(oldUsed.length * 2);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (!oldUsed[i]) {
+                continue;
+            }
+            int slot = indexFor(oldMost[i], oldLeast[i]);
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            mostBits[slot] = oldMost[i];
+            leastBits[slot] = oldLeast[i];
+            System.arraycopy(oldTokens, i * ACTIONS, tokens, slot * ACTIONS, ACTIONS);
+            System.arraycopy(oldRefill, i * ACTIONS, lastRefill, slot * ACTIONS, ACTIONS);
+            size++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.mostBits = new long[capacity];
+        this.leastBits = new long[capacity];
+        this.used = new boolean[capacity];
+        this.tokens = new double[capacity * ACTIONS];
+        this.lastRefill = new long[capacity * ACTIONS];
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    private int indexFor(long most, long least) {
+        long hash = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+}
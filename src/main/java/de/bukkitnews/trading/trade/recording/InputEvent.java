@@ -0,0 +1,74 @@
+package de.bukkitnews.trading.trade.recording;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * A trade input captured by the {@link InputRecorder}. Players are referred to by their number within the
+ * recording, which a {@link Join} assigns before any other input of the player.
+ */
+public sealed interface InputEvent {
+
+    /**
+     * Returns the number of server ticks since the recording started.
+     *
+     * @return The tick of the input.
+     */
+    long tick();
+
+    /**
+     * Returns the milliseconds since the recording started.
+     *
+     * @return The time of the input.
+     */
+    long timeMillis();
+
+    /**
+     * Returns the number of the player within the recording.
+     *
+     * @return The player number.
+     */
+    int player();
+
+    /**
+     * A player joined, or was online when the recording started.
+     *
+     * @param name The name of the player.
+     */
+    record Join(long tick, long timeMillis, int player, @NotNull String name) implements InputEvent {
+    }
+
+    /**
+     * A player ran {@code /trade}.
+     *
+     * @param arguments The command arguments.
+     */
+    record Command(long tick, long timeMillis, int player, @NotNull List<String> arguments) implements InputEvent {
+    }
+
+    /**
+     * A player clicked in a trade view.
+     *
+     * @param rawSlot  The raw slot of the view, the top inventory comes first.
+     * @param click    The name of the {@link org.bukkit.event.inventory.ClickType}.
+     * @param material The material of the clicked item, null if the slot was empty.
+     * @param amount   The amount of the clicked item, 0 if the slot was empty.
+     */
+    record Click(long tick, long timeMillis, int player, int rawSlot, @NotNull String click,
+                 @Nullable String material, int amount) implements InputEvent {
+    }
+
+    /**
+     * A player closed a trade view.
+     */
+    record Close(long tick, long timeMillis, int player) implements InputEvent {
+    }
+
+    /**
+     * A player quit. Their number is not used again.
+     */
+    record Quit(long tick, long timeMillis, int player) implements InputEvent {
+    }
+}
@@ -0,0 +1,264 @@
+package de.bukkitnews.trading.trade.recording;
+
+import de.bukkitnews.trading.Trading;
+import de.bukkitnews.trading.config.ConfigSnapshot;
+import de.bukkitnews.trading.metrics.TradeMetrics;
+import de.bukkitnews.trading.profiler.ProfilerSection;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Records the trade inputs of all players into an {@link InputRecording}, so that real traffic can be replayed
+ * against the plugin later, e.g. by the benchmarks.
+ * <p>
+ * Recorded are {@code /trade} commands, clicks in trade views, closed trade views, joins and quits, each with the
+ * server tick and the time since the recording started. The listeners only stamp an {@link InputEvent} and offer
+ * it to a bounded queue; a single recorder thread encodes the events and writes them to the file. If the queue is
+ * full, the event is dropped and counted, so a slow disk never holds up the main thread. The recording stops once
+ * the file reaches {@code max-file-mb}.
+ * <p>
+ * The record methods must be called from the main thread, which numbers the players.
+ */
+public class InputRecorder {
+
+    private static final long POLL_MILLIS = 1000;
+    private static final @NotNull DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("'inputs-'yyyyMMdd-HHmmss");
+
+    private final @NotNull Trading plugin;
+    private final @NotNull TradeMetrics metrics;
+    private final @NotNull ConfigSnapshot.Recording settings;
+    private final @NotNull BlockingQueue<InputEvent> queue;
+    private final @NotNull Thread worker;
+
+    /*
+     * The following fields are only accessed by the main thread.
+     */
+    private final @NotNull Map<UUID, Integer> players = new HashMap<>();
+    private int nextPlayer;
+    private long tick;
+    private long startNanos;
+
+    /**
+     * The recording, only accessed by the recorder thread once started. Null if recording is disabled or the file
+     * could not be created.
+     */
+    private @Nullable InputRecording.Writer writer;
+    private @Nullable Path file;
+
+    private volatile boolean running;
+
+    /**
+     * Creates the recorder. The settings are read once. The recording starts with {@link #start()}.
+     *
+     * @param plugin   The plugin.
+     * @param settings The recorder settings.
+     */
+    public InputRecorder(@NotNull Trading plugin, @NotNull ConfigSnapshot.Recording settings) {
+        this.plugin = plugin;
+        this.metrics = plugin.getMetrics();
+        this.settings = settings;
+        this.queue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.worker = Thread.ofVirtual().name("TradingSystem-InputRecorder").unstarted(this::run);
+    }
+
+    /**
+     * Creates the recording in the "recordings" directory and starts the recorder thread, if recording is enabled.
+     * Players who are already online are recorded as if they joined.
+     */
+    public void start() {
+        if (!settings.enabled()) {
+            return;
+        }
+
+        this.file = plugin.getDataFolder().toPath().resolve("recordings")
+                .resolve(LocalDateTime.now().format(FILE_NAME) + InputRecording.EXTENSION);
+        try {
+            this.writer = new InputRecording.Writer(file, System.currentTimeMillis());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not create the input recording " + file, e);
+            return;
+        }
+
+        startNanos = System.nanoTime();
+        running = true;
+        Bukkit.getScheduler().runTaskTimer(plugin,
+                plugin.getProfiler().wrap(ProfilerSection.SCHEDULED, "InputRecorder#tick", () -> tick++), 1L, 1L);
+        Bukkit.getOnlinePlayers().forEach(this::recordJoin);
+        worker.start();
+        plugin.getLogger().info("Recording trade inputs to " + file);
+    }
+
+    /**
+     * Returns whether inputs are being recorded.
+     *
+     * @return True while recording.
+     */
+    public boolean isRecording() {
+        return running;
+    }
+
+    /**
+     * Returns the number of inputs waiting to be written.
+     *
+     * @return The number of queued inputs.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Records a joining player.
+     *
+     * @param player The player.
+     */
+    public void recordJoin(@NotNull Player player) {
+        if (running) {
+            join(player);
+        }
+    }
+
+    /**
+     * Records a {@code /trade} command.
+     *
+     * @param player    The player running the command.
+     * @param arguments The command arguments.
+     */
+    public void recordCommand(@NotNull Player player, @NotNull String[] arguments) {
+        if (running) {
+            int number = number(player);
+            submit(new InputEvent.Command(tick, elapsedMillis(), number, List.of(arguments)));
+        }
+    }
+
+    /**
+     * Records a click in a trade view.
+     *
+     * @param player  The clicking player.
+     * @param rawSlot The clicked raw slot.
+     * @param click   The kind of click.
+     * @param item    The clicked item, null if the slot was empty.
+     */
+    public void recordClick(@NotNull Player player, int rawSlot, @NotNull ClickType click, @Nullable ItemStack item) {
+        if (running) {
+            int number = number(player);
+            boolean empty = item == null || item.getType().isAir();
+            submit(new InputEvent.Click(tick, elapsedMillis(), number, rawSlot, click.name(),
+                    empty ? null : item.getType().name(), empty ? 0 : item.getAmount()));
+        }
+    }
+
+    /**
+     * Records a closed trade view.
+     *
+     * @param player The player who closed the view.
+     */
+    public void recordClose(@NotNull Player player) {
+        if (running) {
+            int number = number(player);
+            submit(new InputEvent.Close(tick, elapsedMillis(), number));
+        }
+    }
+
+    /**
+     * Records a quitting player.
+     *
+     * @param player The player.
+     */
+    public void recordQuit(@NotNull Player player) {
+        if (running) {
+            Integer number = players.remove(player.getUniqueId());
+            if (number != null) {
+                submit(new InputEvent.Quit(tick, elapsedMillis(), number));
+            }
+        }
+    }
+
+    /**
+     * Stops recording and writes the queued inputs, waiting at most until the deadline.
+     *
+     * @param timeout The maximum time to wait.
+     */
+    public void close(@NotNull Duration timeout) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join(timeout);
+            if (worker.isAlive()) {
+                worker.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int number(@NotNull Player player) {
+        Integer number = players.get(player.getUniqueId());
+        return number != null ? number : join(player);
+    }
+
+    private int join(@NotNull Player player) {
+        int number = nextPlayer++;
+        players.put(player.getUniqueId(), number);
+        submit(new InputEvent.Join(tick, elapsedMillis(), number, player.getName()));
+        return number;
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private void submit(@NotNull InputEvent event) {
+        if (queue.offer(event)) {
+            metrics.getRecordedInputs().increment();
+        } else {
+            metrics.getRecordedInputsDropped().increment();
+        }
+    }
+
+    private void run() {
+        InputRecording.Writer writer = this.writer;
+        long maxBytes = settings.maxFileMb() * 1024L * 1024L;
+        try (writer) {
+            while (running || !queue.isEmpty()) {
+                InputEvent event = running ? queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS) : queue.poll();
+                if (event == null) {
+                    writer.flush();
+                    continue;
+                }
+
+                writer.append(event);
+                if (writer.size() >= maxBytes) {
+                    running = false;
+                    queue.clear();
+                    plugin.getLogger().warning("Input recording " + file + " reached " + settings.maxFileMb()
+                            + " MB, recording stopped");
+                }
+            }
+        } catch (IOException e) {
+            running = false;
+            plugin.getLogger().log(Level.WARNING, "Could not write the input recording " + file + ", recording stopped", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
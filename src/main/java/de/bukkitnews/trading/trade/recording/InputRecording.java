@@ -0,0 +1,246 @@
+package de.bukkitnews.trading.trade.recording;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The file format of input recordings.
+ * <p>
+ * A recording starts with a header of a magic number, the format version and the time the recording started in
+ * epoch milliseconds. Every {@link InputEvent} follows as a type byte, the ticks and milliseconds since the previous
+ * event, the player number and the fields of its type. Numbers are unsigned varints, the raw slot is zig-zag
+ * encoded. Strings (names, command arguments, click types and materials) are written once and referred to by their
+ * index afterwards, so a click usually takes about ten bytes.
+ * <p>
+ * Events are appended as they come, without a trailer. A recording cut off by a crash is read up to its last
+ * complete event.
+ */
+public final class InputRecording {
+
+    /**
+     * The file extension of recordings.
+     */
+    public static final @NotNull String EXTENSION = ".trec";
+
+    private static final int MAGIC = 0x54524543;
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final int JOIN = 0;
+    private static final int COMMAND = 1;
+    private static final int CLICK = 2;
+    private static final int CLOSE = 3;
+    private static final int QUIT = 4;
+
+    private InputRecording() {
+    }
+
+    /**
+     * Reads a recording event by event.
+     *
+     * @param file     The recording.
+     * @param consumer Receives the events in recorded order.
+     * @return The time the recording started in epoch milliseconds.
+     * @throws IOException If the file could not be read or is not a recording.
+     */
+    public static long read(@NotNull Path file, @NotNull Consumer<InputEvent> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an input recording: " + file.getFileName());
+            }
+            long startMillis = in.readLong();
+
+            List<String> strings = new ArrayList<>();
+            long tick = 0;
+            long timeMillis = 0;
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+
+                InputEvent event;
+                try {
+                    tick += readVarLong(in);
+                    timeMillis += readVarLong(in);
+                    int player = (int) readVarLong(in);
+                    event = switch (type) {
+                        case JOIN -> new InputEvent.Join(tick, timeMillis, player, readString(in, strings));
+                        case COMMAND -> {
+                            int count = (int) readVarLong(in);
+                            List<String> arguments = new ArrayList<>(count);
+                            for (int i = 0; i < count; i++) {
+                                arguments.add(readString(in, strings));
+                            }
+                            yield new InputEvent.Command(tick, timeMillis, player, List.copyOf(arguments));
+                        }
+                        case CLICK -> {
+                            long slot = readVarLong(in);
+                            int rawSlot = (int) ((slot >>> 1) ^ -(slot & 1));
+                            String click = readString(in, strings);
+                            String material = readString(in, strings);
+                            int amount = (int) readVarLong(in);
+                            yield new InputEvent.Click(tick, timeMillis, player, rawSlot, click,
+                                    material.isEmpty() ? null : material, amount);
+                        }
+                        case CLOSE -> new InputEvent.Close(tick, timeMillis, player);
+                        case QUIT -> new InputEvent.Quit(tick, timeMillis, player);
+                        default -> throw new IOException("Unknown input type " + type + " in " + file.getFileName());
+                    };
+                } catch (EOFException e) {
+                    // The recording was cut off in the middle of its last event.
+                    break;
+                }
+                consumer.accept(event);
+            }
+            return startMillis;
+        }
+    }
+
+    private static @NotNull String readString(@NotNull DataInputStream in, @NotNull List<String> strings) throws IOException {
+        int index = (int) readVarLong(in);
+        if (index == strings.size()) {
+            strings.add(in.readUTF());
+        } else if (index > strings.size()) {
+            throw new IOException("Input recording refers to string " + index + " of " + strings.size());
+        }
+        return strings.get(index);
+    }
+
+    private static long readVarLong(@NotNull DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in input recording");
+    }
+
+    /**
+     * Appends events to a new recording. Not thread-safe.
+     */
+    static final class Writer implements Closeable {
+
+        private final @NotNull DataOutputStream out;
+        private final @NotNull Map<String, Integer> strings = new HashMap<>();
+        private long tick;
+        private long timeMillis;
+
+        /**
+         * Creates the recording and writes its header.
+         *
+         * @param file        The recording, replaced if it exists.
+         * @param startMillis The time the recording started in epoch milliseconds.
+         * @throws IOException If the file could not be created.
+         */
+        Writer(@NotNull Path file, long startMillis) throws IOException {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_BYTES));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(startMillis);
+        }
+
+        /**
+         * Appends an event. Events must be appended in recorded order.
+         *
+         * @param event The event.
+         * @throws IOException If the event could not be written.
+         */
+        void append(@NotNull InputEvent event) throws IOException {
+            out.writeByte(switch (event) {
+                case InputEvent.Join ignored -> JOIN;
+                case InputEvent.Command ignored -> COMMAND;
+                case InputEvent.Click ignored -> CLICK;
+                case InputEvent.Close ignored -> CLOSE;
+                case InputEvent.Quit ignored -> QUIT;
+            });
+            writeVarLong(event.tick() - tick);
+            writeVarLong(event.timeMillis() - timeMillis);
+            writeVarLong(event.player());
+            tick = event.tick();
+            timeMillis = event.timeMillis();
+
+            switch (event) {
+                case InputEvent.Join join -> writeString(join.name());
+                case InputEvent.Command command -> {
+                    writeVarLong(command.arguments().size());
+                    for (String argument : command.arguments()) {
+                        writeString(argument);
+                    }
+                }
+                case InputEvent.Click click -> {
+                    writeVarLong(((long) click.rawSlot() << 1) ^ (click.rawSlot() >> 31));
+                    writeString(click.click());
+                    writeString(click.material());
+                    writeVarLong(click.amount());
+                }
+                case InputEvent.Close ignored -> {
+                }
+                case InputEvent.Quit ignored -> {
+                }
+            }
+        }
+
+        /**
+         * Returns the number of bytes written, including those still buffered.
+         *
+         * @return The size of the recording.
+         */
+        long size() {
+            return out.size();
+        }
+
+        /**
+         * Writes the buffered events to the file.
+         *
+         * @throws IOException If the events could not be written.
+         */
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeString(@Nullable String value) throws IOException {
+            String string = value == null ? "" : value;
+            Integer index = strings.get(string);
+            if (index != null) {
+                writeVarLong(index);
+                return;
+            }
+            writeVarLong(strings.size());
+            out.writeUTF(string);
+            strings.put(string, strings.size());
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+}
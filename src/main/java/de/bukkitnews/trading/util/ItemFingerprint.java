@@ -0,0 +1,100 @@
+package de.bukkitnews.trading.util;
+
+import lombok.experimental.UtilityClass;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Computes content fingerprints of items: a 64-bit hash of the material, the amount and the serialized meta.
+ * Two items with the same fingerprint are equal for all practical purposes, so fingerprints serve as a cheap
+ * equality and indexing key where {@link ItemStack#equals(Object)} would compare the full meta every time.
+ * <p>
+ * Fingerprints only depend on the content of an item, not on the server run, so they are stable across restarts
+ * and can be stored, e.g. as search terms in the trade log. Serializing the meta is the expensive part, so a
+ * fingerprint is computed once where the plugin takes hold of a stack and kept next to it (see
+ * {@link de.bukkitnews.trading.trade.model.TradeOffer}). Items without meta are hashed without serializing anything.
+ */
+@UtilityClass
+public class ItemFingerprint {
+
+    /**
+     * The fingerprint of no item, i.e. null or air. No item has this fingerprint.
+     */
+    public static final long NONE = 0L;
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * Computes the fingerprint of an item.
+     *
+     * @param itemStack The item, may be null.
+     * @return The fingerprint, {@link #NONE} for null or air.
+     */
+    public static long of(@Nullable ItemStack itemStack) {
+        if (itemStack == null || itemStack.getType().isAir()) {
+            return NONE;
+        }
+
+        long hash = hash(FNV_OFFSET, itemStack.getType(), itemStack.getAmount());
+        if (itemStack.hasItemMeta()) {
+            hash = hash(hash, itemStack.getItemMeta().getAsString());
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Computes the fingerprint of an item without meta, e.g. one traded in the auction house, without creating it.
+     *
+     * @param material The material.
+     * @param amount   The amount.
+     * @return The fingerprint, equal to that of an item of the material and amount without meta.
+     */
+    public static long ofPlain(@NotNull Material material, int amount) {
+        return material.isAir() ? NONE : finish(hash(FNV_OFFSET, material, amount));
+    }
+
+    /**
+     * Formats a fingerprint the way it is shown to staff and used in searches.
+     *
+     * @param fingerprint The fingerprint.
+     * @return The fingerprint as 16 hex digits.
+     */
+    public static @NotNull String format(long fingerprint) {
+        return String.format("%016x", fingerprint);
+    }
+
+    private static long hash(long hash, @NotNull Material material, int amount) {
+        hash = hash(hash, material.getKey().toString());
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash = (hash ^ ((amount >>> shift) & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Folds a string into an FNV-1a hash, two bytes per character.
+     */
+    private static long hash(long hash, @NotNull String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return (hash ^ 0xFF) * FNV_PRIME;
+    }
+
+    /**
+     * Mixes the bits of the hash, so similar items get unrelated fingerprints, and keeps it clear of {@link #NONE}.
+     */
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash == NONE ? 1L : hash;
+    }
+}
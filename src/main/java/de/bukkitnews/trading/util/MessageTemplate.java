@@ -0,0 +1,191 @@
+package de.bukkitnews.trading.util;
+
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.ChatColor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A message compiled once when the messages are loaded.
+ * Color codes are translated at compile time and the message is split into literal segments and placeholders,
+ * so rendering is a single pass over a {@link StringBuilder} without regular expressions or format parsing.
+ * <p>
+ * Two placeholder styles are supported and can be mixed:
+ * <ul>
+ *     <li>{@code %s} – positional, filled with the next argument</li>
+ *     <li>{@code {name}} – named, filled by name or, when rendering positionally, with the argument at the
+ *     position the name first appeared at</li>
+ * </ul>
+ * {@code %%} renders a literal percent sign.
+ */
+public final class MessageTemplate {
+
+    private final @NotNull String[] literals;
+    private final int[] positions;
+    private final @NotNull String[] names;
+    private final @NotNull String[] rawPlaceholders;
+    private final int argumentCount;
+    private final int literalLength;
+    private final @Nullable String constant;
+
+    private MessageTemplate(@NotNull List<String> literals, @NotNull List<Integer> positions,
+                            @NotNull List<String> names, @NotNull List<String> rawPlaceholders, int argumentCount) {
+        this.literals = literals.toArray(String[]::new);
+        this.positions = positions.stream().mapToInt(Integer::intValue).toArray();
+        this.names = names.toArray(String[]::new);
+        this.rawPlaceholders = rawPlaceholders.toArray(String[]::new);
+        this.argumentCount = argumentCount;
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+        this.constant = this.positions.length == 0 ? this.literals[0] : null;
+    }
+
+    /**
+     * Compiles a raw message into a template. Color codes prefixed with '&' are translated.
+     *
+     * @param raw The raw message as written in the configuration.
+     * @return The compiled template.
+     */
+    public static @NotNull MessageTemplate compile(@NotNull String raw) {
+        String translated = ChatColor.translateAlternateColorCodes('&', raw);
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> rawPlaceholders = new ArrayList<>();
+        List<String> namedOrder = new ArrayList<>();
+        int argumentCount = 0;
+
+        StringBuilder literal = new StringBuilder();
+        int length = translated.length();
+        for (int i = 0; i < length; i++) {
+            char c = translated.charAt(i);
+
+            if (c == '%' && i + 1 < length) {
+                char next = translated.charAt(i + 1);
+                if (next == '%') {
+                    literal.append('%');
+                    i++;
+                    continue;
+                }
+                if (next == 's') {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    positions.add(argumentCount++);
+                    names.add("");
+                    rawPlaceholders.add("%s");
+                    i++;
+                    continue;
+                }
+            }
+
+            if (c == '{') {
+                int end = findPlaceholderEnd(translated, i + 1);
+                if (end > i + 1) {
+                    String name = translated.substring(i + 1, end);
+                    int position = namedOrder.indexOf(name);
+                    if (position < 0) {
+                        namedOrder.add(name);
+                        position = argumentCount++;
+                    }
+
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    positions.add(position);
+                    names.add(name);
+                    rawPlaceholders.add("{" + name + "}");
+                    i = end;
+                    continue;
+                }
+            }
+
+            literal.append(c);
+        }
+        literals.add(literal.toString());
+
+        return new MessageTemplate(literals, positions, names, rawPlaceholders, argumentCount);
+    }
+
+    /**
+     * Returns the index of the closing brace of a named placeholder, or -1 if the text at the given
+     * position is not a valid placeholder name.
+     */
+    private static int findPlaceholderEnd(@NotNull String text, int start) {
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '}') {
+                return i;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Renders the template with positional arguments. Missing arguments leave their placeholder as written,
+     * surplus arguments are ignored.
+     *
+     * @param arguments The arguments in placeholder order.
+     * @return The rendered message.
+     */
+    public @NotNull String render(@NotNull String... arguments) {
+        if (constant != null) {
+            return constant;
+        }
+
+        StringBuilder builder = new StringBuilder(literalLength + 16 * positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            builder.append(literals[i]);
+            int position = positions[i];
+            builder.append(position < arguments.length ? arguments[position] : rawPlaceholders[i]);
+        }
+        return builder.append(literals[positions.length]).toString();
+    }
+
+    /**
+     * Renders the template with named arguments. Positional placeholders are looked up by their
+     * position as a string ("0", "1", ...).
+     *
+     * @param arguments The arguments by placeholder name.
+     * @return The rendered message.
+     */
+    public @NotNull String render(@NotNull Map<String, String> arguments) {
+        if (constant != null) {
+            return constant;
+        }
+
+        StringBuilder builder = new StringBuilder(literalLength + 16 * positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            builder.append(literals[i]);
+            String key = names[i].isEmpty() ? Integer.toString(positions[i]) : names[i];
+            String value = arguments.get(key);
+            builder.append(value != null ? value : rawPlaceholders[i]);
+        }
+        return builder.append(literals[positions.length]).toString();
+    }
+
+    /**
+     * Renders the template with positional arguments into chat components.
+     *
+     * @param arguments The arguments in placeholder order.
+     * @return The rendered message as components.
+     */
+    public @NotNull BaseComponent[] toComponents(@NotNull String... arguments) {
+        return TextComponent.fromLegacyText(render(arguments));
+    }
+
+    /**
+     * Returns the number of distinct arguments this template expects when rendered positionally.
+     *
+     * @return The number of expected arguments.
+     */
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+}
@@ -1,40 +1,45 @@
 package de.bukkitnews.trading.util;
 
-import de.bukkitnews.trading.config.ConfigManager;
+import de.bukkitnews.trading.config.ConfigSnapshot;
 import lombok.experimental.UtilityClass;
-import org.bukkit.ChatColor;
-import org.bukkit.configuration.file.FileConfiguration;
+import net.md_5.bungee.api.chat.BaseComponent;
+import org.bukkit.configuration.ConfigurationSection;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @UtilityClass
 public class MessageUtil {
 
-    private static final @NotNull Map<String, String> MESSAGES = new HashMap<>();
     private static final @NotNull Logger LOGGER = Logger.getLogger(MessageUtil.class.getName());
 
     /**
-     * Loads messages from the configuration file.
+     * Compiles the messages of a configuration file into templates.
+     * Messages are read from a 'messages' section if present, otherwise from the root of the file.
      *
-     * @param configManager The ConfigManager that manages the configuration file.
+     * @param config The configuration containing the messages.
+     * @return The compiled templates by message key.
      */
-    public static void loadMessages(@NotNull ConfigManager configManager) {
-        FileConfiguration config = configManager.getConfig();
+    public static @NotNull Map<String, MessageTemplate> compileMessages(@NotNull ConfigurationSection config) {
+        ConfigurationSection section = config.isConfigurationSection("messages")
+                ? config.getConfigurationSection("messages")
+                : config;
 
-        if (!config.contains("messages")) {
-            LOGGER.log(Level.WARNING, "No 'messages' section found in the configuration file!");
-            return;
+        Map<String, MessageTemplate> messages = new HashMap<>();
+        for (String key : section.getKeys(false)) {
+            String raw = section.getString(key);
+            if (section.isString(key) && !raw.isEmpty()) {
+                messages.put(key, MessageTemplate.compile(raw));
+            }
         }
 
-        config.getConfigurationSection("messages").getKeys(false).stream()
-                .filter(key -> !config.getString("messages." + key).isEmpty())
-                .forEach(key -> MESSAGES.put(key, config.getString("messages." + key)));
+        if (messages.isEmpty()) {
+            LOGGER.log(Level.WARNING, "No messages found in the configuration file!");
+        }
+        return messages;
     }
 
     /**
@@ -45,9 +50,7 @@ public class MessageUtil {
      * @return The formatted message.
      */
     public static @NotNull String getMessage(@NotNull String key, @NotNull String... placeholders) {
-        String template = MESSAGES.getOrDefault(key, "Unknown message key: " + key);
-        String formatted = formatMessage(template, placeholders);
-        return ChatColor.translateAlternateColorCodes('&', formatted);
+        return getTemplate(key).render(placeholders);
     }
 
     /**
@@ -57,37 +60,28 @@ public class MessageUtil {
      * @return The message without placeholders.
      */
     public static @NotNull String getMessage(@NotNull String key) {
-        return ChatColor.translateAlternateColorCodes(
-                '&', MESSAGES.getOrDefault(key, "Unknown message key: " + key));
+        return getTemplate(key).render();
     }
 
     /**
-     * Helper method to format messages with placeholders.
+     * Retrieves a formatted message as chat components.
      *
-     * @param template     The message template with placeholders.
+     * @param key          The key of the message in the configuration.
      * @param placeholders The placeholders to replace in the message.
-     * @return The formatted message.
+     * @return The formatted message as components.
      */
-    private static @NotNull String formatMessage(@NotNull String template, @NotNull String... placeholders) {
-        if (placeholders.length != countPlaceholders(template)) {
-            LOGGER.log(Level.WARNING, "Number of placeholders does not match the number of '%s' in the template.");
-        }
-        return String.format(template, (Object[]) placeholders);
+    public static @NotNull BaseComponent[] getComponents(@NotNull String key, @NotNull String... placeholders) {
+        return getTemplate(key).toComponents(placeholders);
     }
 
     /**
-     * Counts the placeholders (%s) in a message template.
+     * Retrieves the compiled template of a message.
      *
-     * @param template The message template.
-     * @return The number of placeholders.
+     * @param key The key of the message in the configuration.
+     * @return The compiled template, or a template naming the unknown key.
      */
-    private static int countPlaceholders(@NotNull String template) {
-        Pattern pattern = Pattern.compile("%s");
-        Matcher matcher = pattern.matcher(template);
-        int count = 0;
-        while (matcher.find()) {
-            count++;
-        }
-        return count;
+    public static @NotNull MessageTemplate getTemplate(@NotNull String key) {
+        MessageTemplate template = ConfigSnapshot.current().messages().get(key);
+        return template != null ? template : MessageTemplate.compile("Unknown message key: " + key);
     }
-}
\ No newline at end of file
+}
@@ -14,6 +14,12 @@ public class TradeItems {
     public static final @NotNull ItemStack ITEM_STATUS_PROCESSING = new ItemUtil(Material.ORANGE_STAINED_GLASS_PANE).setDisplayname("§7• §eProcessing").build();
     public static final @NotNull ItemStack ITEM_STATUS_DONE = new ItemUtil(Material.GREEN_STAINED_GLASS_PANE).setDisplayname("§7• §aDone").build();
 
+    /**
+     * The fingerprints of the state controls, so clicks on them are recognized without comparing their meta.
+     */
+    public static final long FINGERPRINT_HANDLING_PROCESSING = ItemFingerprint.of(ITEM_HANDLING_PROCESSING);
+    public static final long FINGERPRINT_HANDLING_SURE = ItemFingerprint.of(ITEM_HANDLING_SURE);
+
     public static final @NotNull ItemStack ITEM_ITEM_FRAME_COINS = new ItemUtil(Material.SUNFLOWER).setDisplayname("§7Coins").build();
     public static final @NotNull ItemStack ITEM_ITEM_FRAME_COINS_DESCRIPTION = new ItemUtil(Material.SUNFLOWER).setDisplayname("§7Coins: §e§n{coins}").build();
 }
\ No newline at end of file